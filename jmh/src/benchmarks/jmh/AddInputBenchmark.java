@@ -0,0 +1,66 @@
+package benchmarks.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import benchmarks.SyntheticCorpus;
+import model.MessageGenerator;
+
+/**
+ * Measures adding one word of input at a time to a generator that starts empty every iteration,
+ * for vocabularies from a few thousand words up to a million.
+ * @author Richie Ren
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AddInputBenchmark {
+
+	private static final int NUM_TOKENS = 1 << 20;
+
+	@Param({ "1000", "100000", "1000000" })
+	public int vocabularySize;
+
+	@Param({ "1", "3" })
+	public int order;
+
+	private String[] words;
+	private MessageGenerator msgGen;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUpCorpus() {
+		words = new SyntheticCorpus(vocabularySize, 1.0, 42).tokens(NUM_TOKENS);
+	}
+
+	@Setup(Level.Iteration)
+	public void setUpGenerator() {
+		msgGen = new MessageGenerator(order);
+		next = 1;
+	}
+
+	@Benchmark
+	public void addInput() {
+		msgGen.addInput(words, next);
+
+		if (++next == NUM_TOKENS) {
+			next = 1;
+		}
+	}
+}
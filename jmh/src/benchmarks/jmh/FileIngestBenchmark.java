@@ -0,0 +1,76 @@
+package benchmarks.jmh;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import benchmarks.SyntheticCorpus;
+import model.MessageGenerator;
+
+/**
+ * Measures training a new generator from a whole file, read through a Reader and through the memory mapped loader.
+ * Each run trains from scratch, so the time of a single run is measured rather than an average over many calls.
+ * @author Richie Ren
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FileIngestBenchmark {
+
+	@Param({ "1000000" })
+	public int numTokens;
+
+	@Param({ "50000" })
+	public int vocabularySize;
+
+	private Path file;
+
+	@Setup
+	public void setUp() throws IOException {
+		file = Files.createTempFile("corpus", ".txt");
+		Files.write(file, new SyntheticCorpus(vocabularySize, 1.0, 42).text(numTokens).getBytes(StandardCharsets.UTF_8));
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	@Benchmark
+	public MessageGenerator reader() throws IOException {
+		MessageGenerator msgGen = new MessageGenerator();
+
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			msgGen.addInput(reader);
+		}
+
+		return msgGen;
+	}
+
+	@Benchmark
+	public MessageGenerator mapped() throws IOException {
+		MessageGenerator msgGen = new MessageGenerator();
+		msgGen.addInput(file, StandardCharsets.UTF_8);
+		return msgGen;
+	}
+}
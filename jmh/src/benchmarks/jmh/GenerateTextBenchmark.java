@@ -0,0 +1,78 @@
+package benchmarks.jmh;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import benchmarks.SyntheticCorpus;
+import model.MessageGenerator;
+
+/**
+ * Measures generating a message from a generator trained on a million words of input, with and without recording metrics.
+ * @author Richie Ren
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GenerateTextBenchmark {
+
+	private static final int NUM_TOKENS = 1000000;
+
+	@Param({ "1000", "100000" })
+	public int vocabularySize;
+
+	@Param({ "1", "3" })
+	public int order;
+
+	@Param({ "false", "true" })
+	public boolean metrics;
+
+	private MessageGenerator msgGen;
+
+	@Setup
+	public void setUp() {
+		String[] words = new SyntheticCorpus(vocabularySize, 1.0, 42).tokens(NUM_TOKENS);
+
+		msgGen = new MessageGenerator(order);
+		for (int i = 1; i < words.length; i++) {
+			msgGen.addInput(words, i);
+		}
+
+		if (metrics) {
+			msgGen.enableMetrics();
+		}
+	}
+
+	/**
+	 * The random generator of each benchmark thread, seeded the same way every run.
+	 */
+	@State(Scope.Thread)
+	public static class ThreadRandom {
+		final SplittableRandom random = new SplittableRandom(7);
+	}
+
+	@Benchmark
+	public String generateText() {
+		return msgGen.generateText();
+	}
+
+	@Benchmark
+	public String generateTextSeeded(ThreadRandom state) {
+		return msgGen.generateText(state.random);
+	}
+}
@@ -0,0 +1,40 @@
+package benchmarks.jmh;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks of the model and writes the results as JSON, so that the results of two versions can be compared.
+ * Takes the usual JMH options, such as a regular expression to pick benchmarks or -p to override a parameter.
+ * Unless told otherwise it runs every benchmark in this package and writes the results to jmh-result.json.
+ * The benchmarks have to be compiled with the JMH annotation processor, which generates the code that JMH runs.
+ * Usage: JmhSuite [JMH options] [benchmark regex]
+ * @author Richie Ren
+ *
+ */
+public class JmhSuite {
+
+	public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+		CommandLineOptions options = new CommandLineOptions(args);
+		ChainedOptionsBuilder builder = new OptionsBuilder().parent(options);
+
+		if (options.getIncludes().isEmpty()) {
+			builder.include(JmhSuite.class.getPackageName() + "\\.");
+		}
+
+		if (!options.getResultFormat().hasValue()) {
+			builder.resultFormat(ResultFormatType.JSON);
+		}
+
+		if (!options.getResult().hasValue()) {
+			builder.result("jmh-result.json");
+		}
+
+		new Runner(builder.build()).run();
+	}
+}
@@ -0,0 +1,66 @@
+package benchmarks.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import benchmarks.SyntheticCorpus;
+import model.MarkovChain;
+
+/**
+ * Measures adding a state to a single chain and selecting a state from it, for chains with few and with many possible states.
+ * The states are drawn from a Zipf distribution, so a few of them are far more common than the rest.
+ * @author Richie Ren
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MarkovChainBenchmark {
+
+	private static final int NUM_WORDS = 1 << 16;
+
+	@Param({ "10", "1000", "100000" })
+	public int numStates;
+
+	private String[] words;
+	private MarkovChain growing;
+	private MarkovChain trained;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		words = new SyntheticCorpus(numStates, 1.0, 42).tokens(NUM_WORDS);
+
+		growing = new MarkovChain("word");
+		trained = new MarkovChain("word");
+		for (String word : words) {
+			trained.addState(word);
+		}
+
+		next = 0;
+	}
+
+	@Benchmark
+	public void addState() {
+		growing.addState(words[next++ & (NUM_WORDS - 1)]);
+	}
+
+	@Benchmark
+	public String getPossibleState() {
+		return trained.getPossibleState();
+	}
+}
@@ -0,0 +1,88 @@
+package benchmarks;
+
+import java.util.SplittableRandom;
+
+import model.ApproximateTraining;
+import model.MessageGenerator;
+import model.ModelDrift;
+
+/**
+ * Compares training exactly with training approximately within a memory budget, on synthetic corpora of growing size
+ * where a share of the words are typos, links and hashtags that occur only once. Reports the estimated memory of both models,
+ * the time taken to train them, and how far the approximate model has drifted from the exact one.
+ * Usage: ApproximateTrainingBenchmark [budget in MB] [vocabulary size] [share of junk words] [order]
+ * @author Richie Ren
+ *
+ */
+public class ApproximateTrainingBenchmark {
+
+	private static final int[] CORPUS_SIZES = { 250000, 1000000, 4000000 };
+
+	public static void main(String[] args) {
+		long budget = (long) ((args.length > 0 ? Double.parseDouble(args[0]) : 16) * (1 << 20));
+		int vocabularySize = args.length > 1 ? Integer.parseInt(args[1]) : 50000;
+		double junkShare = args.length > 2 ? Double.parseDouble(args[2]) : 0.05;
+		int order = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+
+		System.out.printf("Budget %.1f MB, %d words, %.0f%% junk, order %d%n", budget / (double) (1 << 20), vocabularySize, junkShare * 100, order);
+
+		for (int numTokens : CORPUS_SIZES) {
+			String[] words = tokens(numTokens, vocabularySize, junkShare);
+
+			MessageGenerator exact = new MessageGenerator(order);
+			long exactNanos = train(exact, words);
+
+			ApproximateTraining approx = new ApproximateTraining(budget);
+			MessageGenerator approximate = new MessageGenerator(order);
+			approximate.setApproximateTraining(approx);
+			long approximateNanos = train(approximate, words);
+
+			ModelDrift drift = ModelDrift.measure(exact, approximate);
+
+			System.out.printf("%,10d tokens  exact %7.1f MB %,9d edges %6.1f ns/token  approximate %7.1f MB %,9d edges %6.1f ns/token  threshold %d%n",
+					numTokens, exact.getEstimatedBytes() / 1e6, exact.getNumberOfEdges(), exactNanos / (double) numTokens,
+					(approximate.getEstimatedBytes() + approx.estimateBytes()) / 1e6, approximate.getNumberOfEdges(),
+					approximateNanos / (double) numTokens, approx.getThreshold());
+			System.out.printf("%16s%s%n", "", drift);
+		}
+	}
+
+	/**
+	 * Generates the words of a corpus, replacing the given share of them with words that occur only once.
+	 */
+	private static String[] tokens(int numTokens, int vocabularySize, double junkShare) {
+		String[] words = new SyntheticCorpus(vocabularySize, 1.0, 42).tokens(numTokens);
+		SplittableRandom random = new SplittableRandom(7);
+
+		for (int i = 0; i < words.length; i++) {
+			if (random.nextDouble() < junkShare) {
+				switch (random.nextInt(3)) {
+				case 0:
+					words[i] = words[i] + (char) ('a' + random.nextInt(26)) + i;
+					break;
+				case 1:
+					words[i] = "https://t.co/" + Long.toString(random.nextLong() & Long.MAX_VALUE, 36);
+					break;
+				default:
+					words[i] = "#tag" + i;
+				}
+			}
+		}
+
+		return words;
+	}
+
+	/**
+	 * Adds every word of the corpus to the generator.
+	 * @return a long containing the time taken in nanoseconds
+	 */
+	private static long train(MessageGenerator msgGen, String[] words) {
+		long start = System.nanoTime();
+
+		for (int i = 1; i < words.length; i++) {
+			msgGen.addInput(words, i);
+		}
+
+		return System.nanoTime() - start;
+	}
+}
@@ -0,0 +1,73 @@
+package benchmarks;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+import model.MessageGenerator;
+
+/**
+ * Compares generating a batch of messages by calling generateText() in a loop against the batch API,
+ * running the batch on pools of one thread up to the number of cores.
+ * Usage: BatchGenerationBenchmark [number of messages] [number of tokens] [vocabulary size] [max threads]
+ * @author Richie Ren
+ *
+ */
+public class BatchGenerationBenchmark {
+
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args) throws InterruptedException, ExecutionException {
+		int numMessages = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		int numTokens = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+		int vocabularySize = args.length > 2 ? Integer.parseInt(args[2]) : 20000;
+		int maxThreads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+		String[] words = new SyntheticCorpus(vocabularySize, 1.0, 42).tokens(numTokens);
+		MessageGenerator msgGen = new MessageGenerator();
+		for (int i = 1; i < words.length; i++) {
+			msgGen.addInput(words, i);
+		}
+
+		double loop = best(() -> {
+			for (int i = 0; i < numMessages; i++) {
+				msgGen.generateText();
+			}
+		});
+
+		System.out.printf("Loop:       %8.0f ms  %8.0f messages/s%n", loop, numMessages / loop * 1000);
+
+		for (int threads = 1; threads <= maxThreads; threads *= 2) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+
+			// A parallel stream runs on the pool of the task that consumes it, and summing the lengths
+			// makes every message be generated, which count() would skip because the stream is sized
+			double time = best(() -> {
+				try {
+					pool.submit(() -> msgGen.generateStream(numMessages).mapToInt(String::length).sum()).get();
+				} catch (InterruptedException | ExecutionException e) {
+					throw new RuntimeException(e);
+				}
+			});
+
+			System.out.printf("%2d threads: %8.0f ms  %8.0f messages/s  %5.2fx%n", threads, time, numMessages / time * 1000, loop / time);
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Runs the task several times and returns the fastest time, so that JIT warm-up and GC pauses do not skew the result.
+	 * @param task - the task to time
+	 * @return a double containing the fastest time in milliseconds
+	 */
+	private static double best(Runnable task) {
+		double best = Double.MAX_VALUE;
+
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = System.nanoTime();
+			task.run();
+			best = Math.min(best, (System.nanoTime() - start) / 1e6);
+		}
+
+		return best;
+	}
+}
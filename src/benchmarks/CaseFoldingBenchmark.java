@@ -0,0 +1,52 @@
+package benchmarks;
+
+import java.util.SplittableRandom;
+
+import model.MessageGenerator;
+
+/**
+ * Counts how often generation falls back to choosing from all of the words because the current word has no chain,
+ * with words matched only exactly and then also when case is ignored, along with the rate that messages are generated.
+ * Usage: CaseFoldingBenchmark [number of messages] [number of tokens] [vocabulary size]
+ * @author Richie Ren
+ *
+ */
+public class CaseFoldingBenchmark {
+
+	public static void main(String[] args) {
+		int numMessages = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int numTokens = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+		int vocabularySize = args.length > 2 ? Integer.parseInt(args[2]) : 20000;
+
+		String[] words = new SyntheticCorpus(vocabularySize, 1.0, 42).tokens(numTokens);
+
+		System.out.println("Lookup      Fallbacks/message   Case-folded/message   Messages/s");
+
+		for (boolean caseFolded : new boolean[] { false, true }) {
+			MessageGenerator msgGen = new MessageGenerator();
+			for (int i = 1; i < words.length; i++) {
+				msgGen.addInput(words, i);
+			}
+			msgGen.setCaseFoldedLookup(caseFolded);
+
+			// Warms up before counting
+			SplittableRandom random = new SplittableRandom(42);
+			for (int i = 0; i < numMessages / 10; i++) {
+				msgGen.generateText(random);
+			}
+
+			long fallbacks = msgGen.getFallbackSelections(),
+				 lookups = msgGen.getCaseFoldedLookups();
+			long start = System.nanoTime();
+
+			for (int i = 0; i < numMessages; i++) {
+				msgGen.generateText(random);
+			}
+
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.printf("%-11s %17.3f %21.3f %12.0f%n", caseFolded ? "Case-folded" : "Exact",
+					(msgGen.getFallbackSelections() - fallbacks) / (double) numMessages,
+					(msgGen.getCaseFoldedLookups() - lookups) / (double) numMessages, numMessages / seconds);
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import model.MessageGenerator;
+
+/**
+ * Measures the throughput of a single message generator that is given input and asked for messages 
+ * by several threads at once, from one thread up to the number of cores. 
+ * Every thread alternates between adding a batch of pairs and generating a message, 
+ * so the model keeps changing while messages are generated from it.
+ * Usage: ConcurrentWorkloadBenchmark [pairs per message] [seconds per run] [max threads]
+ * @author Richie Ren
+ *
+ */
+public class ConcurrentWorkloadBenchmark {
+
+	public static void main(String[] args) throws InterruptedException {
+		int pairsPerMessage = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+		String[] words = new SyntheticCorpus(50000, 1.0, 42).tokens(4000000);
+
+		for (int threads = 1; threads <= maxThreads; threads = (threads == maxThreads || threads * 2 <= maxThreads) ? threads * 2 : maxThreads) {
+			MessageGenerator msgGen = new MessageGenerator();
+
+			// Starts from a trained model so that generation has something to work with
+			for (int i = 0; i < words.length / 2; i++) {
+				msgGen.addInput(words[i], words[i + 1]);
+			}
+
+			LongAdder pairs = new LongAdder();
+			LongAdder messages = new LongAdder();
+			long deadline = System.nanoTime() + seconds * 1000000000L;
+			List<Thread> workers = new ArrayList<>();
+
+			for (int t = 0; t < threads; t++) {
+				int offset = words.length / 2 + t * 7919;
+
+				workers.add(new Thread(() -> {
+					int position = offset;
+
+					while (System.nanoTime() < deadline) {
+						for (int i = 0; i < pairsPerMessage; i++) {
+							position = (position + 1 < words.length) ? position + 1 : words.length / 2;
+							msgGen.addInput(words[position - 1], words[position]);
+						}
+
+						pairs.add(pairsPerMessage);
+						msgGen.generateText();
+						messages.increment();
+					}
+				}));
+			}
+
+			for (Thread worker : workers) {
+				worker.start();
+			}
+			for (Thread worker : workers) {
+				worker.join();
+			}
+
+			System.out.printf("%2d threads: %10.0f pairs/s  %8.0f messages/s%n", threads, pairs.sum() / (double) seconds, messages.sum() / (double) seconds);
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package benchmarks;
+
+import model.MessageGenerator;
+
+/**
+ * Compares a trained generator against the same generator after freeze(), in the heap that each one retains and the rate
+ * that messages are generated from each one, along with the time it takes to freeze and thaw the model.
+ * Usage: FreezeBenchmark [number of tokens] [vocabulary size] [order]
+ * @author Richie Ren
+ *
+ */
+public class FreezeBenchmark {
+
+	private static final int ROUNDS = 5;
+	private static final long GENERATION_MILLIS = 1000;
+
+	public static void main(String[] args) {
+		int numTokens = args.length > 0 ? Integer.parseInt(args[0]) : 4000000;
+		int vocabularySize = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+		int order = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+
+		// The words are kept by the vocabulary, so they are already on the heap and only the structures built around them are measured
+		String[] words = new SyntheticCorpus(vocabularySize, 1.0, 42).tokens(numTokens);
+
+		long before = usedMemory();
+		MessageGenerator trained = train(words, order);
+		long trainedBytes = usedMemory() - before;
+
+		MessageGenerator frozen = train(words, order);
+		long start = System.nanoTime();
+		frozen.freeze();
+		double freezeMillis = (System.nanoTime() - start) / 1e6;
+		long frozenBytes = usedMemory() - before - trainedBytes;
+
+		// Alternates between the two so that neither one gets all of the warm-up or all of the GC pauses
+		double trainedRate = 0, frozenRate = 0;
+		for (int round = 0; round < ROUNDS; round++) {
+			trainedRate = Math.max(trainedRate, generationRate(trained));
+			frozenRate = Math.max(frozenRate, generationRate(frozen));
+		}
+
+		start = System.nanoTime();
+		frozen.thaw();
+		double thawMillis = (System.nanoTime() - start) / 1e6;
+
+		System.out.println("Edges:     " + trained.getNumberOfEdges());
+		System.out.printf("Trained:   %8.1f MB of heap  %8.1f MB estimated  %8.0f messages/s%n", trainedBytes / 1e6, trained.getEstimatedBytes() / 1e6, trainedRate);
+		System.out.printf("Frozen:    %8.1f MB of heap  %8.0f messages/s  %+5.1f%%%n", frozenBytes / 1e6, frozenRate, (frozenRate / trainedRate - 1) * 100);
+		System.out.printf("Heap:      %.2fx smaller%n", trainedBytes / (double) frozenBytes);
+		System.out.printf("Freeze %.0f ms, thaw %.0f ms, thawed model has %d edges%n", freezeMillis, thawMillis, frozen.getNumberOfEdges());
+	}
+
+	/**
+	 * Trains a new generator on the words.
+	 */
+	private static MessageGenerator train(String[] words, int order) {
+		MessageGenerator msgGen = new MessageGenerator(order);
+
+		for (int i = 1; i < words.length; i++) {
+			msgGen.addInput(words, i);
+		}
+
+		return msgGen;
+	}
+
+	/**
+	 * Generates messages for a fixed amount of time after warming up.
+	 * @param msgGen - the trained generator
+	 * @return a double containing the number of messages generated per second
+	 */
+	private static double generationRate(MessageGenerator msgGen) {
+		for (int i = 0; i < 1000; i++) {
+			msgGen.generateText();
+		}
+
+		long start = System.nanoTime(),
+			 end = start + GENERATION_MILLIS * 1000000;
+		long messages = 0;
+
+		while (System.nanoTime() < end) {
+			msgGen.generateText();
+			messages++;
+		}
+
+		return messages / ((System.nanoTime() - start) / 1e9);
+	}
+
+	/**
+	 * Measures the heap in use after asking the garbage collector to run.
+	 * @return a long containing the number of bytes in use
+	 */
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+
+		for (int i = 0; i < 4; i++) {
+			System.gc();
+
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
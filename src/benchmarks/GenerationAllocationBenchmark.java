@@ -0,0 +1,72 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+import model.MessageGenerator;
+
+/**
+ * Measures the bytes allocated on the heap for each generated message, compared with the size of the messages themselves,
+ * along with the rate that messages are generated, from a trained, frozen or memory mapped model.
+ * Usage: GenerationAllocationBenchmark [number of messages] [number of tokens] [vocabulary size] [order] [trained|frozen|mapped]
+ * @author Richie Ren
+ *
+ */
+public class GenerationAllocationBenchmark {
+
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args) throws IOException {
+		int numMessages = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		int numTokens = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+		int vocabularySize = args.length > 2 ? Integer.parseInt(args[2]) : 20000;
+		int order = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+		String layout = args.length > 4 ? args[4] : "trained";
+
+		String[] words = new SyntheticCorpus(vocabularySize, 1.0, 42).tokens(numTokens);
+		MessageGenerator msgGen = new MessageGenerator(order);
+		for (int i = 1; i < words.length; i++) {
+			msgGen.addInput(words, i);
+		}
+
+		if (layout.equals("frozen")) {
+			msgGen.freeze();
+		}
+		else if (layout.equals("mapped")) {
+			Path file = Files.createTempFile("model", ".mapped");
+			file.toFile().deleteOnExit();
+			msgGen.saveMapped(file);
+			msgGen = MessageGenerator.openMapped(file);
+		}
+
+		// Only the HotSpot bean can report the bytes allocated by a thread
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		SplittableRandom random = new SplittableRandom(42);
+
+		double time = Double.MAX_VALUE,
+			   allocated = 0,
+			   characters = 0;
+
+		for (int round = 0; round < ROUNDS; round++) {
+			long chars = 0;
+			long bytes = threads.getThreadAllocatedBytes(thread);
+			long start = System.nanoTime();
+
+			for (int i = 0; i < numMessages; i++) {
+				chars += msgGen.generateText(random).length();
+			}
+
+			time = Math.min(time, (System.nanoTime() - start) / 1e6);
+			allocated = (threads.getThreadAllocatedBytes(thread) - bytes) / (double) numMessages;
+			characters = chars / (double) numMessages;
+		}
+
+		System.out.printf("Message length: %8.1f chars%n", characters);
+		System.out.printf("Allocated:      %8.1f bytes/message%n", allocated);
+		System.out.printf("Generation:     %8.0f messages/s%n", numMessages / time * 1000);
+	}
+}
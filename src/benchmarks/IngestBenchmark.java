@@ -0,0 +1,52 @@
+package benchmarks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import model.MessageGenerator;
+
+/**
+ * Times loading the same synthetic text file through a Reader and through the memory mapped loader.
+ * Usage: IngestBenchmark [number of tokens] [vocabulary size]
+ * @author Richie Ren
+ *
+ */
+public class IngestBenchmark {
+
+	public static void main(String[] args) throws IOException {
+		int numTokens = args.length > 0 ? Integer.parseInt(args[0]) : 5000000;
+		int vocabularySize = args.length > 1 ? Integer.parseInt(args[1]) : 50000;
+		Charset charset = Charset.forName("windows-1252");
+
+		Path file = Files.createTempFile("corpus", ".txt");
+
+		try {
+			Files.write(file, new SyntheticCorpus(vocabularySize, 1.0, 42).text(numTokens).getBytes(charset));
+			System.out.printf("File: %.1f MB, %d tokens%n", Files.size(file) / 1e6, numTokens);
+
+			// The first rounds warm up the JIT compiler
+			for (int round = 0; round < 3; round++) {
+				long start = System.nanoTime();
+				MessageGenerator msgGen = new MessageGenerator();
+
+				try (BufferedReader reader = Files.newBufferedReader(file, charset)) {
+					msgGen.addInput(reader);
+				}
+
+				long readerTime = System.nanoTime() - start;
+
+				start = System.nanoTime();
+				msgGen = new MessageGenerator();
+				msgGen.addInput(file, charset);
+				long mappedTime = System.nanoTime() - start;
+
+				System.out.printf("Round %d: reader %.0f ms, mapped %.0f ms%n", round + 1, readerTime / 1e6, mappedTime / 1e6);
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import model.MessageGenerator;
+
+/**
+ * Compares opening a memory mapped model against loading the same model from a snapshot, along with the heap that each
+ * one retains and the rate that messages are generated from each one.
+ * Usage: MappedModelBenchmark [number of tokens] [vocabulary size] [order]
+ * @author Richie Ren
+ *
+ */
+public class MappedModelBenchmark {
+
+	private static final int ROUNDS = 5;
+	private static final long GENERATION_MILLIS = 2000;
+
+	public static void main(String[] args) throws IOException {
+		int numTokens = args.length > 0 ? Integer.parseInt(args[0]) : 4000000;
+		int vocabularySize = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+		int order = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+
+		Path snapshot = Files.createTempFile("model", ".snapshot");
+		Path mapped = Files.createTempFile("model", ".mapped");
+
+		try {
+			String[] words = new SyntheticCorpus(vocabularySize, 1.0, 42).tokens(numTokens);
+			MessageGenerator trained = new MessageGenerator(order);
+			for (int i = 1; i < words.length; i++) {
+				trained.addInput(words, i);
+			}
+
+			trained.save(snapshot);
+			trained.saveMapped(mapped);
+			long edges = trained.getNumberOfEdges();
+			words = null;
+			trained = null;
+
+			double load = Double.MAX_VALUE,
+				   open = Double.MAX_VALUE;
+
+			for (int round = 0; round < ROUNDS; round++) {
+				long start = System.nanoTime();
+				MessageGenerator.load(snapshot);
+				load = Math.min(load, (System.nanoTime() - start) / 1e6);
+
+				start = System.nanoTime();
+				MessageGenerator.openMapped(mapped);
+				open = Math.min(open, (System.nanoTime() - start) / 1e6);
+			}
+
+			long before = usedMemory();
+			MessageGenerator loaded = MessageGenerator.load(snapshot);
+			long loadedBytes = usedMemory() - before;
+
+			before = usedMemory();
+			MessageGenerator opened = MessageGenerator.openMapped(mapped);
+			long openedBytes = usedMemory() - before;
+
+			System.out.println("Edges:            " + edges);
+			System.out.printf("Snapshot file:    %8.1f MB%n", Files.size(snapshot) / 1e6);
+			System.out.printf("Mapped file:      %8.1f MB%n", Files.size(mapped) / 1e6);
+			System.out.printf("Snapshot load:    %8.1f ms  %8.1f MB of heap  %8.0f messages/s%n", load, loadedBytes / 1e6, generationRate(loaded));
+			System.out.printf("Mapped open:      %8.1f ms  %8.1f MB of heap  %8.0f messages/s%n", open, openedBytes / 1e6, generationRate(opened));
+		} finally {
+			Files.deleteIfExists(snapshot);
+			Files.deleteIfExists(mapped);
+		}
+	}
+
+	/**
+	 * Generates messages for a fixed amount of time after warming up.
+	 * @param msgGen - the trained generator
+	 * @return a double containing the number of messages generated per second
+	 */
+	private static double generationRate(MessageGenerator msgGen) {
+		for (int i = 0; i < 1000; i++) {
+			msgGen.generateText();
+		}
+
+		long start = System.nanoTime(),
+			 end = start + GENERATION_MILLIS * 1000000;
+		long messages = 0;
+
+		while (System.nanoTime() < end) {
+			msgGen.generateText();
+			messages++;
+		}
+
+		return messages / ((System.nanoTime() - start) / 1e9);
+	}
+
+	/**
+	 * Measures the heap in use after asking the garbage collector to run.
+	 * @return a long containing the number of bytes in use
+	 */
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+
+		for (int i = 0; i < 4; i++) {
+			System.gc();
+
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,75 @@
+package benchmarks;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import model.MessageGenerator;
+import model.MessagePool;
+
+/**
+ * Compares the latency of asking for a message with generateText() against taking one from a MessagePool,
+ * with a pause between requests like a bot that answers triggers as they come in.
+ * Usage: MessagePoolBenchmark [number of requests] [microseconds between requests] [number of tokens] [vocabulary size] [capacity]
+ * @author Richie Ren
+ *
+ */
+public class MessagePoolBenchmark {
+
+	public static void main(String[] args) {
+		int numRequests = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+		long gapNanos = (args.length > 1 ? Long.parseLong(args[1]) : 500) * 1000;
+		int numTokens = args.length > 2 ? Integer.parseInt(args[2]) : 1000000;
+		int vocabularySize = args.length > 3 ? Integer.parseInt(args[3]) : 100000;
+		int capacity = args.length > 4 ? Integer.parseInt(args[4]) : 256;
+
+		String[] words = new SyntheticCorpus(vocabularySize, 1.0, 42).tokens(numTokens);
+		MessageGenerator msgGen = new MessageGenerator();
+		for (int i = 1; i < words.length; i++) {
+			msgGen.addInput(words, i);
+		}
+
+		// Warms up generation before either run is measured
+		for (int i = 0; i < numRequests; i++) {
+			msgGen.generateText();
+		}
+
+		report("generateText()", measure(msgGen::generateText, numRequests, gapNanos));
+
+		try (MessagePool pool = new MessagePool(msgGen, capacity)) {
+			while (pool.size() < pool.capacity()) {
+				LockSupport.parkNanos(1000000);
+			}
+
+			report("MessagePool.take()", measure(pool::take, numRequests, gapNanos));
+			System.out.printf("Hit rate %.4f  hits %d  misses %d  discarded %d%n", pool.getHitRate(), pool.getHits(), pool.getMisses(), pool.getDiscarded());
+		}
+	}
+
+	/**
+	 * Asks for a message the given number of times, pausing between requests.
+	 * @return the sorted latencies in nanoseconds
+	 */
+	private static long[] measure(Supplier<String> source, int numRequests, long gapNanos) {
+		long[] latencies = new long[numRequests];
+
+		for (int i = 0; i < numRequests; i++) {
+			long start = System.nanoTime();
+			source.get();
+			latencies[i] = System.nanoTime() - start;
+
+			LockSupport.parkNanos(gapNanos);
+		}
+
+		Arrays.sort(latencies);
+		return latencies;
+	}
+
+	private static void report(String name, long[] latencies) {
+		System.out.printf("%-20s p50 %8.1f us  p99 %8.1f us  p99.9 %8.1f us  max %8.1f us%n", name,
+				latencies[latencies.length / 2] / 1e3,
+				latencies[(int) (latencies.length * 0.99)] / 1e3,
+				latencies[(int) (latencies.length * 0.999)] / 1e3,
+				latencies[latencies.length - 1] / 1e3);
+	}
+}
@@ -0,0 +1,119 @@
+package benchmarks;
+
+import model.MessageGenerator;
+
+/**
+ * Measures what recording metrics costs when adding input and generating messages, by timing the same work
+ * with metrics disabled and enabled in alternating rounds, and checks the estimated size of the model
+ * against the heap it actually retains.
+ * Usage: MetricsBenchmark [number of tokens] [vocabulary size] [number of messages] [order]
+ * @author Richie Ren
+ *
+ */
+public class MetricsBenchmark {
+
+	private static final int ROUNDS = 11;
+
+	public static void main(String[] args) {
+		int numTokens = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		int vocabularySize = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+		int numMessages = args.length > 2 ? Integer.parseInt(args[2]) : 20000;
+		int order = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+
+		String[] words = new SyntheticCorpus(vocabularySize, 1.0, 42).tokens(numTokens);
+
+		// Measured first, before the timed rounds leave garbage behind. The words are kept by the vocabulary,
+		// so they are already on the heap and only the structures built around them are measured
+		long before = usedMemory();
+		MessageGenerator sized = new MessageGenerator(order);
+		for (int i = 1; i < words.length; i++) {
+			sized.addInput(words, i);
+		}
+		for (int i = 0; i < numMessages; i++) {
+			sized.generateText();
+		}
+		long retained = usedMemory() - before;
+		long estimated = sized.getEstimatedBytes();
+		sized = null;
+
+		// Alternates between the two so that neither one gets all of the warm-up or all of the GC pauses
+		double trainOff = Double.MAX_VALUE, trainOn = Double.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; round++) {
+			trainOff = Math.min(trainOff, timeTraining(words, order, false));
+			trainOn = Math.min(trainOn, timeTraining(words, order, true));
+		}
+
+		MessageGenerator msgGen = new MessageGenerator(order);
+		for (int i = 1; i < words.length; i++) {
+			msgGen.addInput(words, i);
+		}
+
+		double generateOff = Double.MAX_VALUE, generateOn = Double.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; round++) {
+			msgGen.disableMetrics();
+			generateOff = Math.min(generateOff, timeGeneration(msgGen, numMessages));
+			msgGen.enableMetrics();
+			generateOn = Math.min(generateOn, timeGeneration(msgGen, numMessages));
+		}
+
+		System.out.printf("addInput:     %8.1f ns/token  off  %8.1f ns/token  on  %+5.1f%%%n",
+				trainOff / numTokens, trainOn / numTokens, (trainOn / trainOff - 1) * 100);
+		System.out.printf("generateText: %8.2f us/msg    off  %8.2f us/msg    on  %+5.1f%%%n",
+				generateOff / numMessages / 1e3, generateOn / numMessages / 1e3, (generateOn / generateOff - 1) * 100);
+		System.out.printf("Generation p50 %.1f us  p99 %.1f us  p99.9 %.1f us  max %.1f us%n",
+				msgGen.getMetrics().getGenerationP50Micros(), msgGen.getMetrics().getGenerationP99Micros(),
+				msgGen.getMetrics().getGenerationP999Micros(), msgGen.getMetrics().getGenerationMaxMicros());
+		System.out.printf("Model size: %.1f MB retained  %.1f MB estimated  %+5.1f%%%n", retained / 1e6, estimated / 1e6, (estimated / (double) retained - 1) * 100);
+	}
+
+	/**
+	 * Trains a new generator on the words.
+	 * @return a double containing the time in nanoseconds
+	 */
+	private static double timeTraining(String[] words, int order, boolean metrics) {
+		MessageGenerator msgGen = new MessageGenerator(order);
+		if (metrics) {
+			msgGen.enableMetrics();
+		}
+
+		long start = System.nanoTime();
+		for (int i = 1; i < words.length; i++) {
+			msgGen.addInput(words, i);
+		}
+
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * Generates the given number of messages.
+	 * @return a double containing the time in nanoseconds
+	 */
+	private static double timeGeneration(MessageGenerator msgGen, int numMessages) {
+		long start = System.nanoTime();
+		for (int i = 0; i < numMessages; i++) {
+			msgGen.generateText();
+		}
+
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * Measures the heap in use after asking the garbage collector to run.
+	 * @return a long containing the number of bytes in use
+	 */
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+
+		for (int i = 0; i < 4; i++) {
+			System.gc();
+
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,144 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import model.MessageGenerator;
+
+/**
+ * Compares the retained heap of a trained MessageGenerator against the original representation of 
+ * the model, where every chain held its own word and a HashMap of Strings to Integers.
+ * The same synthetic corpus is used for both, and the result is reported as bytes per edge, 
+ * where an edge is a distinct pair of a word and one of its possible states.
+ * Usage: ModelMemoryBenchmark [number of tokens] [vocabulary size]
+ * The defaults need a heap of several gigabytes, such as -Xmx8g.
+ * @author Richie Ren
+ *
+ */
+public class ModelMemoryBenchmark {
+
+	public static void main(String[] args) {
+		int numTokens = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+		int vocabularySize = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+
+		long[] legacy = measureLegacy(numTokens, vocabularySize);
+		long legacyBytes = legacy[0],
+			 legacyEdges = legacy[1];
+		long currentBytes = measureCurrent(numTokens, vocabularySize);
+
+		System.out.println("Tokens:                 " + numTokens);
+		System.out.println("Edges:                  " + legacyEdges);
+		System.out.printf("HashMap<String,Integer>: %.1f bytes/edge%n", legacyBytes / (double) legacyEdges);
+		System.out.printf("Interned int IDs:        %.1f bytes/edge%n", currentBytes / (double) legacyEdges);
+		System.out.printf("Reduction:               %.1fx%n", legacyBytes / (double) currentBytes);
+	}
+
+	/**
+	 * Measures the heap retained by the original representation of the model.
+	 * @param numTokens - the number of tokens in the corpus
+	 * @param vocabularySize - the number of distinct words in the corpus
+	 * @return an array containing the number of bytes retained followed by the number of edges
+	 */
+	private static long[] measureLegacy(int numTokens, int vocabularySize) {
+		long before = usedMemory();
+		String[] tokens = new SyntheticCorpus(vocabularySize, 1.0, 42).tokens(numTokens);
+		ArrayList<LegacyChain> legacy = trainLegacy(tokens);
+		tokens = null;
+		long bytes = usedMemory() - before;
+		long edges = 0;
+
+		for (LegacyChain chain : legacy) {
+			edges += chain.possibleStates.size();
+		}
+
+		return new long[] { bytes, edges };
+	}
+
+	/**
+	 * Measures the heap retained by a MessageGenerator trained on the same corpus.
+	 * @param numTokens - the number of tokens in the corpus
+	 * @param vocabularySize - the number of distinct words in the corpus
+	 * @return a long containing the number of bytes retained
+	 */
+	private static long measureCurrent(int numTokens, int vocabularySize) {
+		long before = usedMemory();
+		String[] tokens = new SyntheticCorpus(vocabularySize, 1.0, 42).tokens(numTokens);
+		MessageGenerator msgGen = new MessageGenerator();
+
+		for (int i = 0; i < tokens.length - 1; i++) {
+			msgGen.addInput(tokens[i], tokens[i + 1]);
+		}
+
+		tokens = null;
+		long bytes = usedMemory() - before;
+
+		// Keeps the model reachable until after it has been measured
+		msgGen.clearInput();
+
+		return bytes;
+	}
+
+	/**
+	 * Trains the original representation, keeping only what the original generator retained.
+	 * @param tokens - the words of the corpus in order
+	 * @return the list of chains
+	 */
+	private static ArrayList<LegacyChain> trainLegacy(String[] tokens) {
+		ArrayList<LegacyChain> listOfWords = new ArrayList<>();
+		HashMap<String,LegacyChain> index = new HashMap<>();
+
+		for (int i = 0; i < tokens.length - 1; i++) {
+			LegacyChain chain = index.get(tokens[i]);
+
+			if (chain == null) {
+				chain = new LegacyChain(tokens[i]);
+				chain.capitalized = Character.isUpperCase(tokens[i].charAt(0));
+				index.put(tokens[i], chain);
+				listOfWords.add(chain);
+			}
+			else {
+				chain.occurrences++;
+			}
+
+			chain.possibleStates.merge(tokens[i + 1], 1, Integer::sum);
+		}
+
+		return listOfWords;
+	}
+
+	/**
+	 * Measures the heap in use after asking the garbage collector to run.
+	 * @return a long containing the number of bytes in use
+	 */
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+
+		for (int i = 0; i < 4; i++) {
+			System.gc();
+
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * The fields of the original markov chain.
+	 */
+	private static class LegacyChain {
+		String word;
+		int occurrences;
+		boolean capitalized;
+		HashMap<String,Integer> possibleStates;
+
+		LegacyChain(String word) {
+			this.word = word;
+			this.occurrences = 1;
+			this.possibleStates = new HashMap<>();
+		}
+	}
+}
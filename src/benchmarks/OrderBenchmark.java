@@ -0,0 +1,102 @@
+package benchmarks;
+
+import model.MessageGenerator;
+
+/**
+ * Measures the ingest rate, retained heap and generation rate of message generators of orders one to four,
+ * all trained on the same synthetic corpus. The heap is reported per token so that the growth of the
+ * stored contexts with the order can be compared directly.
+ * Usage: OrderBenchmark [number of tokens] [vocabulary size] [max order]
+ * @author Richie Ren
+ *
+ */
+public class OrderBenchmark {
+
+	private static final int ROUNDS = 3;
+	private static final long GENERATION_MILLIS = 2000;
+
+	public static void main(String[] args) {
+		int numTokens = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+		int vocabularySize = args.length > 1 ? Integer.parseInt(args[1]) : 50000;
+		int maxOrder = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+
+		String[] words = new SyntheticCorpus(vocabularySize, 1.0, 42).tokens(numTokens);
+
+		System.out.println("Order  Ingest (M tokens/s)  Contexts    Heap (bytes/token)  Generation (messages/s)");
+
+		for (int order = 1; order <= maxOrder; order++) {
+			double ingest = Double.MAX_VALUE;
+
+			for (int round = 0; round < ROUNDS; round++) {
+				long start = System.nanoTime();
+				train(words, order);
+				ingest = Math.min(ingest, (System.nanoTime() - start) / 1e6);
+			}
+
+			long before = usedMemory();
+			MessageGenerator msgGen = train(words, order);
+			long bytes = usedMemory() - before;
+
+			System.out.printf("%5d  %19.2f  %10d  %18.1f  %23.0f%n", order, numTokens / ingest / 1000, msgGen.getNumberOfContexts(),
+					bytes / (double) numTokens, generationRate(msgGen));
+		}
+	}
+
+	/**
+	 * Trains a message generator of the given order on the words.
+	 * @param words - the words of the corpus in order
+	 * @param order - the order of the generator
+	 * @return the trained generator
+	 */
+	private static MessageGenerator train(String[] words, int order) {
+		MessageGenerator msgGen = new MessageGenerator(order);
+
+		for (int i = 1; i < words.length; i++) {
+			msgGen.addInput(words, i);
+		}
+
+		return msgGen;
+	}
+
+	/**
+	 * Generates messages for a fixed amount of time after warming up.
+	 * @param msgGen - the trained generator
+	 * @return a double containing the number of messages generated per second
+	 */
+	private static double generationRate(MessageGenerator msgGen) {
+		for (int i = 0; i < 1000; i++) {
+			msgGen.generateText();
+		}
+
+		long start = System.nanoTime(),
+			 end = start + GENERATION_MILLIS * 1000000;
+		long messages = 0;
+
+		while (System.nanoTime() < end) {
+			msgGen.generateText();
+			messages++;
+		}
+
+		return messages / ((System.nanoTime() - start) / 1e9);
+	}
+
+	/**
+	 * Measures the heap in use after asking the garbage collector to run.
+	 * @return a long containing the number of bytes in use
+	 */
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+
+		for (int i = 0; i < 4; i++) {
+			System.gc();
+
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,63 @@
+package benchmarks;
+
+import java.util.concurrent.ForkJoinPool;
+
+import model.MessageGenerator;
+import model.ParallelTrainer;
+
+/**
+ * Measures how training time scales with the number of threads, from one thread up to the number of cores, 
+ * compared with adding the same input sequentially.
+ * Usage: ParallelTrainingBenchmark [number of tokens] [vocabulary size] [max threads]
+ * @author Richie Ren
+ *
+ */
+public class ParallelTrainingBenchmark {
+
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args) {
+		int numTokens = args.length > 0 ? Integer.parseInt(args[0]) : 5000000;
+		int vocabularySize = args.length > 1 ? Integer.parseInt(args[1]) : 50000;
+		int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+		String[] words = new SyntheticCorpus(vocabularySize, 1.0, 42).tokens(numTokens);
+
+		double sequential = best(() -> {
+			MessageGenerator msgGen = new MessageGenerator();
+
+			for (int i = 0; i < words.length - 1; i++) {
+				msgGen.addInput(words[i], words[i + 1]);
+			}
+		});
+
+		System.out.printf("Sequential: %8.0f ms  %6.2f M tokens/s%n", sequential, numTokens / sequential / 1000);
+
+		for (int threads = 1; threads <= maxThreads; threads = (threads == maxThreads || threads * 2 <= maxThreads) ? threads * 2 : maxThreads) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			ParallelTrainer trainer = new ParallelTrainer(pool);
+
+			double time = best(() -> trainer.train(words, new MessageGenerator()));
+
+			System.out.printf("%2d threads: %8.0f ms  %6.2f M tokens/s  %5.2fx%n", threads, time, numTokens / time / 1000, sequential / time);
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Runs the task several times and returns the fastest time, so that JIT warm-up and GC pauses do not skew the result.
+	 * @param task - the task to time
+	 * @return a double containing the fastest time in milliseconds
+	 */
+	private static double best(Runnable task) {
+		double best = Double.MAX_VALUE;
+
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = System.nanoTime();
+			task.run();
+			best = Math.min(best, (System.nanoTime() - start) / 1e6);
+		}
+
+		return best;
+	}
+}
@@ -0,0 +1,71 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import model.MessageGenerator;
+import model.ModelRegistry;
+
+/**
+ * Serves messages for many accounts from a model registry, where the accounts are asked for with a Zipf distribution 
+ * the way a few popular accounts get most of the traffic. Compares keeping one model and training it again on every switch, 
+ * which is what clearing the input does, against registries that keep a share of the models and either drop or spill the rest.
+ * Usage: RegistryBenchmark [number of accounts] [tokens per account] [number of requests] [share of the models that fit]
+ * @author Richie Ren
+ *
+ */
+public class RegistryBenchmark {
+
+	public static void main(String[] args) throws IOException {
+		int numAccounts = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+		int tokensPerAccount = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+		int numRequests = args.length > 2 ? Integer.parseInt(args[2]) : 5000;
+		double share = args.length > 3 ? Double.parseDouble(args[3]) : 0.25;
+
+		ModelRegistry.Loader loader = key -> {
+			MessageGenerator msgGen = new MessageGenerator();
+			msgGen.addInput(new StringReader(new SyntheticCorpus(5000, 1.0, key.hashCode()).text(tokensPerAccount)));
+			return msgGen;
+		};
+
+		long modelBytes = loader.load("sample").getEstimatedBytes();
+		long budget = (long) (share * numAccounts * modelBytes);
+		System.out.printf("%d accounts of %d tokens, about %.1f MB each; budget %.1f MB%n",
+				numAccounts, tokensPerAccount, modelBytes / 1e6, budget / 1e6);
+
+		run("One model, trained on every switch", new ModelRegistry(0, loader), numAccounts, numRequests);
+		run("Registry, evicted models dropped", new ModelRegistry(budget, loader), numAccounts, numRequests);
+
+		Path spill = Files.createTempDirectory("spill");
+		try {
+			run("Registry, evicted models spilled", new ModelRegistry(budget, loader, spill), numAccounts, numRequests);
+		} finally {
+			try (var files = Files.list(spill)) {
+				for (Path file : (Iterable<Path>) files::iterator) {
+					Files.delete(file);
+				}
+			}
+			Files.delete(spill);
+		}
+	}
+
+	/**
+	 * Gets the model of an account and generates a message from it for every request.
+	 */
+	private static void run(String name, ModelRegistry registry, int numAccounts, int numRequests) throws IOException {
+		// The account names are drawn the same way for every run
+		SyntheticCorpus accounts = new SyntheticCorpus(numAccounts, 1.0, 7);
+
+		long start = System.nanoTime();
+		for (int i = 0; i < numRequests; i++) {
+			registry.get(accounts.nextWord()).generateText();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.printf("%-36s %7.0f requests/s  hit rate %5.1f%%  evictions %5d  spills %5d  spill loads %5d  %3d models, %.1f MB%n",
+				name + ":", numRequests / seconds, registry.getHitRate() * 100, registry.getEvictions(),
+				registry.getSpills(), registry.getSpillLoads(), registry.size(), registry.getUsedBytes() / 1e6);
+	}
+}
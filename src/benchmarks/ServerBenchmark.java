@@ -0,0 +1,87 @@
+package benchmarks;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import controller.MessageGenServer;
+import model.MessageGenerator;
+
+/**
+ * Measures the requests per second and the latency of /generate on a local server, with a number of clients
+ * that each send their next request as soon as the last one is answered.
+ * Usage: ServerBenchmark [requests per client] [messages per request] [max clients] [number of tokens]
+ * @author Richie Ren
+ *
+ */
+public class ServerBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int numRequests = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		int numMessages = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+		int maxClients = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+		int numTokens = args.length > 3 ? Integer.parseInt(args[3]) : 1000000;
+
+		String[] words = new SyntheticCorpus(20000, 1.0, 42).tokens(numTokens);
+		MessageGenerator msgGen = new MessageGenerator();
+		for (int i = 1; i < words.length; i++) {
+			msgGen.addInput(words, i);
+		}
+
+		MessageGenServer server = new MessageGenServer(msgGen, 0, Paths.get("src/html-css-js"));
+		server.start();
+
+		HttpClient client = HttpClient.newHttpClient();
+		HttpRequest request = HttpRequest.newBuilder(URI.create(server.getUrl() + "generate?count=" + numMessages)).GET().build();
+
+		// Warms up the server and the client
+		for (int i = 0; i < numRequests; i++) {
+			client.send(request, HttpResponse.BodyHandlers.ofString());
+		}
+
+		for (int clients = 1; clients <= maxClients; clients *= 2) {
+			ExecutorService pool = Executors.newFixedThreadPool(clients);
+			List<Future<long[]>> results = new ArrayList<>();
+
+			long start = System.nanoTime();
+			for (int c = 0; c < clients; c++) {
+				results.add(pool.submit(() -> {
+					long[] latencies = new long[numRequests];
+
+					for (int i = 0; i < numRequests; i++) {
+						long sent = System.nanoTime();
+						HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+						latencies[i] = System.nanoTime() - sent;
+
+						if (response.statusCode() != 200) {
+							throw new IllegalStateException("Status " + response.statusCode());
+						}
+					}
+
+					return latencies;
+				}));
+			}
+
+			long[] latencies = new long[clients * numRequests];
+			for (int c = 0; c < clients; c++) {
+				System.arraycopy(results.get(c).get(), 0, latencies, c * numRequests, numRequests);
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+			pool.shutdown();
+
+			Arrays.sort(latencies);
+			System.out.printf("%2d clients: %8.0f requests/s  p50 %6.0f us  p99 %6.0f us%n", clients, latencies.length / seconds,
+					latencies[latencies.length / 2] / 1e3, latencies[(int) (latencies.length * 0.99)] / 1e3);
+		}
+
+		server.stop();
+	}
+}
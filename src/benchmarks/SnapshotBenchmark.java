@@ -0,0 +1,65 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import model.MessageGenerator;
+
+/**
+ * Measures how long it takes to save a trained model to a snapshot and load it back,
+ * compared with training the model again from the same input.
+ * Usage: SnapshotBenchmark [number of tokens] [vocabulary size] [order]
+ * @author Richie Ren
+ *
+ */
+public class SnapshotBenchmark {
+
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args) throws IOException {
+		int numTokens = args.length > 0 ? Integer.parseInt(args[0]) : 4000000;
+		int vocabularySize = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+		int order = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+
+		String[] words = new SyntheticCorpus(vocabularySize, 1.0, 42).tokens(numTokens);
+		Path file = Files.createTempFile("model", ".snapshot");
+
+		try {
+			double train = Double.MAX_VALUE,
+				   save = Double.MAX_VALUE,
+				   load = Double.MAX_VALUE;
+			MessageGenerator msgGen = null;
+
+			for (int round = 0; round < ROUNDS; round++) {
+				long start = System.nanoTime();
+				msgGen = new MessageGenerator(order);
+				for (int i = 1; i < words.length; i++) {
+					msgGen.addInput(words, i);
+				}
+				train = Math.min(train, (System.nanoTime() - start) / 1e6);
+			}
+
+			for (int round = 0; round < ROUNDS; round++) {
+				long start = System.nanoTime();
+				msgGen.save(file);
+				save = Math.min(save, (System.nanoTime() - start) / 1e6);
+			}
+
+			for (int round = 0; round < ROUNDS; round++) {
+				long start = System.nanoTime();
+				MessageGenerator.load(file);
+				load = Math.min(load, (System.nanoTime() - start) / 1e6);
+			}
+
+			System.out.println("Edges:     " + msgGen.getNumberOfEdges());
+			System.out.println("Contexts:  " + msgGen.getNumberOfContexts());
+			System.out.printf("File size: %.1f MB (%.1f bytes/edge)%n", Files.size(file) / 1e6, Files.size(file) / (double) msgGen.getNumberOfEdges());
+			System.out.printf("Training:  %8.0f ms%n", train);
+			System.out.printf("Saving:    %8.0f ms%n", save);
+			System.out.printf("Loading:   %8.0f ms  %5.1fx faster than training%n", load, train / load);
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package benchmarks;
+
+import java.util.Random;
+
+/**
+ * Generates text locally for the benchmarks so that they do not depend on any outside data.
+ * The words are drawn from a Zipf distribution, which is how word frequencies are distributed in 
+ * natural language: a handful of words make up most of the text while the rest rarely appear.
+ * Some of the words are capitalized or end with punctuation so that the generator has sentence 
+ * starters and endings to work with.
+ * @author Richie Ren
+ *
+ */
+public class SyntheticCorpus {
+
+	private final String[] words;
+	private final double[] cumulative;
+	private final Random random;
+
+	/**
+	 * Creates a corpus with the given number of distinct words.
+	 * @param vocabularySize - the number of distinct words to draw from
+	 * @param exponent - the exponent of the Zipf distribution; natural language is close to 1
+	 * @param seed - the seed used for both the words and the text, so the same corpus can be reproduced
+	 */
+	public SyntheticCorpus(int vocabularySize, double exponent, long seed) {
+		random = new Random(seed);
+		words = new String[vocabularySize];
+		cumulative = new double[vocabularySize];
+
+		double total = 0;
+
+		for (int rank = 0; rank < vocabularySize; rank++) {
+			words[rank] = randomWord();
+			total += 1.0 / Math.pow(rank + 1, exponent);
+			cumulative[rank] = total;
+		}
+
+		for (int rank = 0; rank < vocabularySize; rank++) {
+			cumulative[rank] /= total;
+		}
+	}
+
+	/**
+	 * Draws the next word of the corpus.
+	 * @return a String containing the word
+	 */
+	public String nextWord() {
+		double target = random.nextDouble();
+		int low = 0,
+			high = cumulative.length - 1;
+
+		// Finds the first rank whose cumulative probability reaches the target
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+
+			if (cumulative[mid] < target) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+
+		return words[low];
+	}
+
+	/**
+	 * Draws the given number of words as separate String instances, the same way splitting a file would.
+	 * @param numTokens - the number of words to draw
+	 * @return an array containing the words in order
+	 */
+	public String[] tokens(int numTokens) {
+		String[] tokens = new String[numTokens];
+
+		for (int i = 0; i < numTokens; i++) {
+			tokens[i] = new String(nextWord());
+		}
+
+		return tokens;
+	}
+
+	/**
+	 * Draws the given number of words as a single space separated text.
+	 * @param numTokens - the number of words to draw
+	 * @return a String containing the text
+	 */
+	public String text(int numTokens) {
+		StringBuilder text = new StringBuilder(numTokens * 8);
+
+		for (int i = 0; i < numTokens; i++) {
+			text.append(nextWord());
+			text.append(i % 12 == 11 ? '\n' : ' ');
+		}
+
+		return text.toString();
+	}
+
+	/**
+	 * Makes up a word of two to nine letters, which is sometimes capitalized or ends a sentence.
+	 * @return a String containing the word
+	 */
+	private String randomWord() {
+		int length = 2 + random.nextInt(8);
+		StringBuilder word = new StringBuilder(length + 1);
+
+		for (int i = 0; i < length; i++) {
+			word.append((char) ('a' + random.nextInt(26)));
+		}
+
+		if (random.nextInt(10) == 0) {
+			word.setCharAt(0, Character.toUpperCase(word.charAt(0)));
+		}
+
+		if (random.nextInt(12) == 0) {
+			word.append(".!?".charAt(random.nextInt(3)));
+		}
+
+		return word.toString();
+	}
+}
@@ -0,0 +1,100 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import model.MessageGenerator;
+import model.StubTimelineSource;
+import model.TimelinePost;
+import model.TimelineSource;
+
+/**
+ * Times reading a synthetic timeline from a stub source with a fixed delay per page, the way readFromTwitter used to 
+ * (every page fetched first, then joined into one string and split) and through the pipelined reader, 
+ * against the time spent on the network alone. 
+ * Then times refreshing the timeline after a number of new posts, which only fetches and adds the new ones.
+ * Usage: TimelineBenchmark [number of pages] [posts per page] [latency per page in ms] [words per post]
+ * @author Richie Ren
+ *
+ */
+public class TimelineBenchmark {
+
+	private static final String USER = "benchmark";
+
+	public static void main(String[] args) throws IOException {
+		int numPages = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+		int pageSize = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		int latency = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+		int wordsPerPost = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+
+		SyntheticCorpus corpus = new SyntheticCorpus(20000, 1.0, 42);
+		StubTimelineSource source = new StubTimelineSource(pageSize);
+		for (int i = 0; i < numPages * pageSize; i++) {
+			source.addPost(USER, corpus.text(wordsPerPost));
+		}
+		source.setLatency(latency, TimeUnit.MILLISECONDS);
+
+		// Every page plus the empty one that ends the timeline
+		double network = (numPages + 1) * latency;
+		System.out.printf("%d pages of %d posts, %d ms per page: %.0f ms on the network%n", numPages, pageSize, latency, network);
+
+		// The first rounds warm up the JIT compiler
+		for (int round = 0; round < 3; round++) {
+			long start = System.nanoTime();
+			readSequentially(new MessageGenerator(), source);
+			long sequential = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			MessageGenerator msgGen = new MessageGenerator();
+			msgGen.setTimelineSource(source);
+			msgGen.readTimeline(USER);
+			long pipelined = System.nanoTime() - start;
+
+			System.out.printf("Round %d: sequential %.0f ms (+%.0f), pipelined %.0f ms (+%.0f)%n", round + 1,
+					sequential / 1e6, sequential / 1e6 - network, pipelined / 1e6, pipelined / 1e6 - network);
+		}
+
+		MessageGenerator msgGen = new MessageGenerator();
+		msgGen.setTimelineSource(source);
+		msgGen.readTimeline(USER);
+
+		for (int newPosts : new int[] { 0, 2, 20, 200 }) {
+			for (int i = 0; i < newPosts; i++) {
+				source.addPost(USER, corpus.text(wordsPerPost));
+			}
+
+			int pages = source.getPagesFetched();
+			long start = System.nanoTime();
+			msgGen.readTimeline(USER);
+			long refresh = System.nanoTime() - start;
+
+			System.out.printf("Refresh after %3d new posts: %d pages, %.0f ms%n", newPosts, source.getPagesFetched() - pages, refresh / 1e6);
+		}
+	}
+
+	/**
+	 * Reads the timeline the way readFromTwitter used to, holding every post and then the whole text in memory.
+	 */
+	private static void readSequentially(MessageGenerator msgGen, TimelineSource source) throws IOException {
+		List<TimelinePost> posts = new ArrayList<>();
+		for (int page = 1; ; page++) {
+			List<TimelinePost> fetched = source.fetchPage(USER, page, 0);
+			if (fetched.isEmpty()) {
+				break;
+			}
+			posts.addAll(fetched);
+		}
+
+		String text = "";
+		for (TimelinePost post : posts) {
+			text += post.getText() + " ";
+		}
+
+		String[] input = text.split("\\s+");
+		for (int i = 1; i < input.length; i++) {
+			msgGen.addInput(input, i);
+		}
+	}
+}
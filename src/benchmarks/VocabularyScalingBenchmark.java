@@ -0,0 +1,62 @@
+package benchmarks;
+
+import java.util.SplittableRandom;
+
+import model.MessageGenerator;
+
+/**
+ * Measures the time it takes to generate a message for models of the same number of tokens but larger and larger vocabularies,
+ * with the first word of each message chosen both uniformly and weighted by how often it started a sentence.
+ * Usage: VocabularyScalingBenchmark [number of tokens] [number of messages]
+ * @author Richie Ren
+ *
+ */
+public class VocabularyScalingBenchmark {
+
+	private static final int[] VOCABULARY_SIZES = { 1000, 10000, 100000, 1000000 };
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args) {
+		int numTokens = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+		int numMessages = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+
+		System.out.println("Vocabulary   Chains   Uniform (us/message)   Weighted (us/message)");
+
+		for (int vocabularySize : VOCABULARY_SIZES) {
+			String[] words = new SyntheticCorpus(vocabularySize, 1.0, 42).tokens(numTokens);
+			MessageGenerator msgGen = new MessageGenerator();
+			for (int i = 1; i < words.length; i++) {
+				msgGen.addInput(words, i);
+			}
+
+			double uniform = latency(msgGen, numMessages);
+			msgGen.setWeightedSentenceStarts(true);
+			double weighted = latency(msgGen, numMessages);
+
+			System.out.printf("%10d %8d %22.1f %23.1f%n", vocabularySize, msgGen.getNumberOfChains(), uniform, weighted);
+		}
+	}
+
+	/**
+	 * Generates messages in several rounds and returns the fastest round, so that JIT warm-up and GC pauses do not skew the result.
+	 * @param msgGen - the trained generator
+	 * @param numMessages - the number of messages to generate in each round
+	 * @return a double containing the average time per message in microseconds
+	 */
+	private static double latency(MessageGenerator msgGen, int numMessages) {
+		SplittableRandom random = new SplittableRandom(42);
+		double best = Double.MAX_VALUE;
+
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = System.nanoTime();
+
+			for (int i = 0; i < numMessages; i++) {
+				msgGen.generateText(random);
+			}
+
+			best = Math.min(best, (System.nanoTime() - start) / 1e3 / numMessages);
+		}
+
+		return best;
+	}
+}
@@ -0,0 +1,298 @@
+package controller;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Just enough JSON for the requests and responses of the message generator server, so that it does not need a library.
+ * Objects are read into maps, arrays into lists, numbers into doubles and the rest into strings, booleans and nulls.
+ * @author Richie Ren
+ *
+ */
+class Json {
+
+	// Objects and arrays are read recursively, so a document that nests them any deeper is rejected before it can overflow the stack
+	private static final int MAX_DEPTH = 32;
+
+	private final String text;
+	private int position;
+	private int depth;
+
+	private Json(String text) {
+		this.text = text;
+		this.position = 0;
+		this.depth = 0;
+	}
+
+	/**
+	 * Parses a JSON document.
+	 * @param text - the document
+	 * @return the value of the document
+	 * @throws IllegalArgumentException if the document is not valid JSON
+	 */
+	static Object parse(String text) {
+		Json json = new Json(text);
+		Object value = json.readValue();
+		json.skipWhitespace();
+
+		if (json.position != text.length()) {
+			throw json.error("Unexpected data after the end of the document");
+		}
+
+		return value;
+	}
+
+	/**
+	 * Parses a JSON document that has to be an object.
+	 * @param text - the document, which may be empty for an empty object
+	 * @return the members of the object
+	 * @throws IllegalArgumentException if the document is not a valid JSON object
+	 */
+	@SuppressWarnings("unchecked")
+	static Map<String,Object> parseObject(String text) {
+		if (text.isBlank()) {
+			return new LinkedHashMap<>();
+		}
+
+		Object value = parse(text);
+
+		if (!(value instanceof Map)) {
+			throw new IllegalArgumentException("Expected a JSON object");
+		}
+
+		return (Map<String,Object>) value;
+	}
+
+	/**
+	 * Appends the string to the builder as a quoted JSON string.
+	 * @param out - the builder to append to
+	 * @param value - the string to quote
+	 * @return the builder
+	 */
+	static StringBuilder quote(StringBuilder out, String value) {
+		out.append('"');
+
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+
+			switch (c) {
+				case '"': out.append("\\\""); break;
+				case '\\': out.append("\\\\"); break;
+				case '\n': out.append("\\n"); break;
+				case '\r': out.append("\\r"); break;
+				case '\t': out.append("\\t"); break;
+				default:
+					// Also escapes the characters that would let the response be read as HTML
+					if (c < 0x20 || c == '<' || c == '>' || c == '&' || c == '\u2028' || c == '\u2029') {
+						out.append(String.format("\\u%04x", (int) c));
+					}
+					else {
+						out.append(c);
+					}
+			}
+		}
+
+		return out.append('"');
+	}
+
+	private Object readValue() {
+		skipWhitespace();
+
+		if (position >= text.length()) {
+			throw error("Unexpected end of the document");
+		}
+
+		char c = text.charAt(position);
+
+		switch (c) {
+			case '{': return readObject();
+			case '[': return readArray();
+			case '"': return readString();
+			case 't': return readLiteral("true", Boolean.TRUE);
+			case 'f': return readLiteral("false", Boolean.FALSE);
+			case 'n': return readLiteral("null", null);
+			default:
+				if (c == '-' || (c >= '0' && c <= '9')) {
+					return readNumber();
+				}
+
+				throw error("Unexpected character '" + c + "'");
+		}
+	}
+
+	private Map<String,Object> readObject() {
+		Map<String,Object> members = new LinkedHashMap<>();
+		enter();
+		skipWhitespace();
+
+		if (peek() == '}') {
+			position++;
+			depth--;
+			return members;
+		}
+
+		while (true) {
+			skipWhitespace();
+
+			if (peek() != '"') {
+				throw error("Expected the name of a member");
+			}
+
+			String name = readString();
+			skipWhitespace();
+			expect(':');
+			members.put(name, readValue());
+			skipWhitespace();
+
+			if (peek() == ',') {
+				position++;
+			}
+			else {
+				expect('}');
+				depth--;
+				return members;
+			}
+		}
+	}
+
+	private List<Object> readArray() {
+		List<Object> elements = new ArrayList<>();
+		enter();
+		skipWhitespace();
+
+		if (peek() == ']') {
+			position++;
+			depth--;
+			return elements;
+		}
+
+		while (true) {
+			elements.add(readValue());
+			skipWhitespace();
+
+			if (peek() == ',') {
+				position++;
+			}
+			else {
+				expect(']');
+				depth--;
+				return elements;
+			}
+		}
+	}
+
+	private String readString() {
+		StringBuilder value = new StringBuilder();
+		position++;
+
+		while (true) {
+			if (position >= text.length()) {
+				throw error("Unterminated string");
+			}
+
+			char c = text.charAt(position++);
+
+			if (c == '"') {
+				return value.toString();
+			}
+
+			if (c != '\\') {
+				value.append(c);
+				continue;
+			}
+
+			if (position >= text.length()) {
+				throw error("Unterminated string");
+			}
+
+			char escape = text.charAt(position++);
+
+			switch (escape) {
+				case '"': case '\\': case '/': value.append(escape); break;
+				case 'b': value.append('\b'); break;
+				case 'f': value.append('\f'); break;
+				case 'n': value.append('\n'); break;
+				case 'r': value.append('\r'); break;
+				case 't': value.append('\t'); break;
+				case 'u':
+					if (position + 4 > text.length()) {
+						throw error("Invalid unicode escape");
+					}
+
+					try {
+						value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+					} catch (NumberFormatException e) {
+						throw error("Invalid unicode escape");
+					}
+
+					position += 4;
+					break;
+				default:
+					throw error("Invalid escape '\\" + escape + "'");
+			}
+		}
+	}
+
+	private Double readNumber() {
+		int start = position;
+
+		while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+			position++;
+		}
+
+		try {
+			return Double.valueOf(text.substring(start, position));
+		} catch (NumberFormatException e) {
+			throw error("Invalid number");
+		}
+	}
+
+	private Object readLiteral(String literal, Object value) {
+		if (!text.startsWith(literal, position)) {
+			throw error("Unexpected character '" + text.charAt(position) + "'");
+		}
+
+		position += literal.length();
+		return value;
+	}
+
+	/**
+	 * Steps past the opening bracket or brace of an array or object, which is nested one level deeper than the value around it.
+	 * @throws IllegalArgumentException if it is nested too deeply
+	 */
+	private void enter() {
+		if (++depth > MAX_DEPTH) {
+			throw error("Too deeply nested");
+		}
+
+		position++;
+	}
+
+	private void skipWhitespace() {
+		while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+			position++;
+		}
+	}
+
+	private char peek() {
+		if (position >= text.length()) {
+			throw error("Unexpected end of the document");
+		}
+
+		return text.charAt(position);
+	}
+
+	private void expect(char c) {
+		if (peek() != c) {
+			throw error("Expected '" + c + "'");
+		}
+
+		position++;
+	}
+
+	private IllegalArgumentException error(String message) {
+		return new IllegalArgumentException(message + " at position " + position);
+	}
+}
@@ -7,6 +7,8 @@ import java.awt.event.ActionListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.awt.event.WindowListener;
+import java.io.IOException;
+import java.nio.file.Paths;
 
 import javax.swing.JFrame;
 import javax.swing.JMenu;
@@ -37,6 +39,7 @@ public class MessageGenClient extends JFrame {
 	private TwitterView twitterView;
 	private GraphicalView graphicView;
 	private JPanel currentView;
+	private MessageGenServer server;
 	private final int width = 500, 
 			          height = 300;
 	
@@ -138,9 +141,18 @@ public class MessageGenClient extends JFrame {
 				repaint();
 			}
 			else if (text.equals("Twitter (HTML/CSS GUI)")) {
+				// Serves the page together with the generator, so the page can ask it for messages
+				String[] url;
+				try {
+					url = new String[] { startServer().getUrl() };
+				} catch (IOException ex) {
+					url = new String[0];
+				}
+				
+				final String[] args = url;
 				new Thread() {
 					public void run() {
-						TwitterFX.main(null);
+						TwitterFX.main(args);
 					}
 				}.start();
 				
@@ -149,6 +161,30 @@ public class MessageGenClient extends JFrame {
 		}
 	}
 	
+	/**
+	 * Starts the server for the HTML/CSS view the first time it is needed, and returns the same server every time after.
+	 * @return the running server
+	 * @throws IOException if the server could not be started
+	 */
+	private synchronized MessageGenServer startServer() throws IOException {
+		if (server == null) {
+			server = new MessageGenServer(msgGen, 0, Paths.get("src/html-css-js"));
+			server.start();
+		}
+		
+		return server;
+	}
+	
+	/**
+	 * Stops the server for the HTML/CSS view, if it was started.
+	 */
+	private synchronized void stopServer() {
+		if (server != null) {
+			server.stop();
+			server = null;
+		}
+	}
+	
 	/**
 	 * A window listener in order to modify the operations of closing a window.
 	 * @author Richie Ren
@@ -169,6 +205,7 @@ public class MessageGenClient extends JFrame {
 		 */
 		@Override
 		public void windowClosing(WindowEvent e) {
+			stopServer();
 			setDefaultCloseOperation(DISPOSE_ON_CLOSE);
 			System.exit(0);
 		}
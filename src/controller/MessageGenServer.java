@@ -0,0 +1,584 @@
+package controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import model.MessageGenerator;
+import model.ModelRegistry;
+
+/**
+ * A small HTTP server that lets the HTML/CSS view, or anything else on the same machine, use a message generator.
+ * It only listens on the loopback address and answers with JSON:
+ * <ul>
+ * <li>POST /train with {"text": "..."} or {"path": "...", "charset": "UTF-8"} adds the text or the file as input, 
+ * where files can only be read from the data directory of the server, if it has one</li>
+ * <li>GET /generate?count=N&amp;seed=S, or POST /generate with {"count": N, "seed": S}, generates N messages</li>
+ * <li>GET /stats describes the model</li>
+ * </ul>
+ * When the server has a model registry, each of these also takes a "model" naming the source to use instead of 
+ * the default generator, such as "@handle" for a Twitter timeline or the path of a corpus file within the data directory, 
+ * and the stats include how well the registry is keeping the models that are asked for in memory.
+ * Any other GET is answered with the matching file of the web view, so the page and the API share an origin.
+ * Since a page from any other site can still send requests to the loopback address, requests are only answered 
+ * when their Host is the loopback address, which a page that reached it through DNS rebinding cannot send, 
+ * and POST requests must be sent as application/json, which a page of another origin cannot send without the server allowing it.
+ * Each request is handled on a virtual thread when the JVM has them, and otherwise on a pool of platform threads.
+ * @author Richie Ren
+ *
+ */
+public class MessageGenServer {
+
+	/**
+	 * Usage: MessageGenServer [port] [snapshot of the default model] [registry budget in MB] [directory to spill models to] [data directory]
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+		MessageGenerator msgGen = (args.length > 1 && !args[1].isEmpty()) ? MessageGenerator.load(Paths.get(args[1])) : new MessageGenerator();
+		Path dataRoot = (args.length > 4 && !args[4].isEmpty()) ? Paths.get(args[4]) : null;
+		ModelRegistry registry = null;
+
+		if (args.length > 2) {
+			long budget = Long.parseLong(args[2]) * 1024 * 1024;
+			Path spill = (args.length > 3 && !args[3].isEmpty()) ? Files.createDirectories(Paths.get(args[3])) : null;
+			registry = new ModelRegistry(budget, sourceLoader(dataRoot), spill);
+		}
+
+		MessageGenServer server = new MessageGenServer(msgGen, registry, port, Paths.get("src/html-css-js"), dataRoot);
+		server.start();
+		System.out.println("Listening on " + server.getUrl());
+	}
+
+	static final int MAX_MESSAGES = 1000;
+	static final int MAX_BODY_BYTES = 64 * 1024 * 1024;
+
+	static {
+		// The headers and the body of a response are written separately, so with Nagle's algorithm the body waits
+		// for the client to acknowledge the headers, which adds about 40 ms to every request. Must be set before
+		// the first server is created, and is left alone if it was set on the command line.
+		if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+	}
+
+	private static final Map<String,String> CONTENT_TYPES = Map.of(
+			"html", "text/html; charset=UTF-8",
+			"css", "text/css; charset=UTF-8",
+			"js", "text/javascript; charset=UTF-8");
+
+	private final MessageGenerator msgGen;
+	private final ModelRegistry registry;
+	private final Path webRoot;
+	private final Path dataRoot;
+	private final HttpServer server;
+	private final ExecutorService executor;
+
+	/**
+	 * Creates a server for the message generator, which is not started until start() is called.
+	 * @param msgGen - the message generator to train and generate from
+	 * @param port - the port to listen on, or 0 to use any free port
+	 * @param webRoot - the directory of the web view, whose files are served as they are
+	 * @throws IOException if the port could not be bound
+	 */
+	public MessageGenServer(MessageGenerator msgGen, int port, Path webRoot) throws IOException {
+		this(msgGen, null, port, webRoot);
+	}
+
+	/**
+	 * Creates a server for the message generator that can also use any of the models of a registry, 
+	 * which is not started until start() is called.
+	 * @param msgGen - the message generator to use when a request does not name a model
+	 * @param registry - the models that requests can name, or null if they cannot
+	 * @param port - the port to listen on, or 0 to use any free port
+	 * @param webRoot - the directory of the web view, whose files are served as they are
+	 * @throws IOException if the port could not be bound
+	 */
+	public MessageGenServer(MessageGenerator msgGen, ModelRegistry registry, int port, Path webRoot) throws IOException {
+		this(msgGen, registry, port, webRoot, null);
+	}
+
+	/**
+	 * Creates a server for the message generator that can also use any of the models of a registry, and that can be trained 
+	 * from the files of a data directory, which is not started until start() is called.
+	 * @param msgGen - the message generator to use when a request does not name a model
+	 * @param registry - the models that requests can name, or null if they cannot
+	 * @param port - the port to listen on, or 0 to use any free port
+	 * @param webRoot - the directory of the web view, whose files are served as they are
+	 * @param dataRoot - the directory that files can be trained from, or null if training from files is not allowed
+	 * @throws IOException if the port could not be bound or the data directory does not exist
+	 */
+	public MessageGenServer(MessageGenerator msgGen, ModelRegistry registry, int port, Path webRoot, Path dataRoot) throws IOException {
+		this.msgGen = msgGen;
+		this.registry = registry;
+		this.webRoot = webRoot.toAbsolutePath().normalize();
+		this.dataRoot = (dataRoot == null) ? null : dataRoot.toRealPath();
+		this.executor = newExecutor();
+
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.setExecutor(executor);
+		server.createContext("/train", exchange -> handle(exchange, this::train));
+		server.createContext("/generate", exchange -> handle(exchange, this::generate));
+		server.createContext("/stats", exchange -> handle(exchange, this::stats));
+		server.createContext("/", exchange -> handle(exchange, this::serveFile));
+	}
+
+	/**
+	 * Creates the loader of the models of a registry: "@handle" reads the timeline of the Twitter user, 
+	 * and anything else is the path of a UTF-8 corpus file within the data directory.
+	 * @param dataRoot - the directory that corpus files are read from, or null if only timelines can be read
+	 * @return the loader
+	 */
+	public static ModelRegistry.Loader sourceLoader(Path dataRoot) {
+		return key -> {
+			MessageGenerator msgGen = new MessageGenerator();
+
+			if (key.startsWith("@")) {
+				msgGen.readTimeline(key.substring(1));
+			}
+			else if (dataRoot == null) {
+				throw new IllegalArgumentException("This server only loads models from timelines: " + key);
+			}
+			else {
+				msgGen.addInput(resolveData(dataRoot.toRealPath(), key), StandardCharsets.UTF_8);
+			}
+
+			return msgGen;
+		};
+	}
+
+	/**
+	 * Finds a file within the data directory, following any links so that none of them can lead out of it.
+	 * @param dataRoot - the real path of the data directory
+	 * @param name - the path of the file, relative to the data directory or absolute
+	 * @return the real path of the file
+	 * @throws IllegalArgumentException if the file does not exist or is outside the data directory
+	 * @throws IOException if the file could not be looked up
+	 */
+	static Path resolveData(Path dataRoot, String name) throws IOException {
+		Path file = dataRoot.resolve(name).normalize();
+
+		if (file.startsWith(dataRoot) && Files.isRegularFile(file)) {
+			Path real = file.toRealPath();
+
+			if (real.startsWith(dataRoot)) {
+				return real;
+			}
+		}
+
+		throw new IllegalArgumentException("No such file in the data directory: " + name);
+	}
+
+	/**
+	 * Creates a virtual thread for every request if the JVM supports them, which is Java 21 and later.
+	 * Otherwise a fixed pool of platform threads is used, large enough that a slow request such as training from a big file
+	 * does not hold up the requests to generate messages.
+	 * @return the executor to handle requests on
+	 */
+	private static ExecutorService newExecutor() {
+		try {
+			Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) virtual.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newFixedThreadPool(Math.max(8, 4 * Runtime.getRuntime().availableProcessors()));
+		}
+	}
+
+	/**
+	 * Starts accepting requests in the background.
+	 */
+	public void start() {
+		server.start();
+	}
+
+	/**
+	 * Stops accepting requests, giving the ones in progress up to a second to finish.
+	 */
+	public void stop() {
+		server.stop(1);
+		executor.shutdown();
+
+		try {
+			executor.awaitTermination(1, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Returns the port that the server is listening on, which is useful when it was created with port 0.
+	 * @return an int containing the port
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Returns the address of the web view.
+	 * @return a String containing the URL
+	 */
+	public String getUrl() {
+		return "http://" + server.getAddress().getHostString() + ":" + getPort() + "/";
+	}
+
+	/**
+	 * Answers one request of an endpoint.
+	 */
+	private interface Endpoint {
+		Response handle(HttpExchange exchange) throws IOException;
+	}
+
+	/**
+	 * The status, type and body of an answer.
+	 */
+	private static class Response {
+		final int status;
+		final String contentType;
+		final byte[] body;
+
+		Response(int status, String contentType, byte[] body) {
+			this.status = status;
+			this.contentType = contentType;
+			this.body = body;
+		}
+
+		static Response json(int status, CharSequence json) {
+			return new Response(status, "application/json; charset=UTF-8", json.toString().getBytes(StandardCharsets.UTF_8));
+		}
+
+		static Response error(int status, String message) {
+			return json(status, Json.quote(new StringBuilder("{\"error\":"), message).append('}'));
+		}
+	}
+
+	/**
+	 * Answers a request with an endpoint, turning a bad request into a 400 and any other failure into a 500.
+	 * @param exchange - the request
+	 * @param endpoint - the endpoint to answer it with
+	 */
+	private void handle(HttpExchange exchange, Endpoint endpoint) throws IOException {
+		Response response;
+		String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+
+		try {
+			if (!isLoopbackHost(exchange.getRequestHeaders().getFirst("Host"))) {
+				response = Response.error(403, "Requests must be sent to the loopback address");
+			}
+			else if (exchange.getRequestMethod().equals("POST")
+					&& (contentType == null || !contentType.split(";")[0].trim().equalsIgnoreCase("application/json"))) {
+				response = Response.error(415, "POST requests must be sent as application/json");
+			}
+			else {
+				response = endpoint.handle(exchange);
+			}
+		} catch (IllegalArgumentException e) {
+			response = Response.error(400, e.getMessage());
+		} catch (UnsupportedOperationException e) {
+			response = Response.error(409, e.getMessage());
+		} catch (IOException | RuntimeException e) {
+			response = Response.error(500, e.toString());
+		}
+
+		try (OutputStream out = exchange.getResponseBody()) {
+			exchange.getResponseHeaders().set("Content-Type", response.contentType);
+			exchange.getResponseHeaders().set("X-Content-Type-Options", "nosniff");
+			exchange.sendResponseHeaders(response.status, response.body.length == 0 ? -1 : response.body.length);
+
+			if (response.body.length > 0) {
+				out.write(response.body);
+			}
+		}
+	}
+
+	/**
+	 * Checks that a request was addressed to the loopback address by name or number, with or without a port.
+	 * @param host - the Host header of the request, which may be null
+	 * @return true if the host is localhost, 127.0.0.1 or [::1], false otherwise
+	 */
+	static boolean isLoopbackHost(String host) {
+		if (host == null) {
+			return false;
+		}
+
+		String name = host.trim().toLowerCase();
+		int end = name.startsWith("[") ? name.indexOf(']') + 1 : name.indexOf(':');
+
+		if (end > 0 && end < name.length() && name.charAt(end) != ':') {
+			return false;
+		}
+
+		name = (end > 0) ? name.substring(0, end) : name;
+		return name.equals("localhost") || name.equals("127.0.0.1") || name.equals("[::1]");
+	}
+
+	/**
+	 * Adds the text, or the file at the path within the data directory, as input.
+	 */
+	private Response train(HttpExchange exchange) throws IOException {
+		if (!exchange.getRequestMethod().equals("POST")) {
+			return Response.error(405, "Use POST to train");
+		}
+
+		Map<String,Object> request = Json.parseObject(readBody(exchange));
+		Object text = request.get("text"),
+			   path = request.get("path");
+		MessageGenerator msgGen = modelOf(request, true);
+		long start = System.nanoTime();
+
+		if (text instanceof String && path == null) {
+			msgGen.addInput(new StringReader((String) text));
+		}
+		else if (path instanceof String && text == null) {
+			Object charset = request.getOrDefault("charset", "UTF-8");
+
+			if (!(charset instanceof String) || !Charset.isSupported((String) charset)) {
+				throw new IllegalArgumentException("Unsupported charset: " + charset);
+			}
+
+			if (dataRoot == null) {
+				return Response.error(403, "This server has no data directory to train from");
+			}
+
+			msgGen.addInput(resolveData(dataRoot, (String) path), Charset.forName((String) charset));
+		}
+		else {
+			throw new IllegalArgumentException("Expected either \"text\" or \"path\" as a string");
+		}
+
+		StringBuilder json = new StringBuilder("{\"trainingMillis\":").append((System.nanoTime() - start) / 1000000).append(',');
+		appendStats(json, msgGen);
+
+		// The model has grown, which may have taken the registry over its budget
+		if (msgGen != this.msgGen) {
+			registry.trim();
+		}
+
+		return Response.json(200, json.append('}'));
+	}
+
+	/**
+	 * Generates a number of messages, which are the same for the same seed and model.
+	 */
+	private Response generate(HttpExchange exchange) throws IOException {
+		Map<String,Object> request;
+
+		if (exchange.getRequestMethod().equals("POST")) {
+			request = Json.parseObject(readBody(exchange));
+		}
+		else if (exchange.getRequestMethod().equals("GET")) {
+			request = new HashMap<>(parseQuery(exchange.getRequestURI().getRawQuery()));
+		}
+		else {
+			return Response.error(405, "Use GET or POST to generate");
+		}
+
+		long count = toLong(request.getOrDefault("count", 1), "count");
+		if (count < 0 || count > MAX_MESSAGES) {
+			throw new IllegalArgumentException("The count must be between 0 and " + MAX_MESSAGES);
+		}
+
+		MessageGenerator msgGen = modelOf(request, exchange.getRequestMethod().equals("POST"));
+		if (msgGen == null) {
+			return notLoaded(request);
+		}
+
+		Object seed = request.get("seed");
+		SplittableRandom random = (seed == null) ? null : new SplittableRandom(toLong(seed, "seed"));
+
+		StringBuilder json = new StringBuilder("{\"messages\":[");
+		for (long i = 0; i < count; i++) {
+			if (i > 0) {
+				json.append(',');
+			}
+
+			Json.quote(json, (random == null) ? msgGen.generateText() : msgGen.generateText(random));
+		}
+
+		return Response.json(200, json.append("]}"));
+	}
+
+	/**
+	 * Describes the model.
+	 */
+	private Response stats(HttpExchange exchange) throws IOException {
+		if (!exchange.getRequestMethod().equals("GET")) {
+			return Response.error(405, "Use GET for stats");
+		}
+
+		Map<String,Object> request = new HashMap<>(parseQuery(exchange.getRequestURI().getRawQuery()));
+		MessageGenerator msgGen = modelOf(request, false);
+		if (msgGen == null) {
+			return notLoaded(request);
+		}
+
+		StringBuilder json = appendStats(new StringBuilder("{"), msgGen);
+
+		if (registry != null) {
+			json.append(",\"registry\":{\"models\":").append(registry.size())
+				.append(",\"usedBytes\":").append(registry.getUsedBytes())
+				.append(",\"budgetBytes\":").append(registry.getBudgetBytes())
+				.append(",\"hits\":").append(registry.getHits())
+				.append(",\"misses\":").append(registry.getMisses())
+				.append(",\"hitRate\":").append(registry.getHitRate())
+				.append(",\"evictions\":").append(registry.getEvictions())
+				.append(",\"spills\":").append(registry.getSpills())
+				.append(",\"spillLoads\":").append(registry.getSpillLoads())
+				.append('}');
+		}
+
+		return Response.json(200, json.append('}'));
+	}
+
+	/**
+	 * Finds the model that a request names, which is the default generator if it does not name one.
+	 * Only a POST, which a page on another site cannot send as application/json, may load a model that is not in the registry, 
+	 * since loading one can fetch a timeline or read a corpus and evict other models.
+	 * @param request - the parameters of the request
+	 * @param load - whether to load the model if it is not in the registry
+	 * @return the generator to use, or null if the model is not in the registry and was not loaded
+	 * @throws IOException if the model was not in the registry and could not be loaded
+	 */
+	private MessageGenerator modelOf(Map<String,Object> request, boolean load) throws IOException {
+		Object model = request.get("model");
+
+		if (model == null) {
+			return msgGen;
+		}
+		if (registry == null) {
+			throw new IllegalArgumentException("This server has no model registry");
+		}
+		if (!(model instanceof String) || ((String) model).isEmpty()) {
+			throw new IllegalArgumentException("Expected the name of a model as a string: " + model);
+		}
+
+		return load ? registry.get((String) model) : registry.getIfPresent((String) model);
+	}
+
+	/**
+	 * Creates the response to a GET request for a model that is not in the registry.
+	 * @param request - the parameters of the request
+	 * @return the response
+	 */
+	private static Response notLoaded(Map<String,Object> request) {
+		return Response.error(404, "The model is not loaded; POST a request for it to load it: " + request.get("model"));
+	}
+
+	/**
+	 * Appends the members that describe a model to a JSON object.
+	 * @param json - the object to append to, which is left open
+	 * @param msgGen - the model to describe
+	 * @return the builder
+	 */
+	private static StringBuilder appendStats(StringBuilder json, MessageGenerator msgGen) {
+		return json.append("\"order\":").append(msgGen.getOrder())
+				.append(",\"chains\":").append(msgGen.getNumberOfChains())
+				.append(",\"edges\":").append(msgGen.getNumberOfEdges())
+				.append(",\"contexts\":").append(msgGen.getNumberOfContexts())
+				.append(",\"readOnly\":").append(msgGen.isReadOnly())
+				.append(",\"caseFoldedLookups\":").append(msgGen.getCaseFoldedLookups())
+				.append(",\"fallbackSelections\":").append(msgGen.getFallbackSelections());
+	}
+
+	/**
+	 * Serves a file of the web view, where / is the page itself. Only files inside the directory of the view are served.
+	 */
+	private Response serveFile(HttpExchange exchange) throws IOException {
+		if (!exchange.getRequestMethod().equals("GET")) {
+			return Response.error(405, "Only GET is supported");
+		}
+
+		String name = exchange.getRequestURI().getPath();
+		if (name.equals("/")) {
+			name = "/twitter.html";
+		}
+
+		Path file = webRoot.resolve(name.substring(1)).normalize();
+		String extension = name.substring(name.lastIndexOf('.') + 1);
+
+		if (!file.startsWith(webRoot) || !Files.isRegularFile(file) || !CONTENT_TYPES.containsKey(extension)) {
+			return Response.error(404, "Not found: " + name);
+		}
+
+		return new Response(200, CONTENT_TYPES.get(extension), Files.readAllBytes(file));
+	}
+
+	/**
+	 * Reads the body of a request, up to MAX_BODY_BYTES.
+	 * @param exchange - the request
+	 * @return a String containing the body, decoded as UTF-8
+	 * @throws IOException if the body could not be read
+	 */
+	private static String readBody(HttpExchange exchange) throws IOException {
+		try (InputStream in = exchange.getRequestBody()) {
+			byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+
+			if (body.length > MAX_BODY_BYTES) {
+				throw new IllegalArgumentException("The request is larger than " + MAX_BODY_BYTES + " bytes");
+			}
+
+			return new String(body, StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * Splits a query string into its parameters.
+	 * @param query - the raw query, which may be null
+	 * @return the decoded parameters, where a repeated parameter keeps its last value
+	 */
+	static Map<String,String> parseQuery(String query) {
+		Map<String,String> parameters = new HashMap<>();
+
+		if (query == null || query.isEmpty()) {
+			return parameters;
+		}
+
+		for (String pair : query.split("&")) {
+			int equals = pair.indexOf('=');
+			String name = (equals < 0) ? pair : pair.substring(0, equals),
+				   value = (equals < 0) ? "" : pair.substring(equals + 1);
+
+			parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+		}
+
+		return parameters;
+	}
+
+	/**
+	 * Converts a number from JSON or a query string to a whole number.
+	 * @param value - a Number or a String
+	 * @param name - the name of the parameter, for the error message
+	 * @return a long containing the number
+	 * @throws IllegalArgumentException if the value is not a whole number
+	 */
+	private static long toLong(Object value, String name) {
+		try {
+			double number = (value instanceof Number) ? ((Number) value).doubleValue() : Double.parseDouble(value.toString());
+
+			if (number == Math.rint(number) && Math.abs(number) <= (1L << 53)) {
+				return (long) number;
+			}
+		} catch (NumberFormatException e) {
+			// Reported below
+		}
+
+		throw new IllegalArgumentException("Expected a whole number for \"" + name + "\": " + value);
+	}
+}
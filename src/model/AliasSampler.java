@@ -0,0 +1,115 @@
+package model;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * A weighted sampler built using Vose's alias method.
+ * Building the table takes linear time in the number of outcomes, but every draw afterward
+ * takes constant time and does not allocate, which makes it well suited for repeatedly sampling
+ * from the same set of weights, such as the possible states of a markov chain.
+ * Outcomes are represented by their index in the array of weights that the sampler was built from.
+ * @author Richie Ren
+ *
+ */
+public class AliasSampler {
+
+	private final double[] probability;
+	private final int[] alias;
+
+	/**
+	 * Builds the alias table for the given weights.
+	 * @param weights - the non-negative weight of each outcome; at least one must be positive
+	 */
+	public AliasSampler(int[] weights) {
+		this(weights, weights.length);
+	}
+
+	/**
+	 * Builds the alias table for the first count weights of the given array.
+	 * @param weights - the non-negative weight of each outcome; at least one must be positive
+	 * @param count - the number of weights to use from the start of the array
+	 */
+	public AliasSampler(int[] weights, int count) {
+		double[] scaled = new double[count];
+		double total = 0;
+
+		for (int i = 0; i < count; i++) {
+			total += weights[i];
+		}
+
+		if (count == 0 || total <= 0) {
+			throw new IllegalArgumentException("At least one weight must be positive");
+		}
+
+		for (int i = 0; i < count; i++) {
+			scaled[i] = weights[i] * count / total;
+		}
+
+		probability = new double[count];
+		alias = new int[count];
+
+		// Splits the outcomes into ones that are under and over the average weight
+		int[] small = new int[count];
+		int[] large = new int[count];
+		int numSmall = 0,
+			numLarge = 0;
+
+		for (int i = 0; i < count; i++) {
+			if (scaled[i] < 1.0) {
+				small[numSmall++] = i;
+			}
+			else {
+				large[numLarge++] = i;
+			}
+		}
+
+		// Pairs every small outcome with a large one that fills up the rest of its column
+		while (numSmall > 0 && numLarge > 0) {
+			int less = small[--numSmall];
+			int more = large[--numLarge];
+
+			probability[less] = scaled[less];
+			alias[less] = more;
+			scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+
+			if (scaled[more] < 1.0) {
+				small[numSmall++] = more;
+			}
+			else {
+				large[numLarge++] = more;
+			}
+		}
+
+		// Whatever is left over is only off from one due to rounding
+		while (numLarge > 0) {
+			probability[large[--numLarge]] = 1.0;
+		}
+
+		while (numSmall > 0) {
+			probability[small[--numSmall]] = 1.0;
+		}
+	}
+
+	/**
+	 * Returns the number of outcomes that the sampler chooses from.
+	 * @return an int containing the number of outcomes
+	 */
+	public int size() {
+		return probability.length;
+	}
+
+	/**
+	 * Chooses an outcome, where the weight of each outcome affects the chance of it being chosen.
+	 * @param random - the source of randomness to use
+	 * @return the index of the chosen outcome
+	 */
+	public int sample(RandomGenerator random) {
+		int column = random.nextInt(probability.length);
+
+		if (random.nextDouble() < probability[column]) {
+			return column;
+		}
+
+		return alias[column];
+	}
+}
@@ -0,0 +1,287 @@
+package model;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the model of a message generator within a memory budget while input is added, at the cost of leaving out rare words
+ * and pairs of words. Every pair is counted in a count-min sketch first, and only gets into the model once the sketch estimates
+ * that it has occurred at least a threshold number of times, starting at that estimate so that the occurrences before it got in
+ * are not lost. Typos, links and other words that occur only once therefore never take up room in the model, and a pair that is
+ * already in the model is counted exactly instead of going through the sketch again.
+ * Each word keeps no more than a fixed number of the words that followed it, replacing its least common one when a more common
+ * one comes along. When the model still grows past the budget, it is copied with only as many of its most common pairs and contexts
+ * as fit in three quarters of the budget, which frees the words and chains that are left without any along with them, and the
+ * threshold is raised above the count of the rarest pair that was dropped, so that only pairs more common than it get in from then on.
+ * The model is measured more often the faster it grows and the closer it gets to the budget.
+ * The sketch takes a quarter of the budget and the model the rest.
+ * @author Richie Ren
+ *
+ */
+public class ApproximateTraining {
+
+	private static final int DEFAULT_THRESHOLD = 2;
+	private static final int DEFAULT_MAX_STATES = 64;
+	private static final int DEPTH = 4;
+	private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+	private static final int MIN_CHECK_INTERVAL = 64;
+	private static final int MIN_BYTES_PER_ADMISSION = 16;
+
+	private final long budgetBytes;
+	private final int initialThreshold;
+	private final int maxStatesPerWord;
+	private final CountMinSketch sketch;
+	private final long checkInterval;
+	private volatile long nextCheck;
+	private long measuredBytes;
+	private volatile int threshold;
+	private final LongAdder sinceCheck;
+	private final LongAdder admitted;
+	private final LongAdder rejected;
+	private final LongAdder prunedStates;
+
+	/**
+	 * Creates an approximation that admits pairs seen at least twice and keeps up to 64 states per word.
+	 * @param budgetBytes - the most memory that the model and the sketch should take up
+	 */
+	public ApproximateTraining(long budgetBytes) {
+		this(budgetBytes, DEFAULT_THRESHOLD, DEFAULT_MAX_STATES);
+	}
+
+	/**
+	 * Creates an approximation with the given budget and limits.
+	 * @param budgetBytes - the most memory that the model and the sketch should take up
+	 * @param threshold - the number of times a pair must be estimated to have occurred before it is added to the model
+	 * @param maxStatesPerWord - the most possible states that any word keeps
+	 */
+	public ApproximateTraining(long budgetBytes, int threshold, int maxStatesPerWord) {
+		if (budgetBytes < 1 << 16) {
+			throw new IllegalArgumentException("The budget must be at least 64 KB: " + budgetBytes);
+		}
+
+		if (threshold < 1 || maxStatesPerWord < 1) {
+			throw new IllegalArgumentException("The threshold and the number of states must be positive: " + threshold + ", " + maxStatesPerWord);
+		}
+
+		this.budgetBytes = budgetBytes;
+		this.initialThreshold = threshold;
+		this.maxStatesPerWord = maxStatesPerWord;
+
+		int width = (int) Math.min(1 << 26, budgetBytes / 4 / (DEPTH * 4));
+		// Halving after ten additions per cell keeps the cells from filling up, while still remembering a pair long enough to see it again
+		sketch = new CountMinSketch(width, DEPTH, 10L * width);
+
+		// Walking the model to measure it is done at least about when enough has been added to fill a 256th of the budget
+		checkInterval = Math.max(1024, budgetBytes / 256 / 16);
+		nextCheck = MIN_CHECK_INTERVAL;
+		this.threshold = threshold;
+		sinceCheck = new LongAdder();
+		admitted = new LongAdder();
+		rejected = new LongAdder();
+		prunedStates = new LongAdder();
+	}
+
+	/**
+	 * Counts an occurrence of a word followed by another, and decides whether it is common enough to add to the model.
+	 * @param first - the first word
+	 * @param after - the word that followed it
+	 * @return an int containing the estimated number of occurrences of the pair if it should be added, or zero if it should not
+	 */
+	int admit(String first, String after) {
+		long item = (first.hashCode() & 0xFFFFFFFFL) * GOLDEN_RATIO ^ after.hashCode();
+		return admit(item);
+	}
+
+	/**
+	 * Counts an occurrence of a context of several words followed by another, and decides whether it is common enough to add to the model.
+	 * @param words - the words of the input
+	 * @param from - the index of the first word of the context
+	 * @param to - the index of the word that followed the context
+	 * @return an int containing the estimated number of occurrences if the context should be added, or zero if it should not
+	 */
+	int admitContext(String[] words, int from, int to) {
+		long item = to - from;
+
+		for (int i = from; i <= to; i++) {
+			item = (item + words[i].trim().hashCode()) * GOLDEN_RATIO;
+		}
+
+		return admit(item ^ (item >>> 29));
+	}
+
+	private int admit(long item) {
+		int estimate = sketch.add(item);
+
+		if (estimate < threshold) {
+			rejected.increment();
+			return 0;
+		}
+
+		return estimate;
+	}
+
+	/**
+	 * Records that a pair was left out of the model after it was admitted, because its word already has as many states as it can keep.
+	 */
+	void recordRejected() {
+		rejected.increment();
+	}
+
+	/**
+	 * Records that a new pair or context was added to the model.
+	 * @return true if enough has been added since the model was last measured that fit() should be called
+	 */
+	boolean recordAdmitted() {
+		admitted.increment();
+		sinceCheck.increment();
+
+		return sinceCheck.sum() >= nextCheck;
+	}
+
+	/**
+	 * Measures the model if it is time to, and if the model and the sketch take up more than the budget, 
+	 * copies the model without its rarest pairs and contexts and raises the threshold. No input should be added while it runs.
+	 * @param chains - the model
+	 * @return the model to add input to from now on, which is the given one unless it had to be copied
+	 * @throws IllegalStateException if even an empty model does not fit in what the sketch leaves of the budget
+	 */
+	synchronized ChainIndex fit(ChainIndex chains) {
+		long since = sinceCheck.sum();
+
+		// Another thread measured it while this one was waiting
+		if (since < nextCheck) {
+			return chains;
+		}
+
+		sinceCheck.reset();
+
+		long room = budgetBytes - sketch.estimateBytes();
+		long bytes = chains.estimateBytes();
+		long growth = Math.max(MIN_BYTES_PER_ADMISSION, (bytes - measuredBytes) / since);
+
+		if (bytes > room) {
+			long target = room / 4 * 3;
+			int[] counts = chains.stateCounts();
+
+			// Words and chains are freed along with their states, so keeping a share of the states keeps about the same share of the bytes
+			while (bytes > target && counts.length > 0) {
+				Arrays.sort(counts);
+				int keep = (int) Math.min(counts.length - 1, counts.length * (double) target / bytes);
+
+				// Keeps the most common states, along with as many of those tied with the rarest of them as there is room for.
+				// When none are kept, the cut is the most common count, so the threshold stays one that the sketch can reach
+				int cut = counts[counts.length - Math.max(1, keep)];
+				int above = counts.length - upperBound(counts, cut);
+
+				chains = chains.compact(cut + 1, keep - above);
+				threshold = Math.max(threshold, cut + 1);
+				prunedStates.add(counts.length - keep);
+
+				bytes = chains.estimateBytes();
+				counts = chains.stateCounts();
+			}
+
+			if (bytes > room) {
+				throw new IllegalStateException("A model of " + bytes + " bytes with nothing left to remove does not fit in the "
+						+ room + " bytes that the sketch leaves of the budget of " + budgetBytes);
+			}
+		}
+
+		// Measures again by the time the model could have grown half of the way to the budget at the rate it has been growing
+		measuredBytes = bytes;
+		nextCheck = Math.max(MIN_CHECK_INTERVAL, Math.min(checkInterval, (room - bytes) / growth / 2));
+
+		return chains;
+	}
+
+	/**
+	 * Finds the first index of the sorted counts whose count is above the given one.
+	 */
+	private static int upperBound(int[] counts, int count) {
+		int low = 0, high = counts.length;
+
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+
+			if (counts[mid] <= count) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+
+		return low;
+	}
+
+	/**
+	 * Forgets every count and goes back to the initial threshold, such as when the input of the generator is cleared.
+	 */
+	synchronized void clear() {
+		sketch.clear();
+		threshold = initialThreshold;
+		nextCheck = MIN_CHECK_INTERVAL;
+		measuredBytes = 0;
+		sinceCheck.reset();
+		admitted.reset();
+		rejected.reset();
+		prunedStates.reset();
+	}
+
+	/**
+	 * Returns the most memory that the model and the sketch should take up.
+	 * @return a long containing the budget in bytes
+	 */
+	public long getBudgetBytes() {
+		return budgetBytes;
+	}
+
+	/**
+	 * Returns the number of times a pair must currently be estimated to have occurred before it is added to the model,
+	 * which is raised whenever the model has to be cut down to fit the budget.
+	 * @return an int containing the threshold
+	 */
+	public int getThreshold() {
+		return threshold;
+	}
+
+	/**
+	 * Returns the most possible states that any word keeps.
+	 * @return an int containing the number of states
+	 */
+	public int getMaxStatesPerWord() {
+		return maxStatesPerWord;
+	}
+
+	/**
+	 * Returns the number of new pairs and contexts that were let into the model, leaving out the occurrences that were counted 
+	 * exactly because they were already in it.
+	 * @return a long containing the number of pairs and contexts
+	 */
+	public long getAdmitted() {
+		return admitted.sum();
+	}
+
+	/**
+	 * Returns the number of pairs and contexts that were left out of the model.
+	 * @return a long containing the number of pairs and contexts
+	 */
+	public long getRejected() {
+		return rejected.sum();
+	}
+
+	/**
+	 * Returns the number of possible states of words and contexts that were removed from the model to keep it within the budget.
+	 * @return a long containing the number of states
+	 */
+	public long getPrunedStates() {
+		return prunedStates.sum();
+	}
+
+	/**
+	 * Estimates the memory that the sketch takes up, which is counted against the budget along with the model.
+	 * @return a long containing the size in bytes
+	 */
+	public long estimateBytes() {
+		return sketch.estimateBytes();
+	}
+}
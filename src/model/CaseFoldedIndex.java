@@ -0,0 +1,111 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Groups the words that have a chain by their case-folded form, so that a word without a chain of its own,
+ * such as one that was capitalized at the start of a sentence, can be matched to the chains of the same word
+ * written in a different case. Two words have the same folded form exactly when equalsIgnoreCase() considers
+ * them equal character by character.
+ * Looking up a group never blocks. Groups are only added to while the chains of the index are locked, and are
+ * replaced rather than changed, so a thread that is reading a group never sees it half updated.
+ * @author Richie Ren
+ *
+ */
+class CaseFoldedIndex {
+
+	private final ConcurrentHashMap<String,int[]> groups;
+
+	CaseFoldedIndex() {
+		groups = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Adds the word to the group of its folded form. Only one thread may add at a time.
+	 * @param word - the word that a chain was created for
+	 * @param id - the ID of the word
+	 */
+	void add(String word, int id) {
+		String folded = fold(word);
+		int[] group = groups.get(folded);
+
+		if (group == null) {
+			groups.put(folded, new int[] { id });
+		}
+		else {
+			int[] grown = Arrays.copyOf(group, group.length + 1);
+			grown[group.length] = id;
+			groups.put(folded, grown);
+		}
+	}
+
+	/**
+	 * Returns the IDs of the words with a chain that match the word when case is ignored.
+	 * @param word - the word to look up
+	 * @return the IDs of the matching words, in the order their chains were created, or null if there are none
+	 */
+	int[] get(String word) {
+		return groups.get(fold(word));
+	}
+
+	/**
+	 * Returns the number of distinct folded forms.
+	 * @return an int containing the number of groups
+	 */
+	int size() {
+		return groups.size();
+	}
+
+	/**
+	 * Estimates the memory that the groups take up. A folded form is usually the same instance as the word it was folded from,
+	 * so only the forms that differ from their first word are counted as strings of their own.
+	 * @param vocabulary - the vocabulary that the IDs of the groups belong to
+	 * @return a long containing the size in bytes
+	 */
+	long estimateBytes(Vocabulary vocabulary) {
+		long table = Integer.highestOneBit(Math.max(1, groups.size() * 4 / 3)) * 2L;
+		long bytes = MemoryEstimate.object(MemoryEstimate.REFERENCE) + MemoryEstimate.array(table, MemoryEstimate.REFERENCE);
+
+		for (Map.Entry<String,int[]> group : groups.entrySet()) {
+			bytes += MemoryEstimate.MAP_ENTRY + MemoryEstimate.array(group.getValue().length, 4);
+
+			if (group.getKey() != vocabulary.getWord(group.getValue()[0])) {
+				bytes += MemoryEstimate.string(group.getKey().length());
+			}
+		}
+
+		return bytes;
+	}
+
+	/**
+	 * Folds the case of a character in the same way as equalsIgnoreCase().
+	 * @param c - the character to fold
+	 * @return the folded character
+	 */
+	static char fold(char c) {
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+
+	/**
+	 * Folds the case of every character of the word.
+	 * @param word - the word to fold
+	 * @return the folded word, which is the same instance if the word is already folded
+	 */
+	static String fold(String word) {
+		for (int i = 0; i < word.length(); i++) {
+			if (fold(word.charAt(i)) != word.charAt(i)) {
+				char[] chars = word.toCharArray();
+
+				for (int j = i; j < chars.length; j++) {
+					chars[j] = fold(chars[j]);
+				}
+
+				return new String(chars);
+			}
+		}
+
+		return word;
+	}
+}
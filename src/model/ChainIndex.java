@@ -0,0 +1,492 @@
+package model;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntPredicate;
+import java.util.random.RandomGenerator;
+
+/**
+ * Holds the vocabulary of a message generator along with its markov chains, indexed by the ID of their word.
+ * Looking up a chain never blocks. Only the creation of a chain for a new word is done under a lock,
+ * since adding to a chain that already exists is guarded by the chain itself.
+ * The capitalized words and the words seen starting a sentence are kept in lists as input is added,
+ * so that choosing the first word of a message does not have to go through every chain, and the words with a chain
+ * are grouped by their case-folded form so that a word can be matched to its chains when case is ignored.
+ * @author Richie Ren
+ *
+ */
+class ChainIndex implements ChainModel {
+
+	// The selection of words is rebuilt once the words of input added since it was built reach this fraction of the words it holds
+	private static final int WORD_SELECTION_STALENESS = 4;
+
+	private final int order;
+	private final Vocabulary vocabulary;
+	private final ContextTrie contexts;
+	private volatile AtomicReferenceArray<MarkovChain> chainsById;
+	private volatile int numChains;
+	private final SentenceStarters capitals;
+	private final SentenceStarters starts;
+	private final CaseFoldedIndex foldedIndex;
+	private final LongAdder version;
+	private final AtomicBoolean buildingWordSelection;
+	private volatile WordSelection wordSelection;
+
+	ChainIndex() {
+		this(1);
+	}
+
+	/**
+	 * Creates an empty index for a message generator of the given order.
+	 * @param order - the maximum number of words that a state depends on
+	 */
+	ChainIndex(int order) {
+		this.order = order;
+		vocabulary = new Vocabulary();
+		contexts = order > 1 ? new ContextTrie(order) : null;
+		chainsById = new AtomicReferenceArray<>(16);
+		numChains = 0;
+		capitals = new SentenceStarters();
+		starts = new SentenceStarters();
+		foldedIndex = new CaseFoldedIndex();
+		version = new LongAdder();
+		buildingWordSelection = new AtomicBoolean(false);
+		wordSelection = null;
+	}
+
+	/**
+	 * Returns the vocabulary that the words of the chains are interned in.
+	 * @return the vocabulary
+	 */
+	Vocabulary getVocabulary() {
+		return vocabulary;
+	}
+
+	@Override
+	public int getOrder() {
+		return order;
+	}
+
+	/**
+	 * Returns the words that were seen starting a sentence, once for every time each one did.
+	 * @return the list of sentence starts
+	 */
+	SentenceStarters getStarts() {
+		return starts;
+	}
+
+	/**
+	 * Returns the trie of contexts longer than one word.
+	 * @return the trie, or null if the message generator is of order one
+	 */
+	ContextTrie getContexts() {
+		return contexts;
+	}
+
+	/**
+	 * Finds the chain of the word with the given ID.
+	 * @param id - the vocabulary ID of the word
+	 * @return the chain of the word, or null if the word has no chain
+	 */
+	MarkovChain get(int id) {
+		AtomicReferenceArray<MarkovChain> chains = chainsById;
+
+		if (id < 0 || id >= chains.length()) {
+			return null;
+		}
+
+		return chains.get(id);
+	}
+
+	/**
+	 * Finds the chain of the word.
+	 * @param word - the word to look for
+	 * @return the chain of the word, or null if the word has no chain
+	 */
+	MarkovChain get(String word) {
+		return get(vocabulary.getId(word));
+	}
+
+	/**
+	 * Finds the chain of the word with the given ID, creating an empty one if the word has no chain yet.
+	 * @param id - the vocabulary ID of the word
+	 * @param capitalized - whether or not the word is capitalized, which is only used if a new chain is created
+	 * @return the chain of the word
+	 */
+	MarkovChain getOrCreate(int id, boolean capitalized) {
+		MarkovChain mc = get(id);
+
+		if (mc != null) {
+			return mc;
+		}
+
+		return create(id, capitalized);
+	}
+
+	/**
+	 * Creates the chain for the word with the given ID, unless another thread created it first.
+	 * @param id - the vocabulary ID of the word
+	 * @param capitalized - whether or not the word is capitalized
+	 * @return the chain of the word
+	 */
+	private synchronized MarkovChain create(int id, boolean capitalized) {
+		AtomicReferenceArray<MarkovChain> chains = chainsById;
+
+		if (id < chains.length() && chains.get(id) != null) {
+			return chains.get(id);
+		}
+
+		if (id >= chains.length()) {
+			AtomicReferenceArray<MarkovChain> grown = new AtomicReferenceArray<>(Math.max(chains.length() * 2, id + 1));
+
+			for (int i = 0; i < chains.length(); i++) {
+				grown.set(i, chains.get(i));
+			}
+
+			chains = grown;
+			chainsById = grown;
+		}
+
+		MarkovChain mc = new MarkovChain(id, vocabulary, capitalized);
+		chains.set(id, mc);
+		numChains++;
+
+		// Capitalizing or uncapitalizing the chain through setIsCapital() later on does not change the list
+		if (capitalized) {
+			capitals.add(id, 1);
+		}
+
+		foldedIndex.add(vocabulary.getWord(id), id);
+
+		return mc;
+	}
+
+	/**
+	 * Records that a word of input has been added, which counts toward rebuilding the selection of words by their occurrences.
+	 */
+	void modified() {
+		version.increment();
+	}
+
+	/**
+	 * Records that a number of words of input have been added at once, such as when another model is merged into this one.
+	 * @param count - the number of words, which must be positive
+	 */
+	void modified(long count) {
+		version.add(count);
+	}
+
+	/**
+	 * Returns the count of every possible state of every chain and every context, in no particular order.
+	 * @return an array containing the counts
+	 */
+	int[] stateCounts() {
+		AtomicReferenceArray<MarkovChain> current = chainsById;
+		IntList counts = new IntList();
+
+		for (int id = 0; id < current.length(); id++) {
+			MarkovChain mc = current.get(id);
+
+			if (mc != null) {
+				mc.addStateCounts(counts);
+			}
+		}
+
+		if (contexts != null) {
+			contexts.addStateCounts(counts);
+		}
+
+		return counts.toArray();
+	}
+
+	/**
+	 * Copies the most common states of the chains and contexts into a new index, leaving everything else behind, so that the words, 
+	 * chains and contexts that are left without any states are freed along with them. Every state counted at least the given number 
+	 * of times is kept, along with the given number of the states counted once less, so that the states tied at the cut do not all 
+	 * have to go. A word is kept while it has a state that is kept, is one, or is part of a context that is kept, 
+	 * and the sentence starts of the words that are kept are kept with them. No input should be added while it runs.
+	 * @param minCount - the lowest count of a state that is always kept
+	 * @param ties - the number of states counted one less than that which are also kept
+	 * @return the new index, whose version starts over from zero
+	 */
+	ChainIndex compact(int minCount, int ties) {
+		AtomicReferenceArray<MarkovChain> current = chainsById;
+		int words = vocabulary.size();
+		boolean[] kept = new boolean[words];
+		boolean[] chained = new boolean[words];
+
+		// The ties are kept in the order they are marked in, which the copies below go through the states in as well
+		IntPredicate marking = cutoff(minCount, ties);
+
+		for (int id = 0; id < current.length() && id < words; id++) {
+			MarkovChain mc = current.get(id);
+
+			if (mc != null && mc.markStates(marking, kept) > 0) {
+				chained[id] = true;
+			}
+		}
+
+		if (contexts != null) {
+			contexts.mark(marking, kept);
+		}
+
+		// The words keep their order, so the IDs of the new index are those of the old one with the gaps closed up
+		ChainIndex compacted = new ChainIndex(order);
+		int[] translation = new int[words];
+
+		for (int id = 0; id < words; id++) {
+			translation[id] = (kept[id] || chained[id]) ? compacted.vocabulary.intern(vocabulary.getWord(id)) : -1;
+		}
+
+		IntPredicate copying = cutoff(minCount, ties);
+
+		for (int id = 0; id < words; id++) {
+			if (chained[id]) {
+				MarkovChain mc = current.get(id);
+				compacted.getOrCreate(translation[id], mc.isCapital()).merge(mc, translation, copying);
+			}
+		}
+
+		if (contexts != null) {
+			compacted.contexts.addAll(contexts, translation, copying);
+		}
+
+		compacted.starts.addAll(starts, translation);
+
+		return compacted;
+	}
+
+	/**
+	 * Creates a test that keeps every count of at least the minimum, and the first few counts that are one less.
+	 */
+	private static IntPredicate cutoff(int minCount, int ties) {
+		int[] remaining = { ties };
+
+		return count -> count >= minCount || (count == minCount - 1 && remaining[0]-- > 0);
+	}
+
+	@Override
+	public int getId(String word) {
+		return vocabulary.getId(word);
+	}
+
+	@Override
+	public String getWord(int id) {
+		return vocabulary.getWord(id);
+	}
+
+	@Override
+	public void appendWord(int id, StringBuilder out) {
+		out.append(vocabulary.getWord(id));
+	}
+
+	@Override
+	public int getTokenFlags(int id) {
+		return vocabulary.getFlags(id);
+	}
+
+	@Override
+	public int idLimit() {
+		return Math.min(vocabulary.size(), chainsById.length());
+	}
+
+	@Override
+	public int size() {
+		return numChains;
+	}
+
+	@Override
+	public long getVersion() {
+		return version.sum();
+	}
+
+	/**
+	 * Starts the version of this index after the version of the model it replaces, so the version never goes back.
+	 * @param previous - the version of the replaced model
+	 */
+	void continueVersion(long previous) {
+		version.add(previous + 1);
+	}
+
+	@Override
+	public int vocabularySize() {
+		return vocabulary.size();
+	}
+
+	@Override
+	public long estimateBytes() {
+		AtomicReferenceArray<MarkovChain> current = chainsById;
+		long bytes = MemoryEstimate.array(current.length(), MemoryEstimate.REFERENCE) + vocabulary.estimateBytes()
+				+ capitals.estimateBytes() + starts.estimateBytes() + foldedIndex.estimateBytes(vocabulary);
+
+		for (int id = 0; id < current.length(); id++) {
+			MarkovChain mc = current.get(id);
+
+			if (mc != null) {
+				bytes += mc.estimateBytes();
+			}
+		}
+
+		return contexts == null ? bytes : bytes + contexts.estimateBytes();
+	}
+
+	@Override
+	public boolean hasChain(int id) {
+		return get(id) != null;
+	}
+
+	@Override
+	public boolean isCapital(int id) {
+		MarkovChain mc = get(id);
+		return mc != null && mc.isCapital();
+	}
+
+	@Override
+	public int sampleCapital(RandomGenerator random) {
+		return capitals.sample(random);
+	}
+
+	@Override
+	public int sampleSentenceStart(RandomGenerator random) {
+		return starts.sample(random);
+	}
+
+	@Override
+	public int sampleCaseFolded(String word, RandomGenerator random) {
+		int[] group = foldedIndex.get(word);
+
+		if (group == null) {
+			return -1;
+		}
+
+		// Chooses one of the matching chains in proportion to its occurrences, the same as if their states were added together
+		int chosen = group[0];
+
+		if (group.length > 1) {
+			long total = 0;
+			for (int id : group) {
+				total += Math.max(1, get(id).getOccurrences());
+			}
+
+			long target = random.nextLong(total);
+			for (int id : group) {
+				target -= Math.max(1, get(id).getOccurrences());
+
+				if (target < 0) {
+					chosen = id;
+					break;
+				}
+			}
+		}
+
+		return sampleState(chosen, random);
+	}
+
+	@Override
+	public int sampleState(int id, RandomGenerator random) {
+		MarkovChain mc = get(id);
+		return mc == null ? -1 : mc.sampleState(random);
+	}
+
+	@Override
+	public int sampleContext(int[] history, int length, RandomGenerator random) {
+		return contexts == null ? -1 : contexts.sample(history, length, random);
+	}
+
+	/**
+	 * Chooses a word using an alias table that is only rebuilt once enough input has been added since it was last built. 
+	 * Rebuilding takes time that grows with the number of words, so it waits until the words added since then make up a quarter 
+	 * of the words in the table, which keeps the cost of rebuilding to a few steps for each word of input no matter how often 
+	 * words are chosen while input is being added. Until then, the words are chosen by the occurrences they had when it was built.
+	 * While one thread rebuilds the table, other threads keep selecting from the previous one instead of waiting.
+	 */
+	@Override
+	public int sampleWord(RandomGenerator random) {
+		WordSelection selection = wordSelection;
+
+		if (selection == null || version.sum() - selection.version >= Math.max(1, selection.ids.length / WORD_SELECTION_STALENESS)) {
+			if (buildingWordSelection.compareAndSet(false, true)) {
+				try {
+					selection = buildWordSelection();
+					wordSelection = selection;
+				} finally {
+					buildingWordSelection.set(false);
+				}
+			}
+			else if (selection == null) {
+				selection = buildWordSelection();
+			}
+		}
+
+		return selection.ids[selection.sampler.sample(random)];
+	}
+
+	/**
+	 * Builds the alias table used to select from the list of all words based on their number of occurrences.
+	 * @return the selection for the current input
+	 */
+	private WordSelection buildWordSelection() {
+		// Reads the version first so that input added during the build causes another rebuild
+		long current = version.sum();
+		int limit = idLimit();
+		int[] ids = new int[limit];
+		int[] weights = new int[limit];
+		int n = 0;
+
+		for (int id = 0; id < limit; id++) {
+			MarkovChain mc = get(id);
+
+			// A chain that another thread has just created may not have its first occurrence counted yet
+			if (mc != null) {
+				ids[n] = id;
+				weights[n] = Math.max(1, mc.getOccurrences());
+				n++;
+			}
+		}
+
+		return new WordSelection(Arrays.copyOf(ids, n), new AliasSampler(weights, n), current);
+	}
+
+	@Override
+	public MarkovChain getChain(int id) {
+		return get(id);
+	}
+
+	@Override
+	public long numberOfEdges() {
+		long edges = 0;
+
+		for (int id = 0; id < idLimit(); id++) {
+			MarkovChain mc = get(id);
+
+			if (mc != null) {
+				edges += mc.getNumberOfStates();
+			}
+		}
+
+		return edges;
+	}
+
+	@Override
+	public long numberOfContexts() {
+		return contexts == null ? 0 : contexts.numberOfContexts();
+	}
+
+	/**
+	 * The words and the alias table built from their number of occurrences for one version of the input.
+	 * It is never modified, so any number of threads can select from it at once.
+	 */
+	private static class WordSelection {
+		final int[] ids;
+		final AliasSampler sampler;
+		final long version;
+
+		WordSelection(int[] ids, AliasSampler sampler, long version) {
+			this.ids = ids;
+			this.sampler = sampler;
+			this.version = version;
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package model;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * The side of a trained model that messages are generated from, where every word is referred to by its vocabulary ID.
+ * It is implemented by the chains that input is added to as well as by read-only models that are laid out in flat arrays,
+ * so the message generator can generate from either one in the same way.
+ * @author Richie Ren
+ *
+ */
+interface ChainModel {
+
+	/**
+	 * Returns the maximum number of previous words that a state depends on.
+	 * @return an int containing the order
+	 */
+	int getOrder();
+
+	/**
+	 * Returns the ID of the word.
+	 * @param word - the word to look up
+	 * @return an int containing the ID of the word, or -1 if the word is not in the vocabulary
+	 */
+	int getId(String word);
+
+	/**
+	 * Returns the word that the ID was assigned to.
+	 * @param id - the ID of the word
+	 * @return a String containing the word
+	 */
+	String getWord(int id);
+
+	/**
+	 * Appends the word that the ID was assigned to, without creating a String for it if the model does not already hold one.
+	 * @param id - the ID of the word
+	 * @param out - the builder to append the word to
+	 */
+	void appendWord(int id, StringBuilder out);
+
+	/**
+	 * Returns the facts about the word that were worked out when it was added, so the word does not have to be inspected again.
+	 * @param id - the ID of the word
+	 * @return an int containing the TokenFlags of the word
+	 */
+	int getTokenFlags(int id);
+
+	/**
+	 * Returns one more than the highest ID that could have a chain, which is the bound to use when going through every chain.
+	 * @return an int containing the bound
+	 */
+	int idLimit();
+
+	/**
+	 * Returns the number of words that have a chain.
+	 * @return an int containing the number of chains
+	 */
+	int size();
+
+	/**
+	 * Returns a number that increases by one for every word of input that is added, so that anything derived from the model
+	 * can tell it is out of date.
+	 * @return a long containing the version, which never changes for a read-only model
+	 */
+	long getVersion();
+
+	/**
+	 * Returns the number of distinct words, whether or not they have a chain.
+	 * @return an int containing the number of words
+	 */
+	int vocabularySize();
+
+	/**
+	 * Estimates the memory that the model takes up, which for a mapped model is the size of the mapped file.
+	 * @return a long containing the size in bytes
+	 */
+	long estimateBytes();
+
+	/**
+	 * Indicates whether or not the word with the given ID has a chain.
+	 * @param id - the ID of the word, which may be -1
+	 * @return true if the word has a chain, false otherwise
+	 */
+	boolean hasChain(int id);
+
+	/**
+	 * Indicates whether or not the word with the given ID has a chain and was capitalized.
+	 * @param id - the ID of the word
+	 * @return true if the word has a chain and was capitalized, false otherwise
+	 */
+	boolean isCapital(int id);
+
+	/**
+	 * Chooses one of the words that has a chain and was capitalized, where each word has the same chance.
+	 * @param random - the source of randomness to use
+	 * @return the ID of the chosen word, or -1 if no word was capitalized
+	 */
+	int sampleCapital(RandomGenerator random);
+
+	/**
+	 * Chooses one of the capitalized words that followed the end of a sentence in the input,
+	 * where the number of times each word started a sentence affects its chance.
+	 * @param random - the source of randomness to use
+	 * @return the ID of the chosen word, or -1 if no sentence starts were seen
+	 */
+	int sampleSentenceStart(RandomGenerator random);
+
+	/**
+	 * Chooses one of the possible states of the word, where the number of times each state followed the word affects its chance.
+	 * @param id - the ID of the word
+	 * @param random - the source of randomness to use
+	 * @return the ID of the chosen state, or -1 if the word has no chain or no states
+	 */
+	int sampleState(int id, RandomGenerator random);
+
+	/**
+	 * Chooses a possible state of one of the words that have a chain and match the given word when case is ignored,
+	 * for a word that has no chain of its own. The chains of the matching words are treated as one: a word is chosen
+	 * in proportion to its occurrences, and then one of its states in proportion to its count.
+	 * @param word - the word to match
+	 * @param random - the source of randomness to use
+	 * @return the ID of the chosen state, or -1 if no word with a chain matches or the chosen one has no states yet
+	 */
+	int sampleCaseFolded(String word, RandomGenerator random);
+
+	/**
+	 * Chooses a state that follows the longest context of two or more words that the history ends with.
+	 * @param history - the IDs of the words generated so far, oldest first; unknown words are negative
+	 * @param length - the number of IDs to use from the start of the array
+	 * @param random - the source of randomness to use
+	 * @return the ID of the chosen state, or -1 if no such context is known
+	 */
+	int sampleContext(int[] history, int length, RandomGenerator random);
+
+	/**
+	 * Chooses a word that has a chain, where the number of occurrences of each word affects its chance.
+	 * @param random - the source of randomness to use
+	 * @return the ID of the chosen word, which must not be called on an empty model
+	 */
+	int sampleWord(RandomGenerator random);
+
+	/**
+	 * Returns the chain of the word with the given ID for inspecting the model.
+	 * @param id - the ID of the word
+	 * @return the chain of the word, or null if the word has no chain
+	 */
+	MarkovChain getChain(int id);
+
+	/**
+	 * Returns the number of distinct pairs of a word and one of its possible states.
+	 * @return a long containing the number of edges
+	 */
+	long numberOfEdges();
+
+	/**
+	 * Returns the number of distinct contexts of two or more words.
+	 * @return a long containing the number of contexts
+	 */
+	long numberOfContexts();
+}
@@ -0,0 +1,1038 @@
+package model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.random.RandomGenerator;
+
+/**
+ * A read-only model laid out in flat arrays, in the style of a compressed sparse row matrix.
+ * The possible states of word i are at the indices from rowOffsets[i] to rowOffsets[i + 1] of the successor array,
+ * sorted from the most to the least common, and the cumulative array holds the running total of their counts, so a state
+ * is chosen by drawing a number below the total and finding the first running total above it. The contexts of a model of
+ * a higher order are laid out the same way, breadth first. Words are looked up through an open addressing table of IDs
+ * whose characters are compared in place. The capitalized words are listed by ID, and the words that started a sentence
+ * are listed with the running total of the number of times each one did. The words with a chain are also grouped by their
+ * case-folded form, with a second open addressing table of groups whose folded characters are compared in place.
+ * Since the arrays are never modified, they can live in buffers that are memory mapped from a file written by write(),
+ * in which case nothing is read into the heap and every process that maps the same file shares its pages.
+ * @author Richie Ren
+ *
+ */
+class CompactModel implements ChainModel {
+
+	static final int MAGIC = 0x4D4B564D;
+	static final int FORMAT_VERSION = 4;
+
+	private static final int HEADER_SIZE = 80;
+	private static final int NUM_SECTIONS = 21;
+	private static final int BUFFER_SIZE = 65536;
+	private static final int EMPTY = -1;
+	private static final byte HAS_CHAIN = 1, CAPITALIZED = 2;
+
+	// The TokenFlags of each word are stored in the bits above its own flags
+	private static final int TOKEN_FLAGS_SHIFT = 2;
+
+	// Rows up to this length are scanned from the most common state instead of searched
+	private static final int LINEAR_SEARCH_LIMIT = 16;
+
+	private final int order;
+	private final int numWords;
+	private final int numChains;
+	private final int hashMask;
+
+	private final IntBuffer wordOffsets;
+	private final CharBuffer chars;
+	private final IntBuffer hashTable;
+	private final ByteBuffer flags;
+	private final IntBuffer occurrences;
+	private final IntBuffer rowOffsets;
+	private final IntBuffer successors;
+	private final IntBuffer cumulative;
+	private final LongBuffer wordCumulative;
+
+	private final int numNodes;
+	private final IntBuffer childOffsets;
+	private final IntBuffer childKeys;
+	private final IntBuffer childNodes;
+	private final IntBuffer stateOffsets;
+	private final IntBuffer nodeStates;
+	private final IntBuffer nodeCumulative;
+
+	private final IntBuffer capitals;
+	private final IntBuffer startIds;
+	private final LongBuffer startCumulative;
+
+	private final int foldMask;
+	private final IntBuffer foldTable;
+	private final IntBuffer foldOffsets;
+	private final IntBuffer foldIds;
+
+	// The words of a model built on the heap, shared with the vocabulary it was built from so that generating a word does not copy it;
+	// a mapped model has none and reads its words from the characters
+	private final String[] words;
+	private final long wordBytes;
+
+	// Never changes once the model is in use, but is carried over from the chains that a frozen model was built from
+	private long version;
+
+	private CompactModel(int order, int numChains, IntBuffer wordOffsets, CharBuffer chars, IntBuffer hashTable, ByteBuffer flags,
+			IntBuffer occurrences, IntBuffer rowOffsets, IntBuffer successors, IntBuffer cumulative, LongBuffer wordCumulative,
+			IntBuffer childOffsets, IntBuffer childKeys, IntBuffer childNodes, IntBuffer stateOffsets, IntBuffer nodeStates, IntBuffer nodeCumulative,
+			IntBuffer capitals, IntBuffer startIds, LongBuffer startCumulative, IntBuffer foldTable, IntBuffer foldOffsets, IntBuffer foldIds,
+			String[] words, long wordBytes) {
+		this.order = order;
+		this.numWords = wordOffsets.limit() - 1;
+		this.numChains = numChains;
+		this.hashMask = hashTable.limit() - 1;
+		this.wordOffsets = wordOffsets;
+		this.chars = chars;
+		this.hashTable = hashTable;
+		this.flags = flags;
+		this.occurrences = occurrences;
+		this.rowOffsets = rowOffsets;
+		this.successors = successors;
+		this.cumulative = cumulative;
+		this.wordCumulative = wordCumulative;
+		this.numNodes = childOffsets.limit() - 1;
+		this.childOffsets = childOffsets;
+		this.childKeys = childKeys;
+		this.childNodes = childNodes;
+		this.stateOffsets = stateOffsets;
+		this.nodeStates = nodeStates;
+		this.nodeCumulative = nodeCumulative;
+		this.capitals = capitals;
+		this.startIds = startIds;
+		this.startCumulative = startCumulative;
+		this.foldMask = foldTable.limit() - 1;
+		this.foldTable = foldTable;
+		this.foldOffsets = foldOffsets;
+		this.foldIds = foldIds;
+		this.words = words;
+		this.wordBytes = wordBytes;
+	}
+
+	/**
+	 * Lays out the chains in flat arrays on the heap.
+	 * Input added while the model is being built may or may not be included.
+	 * @param current - the chains to lay out
+	 * @return the model
+	 */
+	static CompactModel build(ChainIndex current) {
+		Vocabulary vocabulary = current.getVocabulary();
+
+		// Anything added after this point refers to words past the limit and is left out
+		int numWords = current.idLimit();
+
+		int[] wordOffsets = new int[numWords + 1];
+		String[] words = vocabulary.getWords();
+		long numChars = 0,
+			 wordBytes = MemoryEstimate.array(words.length, MemoryEstimate.REFERENCE);
+		for (int id = 0; id < numWords; id++) {
+			numChars += words[id].length();
+			wordBytes += MemoryEstimate.string(words[id].length());
+
+			if (numChars > Integer.MAX_VALUE) {
+				throw new IllegalStateException("The words of the model are too long to lay out in an array");
+			}
+
+			wordOffsets[id + 1] = (int) numChars;
+		}
+
+		char[] chars = new char[(int) numChars];
+		for (int id = 0; id < numWords; id++) {
+			String word = vocabulary.getWord(id);
+			word.getChars(0, word.length(), chars, wordOffsets[id]);
+		}
+
+		int[] hashTable = new int[tableSize(numWords)];
+		Arrays.fill(hashTable, EMPTY);
+		for (int id = 0; id < numWords; id++) {
+			int slot = Vocabulary.mix(vocabulary.getWord(id).hashCode()) & (hashTable.length - 1);
+
+			while (hashTable[slot] != EMPTY) {
+				slot = (slot + 1) & (hashTable.length - 1);
+			}
+
+			hashTable[slot] = id;
+		}
+
+		byte[] flags = new byte[numWords];
+		int[] occurrences = new int[numWords];
+		int[] rowOffsets = new int[numWords + 1];
+		long[] wordCumulative = new long[numWords];
+		IntList successors = new IntList(),
+				cumulative = new IntList();
+		int numChains = 0;
+		long totalWeight = 0;
+
+		for (int id = 0; id < numWords; id++) {
+			MarkovChain mc = current.get(id);
+			flags[id] = (byte) (vocabulary.getFlags(id) << TOKEN_FLAGS_SHIFT);
+
+			if (mc != null) {
+				occurrences[id] = mc.copyStates(numWords, successors, cumulative);
+				flags[id] |= HAS_CHAIN | (mc.isCapital() ? CAPITALIZED : 0);
+				totalWeight += Math.max(1, occurrences[id]);
+				numChains++;
+			}
+
+			rowOffsets[id + 1] = successors.size();
+			wordCumulative[id] = totalWeight;
+		}
+
+		IntList capitals = new IntList();
+		for (int id = 0; id < numWords; id++) {
+			if ((flags[id] & CAPITALIZED) != 0) {
+				capitals.add(id);
+			}
+		}
+
+		int[] startCounts = current.getStarts().counts(numWords);
+		int numStartIds = 0;
+		for (int id = 0; id < numWords; id++) {
+			if (startCounts[id] > 0) {
+				numStartIds++;
+			}
+		}
+
+		int[] startIds = new int[numStartIds];
+		long[] startCumulative = new long[numStartIds];
+		long totalStarts = 0;
+		for (int id = 0, i = 0; id < numWords; id++) {
+			if (startCounts[id] > 0) {
+				totalStarts += startCounts[id];
+				startIds[i] = id;
+				startCumulative[i++] = totalStarts;
+			}
+		}
+
+		// Groups the words with a chain by their folded form, in the order of the lowest ID of each group
+		LinkedHashMap<String,IntList> groups = new LinkedHashMap<>();
+		for (int id = 0; id < numWords; id++) {
+			if ((flags[id] & HAS_CHAIN) != 0) {
+				groups.computeIfAbsent(CaseFoldedIndex.fold(vocabulary.getWord(id)), key -> new IntList()).add(id);
+			}
+		}
+
+		int[] foldTable = new int[tableSize(groups.size())];
+		int[] foldOffsets = new int[groups.size() + 1];
+		int[] foldIds = new int[numChains];
+		Arrays.fill(foldTable, EMPTY);
+		int group = 0;
+		for (Map.Entry<String,IntList> entry : groups.entrySet()) {
+			IntList ids = entry.getValue();
+			for (int i = 0; i < ids.size(); i++) {
+				foldIds[foldOffsets[group] + i] = ids.get(i);
+			}
+			foldOffsets[group + 1] = foldOffsets[group] + ids.size();
+
+			int slot = Vocabulary.mix(entry.getKey().hashCode()) & (foldTable.length - 1);
+			while (foldTable[slot] != EMPTY) {
+				slot = (slot + 1) & (foldTable.length - 1);
+			}
+			foldTable[slot] = group++;
+		}
+
+		ContextTrie.Layout trie = (current.getContexts() == null)
+				? new ContextTrie.Layout(new int[] { 0 }, new int[0], new int[0], new int[] { 0 }, new int[0], new int[0])
+				: current.getContexts().layout(numWords);
+
+		return new CompactModel(current.getOrder(), numChains, IntBuffer.wrap(wordOffsets), CharBuffer.wrap(chars), IntBuffer.wrap(hashTable),
+				ByteBuffer.wrap(flags), IntBuffer.wrap(occurrences), IntBuffer.wrap(rowOffsets), IntBuffer.wrap(successors.toArray()),
+				IntBuffer.wrap(cumulative.toArray()), LongBuffer.wrap(wordCumulative), IntBuffer.wrap(trie.childOffsets),
+				IntBuffer.wrap(trie.childKeys), IntBuffer.wrap(trie.childNodes), IntBuffer.wrap(trie.stateOffsets),
+				IntBuffer.wrap(trie.states), IntBuffer.wrap(trie.cumulative), IntBuffer.wrap(capitals.toArray()), IntBuffer.wrap(startIds),
+				LongBuffer.wrap(startCumulative), IntBuffer.wrap(foldTable), IntBuffer.wrap(foldOffsets), IntBuffer.wrap(foldIds), words, wordBytes);
+	}
+
+	/**
+	 * Adds possible states to flat lists, sorted from the most to the least common, along with the running totals of their counts.
+	 * @param states - the states and their counts
+	 * @param idLimit - one more than the highest state ID to add
+	 * @param ids - the list to add the IDs of the states to
+	 * @param cumulative - the list to add the running totals to
+	 */
+	static void addStates(IntCountMap states, int idLimit, IntList ids, IntList cumulative) {
+		int[] keys = new int[states.size()];
+		int[] counts = new int[states.size()];
+		states.copyTo(keys, counts);
+
+		// Packs each count with its state so that sorting keeps them together
+		long[] packed = new long[keys.length];
+		int n = 0;
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] < idLimit) {
+				packed[n++] = ((long) counts[i] << 32) | keys[i];
+			}
+		}
+		Arrays.sort(packed, 0, n);
+
+		int total = 0;
+		for (int i = n - 1; i >= 0; i--) {
+			total += (int) (packed[i] >>> 32);
+			ids.add((int) packed[i]);
+			cumulative.add(total);
+		}
+	}
+
+	/**
+	 * Returns the size of the table used to look up words, which is a power of two that is at least twice the number of words.
+	 * @param numWords - the number of words
+	 * @return an int containing the number of slots
+	 */
+	private static int tableSize(int numWords) {
+		int size = 2;
+
+		while (size < numWords * 2L) {
+			size *= 2;
+		}
+
+		return size;
+	}
+
+	/**
+	 * Copies the model back into chains that input can be added to.
+	 * @return the chains
+	 */
+	ChainIndex thaw() {
+		ChainIndex thawed = new ChainIndex(order);
+		Vocabulary vocabulary = thawed.getVocabulary();
+
+		for (int id = 0; id < numWords; id++) {
+			vocabulary.intern(getWord(id));
+		}
+
+		for (int id = 0; id < numWords; id++) {
+			if (hasChain(id)) {
+				MarkovChain mc = thawed.getOrCreate(id, isCapital(id));
+				int start = rowOffsets.get(id),
+					end = rowOffsets.get(id + 1);
+
+				for (int i = start; i < end; i++) {
+					mc.addState(successors.get(i), cumulative.get(i) - (i > start ? cumulative.get(i - 1) : 0));
+				}
+
+				mc.addOccurrences(occurrences.get(id));
+			}
+		}
+
+		if (thawed.getContexts() != null && numNodes > 0) {
+			thawNode(thawed.getContexts(), 0, new int[order], 0);
+		}
+
+		for (int i = 0; i < startIds.limit(); i++) {
+			thawed.getStarts().add(startIds.get(i), (int) (startCumulative.get(i) - (i > 0 ? startCumulative.get(i - 1) : 0)));
+		}
+
+		thawed.modified();
+
+		return thawed;
+	}
+
+	/**
+	 * Copies the states of a node of the trie and all of the nodes below it.
+	 * @param trie - the trie to copy into
+	 * @param node - the index of the node
+	 * @param path - the IDs of the words leading to the node, most recent first
+	 * @param depth - the number of words leading to the node
+	 */
+	private void thawNode(ContextTrie trie, int node, int[] path, int depth) {
+		int start = stateOffsets.get(node),
+			end = stateOffsets.get(node + 1);
+
+		for (int i = start; i < end; i++) {
+			trie.addPath(path, depth, nodeStates.get(i), nodeCumulative.get(i) - (i > start ? nodeCumulative.get(i - 1) : 0));
+		}
+
+		for (int i = childOffsets.get(node); i < childOffsets.get(node + 1); i++) {
+			path[depth] = childKeys.get(i);
+			thawNode(trie, childNodes.get(i), path, depth + 1);
+		}
+	}
+
+	@Override
+	public int getOrder() {
+		return order;
+	}
+
+	@Override
+	public int getId(String word) {
+		int slot = Vocabulary.mix(word.hashCode()) & hashMask;
+
+		for (int id = hashTable.get(slot); id != EMPTY; id = hashTable.get(slot)) {
+			if (wordEquals(id, word)) {
+				return id;
+			}
+
+			slot = (slot + 1) & hashMask;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Compares the characters of the word with the given ID against the word, without creating a String.
+	 * @param id - the ID of the stored word
+	 * @param word - the word to compare with
+	 * @return true if the words are the same, false otherwise
+	 */
+	private boolean wordEquals(int id, String word) {
+		int start = wordOffsets.get(id),
+			length = wordOffsets.get(id + 1) - start;
+
+		if (length != word.length()) {
+			return false;
+		}
+
+		for (int i = 0; i < length; i++) {
+			if (chars.get(start + i) != word.charAt(i)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Finds the group of words whose folded form is the same as that of the word, without creating a String.
+	 * @param word - the word to look up
+	 * @return an int containing the index of the group, or -1 if no word with a chain matches
+	 */
+	private int getFoldGroup(String word) {
+		// The same as the hash code of the folded String
+		int hash = 0;
+		for (int i = 0; i < word.length(); i++) {
+			hash = 31 * hash + CaseFoldedIndex.fold(word.charAt(i));
+		}
+
+		int slot = Vocabulary.mix(hash) & foldMask;
+
+		for (int group = foldTable.get(slot); group != EMPTY; group = foldTable.get(slot)) {
+			if (foldedEquals(foldIds.get(foldOffsets.get(group)), word)) {
+				return group;
+			}
+
+			slot = (slot + 1) & foldMask;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Compares the folded characters of the word with the given ID against the folded characters of the word.
+	 * @param id - the ID of the stored word
+	 * @param word - the word to compare with
+	 * @return true if the words are the same when case is ignored, false otherwise
+	 */
+	private boolean foldedEquals(int id, String word) {
+		int start = wordOffsets.get(id),
+			length = wordOffsets.get(id + 1) - start;
+
+		if (length != word.length()) {
+			return false;
+		}
+
+		for (int i = 0; i < length; i++) {
+			if (CaseFoldedIndex.fold(chars.get(start + i)) != CaseFoldedIndex.fold(word.charAt(i))) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	@Override
+	public String getWord(int id) {
+		if (id < 0 || id >= numWords) {
+			throw new IndexOutOfBoundsException("No word has the ID " + id);
+		}
+
+		if (words != null) {
+			return words[id];
+		}
+
+		int start = wordOffsets.get(id);
+		char[] word = new char[wordOffsets.get(id + 1) - start];
+		chars.get(start, word);
+
+		return new String(word);
+	}
+
+	/**
+	 * Appends the word, copying the characters of a mapped model straight from the buffer instead of creating a String.
+	 */
+	@Override
+	public void appendWord(int id, StringBuilder out) {
+		if (id < 0 || id >= numWords) {
+			throw new IndexOutOfBoundsException("No word has the ID " + id);
+		}
+
+		if (words != null) {
+			out.append(words[id]);
+			return;
+		}
+
+		int end = wordOffsets.get(id + 1);
+		for (int i = wordOffsets.get(id); i < end; i++) {
+			out.append(chars.get(i));
+		}
+	}
+
+	@Override
+	public int getTokenFlags(int id) {
+		if (id < 0 || id >= numWords) {
+			throw new IndexOutOfBoundsException("No word has the ID " + id);
+		}
+
+		return (flags.get(id) & 0xFF) >>> TOKEN_FLAGS_SHIFT;
+	}
+
+	@Override
+	public int idLimit() {
+		return numWords;
+	}
+
+	@Override
+	public int size() {
+		return numChains;
+	}
+
+	@Override
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Starts the version of this model after the version of the model it replaces, so the version never goes back.
+	 * This must be called before the model is published to other threads.
+	 * @param previous - the version of the replaced model
+	 */
+	void continueVersion(long previous) {
+		version = previous + 1;
+	}
+
+	@Override
+	public int vocabularySize() {
+		return numWords;
+	}
+
+	@Override
+	public long estimateBytes() {
+		long ints = (long) wordOffsets.capacity() + hashTable.capacity() + occurrences.capacity() + rowOffsets.capacity()
+				+ successors.capacity() + cumulative.capacity() + childOffsets.capacity() + childKeys.capacity()
+				+ childNodes.capacity() + stateOffsets.capacity() + nodeStates.capacity() + nodeCumulative.capacity()
+				+ capitals.capacity() + startIds.capacity() + foldTable.capacity() + foldOffsets.capacity() + foldIds.capacity();
+		long longs = (long) wordCumulative.capacity() + startCumulative.capacity();
+
+		return HEADER_SIZE + 4 * ints + 8 * longs + 2L * chars.capacity() + flags.capacity() + wordBytes;
+	}
+
+	@Override
+	public boolean hasChain(int id) {
+		return id >= 0 && id < numWords && (flags.get(id) & HAS_CHAIN) != 0;
+	}
+
+	@Override
+	public boolean isCapital(int id) {
+		return id >= 0 && id < numWords && (flags.get(id) & CAPITALIZED) != 0;
+	}
+
+	@Override
+	public int sampleCapital(RandomGenerator random) {
+		int numCapitals = capitals.limit();
+		return numCapitals == 0 ? -1 : capitals.get(random.nextInt(numCapitals));
+	}
+
+	@Override
+	public int sampleSentenceStart(RandomGenerator random) {
+		int numStartIds = startIds.limit();
+
+		if (numStartIds == 0) {
+			return -1;
+		}
+
+		long target = random.nextLong(startCumulative.get(numStartIds - 1));
+		int low = 0,
+			high = numStartIds - 1;
+
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+
+			if (startCumulative.get(middle) > target) {
+				high = middle;
+			}
+			else {
+				low = middle + 1;
+			}
+		}
+
+		return startIds.get(low);
+	}
+
+	@Override
+	public int sampleCaseFolded(String word, RandomGenerator random) {
+		int group = getFoldGroup(word);
+
+		if (group < 0) {
+			return -1;
+		}
+
+		int start = foldOffsets.get(group),
+			end = foldOffsets.get(group + 1);
+		int chosen = foldIds.get(start);
+
+		// Chooses one of the matching chains in proportion to its occurrences, the same as if their states were added together
+		if (end - start > 1) {
+			long total = 0;
+			for (int i = start; i < end; i++) {
+				total += Math.max(1, occurrences.get(foldIds.get(i)));
+			}
+
+			long target = random.nextLong(total);
+			for (int i = start; i < end; i++) {
+				target -= Math.max(1, occurrences.get(foldIds.get(i)));
+
+				if (target < 0) {
+					chosen = foldIds.get(i);
+					break;
+				}
+			}
+		}
+
+		return sampleState(chosen, random);
+	}
+
+	@Override
+	public int sampleState(int id, RandomGenerator random) {
+		if (!hasChain(id)) {
+			return -1;
+		}
+
+		return sampleRow(successors, cumulative, rowOffsets.get(id), rowOffsets.get(id + 1), random);
+	}
+
+	@Override
+	public int sampleContext(int[] history, int length, RandomGenerator random) {
+		if (numNodes == 0) {
+			return -1;
+		}
+
+		int node = 0,
+			longest = -1;
+		int depth = Math.min(length, order);
+
+		for (int k = 1; k <= depth; k++) {
+			node = findChild(node, history[length - k]);
+
+			// Backs off to the longest context that has been seen
+			if (node < 0) {
+				break;
+			}
+
+			if (k >= 2 && stateOffsets.get(node) != stateOffsets.get(node + 1)) {
+				longest = node;
+			}
+		}
+
+		if (longest < 0) {
+			return -1;
+		}
+
+		return sampleRow(nodeStates, nodeCumulative, stateOffsets.get(longest), stateOffsets.get(longest + 1), random);
+	}
+
+	/**
+	 * Finds the child of a node of the trie for the word with a binary search.
+	 * @param node - the index of the node
+	 * @param id - the ID of the word before the node's context
+	 * @return the index of the child, or -1 if there is none
+	 */
+	private int findChild(int node, int id) {
+		int low = childOffsets.get(node),
+			high = childOffsets.get(node + 1) - 1;
+
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int key = childKeys.get(middle);
+
+			if (key < id) {
+				low = middle + 1;
+			}
+			else if (key > id) {
+				high = middle - 1;
+			}
+			else {
+				return childNodes.get(middle);
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Chooses one of the states in a row, where the count of each state affects the chance of it being chosen.
+	 * @param ids - the IDs of the states
+	 * @param totals - the running totals of the counts of the states
+	 * @param start - the index of the first state of the row
+	 * @param end - one more than the index of the last state of the row
+	 * @param random - the source of randomness to use
+	 * @return the ID of the chosen state, or -1 if the row is empty
+	 */
+	private static int sampleRow(IntBuffer ids, IntBuffer totals, int start, int end, RandomGenerator random) {
+		if (start == end) {
+			return -1;
+		}
+
+		int target = random.nextInt(totals.get(end - 1));
+
+		// The most common states come first, so a short scan usually stops after a step or two
+		if (end - start <= LINEAR_SEARCH_LIMIT) {
+			int i = start;
+
+			while (totals.get(i) <= target) {
+				i++;
+			}
+
+			return ids.get(i);
+		}
+
+		int low = start,
+			high = end - 1;
+
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+
+			if (totals.get(middle) > target) {
+				high = middle;
+			}
+			else {
+				low = middle + 1;
+			}
+		}
+
+		return ids.get(low);
+	}
+
+	@Override
+	public int sampleWord(RandomGenerator random) {
+		long target = random.nextLong(wordCumulative.get(numWords - 1));
+		int low = 0,
+			high = numWords - 1;
+
+		// Words without a chain have the same running total as the word before them, so they are never found
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+
+			if (wordCumulative.get(middle) > target) {
+				high = middle;
+			}
+			else {
+				low = middle + 1;
+			}
+		}
+
+		return low;
+	}
+
+	/**
+	 * Copies the chain out of the model into a chain with its own vocabulary, since the model itself cannot be changed.
+	 */
+	@Override
+	public MarkovChain getChain(int id) {
+		if (!hasChain(id)) {
+			return null;
+		}
+
+		Vocabulary vocabulary = new Vocabulary();
+		MarkovChain mc = new MarkovChain(vocabulary.intern(getWord(id)), vocabulary, isCapital(id));
+		int start = rowOffsets.get(id),
+			end = rowOffsets.get(id + 1);
+
+		for (int i = start; i < end; i++) {
+			mc.addState(vocabulary.intern(getWord(successors.get(i))), cumulative.get(i) - (i > start ? cumulative.get(i - 1) : 0));
+		}
+
+		mc.addOccurrences(occurrences.get(id));
+
+		return mc;
+	}
+
+	@Override
+	public long numberOfEdges() {
+		return rowOffsets.get(numWords);
+	}
+
+	@Override
+	public long numberOfContexts() {
+		// Every node other than the root and its children is a context of two or more words
+		return numNodes == 0 ? 0 : numNodes - 1 - (childOffsets.get(1) - childOffsets.get(0));
+	}
+
+	/**
+	 * Writes the arrays of the model to the file, replacing it if it already exists.
+	 * The model is written to a temporary file first and then moved into place, so a process that has the old file
+	 * mapped keeps reading the old model, and no process ever maps a half written one.
+	 * @param file - the path of the file to write
+	 * @throws IOException if the file could not be written
+	 */
+	void write(Path file) throws IOException {
+		Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+			out.putInt(MAGIC);
+			out.putInt(FORMAT_VERSION);
+			out.putInt(order);
+			out.putInt(numWords);
+			out.putInt(numChains);
+			out.putInt(hashTable.limit());
+			out.putLong(chars.limit());
+			out.putLong(successors.limit());
+			out.putLong(numNodes);
+			out.putLong(childKeys.limit());
+			out.putLong(nodeStates.limit());
+			out.putInt(capitals.limit());
+			out.putInt(startIds.limit());
+			out.putLong(foldOffsets.limit() - 1);
+
+			long position = HEADER_SIZE;
+			position = writeInts(channel, out, wordOffsets, position);
+			position = writeChars(channel, out, chars, position);
+			position = writeInts(channel, out, hashTable, position);
+			position = writeBytes(channel, out, flags, position);
+			position = writeInts(channel, out, occurrences, position);
+			position = writeInts(channel, out, rowOffsets, position);
+			position = writeInts(channel, out, successors, position);
+			position = writeInts(channel, out, cumulative, position);
+			position = writeLongs(channel, out, wordCumulative, position);
+			position = writeInts(channel, out, childOffsets, position);
+			position = writeInts(channel, out, childKeys, position);
+			position = writeInts(channel, out, childNodes, position);
+			position = writeInts(channel, out, stateOffsets, position);
+			position = writeInts(channel, out, nodeStates, position);
+			position = writeInts(channel, out, nodeCumulative, position);
+			position = writeInts(channel, out, capitals, position);
+			position = writeInts(channel, out, startIds, position);
+			position = writeLongs(channel, out, startCumulative, position);
+			position = writeInts(channel, out, foldTable, position);
+			position = writeInts(channel, out, foldOffsets, position);
+			writeInts(channel, out, foldIds, position);
+
+			flush(channel, out);
+			channel.force(false);
+		}
+
+		Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Writes a section of ints, followed by the padding that aligns the next section.
+	 * @return a long containing the position in the file after the section
+	 */
+	private static long writeInts(FileChannel channel, ByteBuffer out, IntBuffer values, long position) throws IOException {
+		for (int i = 0; i < values.limit(); i++) {
+			if (out.remaining() < 4) {
+				flush(channel, out);
+			}
+
+			out.putInt(values.get(i));
+		}
+
+		return pad(channel, out, position + values.limit() * 4L);
+	}
+
+	/**
+	 * Writes a section of chars, followed by the padding that aligns the next section.
+	 * @return a long containing the position in the file after the section
+	 */
+	private static long writeChars(FileChannel channel, ByteBuffer out, CharBuffer values, long position) throws IOException {
+		for (int i = 0; i < values.limit(); i++) {
+			if (out.remaining() < 2) {
+				flush(channel, out);
+			}
+
+			out.putChar(values.get(i));
+		}
+
+		return pad(channel, out, position + values.limit() * 2L);
+	}
+
+	/**
+	 * Writes a section of bytes, followed by the padding that aligns the next section.
+	 * @return a long containing the position in the file after the section
+	 */
+	private static long writeBytes(FileChannel channel, ByteBuffer out, ByteBuffer values, long position) throws IOException {
+		for (int i = 0; i < values.limit(); i++) {
+			if (!out.hasRemaining()) {
+				flush(channel, out);
+			}
+
+			out.put(values.get(i));
+		}
+
+		return pad(channel, out, position + values.limit());
+	}
+
+	/**
+	 * Writes a section of longs, followed by the padding that aligns the next section.
+	 * @return a long containing the position in the file after the section
+	 */
+	private static long writeLongs(FileChannel channel, ByteBuffer out, LongBuffer values, long position) throws IOException {
+		for (int i = 0; i < values.limit(); i++) {
+			if (out.remaining() < 8) {
+				flush(channel, out);
+			}
+
+			out.putLong(values.get(i));
+		}
+
+		return pad(channel, out, position + values.limit() * 8L);
+	}
+
+	/**
+	 * Writes zeros until the position is a multiple of eight, so that every section starts on an aligned address.
+	 * @return a long containing the aligned position
+	 */
+	private static long pad(FileChannel channel, ByteBuffer out, long position) throws IOException {
+		long aligned = align(position);
+
+		for (long i = position; i < aligned; i++) {
+			if (!out.hasRemaining()) {
+				flush(channel, out);
+			}
+
+			out.put((byte) 0);
+		}
+
+		return aligned;
+	}
+
+	/**
+	 * Writes the buffered bytes to the channel and empties the buffer.
+	 */
+	private static void flush(FileChannel channel, ByteBuffer out) throws IOException {
+		out.flip();
+
+		while (out.hasRemaining()) {
+			channel.write(out);
+		}
+
+		out.clear();
+	}
+
+	/**
+	 * Rounds the position up to the next multiple of eight.
+	 * @param position - the position in the file
+	 * @return a long containing the aligned position
+	 */
+	private static long align(long position) {
+		return (position + 7) & ~7L;
+	}
+
+	/**
+	 * Memory maps a model written by write(). Only the header is read; the arrays are paged in by the operating system
+	 * as they are used, so the time this takes does not depend on the size of the model. The contents of the arrays are
+	 * trusted, since checking them would mean reading every page of the file.
+	 * @param file - the path of the file
+	 * @return the model
+	 * @throws IOException if the file could not be mapped, or its header does not describe a model of its size
+	 */
+	static CompactModel map(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+			while (header.hasRemaining()) {
+				if (channel.read(header) < 0) {
+					throw new IOException("Not a mapped model: " + file);
+				}
+			}
+
+			header.flip();
+
+			if (header.getInt() != MAGIC) {
+				throw new IOException("Not a mapped model: " + file);
+			}
+
+			int version = header.getInt();
+			if (version != FORMAT_VERSION) {
+				throw new IOException("Unsupported mapped model version " + version + " in " + file);
+			}
+
+			int order = header.getInt(),
+				numWords = header.getInt(),
+				numChains = header.getInt(),
+				hashCapacity = header.getInt();
+			long numChars = header.getLong(),
+				 numEdges = header.getLong(),
+				 numNodes = header.getLong(),
+				 numChildEdges = header.getLong(),
+				 numNodeStates = header.getLong();
+			int numCapitals = header.getInt(),
+				numStartIds = header.getInt();
+			long numFoldGroups = header.getLong();
+
+			if (order < 1 || numWords < 0 || numChains < 0 || numChains > numWords || hashCapacity != tableSize(numWords)
+					|| numCapitals < 0 || numCapitals > numChains || numStartIds < 0 || numStartIds > numWords
+					|| numFoldGroups < 0 || numFoldGroups > numChains
+					|| !fitsInt(numChars) || !fitsInt(numEdges) || !fitsInt(numNodes + 1) || !fitsInt(numChildEdges) || !fitsInt(numNodeStates)) {
+				throw new IOException("The header of the mapped model is corrupted: " + file);
+			}
+
+			long[] sizes = {
+				(numWords + 1) * 4L, numChars * 2, hashCapacity * 4L, numWords, numWords * 4L, (numWords + 1) * 4L, numEdges * 4,
+				numEdges * 4, numWords * 8L, (numNodes + 1) * 4, numChildEdges * 4, numChildEdges * 4, (numNodes + 1) * 4,
+				numNodeStates * 4, numNodeStates * 4, numCapitals * 4L, numStartIds * 4L, numStartIds * 8L,
+				tableSize((int) numFoldGroups) * 4L, (numFoldGroups + 1) * 4, numChains * 4L
+			};
+			ByteBuffer[] sections = new ByteBuffer[NUM_SECTIONS];
+			long position = HEADER_SIZE;
+
+			for (int i = 0; i < NUM_SECTIONS; i++) {
+				if (sizes[i] > Integer.MAX_VALUE) {
+					throw new IOException("The mapped model has a section larger than 2 GB: " + file);
+				}
+
+				position = align(position);
+				if (position + sizes[i] > channel.size()) {
+					throw new IOException("The mapped model is truncated: " + file);
+				}
+
+				sections[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, sizes[i]).order(ByteOrder.LITTLE_ENDIAN);
+				position += sizes[i];
+			}
+
+			if (align(position) != channel.size()) {
+				throw new IOException("The mapped model does not match the size in its header: " + file);
+			}
+
+			return new CompactModel(order, numChains, sections[0].asIntBuffer(), sections[1].asCharBuffer(), sections[2].asIntBuffer(),
+					sections[3], sections[4].asIntBuffer(), sections[5].asIntBuffer(), sections[6].asIntBuffer(), sections[7].asIntBuffer(),
+					sections[8].asLongBuffer(), sections[9].asIntBuffer(), sections[10].asIntBuffer(), sections[11].asIntBuffer(),
+					sections[12].asIntBuffer(), sections[13].asIntBuffer(), sections[14].asIntBuffer(), sections[15].asIntBuffer(),
+					sections[16].asIntBuffer(), sections[17].asLongBuffer(), sections[18].asIntBuffer(), sections[19].asIntBuffer(),
+					sections[20].asIntBuffer(), null, 0);
+		}
+	}
+
+	/**
+	 * Checks that a count from the header can be used as an index into an array.
+	 * @param count - the count to check
+	 * @return true if the count is between zero and the largest int, false otherwise
+	 */
+	private static boolean fitsInt(long count) {
+		return count >= 0 && count <= Integer.MAX_VALUE;
+	}
+}
@@ -0,0 +1,648 @@
+package model;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+import java.util.random.RandomGenerator;
+
+/**
+ * Stores the possible states that follow contexts of more than one word, for message generators
+ * of an order higher than one. A context is the sequence of words that came right before a state.
+ * Contexts are kept in a trie of word IDs that starts from the most recent word and goes backward,
+ * so every context shares its nodes with the shorter contexts that it ends with. This means that
+ * finding the longest known context only takes one step per word, and that backing off to a shorter
+ * context when a long one has never been seen is free.
+ * Contexts of a single word are not stored here, since those are the markov chains themselves.
+ * @author Richie Ren
+ *
+ */
+class ContextTrie {
+
+	private final int order;
+	private final Node root;
+
+	/**
+	 * Creates a trie for contexts of up to the given number of words.
+	 * @param order - the maximum number of words in a context
+	 */
+	ContextTrie(int order) {
+		this.order = order;
+		this.root = new Node();
+	}
+
+	/**
+	 * Counts the state as following every context of two or more words that ends at the end of the given words.
+	 * @param context - the IDs of the words right before the state, oldest first
+	 * @param length - the number of IDs to use from the start of the array; only the last order of them are used
+	 * @param state - the ID of the word that followed the context
+	 */
+	void add(int[] context, int length, int state) {
+		add(context, length, state, 1);
+	}
+
+	/**
+	 * Increases the count of the state following every context of two or more words that ends at the end of the given words, 
+	 * such as by the number of times it is estimated to have occurred before it was added.
+	 * @param context - the IDs of the words right before the state, oldest first
+	 * @param length - the number of IDs to use from the start of the array; only the last order of them are used
+	 * @param state - the ID of the word that followed the context
+	 * @param count - the amount to add
+	 */
+	void add(int[] context, int length, int state, int count) {
+		Node node = root;
+		int depth = Math.min(length, order);
+
+		for (int k = 1; k <= depth; k++) {
+			node = node.getOrCreateChild(context[length - k]);
+
+			if (k >= 2) {
+				node.addState(state, count);
+			}
+		}
+	}
+
+	/**
+	 * Counts the state the same way as add(), but only if it has already followed the whole of the given context.
+	 * @param context - the IDs of the words right before the state, oldest first; unknown words are negative
+	 * @param length - the number of IDs to use from the start of the array, which must be at least two
+	 * @param state - the ID of the word that followed the context
+	 * @return true if the state was counted, false if it has not followed the context yet
+	 */
+	boolean addIfPresent(int[] context, int length, int state) {
+		Node node = root;
+		int depth = Math.min(length, order);
+
+		for (int k = 1; k <= depth && node != null; k++) {
+			node = node.getChild(context[length - k]);
+		}
+
+		if (node == null || node.getStateCount(state) == 0) {
+			return false;
+		}
+
+		add(context, length, state);
+		return true;
+	}
+
+	/**
+	 * Chooses a state that follows the longest stored context that the given words end with.
+	 * @param history - the IDs of the words generated so far, oldest first; unknown words are negative
+	 * @param length - the number of IDs to use from the start of the array
+	 * @param random - the source of randomness to use
+	 * @return the ID of the chosen state, or -1 if no context of two or more words with any states is known
+	 */
+	int sample(int[] history, int length, RandomGenerator random) {
+		Node node = root;
+		Node longest = null;
+		int depth = Math.min(length, order);
+
+		for (int k = 1; k <= depth; k++) {
+			node = node.getChild(history[length - k]);
+
+			// Backs off to the longest context that has been seen
+			if (node == null) {
+				break;
+			}
+
+			// A context can be kept only for the longer contexts below it, in which case it has no states to choose from
+			if (k >= 2 && node.hasStates()) {
+				longest = node;
+			}
+		}
+
+		return longest == null ? -1 : longest.sample(random);
+	}
+
+	/**
+	 * Increases the count of the state following a single context by the given amount, such as when a trie is copied out of another layout.
+	 * @param path - the IDs of the words of the context, most recent first, which is the order they are found in the trie
+	 * @param length - the number of words in the context, which must be between two and the order
+	 * @param state - the ID of the word that followed the context
+	 * @param count - the amount to add
+	 */
+	void addPath(int[] path, int length, int state, int count) {
+		Node node = root;
+
+		for (int k = 0; k < length; k++) {
+			node = node.getOrCreateChild(path[k]);
+		}
+
+		node.addState(state, count);
+	}
+
+	/**
+	 * Lays the trie out breadth first in flat arrays, where the children of each node have consecutive indices.
+	 * Node zero is the root, the children of each node are sorted by word ID, and the states of each node are
+	 * sorted from the most to the least common along with their running totals. Any word past the limit is left out.
+	 * @param idLimit - one more than the highest word ID to include
+	 * @return the arrays of the trie
+	 */
+	Layout layout(int idLimit) {
+		ArrayList<Node> nodes = new ArrayList<>();
+		IntList childOffsets = new IntList(),
+				childKeys = new IntList(),
+				childNodes = new IntList(),
+				stateOffsets = new IntList(),
+				states = new IntList(),
+				cumulative = new IntList();
+
+		nodes.add(root);
+		childOffsets.add(0);
+		stateOffsets.add(0);
+
+		for (int i = 0; i < nodes.size(); i++) {
+			Node node = nodes.get(i);
+
+			synchronized (node) {
+				if (node.states != null) {
+					CompactModel.addStates(node.states, idLimit, states, cumulative);
+				}
+
+				// Sorts the children by word ID so that they can be found with a binary search
+				long[] packed = new long[node.numChildren];
+				int n = 0;
+				for (int slot = 0; node.childKeys != null && slot < node.childKeys.length; slot++) {
+					if (node.childKeys[slot] != Node.EMPTY && node.childKeys[slot] < idLimit) {
+						packed[n++] = ((long) node.childKeys[slot] << 32) | slot;
+					}
+				}
+				Arrays.sort(packed, 0, n);
+
+				for (int j = 0; j < n; j++) {
+					childKeys.add((int) (packed[j] >>> 32));
+					childNodes.add(nodes.size());
+					nodes.add(node.children[(int) packed[j]]);
+				}
+			}
+
+			childOffsets.add(childKeys.size());
+			stateOffsets.add(states.size());
+		}
+
+		return new Layout(childOffsets.toArray(), childKeys.toArray(), childNodes.toArray(), stateOffsets.toArray(), states.toArray(), cumulative.toArray());
+	}
+
+	/**
+	 * Adds every context and count of another trie to this one.
+	 * @param other - the trie to add the counts of, which should not be changed while it is being merged
+	 * @param translation - maps each word ID of the other trie to the ID of the same word in this one
+	 */
+	void merge(ContextTrie other, int[] translation) {
+		root.merge(other.root, translation);
+	}
+
+	/**
+	 * Adds the count of every state of every context to the end of the list.
+	 * @param counts - the list to add the counts to
+	 */
+	void addStateCounts(IntList counts) {
+		root.addStateCounts(counts);
+	}
+
+	/**
+	 * Marks every state of a context whose count the given test keeps, along with every word of that context.
+	 * @param keep - tests whether a state should be marked by its count
+	 * @param marks - the array to set to true at the ID of each of those words
+	 */
+	void mark(IntPredicate keep, boolean[] marks) {
+		root.mark(keep, marks);
+	}
+
+	/**
+	 * Adds the states of another trie whose counts the given test keeps to this trie, which should be empty, testing them 
+	 * in the same order as mark() does and leaving out any context that is left with no states and any word that is left out.
+	 * @param other - the trie to copy, which should not be changed while it is being copied
+	 * @param translation - maps each word ID of the other trie to the ID of the same word in this one, or to -1 if the word is left out
+	 * @param keep - tests whether a state should be added by its count
+	 */
+	void addAll(ContextTrie other, int[] translation, IntPredicate keep) {
+		root.copy(other.root, translation, keep);
+	}
+
+	/**
+	 * Writes every context and its states to a snapshot, leaving out any word past the limit.
+	 * @param out - the snapshot to write to
+	 * @param idLimit - one more than the highest word ID that is in the snapshot's vocabulary
+	 * @throws IOException if the snapshot could not be written
+	 */
+	void write(ModelSnapshot.Output out, int idLimit) throws IOException {
+		root.write(out, idLimit);
+	}
+
+	/**
+	 * Reads the contexts written by write() into this trie.
+	 * @param in - the snapshot to read from
+	 * @param idLimit - the number of words in the snapshot's vocabulary
+	 * @throws IOException if the snapshot could not be read or is corrupted
+	 */
+	void read(ModelSnapshot.Input in, int idLimit) throws IOException {
+		root.read(in, idLimit, order);
+	}
+
+	/**
+	 * Returns the number of contexts of two or more words that are stored.
+	 * @return a long containing the number of contexts
+	 */
+	long numberOfContexts() {
+		synchronized (root) {
+			return root.countDescendants() - root.numChildren;
+		}
+	}
+
+	/**
+	 * Estimates the memory that every node of the trie takes up, with its states and their alias tables.
+	 * @return a long containing the size in bytes
+	 */
+	long estimateBytes() {
+		return MemoryEstimate.object(4 + MemoryEstimate.REFERENCE) + root.estimateBytes();
+	}
+
+	/**
+	 * The flat arrays of a trie laid out breadth first.
+	 * The children of node i are at the indices from childOffsets[i] to childOffsets[i + 1] of childKeys and childNodes,
+	 * and its states are at the indices from stateOffsets[i] to stateOffsets[i + 1] of states and cumulative.
+	 * @author Richie Ren
+	 *
+	 */
+	static class Layout {
+		final int[] childOffsets, childKeys, childNodes;
+		final int[] stateOffsets, states, cumulative;
+
+		Layout(int[] childOffsets, int[] childKeys, int[] childNodes, int[] stateOffsets, int[] states, int[] cumulative) {
+			this.childOffsets = childOffsets;
+			this.childKeys = childKeys;
+			this.childNodes = childNodes;
+			this.stateOffsets = stateOffsets;
+			this.states = states;
+			this.cumulative = cumulative;
+		}
+	}
+
+	/**
+	 * A context in the trie, which holds the states that followed it and the longer contexts that end with it.
+	 * The children are kept in an open addressing table keyed by the word ID that comes before this context.
+	 * @author Richie Ren
+	 *
+	 */
+	private static class Node {
+
+		private static final int EMPTY = -1;
+
+		private int[] childKeys;
+		private Node[] children;
+		private int numChildren;
+		private IntCountMap states;
+		private volatile StateSelection selection;
+
+		/**
+		 * Finds the child for the word, or returns null if the context has never been seen.
+		 * @param id - the ID of the word before this context
+		 * @return the child, or null if there is none
+		 */
+		synchronized Node getChild(int id) {
+			if (childKeys == null || id < 0) {
+				return null;
+			}
+
+			int slot = findSlot(id);
+			return childKeys[slot] == id ? children[slot] : null;
+		}
+
+		/**
+		 * Finds the child for the word, adding it if the context has never been seen.
+		 * @param id - the ID of the word before this context
+		 * @return the child
+		 */
+		synchronized Node getOrCreateChild(int id) {
+			if (childKeys != null) {
+				int slot = findSlot(id);
+
+				if (childKeys[slot] == id) {
+					return children[slot];
+				}
+			}
+
+			return insertChild(id, new Node());
+		}
+
+		/**
+		 * Adds a child for a word that does not have one yet.
+		 * @param id - the ID of the word before this context
+		 * @param child - the child to add
+		 * @return the child
+		 */
+		private Node insertChild(int id, Node child) {
+			if (childKeys == null) {
+				childKeys = new int[2];
+				children = new Node[2];
+				Arrays.fill(childKeys, EMPTY);
+			}
+
+			// Keeps the load factor at or under three quarters
+			if ((numChildren + 1) * 4 > childKeys.length * 3) {
+				rehash(childKeys.length * 2);
+			}
+
+			int slot = findSlot(id);
+			childKeys[slot] = id;
+			children[slot] = child;
+			numChildren++;
+
+			return child;
+		}
+
+		/**
+		 * Returns the number of times the state has followed this context.
+		 * @param state - the ID of the word that followed
+		 * @return an int containing the count, or zero if it has never followed
+		 */
+		synchronized int getStateCount(int state) {
+			return states == null ? 0 : states.get(state);
+		}
+
+		/**
+		 * Indicates whether any state has followed this context, rather than only the longer contexts below it.
+		 * @return true if the context has states, false otherwise
+		 */
+		synchronized boolean hasStates() {
+			return states != null && !states.isEmpty();
+		}
+
+		/**
+		 * Counts the state as following this context.
+		 * @param state - the ID of the word that followed
+		 */
+		synchronized void addState(int state) {
+			addState(state, 1);
+		}
+
+		/**
+		 * Increases the count of the state following this context by the given amount.
+		 * @param state - the ID of the word that followed
+		 * @param count - the amount to add
+		 */
+		synchronized void addState(int state, int count) {
+			if (states == null) {
+				states = new IntCountMap();
+			}
+
+			states.add(state, count);
+			selection = null;
+		}
+
+		/**
+		 * Chooses one of the states that followed this context.
+		 * @param random - the source of randomness to use
+		 * @return the ID of the chosen state, or -1 if there are none
+		 */
+		int sample(RandomGenerator random) {
+			StateSelection current = selection;
+
+			if (current == null) {
+				synchronized (this) {
+					if (selection == null) {
+						selection = StateSelection.of(states);
+					}
+
+					current = selection;
+				}
+			}
+
+			return current.sample(random);
+		}
+
+		/**
+		 * Adds the states and children of another node, translating their word IDs.
+		 * @param other - the node to add
+		 * @param translation - maps each word ID of the other node to the ID of the same word in this one
+		 */
+		void merge(Node other, int[] translation) {
+			if (other.states != null) {
+				synchronized (this) {
+					if (states == null) {
+						states = new IntCountMap(other.states.size());
+					}
+
+					states.addAll(other.states, translation);
+					selection = null;
+				}
+			}
+
+			if (other.childKeys != null) {
+				for (int slot = 0; slot < other.childKeys.length; slot++) {
+					if (other.childKeys[slot] != EMPTY) {
+						getOrCreateChild(translation[other.childKeys[slot]]).merge(other.children[slot], translation);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Adds the count of every state of this context and every context below it to the end of the list.
+		 * @param counts - the list to add the counts to
+		 */
+		synchronized void addStateCounts(IntList counts) {
+			if (states != null) {
+				states.addCountsTo(counts);
+			}
+
+			for (int slot = 0; childKeys != null && slot < childKeys.length; slot++) {
+				if (childKeys[slot] != EMPTY) {
+					children[slot].addStateCounts(counts);
+				}
+			}
+		}
+
+		/**
+		 * Marks the states of this context and every context below it whose counts the test keeps, 
+		 * along with the word of each child that has any such state below it.
+		 * @param keep - tests whether a state should be marked by its count
+		 * @param marks - the array to set to true at the ID of each of those words
+		 * @return true if any state was marked at or below this context
+		 */
+		synchronized boolean mark(IntPredicate keep, boolean[] marks) {
+			boolean marked = states != null && states.mark(keep, marks) > 0;
+
+			for (int slot = 0; childKeys != null && slot < childKeys.length; slot++) {
+				if (childKeys[slot] != EMPTY && children[slot].mark(keep, marks)) {
+					marks[childKeys[slot]] = true;
+					marked = true;
+				}
+			}
+
+			return marked;
+		}
+
+		/**
+		 * Adds the states of another node whose counts the test keeps to this one, which should be empty, 
+		 * along with a copy of every child that is left with any states below it.
+		 * @param other - the node to copy
+		 * @param translation - maps each word ID of the other node to the ID of the same word in this one, or to -1 if the word is left out
+		 * @param keep - tests whether a state should be added by its count
+		 * @return true if any state was added at or below this node
+		 */
+		synchronized boolean copy(Node other, int[] translation, IntPredicate keep) {
+			synchronized (other) {
+				if (other.states != null) {
+					IntCountMap kept = new IntCountMap();
+
+					if (kept.addAll(other.states, translation, keep) > 0) {
+						states = kept;
+					}
+				}
+
+				for (int slot = 0; other.childKeys != null && slot < other.childKeys.length; slot++) {
+					int key = other.childKeys[slot];
+					Node child = new Node();
+
+					// A child whose word is left out had nothing marked below it, so skipping it tests the counts in the same order as mark()
+					if (key != EMPTY && translation[key] >= 0 && child.copy(other.children[slot], translation, keep)) {
+						insertChild(translation[key], child);
+					}
+				}
+			}
+
+			return states != null || numChildren > 0;
+		}
+
+		/**
+		 * Writes the states of this context, followed by each of its children.
+		 * @param out - the snapshot to write to
+		 * @param idLimit - one more than the highest word ID to write
+		 * @throws IOException if the snapshot could not be written
+		 */
+		synchronized void write(ModelSnapshot.Output out, int idLimit) throws IOException {
+			ModelSnapshot.writeStates(out, states == null ? new IntCountMap() : states, idLimit);
+
+			int n = 0;
+			for (int slot = 0; childKeys != null && slot < childKeys.length; slot++) {
+				if (childKeys[slot] != EMPTY && childKeys[slot] < idLimit) {
+					n++;
+				}
+			}
+
+			out.writeVarint(n);
+			for (int slot = 0; n > 0 && slot < childKeys.length; slot++) {
+				if (childKeys[slot] != EMPTY && childKeys[slot] < idLimit) {
+					out.writeVarint(childKeys[slot]);
+					children[slot].write(out, idLimit);
+				}
+			}
+		}
+
+		/**
+		 * Reads the states and children written by write() into this node.
+		 * @param in - the snapshot to read from
+		 * @param idLimit - the number of words in the snapshot's vocabulary
+		 * @param remaining - the number of words that longer contexts can still add before reaching the order
+		 * @throws IOException if the snapshot could not be read or is corrupted
+		 */
+		void read(ModelSnapshot.Input in, int idLimit, int remaining) throws IOException {
+			synchronized (this) {
+				states = ModelSnapshot.readStates(in, states, idLimit);
+				selection = null;
+			}
+
+			int n = in.readCount(idLimit);
+
+			if (n > 0 && remaining == 0) {
+				throw ModelSnapshot.corrupt();
+			}
+
+			for (int i = 0; i < n; i++) {
+				int id = in.readVarint();
+
+				if (id < 0 || id >= idLimit) {
+					throw ModelSnapshot.corrupt();
+				}
+
+				getOrCreateChild(id).read(in, idLimit, remaining - 1);
+			}
+		}
+
+		/**
+		 * Counts every node below this one.
+		 * @return a long containing the number of nodes
+		 */
+		synchronized long countDescendants() {
+			long count = 0;
+
+			if (children != null) {
+				for (Node child : children) {
+					if (child != null) {
+						count += 1 + child.countDescendants();
+					}
+				}
+			}
+
+			return count;
+		}
+
+		/**
+		 * Estimates the memory that this node and every node below it take up.
+		 * @return a long containing the size in bytes
+		 */
+		synchronized long estimateBytes() {
+			StateSelection current = selection;
+			long bytes = MemoryEstimate.object(4 * MemoryEstimate.REFERENCE + 4);
+
+			if (states != null) {
+				bytes += states.estimateBytes();
+			}
+
+			if (current != null) {
+				bytes += current.estimateBytes();
+			}
+
+			if (children != null) {
+				bytes += MemoryEstimate.array(childKeys.length, 4) + MemoryEstimate.array(children.length, MemoryEstimate.REFERENCE);
+
+				for (Node child : children) {
+					if (child != null) {
+						bytes += child.estimateBytes();
+					}
+				}
+			}
+
+			return bytes;
+		}
+
+		/**
+		 * Finds the slot that either holds the child for the word or is where it would be placed.
+		 * @param id - the ID of the word
+		 * @return an int containing the index of the slot
+		 */
+		private int findSlot(int id) {
+			int mask = childKeys.length - 1;
+			int slot = Vocabulary.mix(id) & mask;
+
+			while (childKeys[slot] != EMPTY && childKeys[slot] != id) {
+				slot = (slot + 1) & mask;
+			}
+
+			return slot;
+		}
+
+		/**
+		 * Moves every child into tables of the given size.
+		 * @param capacity - the new size of the tables; must be a power of two
+		 */
+		private void rehash(int capacity) {
+			int[] oldKeys = childKeys;
+			Node[] oldChildren = children;
+
+			childKeys = new int[capacity];
+			children = new Node[capacity];
+			Arrays.fill(childKeys, EMPTY);
+
+			for (int slot = 0; slot < oldKeys.length; slot++) {
+				if (oldKeys[slot] != EMPTY) {
+					int newSlot = findSlot(oldKeys[slot]);
+					childKeys[newSlot] = oldKeys[slot];
+					children[newSlot] = oldChildren[slot];
+				}
+			}
+		}
+	}
+}
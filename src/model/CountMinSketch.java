@@ -0,0 +1,147 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Estimates how many times each item has been added, in a fixed amount of memory no matter how many distinct items there are.
+ * Each item is counted in one cell of every row, and its estimate is the lowest of those cells, so an estimate is never below
+ * the true count and is only above it when every row shares a cell with more common items.
+ * Adding an item only raises the cells that are at the current estimate, which keeps the cells shared with rare items lower
+ * than counting every cell would.
+ * Every cell is halved after a fixed number of additions, so that items that were common long ago give way to the ones
+ * that are common now, and a cell can never overflow.
+ * @author Richie Ren
+ *
+ */
+public class CountMinSketch {
+
+	private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+
+	private final int width;
+	private final int depth;
+	private final int[] cells;
+	private final long halvingInterval;
+	private long additions;
+
+	/**
+	 * Creates an empty sketch.
+	 * @param width - the number of cells in each row, which sets how close the estimates are to the true counts
+	 * @param depth - the number of rows, which sets how likely an estimate is to be that close
+	 * @param halvingInterval - the number of additions after which every cell is halved, or zero to never halve them
+	 */
+	public CountMinSketch(int width, int depth, long halvingInterval) {
+		if (width < 1 || depth < 1 || (long) width * depth > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("Invalid size of sketch: " + width + " x " + depth);
+		}
+
+		if (halvingInterval < 0) {
+			throw new IllegalArgumentException("The halving interval cannot be negative: " + halvingInterval);
+		}
+
+		this.width = width;
+		this.depth = depth;
+		this.cells = new int[width * depth];
+		this.halvingInterval = halvingInterval;
+	}
+
+	/**
+	 * Counts one more occurrence of the item.
+	 * @param item - the hash of the item
+	 * @return an int containing the estimate of the item after it was counted
+	 */
+	public synchronized int add(long item) {
+		int estimate = Integer.MAX_VALUE;
+
+		for (int row = 0; row < depth; row++) {
+			estimate = Math.min(estimate, cells[cellOf(item, row)]);
+		}
+
+		if (estimate < Integer.MAX_VALUE) {
+			estimate++;
+		}
+
+		for (int row = 0; row < depth; row++) {
+			int cell = cellOf(item, row);
+			cells[cell] = Math.max(cells[cell], estimate);
+		}
+
+		if (halvingInterval > 0 && ++additions >= halvingInterval) {
+			halve();
+		}
+
+		return estimate;
+	}
+
+	/**
+	 * Estimates how many times the item has been added since the sketch was created or cleared, less the halvings since.
+	 * @param item - the hash of the item
+	 * @return an int containing the estimate, which is never below the true count
+	 */
+	public synchronized int estimate(long item) {
+		int estimate = Integer.MAX_VALUE;
+
+		for (int row = 0; row < depth; row++) {
+			estimate = Math.min(estimate, cells[cellOf(item, row)]);
+		}
+
+		return estimate;
+	}
+
+	/**
+	 * Halves every cell, rounding down, and starts counting toward the next halving again.
+	 */
+	public synchronized void halve() {
+		for (int i = 0; i < cells.length; i++) {
+			cells[i] >>>= 1;
+		}
+
+		additions = 0;
+	}
+
+	/**
+	 * Sets every cell back to zero.
+	 */
+	public synchronized void clear() {
+		Arrays.fill(cells, 0);
+		additions = 0;
+	}
+
+	/**
+	 * Returns the number of cells in each row.
+	 * @return an int containing the width
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Returns the number of rows.
+	 * @return an int containing the depth
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Estimates the memory that the sketch takes up.
+	 * @return a long containing the size in bytes
+	 */
+	public long estimateBytes() {
+		return MemoryEstimate.object(MemoryEstimate.REFERENCE + 4 + 4 + 8 + 8) + MemoryEstimate.array(cells.length, 4);
+	}
+
+	/**
+	 * Finds the cell that the item is counted in within a row, using a different hash for every row.
+	 * @param item - the hash of the item
+	 * @param row - the row
+	 * @return the index of the cell
+	 */
+	private int cellOf(long item, int row) {
+		long h = item + (row + 1) * GOLDEN_RATIO;
+		h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+		h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+		h ^= h >>> 31;
+
+		return row * width + (int) (((h >>> 32) * width) >>> 32);
+	}
+}
@@ -0,0 +1,365 @@
+package model;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Records how long training and generation take for one message generator, and reports them along with the size
+ * of its model as an MBean that can be watched with JConsole or any other JMX client.
+ * Adding input costs nothing extra, since the words are counted by the version of the model, which goes up by one for every word.
+ * Generating a message costs two calls to System.nanoTime() and two counters that threads do not contend on,
+ * which is a small fraction of the time it takes to generate it.
+ * Generation times are kept in a histogram with four buckets for every doubling of the time, so a percentile is reported
+ * as the top of the bucket it falls in and is at most a quarter above the true value.
+ * Estimating the size of the model walks all of it, so the estimate is kept until the version of the model changes,
+ * and a JMX client that polls every few seconds only pays for it after input has been added.
+ * @author Richie Ren
+ *
+ */
+public class GeneratorMetrics implements GeneratorMetricsMXBean {
+
+	// Times below this are counted exactly, one nanosecond per bucket; larger times share their bucket with a quarter of their doubling
+	private static final int EXACT_LIMIT = 8;
+	private static final int NUM_BUCKETS = EXACT_LIMIT + (63 - 3) * 4;
+
+	private final MessageGenerator msgGen;
+	private final LongAdder tokenOffset;
+	private volatile boolean recording;
+	private volatile long stoppedTokens;
+	private final LongAdder ingests;
+	private final LongAdder ingestTokens;
+	private final LongAdder ingestNanos;
+	private volatile long lastIngestTokens;
+	private volatile long lastIngestNanos;
+	private final LongAdder[] buckets;
+	private final LongAdder generationNanos;
+	private final AtomicLong maxGenerationNanos;
+	private volatile SizeEstimate sizeEstimate;
+	private ObjectName name;
+
+	/**
+	 * The estimated size of the model at one version of it.
+	 */
+	private static final class SizeEstimate {
+		final long version;
+		final long bytes;
+
+		SizeEstimate(long version, long bytes) {
+			this.version = version;
+			this.bytes = bytes;
+		}
+	}
+
+	GeneratorMetrics(MessageGenerator msgGen) {
+		this.msgGen = msgGen;
+		tokenOffset = new LongAdder();
+		tokenOffset.add(-msgGen.getVersion());
+		recording = true;
+		ingests = new LongAdder();
+		ingestTokens = new LongAdder();
+		ingestNanos = new LongAdder();
+		buckets = new LongAdder[NUM_BUCKETS];
+		for (int i = 0; i < NUM_BUCKETS; i++) {
+			buckets[i] = new LongAdder();
+		}
+		generationNanos = new LongAdder();
+		maxGenerationNanos = new AtomicLong();
+	}
+
+	/**
+	 * Registers the metrics with the platform MBean server under model:type=MessageGenerator,name=the given name.
+	 * @param name - the name that tells this generator apart from any others
+	 * @return the name the metrics were registered under
+	 * @throws JMException if the metrics could not be registered, such as when the name is already taken
+	 */
+	public synchronized ObjectName register(String name) throws JMException {
+		if (this.name != null) {
+			throw new IllegalStateException("Already registered as " + this.name);
+		}
+
+		ObjectName objectName = new ObjectName("model:type=MessageGenerator,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		this.name = objectName;
+
+		return objectName;
+	}
+
+	/**
+	 * Removes the metrics from the platform MBean server, if they were registered.
+	 * @throws JMException if the metrics could not be removed
+	 */
+	public synchronized void unregister() throws JMException {
+		if (name != null) {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+
+			name = null;
+		}
+	}
+
+	/**
+	 * Records that the model was replaced, such as when the input is cleared or the model is frozen or thawed,
+	 * which moves the version of the model on by one without adding a word.
+	 */
+	void recordReplaced() {
+		tokenOffset.decrement();
+	}
+
+	/**
+	 * Stops counting the words that are added, keeping the number counted so far.
+	 */
+	void stop() {
+		stoppedTokens = getTokensIngested();
+		recording = false;
+	}
+
+	/**
+	 * Records that input was added from a reader, a file or a timeline.
+	 * @param count - the number of words that were added
+	 * @param nanos - the time it took
+	 */
+	void recordIngest(long count, long nanos) {
+		ingests.increment();
+		ingestTokens.add(count);
+		ingestNanos.add(nanos);
+		lastIngestTokens = count;
+		lastIngestNanos = nanos;
+	}
+
+	/**
+	 * Records the time it took to generate a message.
+	 * @param nanos - the time it took
+	 */
+	void recordGeneration(long nanos) {
+		buckets[bucketOf(Math.max(0, nanos))].increment();
+		generationNanos.add(nanos);
+
+		// Only a new maximum has to be written, which soon becomes rare
+		long max = maxGenerationNanos.get();
+		while (nanos > max && !maxGenerationNanos.compareAndSet(max, nanos)) {
+			max = maxGenerationNanos.get();
+		}
+	}
+
+	/**
+	 * Finds the bucket of the histogram that a time falls in.
+	 * @param nanos - the time, which must not be negative
+	 * @return the index of the bucket
+	 */
+	static int bucketOf(long nanos) {
+		if (nanos < EXACT_LIMIT) {
+			return (int) nanos;
+		}
+
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		int quarter = (int) (nanos >>> (exponent - 2)) & 3;
+
+		return EXACT_LIMIT + (exponent - 3) * 4 + quarter;
+	}
+
+	/**
+	 * Returns the highest time that falls in a bucket of the histogram.
+	 * @param bucket - the index of the bucket
+	 * @return a long containing the time in nanoseconds
+	 */
+	static long bucketLimit(int bucket) {
+		if (bucket < EXACT_LIMIT) {
+			return bucket;
+		}
+
+		int exponent = 3 + (bucket - EXACT_LIMIT) / 4;
+		int quarter = (bucket - EXACT_LIMIT) % 4;
+		long lowest = (long) (4 + quarter) << (exponent - 2);
+
+		return lowest + (1L << (exponent - 2)) - 1;
+	}
+
+	@Override
+	public long getTokensIngested() {
+		return recording ? msgGen.getVersion() + tokenOffset.sum() : stoppedTokens;
+	}
+
+	@Override
+	public int getVocabularySize() {
+		return msgGen.getVocabularySize();
+	}
+
+	@Override
+	public int getNumberOfChains() {
+		return msgGen.getNumberOfChains();
+	}
+
+	@Override
+	public long getNumberOfEdges() {
+		return msgGen.getNumberOfEdges();
+	}
+
+	@Override
+	public long getNumberOfContexts() {
+		return msgGen.getNumberOfContexts();
+	}
+
+	@Override
+	public long getEstimatedBytes() {
+		// Reads the version first, so input added during the estimate makes the next call estimate again
+		long version = msgGen.getVersion();
+		SizeEstimate current = sizeEstimate;
+
+		if (current == null || current.version != version) {
+			current = new SizeEstimate(version, msgGen.getEstimatedBytes());
+			sizeEstimate = current;
+		}
+
+		return current.bytes;
+	}
+
+	@Override
+	public long getIngestCount() {
+		return ingests.sum();
+	}
+
+	@Override
+	public long getIngestMillis() {
+		return ingestNanos.sum() / 1000000;
+	}
+
+	@Override
+	public double getIngestTokensPerSecond() {
+		long nanos = ingestNanos.sum();
+		return nanos == 0 ? 0 : ingestTokens.sum() * 1e9 / nanos;
+	}
+
+	@Override
+	public long getLastIngestTokens() {
+		return lastIngestTokens;
+	}
+
+	@Override
+	public long getLastIngestMillis() {
+		return lastIngestNanos / 1000000;
+	}
+
+	@Override
+	public long getMessagesGenerated() {
+		long count = 0;
+
+		for (LongAdder bucket : buckets) {
+			count += bucket.sum();
+		}
+
+		return count;
+	}
+
+	@Override
+	public double getGenerationMeanMicros() {
+		long count = getMessagesGenerated();
+		return count == 0 ? 0 : generationNanos.sum() / 1e3 / count;
+	}
+
+	@Override
+	public double getGenerationP50Micros() {
+		return percentile(0.5) / 1e3;
+	}
+
+	@Override
+	public double getGenerationP99Micros() {
+		return percentile(0.99) / 1e3;
+	}
+
+	@Override
+	public double getGenerationP999Micros() {
+		return percentile(0.999) / 1e3;
+	}
+
+	@Override
+	public double getGenerationMaxMicros() {
+		return maxGenerationNanos.get() / 1e3;
+	}
+
+	/**
+	 * Finds the time that the given share of messages were generated within.
+	 * @param share - the share of messages, between 0 and 1
+	 * @return a long containing the top of the bucket that the percentile falls in, in nanoseconds, or 0 if there are no messages
+	 */
+	private long percentile(double share) {
+		long[] counts = getGenerationLatencyHistogram();
+		long total = 0;
+		for (long count : counts) {
+			total += count;
+		}
+
+		if (total == 0) {
+			return 0;
+		}
+
+		long rank = (long) Math.ceil(share * total), seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+
+			if (seen >= rank) {
+				return Math.min(bucketLimit(i), maxGenerationNanos.get());
+			}
+		}
+
+		return maxGenerationNanos.get();
+	}
+
+	@Override
+	public long[] getGenerationLatencyHistogram() {
+		long[] counts = new long[NUM_BUCKETS];
+
+		for (int i = 0; i < NUM_BUCKETS; i++) {
+			counts[i] = buckets[i].sum();
+		}
+
+		return counts;
+	}
+
+	@Override
+	public long[] getGenerationLatencyBucketsNanos() {
+		long[] limits = new long[NUM_BUCKETS];
+
+		for (int i = 0; i < NUM_BUCKETS; i++) {
+			limits[i] = bucketLimit(i);
+		}
+
+		return limits;
+	}
+
+	@Override
+	public long getFallbackSelections() {
+		return msgGen.getFallbackSelections();
+	}
+
+	@Override
+	public long getCaseFoldedLookups() {
+		return msgGen.getCaseFoldedLookups();
+	}
+
+	@Override
+	public void reset() {
+		tokenOffset.reset();
+		tokenOffset.add(-msgGen.getVersion());
+		stoppedTokens = 0;
+		ingests.reset();
+		ingestTokens.reset();
+		ingestNanos.reset();
+		lastIngestTokens = 0;
+		lastIngestNanos = 0;
+
+		for (LongAdder bucket : buckets) {
+			bucket.reset();
+		}
+
+		generationNanos.reset();
+		maxGenerationNanos.set(0);
+	}
+}
@@ -0,0 +1,120 @@
+package model;
+
+/**
+ * The management interface of GeneratorMetrics, which is what JMX clients such as JConsole see.
+ * Times are in milliseconds for training and microseconds for generation.
+ * @author Richie Ren
+ *
+ */
+public interface GeneratorMetricsMXBean {
+
+	/**
+	 * @return the number of words added as input since metrics were enabled
+	 */
+	long getTokensIngested();
+
+	/**
+	 * @return the number of distinct words in the model
+	 */
+	int getVocabularySize();
+
+	/**
+	 * @return the number of words that have a chain
+	 */
+	int getNumberOfChains();
+
+	/**
+	 * @return the number of distinct pairs of a word and a word that followed it
+	 */
+	long getNumberOfEdges();
+
+	/**
+	 * @return the number of contexts of two or more words
+	 */
+	long getNumberOfContexts();
+
+	/**
+	 * @return an estimate of the memory that the model takes up, in bytes; computing it walks the whole model, which is only done again once the model has changed
+	 */
+	long getEstimatedBytes();
+
+	/**
+	 * @return the number of times that input was added from a reader, a file or a Twitter timeline
+	 */
+	long getIngestCount();
+
+	/**
+	 * @return the total time spent adding input from readers, files and timelines
+	 */
+	long getIngestMillis();
+
+	/**
+	 * @return the number of words added per second over all of the readers, files and timelines
+	 */
+	double getIngestTokensPerSecond();
+
+	/**
+	 * @return the number of words added by the last reader, file or timeline
+	 */
+	long getLastIngestTokens();
+
+	/**
+	 * @return the time taken by the last reader, file or timeline
+	 */
+	long getLastIngestMillis();
+
+	/**
+	 * @return the number of messages generated since metrics were enabled
+	 */
+	long getMessagesGenerated();
+
+	/**
+	 * @return the mean time to generate a message
+	 */
+	double getGenerationMeanMicros();
+
+	/**
+	 * @return the median time to generate a message
+	 */
+	double getGenerationP50Micros();
+
+	/**
+	 * @return the time that 99% of messages were generated within
+	 */
+	double getGenerationP99Micros();
+
+	/**
+	 * @return the time that 99.9% of messages were generated within
+	 */
+	double getGenerationP999Micros();
+
+	/**
+	 * @return the longest time taken to generate a message
+	 */
+	double getGenerationMaxMicros();
+
+	/**
+	 * @return the number of messages whose generation time fell in each bucket of getGenerationLatencyBucketsNanos()
+	 */
+	long[] getGenerationLatencyHistogram();
+
+	/**
+	 * @return the highest time in nanoseconds of each bucket of the histogram
+	 */
+	long[] getGenerationLatencyBucketsNanos();
+
+	/**
+	 * @return the number of times that a word without a chain led to a weighted selection from every word
+	 */
+	long getFallbackSelections();
+
+	/**
+	 * @return the number of times that a word without a chain was matched to the chain of the word in a different case
+	 */
+	long getCaseFoldedLookups();
+
+	/**
+	 * Clears everything that was recorded, leaving the figures that are read from the model itself.
+	 */
+	void reset();
+}
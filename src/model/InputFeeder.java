@@ -0,0 +1,131 @@
+package model;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Feeds a stream of words into a message generator one word at a time, pairing each word with the
+ * word before it. Since the last word is remembered between calls, text can be fed in pieces of any
+ * size, such as the lines of a file or chunks of a stream, without ever holding all of it in memory.
+ * For a generator of a higher order, as many previous words as the order are remembered instead.
+ * @author Richie Ren
+ *
+ */
+public class InputFeeder {
+
+	private static final int CHUNK_SIZE = 8192;
+
+	private final MessageGenerator msgGen;
+	private final StringBuilder currentWord;
+	private final String[] window;
+	private int windowLength;
+
+	public InputFeeder(MessageGenerator msgGen) {
+		this.msgGen = msgGen;
+		this.currentWord = new StringBuilder();
+		this.window = new String[msgGen.getOrder() + 1];
+		this.windowLength = 0;
+	}
+
+	/**
+	 * Adds the word as a possible state of the words that were added before it.
+	 * @param word - the next word of the input
+	 */
+	public void addWord(String word) {
+		// Drops the oldest word once the window holds the word and its longest context
+		if (windowLength == window.length) {
+			System.arraycopy(window, 1, window, 0, windowLength - 1);
+			windowLength--;
+		}
+
+		window[windowLength++] = word;
+
+		if (windowLength == 2 && window.length == 2) {
+			msgGen.addInput(window[0], word);
+		}
+		else if (windowLength >= 2) {
+			msgGen.addInput(window, windowLength - 1);
+		}
+	}
+
+	/**
+	 * Splits the characters on whitespace and adds each word in order.
+	 * A word that is cut off at the end of the characters is continued by the next call,
+	 * so the input can be split anywhere.
+	 * @param chars - an array containing the characters of the input
+	 * @param offset - the index of the first character to use
+	 * @param length - the number of characters to use
+	 */
+	public void addText(char[] chars, int offset, int length) {
+		for (int i = offset; i < offset + length; i++) {
+			char c = chars[i];
+
+			if (isWhitespace(c)) {
+				endWord();
+			}
+			else {
+				currentWord.append(c);
+			}
+		}
+	}
+
+	/**
+	 * Splits the text on whitespace and adds each word in order, continuing a word that was cut off by the last call.
+	 * @param text - the text of the input
+	 */
+	public void addText(CharSequence text) {
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+
+			if (isWhitespace(c)) {
+				endWord();
+			}
+			else {
+				currentWord.append(c);
+			}
+		}
+	}
+
+	/**
+	 * Reads all of the input from the reader in chunks and adds each word in order.
+	 * The reader is not closed.
+	 * @param reader - the source of the input
+	 * @throws IOException if the input could not be read
+	 */
+	public void read(Reader reader) throws IOException {
+		char[] chunk = new char[CHUNK_SIZE];
+
+		for (int n = reader.read(chunk); n != -1; n = reader.read(chunk)) {
+			addText(chunk, 0, n);
+		}
+
+		finish();
+	}
+
+	/**
+	 * Adds the word that was being built from the text, if there is one.
+	 * Should be called once all of the input has been given.
+	 */
+	public void finish() {
+		endWord();
+	}
+
+	/**
+	 * Adds the word that was being built from the text and starts a new one.
+	 */
+	private void endWord() {
+		if (currentWord.length() > 0) {
+			addWord(currentWord.toString());
+			currentWord.setLength(0);
+		}
+	}
+
+	/**
+	 * Checks to see if the character separates words, using the same characters as the regular expression \s.
+	 * @param c - the character to check
+	 * @return true if the character is whitespace, false otherwise
+	 */
+	static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\n' || c == '\t' || c == '\r' || c == '\f' || c == '\u000B';
+	}
+}
@@ -0,0 +1,372 @@
+package model;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * A histogram that maps non-negative int keys, such as word IDs from a {@link Vocabulary}, to the
+ * number of times each key was counted.
+ * It uses open addressing over a single primitive array that holds each key next to its count, 
+ * so unlike a HashMap of Integers it does not create an entry or a boxed count for every key.
+ * @author Richie Ren
+ *
+ */
+public class IntCountMap {
+
+	private static final int EMPTY = -1;
+
+	private int[] slots;
+	private int size;
+
+	public IntCountMap() {
+		this(1);
+	}
+
+	/**
+	 * Creates a map with room for the given number of keys before it has to grow.
+	 * @param expectedSize - the number of keys that the map is expected to hold
+	 */
+	public IntCountMap(int expectedSize) {
+		int capacity = 2;
+
+		while (capacity * 7 < expectedSize * 8 || capacity <= expectedSize) {
+			capacity = grow(capacity);
+		}
+
+		slots = new int[capacity * 2];
+		Arrays.fill(slots, EMPTY);
+		size = 0;
+	}
+
+	/**
+	 * Increases the count of the key by one.
+	 * @param key - the key to count
+	 * @return an int containing the new count of the key
+	 */
+	public int increment(int key) {
+		return add(key, 1);
+	}
+
+	/**
+	 * Increases the count of the key by the given amount.
+	 * @param key - the key to count; must not be negative
+	 * @param amount - the amount to add to the count
+	 * @return an int containing the new count of the key
+	 */
+	public int add(int key, int amount) {
+		if (key < 0) {
+			throw new IllegalArgumentException("Keys must not be negative: " + key);
+		}
+
+		int slot = findSlot(key);
+
+		// Not the first occurrence of the key
+		if (slots[slot] == key) {
+			slots[slot + 1] += amount;
+			return slots[slot + 1];
+		}
+
+		// Keeps the load factor at or under seven eighths, but always leaves at least one empty slot
+		int capacity = slots.length / 2;
+		if (size + 1 >= capacity || (size + 1) * 8 > capacity * 7) {
+			rehash(grow(capacity));
+			slot = findSlot(key);
+		}
+
+		slots[slot] = key;
+		slots[slot + 1] = amount;
+		size++;
+
+		return amount;
+	}
+
+	/**
+	 * Adds every count of another map to this one, translating each of its keys first.
+	 * @param other - the map whose counts should be added
+	 * @param translation - maps each key of the other map to the key it should be counted under in this one
+	 */
+	public void addAll(IntCountMap other, int[] translation) {
+		// Makes room for every key up front in case none of them are already here
+		int capacity = slots.length / 2;
+		int needed = size + other.size;
+
+		if (needed >= capacity || needed * 8 > capacity * 7) {
+			while (needed >= capacity || needed * 8 > capacity * 7) {
+				capacity = grow(capacity);
+			}
+
+			rehash(capacity);
+		}
+
+		for (int slot = 0; slot < other.slots.length; slot += 2) {
+			if (other.slots[slot] != EMPTY) {
+				add(translation[other.slots[slot]], other.slots[slot + 1]);
+			}
+		}
+	}
+
+	/**
+	 * Adds the counts of another map that the given test keeps, translating each of their keys first.
+	 * Every count is tested in the same order as mark() goes through them, and a key that translates to a negative key is left out.
+	 * @param other - the map whose counts should be added
+	 * @param translation - maps each key of the other map to the key it should be counted under in this one, or to -1 to leave it out
+	 * @param keep - tests whether a count should be added
+	 * @return an int containing the number of keys that were added
+	 */
+	public int addAll(IntCountMap other, int[] translation, IntPredicate keep) {
+		int added = 0;
+
+		for (int slot = 0; slot < other.slots.length; slot += 2) {
+			int key = other.slots[slot];
+
+			if (key != EMPTY && keep.test(other.slots[slot + 1]) && translation[key] >= 0) {
+				add(translation[key], other.slots[slot + 1]);
+				added++;
+			}
+		}
+
+		return added;
+	}
+
+	/**
+	 * Marks every key whose count the given test keeps.
+	 * @param keep - tests whether the key of a count should be marked
+	 * @param marks - the array to set to true at the index of each key, which must be longer than every key
+	 * @return an int containing the number of keys that were marked
+	 */
+	public int mark(IntPredicate keep, boolean[] marks) {
+		int marked = 0;
+
+		for (int slot = 0; slot < slots.length; slot += 2) {
+			if (slots[slot] != EMPTY && keep.test(slots[slot + 1])) {
+				marks[slots[slot]] = true;
+				marked++;
+			}
+		}
+
+		return marked;
+	}
+
+	/**
+	 * Adds every count of the map to the end of the list.
+	 * @param counts - the list to add the counts to
+	 */
+	void addCountsTo(IntList counts) {
+		for (int slot = 0; slot < slots.length; slot += 2) {
+			if (slots[slot] != EMPTY) {
+				counts.add(slots[slot + 1]);
+			}
+		}
+	}
+
+	/**
+	 * Returns the count of the key.
+	 * @param key - the key to look up
+	 * @return an int containing the count, or zero if the key has not been counted
+	 */
+	public int get(int key) {
+		if (key < 0) {
+			return 0;
+		}
+
+		int slot = findSlot(key);
+		return slots[slot] == key ? slots[slot + 1] : 0;
+	}
+
+	/**
+	 * Removes the key and its count.
+	 * @param key - the key to remove
+	 * @return an int containing the count the key had, or zero if it was not in the map
+	 */
+	public int remove(int key) {
+		if (key < 0) {
+			return 0;
+		}
+
+		int hole = findSlot(key);
+		if (slots[hole] != key) {
+			return 0;
+		}
+
+		int count = slots[hole + 1];
+		int capacity = slots.length / 2;
+
+		// Shifts back every key after the hole that could not have been placed in its home slot because of the removed one,
+		// so that lookups never stop early at the hole
+		for (int next = hole; ; ) {
+			next = (next + 2 == slots.length) ? 0 : next + 2;
+
+			if (slots[next] == EMPTY) {
+				break;
+			}
+
+			int home = homeSlot(slots[next], capacity) * 2;
+			boolean stays = (hole <= next) ? (hole < home && home <= next) : (hole < home || home <= next);
+
+			if (!stays) {
+				slots[hole] = slots[next];
+				slots[hole + 1] = slots[next + 1];
+				hole = next;
+			}
+		}
+
+		slots[hole] = EMPTY;
+		slots[hole + 1] = EMPTY;
+		size--;
+
+		return count;
+	}
+
+	/**
+	 * Removes every key whose count is below the given minimum, and shrinks the map to fit the keys that are left.
+	 * @param minCount - the lowest count that is kept
+	 * @return an int containing the number of keys that were removed
+	 */
+	public int removeBelow(int minCount) {
+		int kept = 0;
+		for (int slot = 0; slot < slots.length; slot += 2) {
+			if (slots[slot] != EMPTY && slots[slot + 1] >= minCount) {
+				kept++;
+			}
+		}
+
+		int removed = size - kept;
+		if (removed == 0) {
+			return 0;
+		}
+
+		int[] oldSlots = slots;
+		IntCountMap fitted = new IntCountMap(kept);
+		slots = fitted.slots;
+		size = kept;
+
+		for (int slot = 0; slot < oldSlots.length; slot += 2) {
+			if (oldSlots[slot] != EMPTY && oldSlots[slot + 1] >= minCount) {
+				int newSlot = findSlot(oldSlots[slot]);
+				slots[newSlot] = oldSlots[slot];
+				slots[newSlot + 1] = oldSlots[slot + 1];
+			}
+		}
+
+		return removed;
+	}
+
+	/**
+	 * Finds the key with the lowest count, where ties go to whichever key comes first in the map.
+	 * @return an int containing the key, or -1 if the map is empty
+	 */
+	public int minKey() {
+		int key = -1, min = Integer.MAX_VALUE;
+
+		for (int slot = 0; slot < slots.length; slot += 2) {
+			if (slots[slot] != EMPTY && slots[slot + 1] < min) {
+				key = slots[slot];
+				min = slots[slot + 1];
+			}
+		}
+
+		return key;
+	}
+
+	/**
+	 * Returns the number of distinct keys in the map.
+	 * @return an int containing the number of keys
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Indicates whether or not any keys have been counted.
+	 * @return true if the map is empty, false otherwise
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Estimates the memory that the map takes up, including the room it has to grow into.
+	 * @return a long containing the size in bytes
+	 */
+	long estimateBytes() {
+		return MemoryEstimate.object(MemoryEstimate.REFERENCE + 4) + MemoryEstimate.array(slots.length, 4);
+	}
+
+	/**
+	 * Copies every key and its count into the given arrays, which must both be able to hold size() elements.
+	 * The key at an index of the first array has the count at the same index of the second.
+	 * @param keysOut - the array to copy the keys into
+	 * @param countsOut - the array to copy the counts into
+	 * @return an int containing the number of keys copied
+	 */
+	public int copyTo(int[] keysOut, int[] countsOut) {
+		int n = 0;
+
+		for (int slot = 0; slot < slots.length; slot += 2) {
+			if (slots[slot] != EMPTY) {
+				keysOut[n] = slots[slot];
+				countsOut[n] = slots[slot + 1];
+				n++;
+			}
+		}
+
+		return n;
+	}
+
+	/**
+	 * Finds the slot that either holds the key or is where the key would be placed.
+	 * @param key - the key to find
+	 * @return an int containing the index of the key within the array; its count is at the next index
+	 */
+	private int findSlot(int key) {
+		int capacity = slots.length / 2;
+		int slot = homeSlot(key, capacity);
+
+		while (slots[slot * 2] != EMPTY && slots[slot * 2] != key) {
+			slot = (slot + 1 == capacity) ? 0 : slot + 1;
+		}
+
+		return slot * 2;
+	}
+
+	/**
+	 * Finds the slot that the key is placed in when nothing else is in the way.
+	 * @param key - the key
+	 * @param capacity - the number of slots
+	 * @return an int containing the number of the slot, which is half of its index within the array
+	 */
+	private static int homeSlot(int key, int capacity) {
+		// Maps the hash onto the slots with a multiply and shift, so the capacity does not have to be a power of two
+		return (int) (((Vocabulary.mix(key) & 0xFFFFFFFFL) * capacity) >>> 32);
+	}
+
+	/**
+	 * Returns the next capacity for a map that has run out of room.
+	 * Growing by half instead of doubling keeps the slots fuller on average, which matters more here 
+	 * than the few extra rehashes since a model holds one map for every word.
+	 * @param capacity - the current number of slots
+	 * @return an int containing the new number of slots
+	 */
+	private static int grow(int capacity) {
+		return capacity + Math.max(1, capacity / 2);
+	}
+
+	/**
+	 * Moves every key and count into a new array with the given number of slots.
+	 * @param capacity - the new number of slots
+	 */
+	private void rehash(int capacity) {
+		int[] oldSlots = slots;
+
+		slots = new int[capacity * 2];
+		Arrays.fill(slots, EMPTY);
+
+		for (int slot = 0; slot < oldSlots.length; slot += 2) {
+			if (oldSlots[slot] != EMPTY) {
+				int newSlot = findSlot(oldSlots[slot]);
+				slots[newSlot] = oldSlots[slot];
+				slots[newSlot + 1] = oldSlots[slot + 1];
+			}
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * A list of ints that grows as values are added, without boxing each value.
+ * @author Richie Ren
+ *
+ */
+class IntList {
+
+	private int[] values;
+	private int size;
+
+	IntList() {
+		this(16);
+	}
+
+	/**
+	 * Creates an empty list with room for the given number of values.
+	 * @param capacity - the number of values to make room for
+	 */
+	IntList(int capacity) {
+		values = new int[Math.max(1, capacity)];
+		size = 0;
+	}
+
+	/**
+	 * Adds the value to the end of the list.
+	 * @param value - the value to add
+	 */
+	void add(int value) {
+		if (size == values.length) {
+			values = Arrays.copyOf(values, values.length * 2);
+		}
+
+		values[size++] = value;
+	}
+
+	/**
+	 * Returns the value at the index.
+	 * @param index - the index of the value
+	 * @return an int containing the value
+	 */
+	int get(int index) {
+		return values[index];
+	}
+
+	/**
+	 * Returns the number of values in the list.
+	 * @return an int containing the number of values
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Copies the values into an array of exactly the right length.
+	 * @return an array containing the values
+	 */
+	int[] toArray() {
+		return Arrays.copyOf(values, size);
+	}
+}
@@ -0,0 +1,105 @@
+package model;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Loads a text file into a message generator by memory mapping it instead of reading it through a Reader.
+ * Words are found by scanning the mapped bytes for whitespace, and only the bytes of each word are
+ * decoded into a String, so the file is never decoded or copied as a whole.
+ * Files are mapped in windows of a fixed size, which allows files larger than 2 GB to be loaded;
+ * a word that is cut off at the end of one window is continued in the next.
+ * The charset must encode whitespace the same way ASCII does, which is true for UTF-8, windows-1252,
+ * and the ISO-8859 family, but not for UTF-16.
+ * @author Richie Ren
+ *
+ */
+public class MappedCorpusLoader {
+
+	public static final long DEFAULT_WINDOW_SIZE = 64L * 1024 * 1024;
+
+	private static final byte[] ASCII_WHITESPACE = { ' ', '\t', '\n', '\r', '\f', 0x0B };
+
+	private final Charset charset;
+	private final long windowSize;
+
+	public MappedCorpusLoader(Charset charset) {
+		this(charset, DEFAULT_WINDOW_SIZE);
+	}
+
+	/**
+	 * Creates a loader that maps the given number of bytes of the file at a time.
+	 * @param charset - the charset used to decode each word
+	 * @param windowSize - the number of bytes to map at once; at most Integer.MAX_VALUE
+	 */
+	public MappedCorpusLoader(Charset charset, long windowSize) {
+		if (!Arrays.equals(new String(ASCII_WHITESPACE, Charset.forName("US-ASCII")).getBytes(charset), ASCII_WHITESPACE)) {
+			throw new IllegalArgumentException("The charset " + charset + " does not encode whitespace as ASCII");
+		}
+
+		if (windowSize <= 0 || windowSize > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("The window size must be between 1 and " + Integer.MAX_VALUE);
+		}
+
+		this.charset = charset;
+		this.windowSize = windowSize;
+	}
+
+	/**
+	 * Adds every word of the file and the word immediately following it to the message generator.
+	 * @param file - the path of the file to load
+	 * @param msgGen - the message generator to add the input to
+	 * @throws IOException if the file could not be read
+	 */
+	public void load(Path file, MessageGenerator msgGen) throws IOException {
+		InputFeeder feeder = new InputFeeder(msgGen);
+		byte[] word = new byte[64];
+		int wordLength = 0;
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+
+			for (long position = 0; position < size; position += windowSize) {
+				MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(windowSize, size - position));
+				int limit = window.limit();
+
+				for (int i = 0; i < limit; i++) {
+					byte b = window.get(i);
+
+					if (isWhitespace(b)) {
+						if (wordLength > 0) {
+							feeder.addWord(new String(word, 0, wordLength, charset));
+							wordLength = 0;
+						}
+					}
+					else {
+						if (wordLength == word.length) {
+							word = Arrays.copyOf(word, word.length * 2);
+						}
+
+						word[wordLength++] = b;
+					}
+				}
+			}
+		}
+
+		// The file does not end with whitespace
+		if (wordLength > 0) {
+			feeder.addWord(new String(word, 0, wordLength, charset));
+		}
+	}
+
+	/**
+	 * Checks to see if the byte is one of the ASCII whitespace characters matched by the regular expression \s.
+	 * @param b - the byte to check
+	 * @return true if the byte is whitespace, false otherwise
+	 */
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\n' || b == '\t' || b == '\r' || b == '\f' || b == 0x0B;
+	}
+}
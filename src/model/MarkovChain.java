@@ -1,33 +1,62 @@
 package model;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Set;
-import org.apache.commons.math3.distribution.EnumeratedDistribution;
-import org.apache.commons.math3.util.Pair;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntPredicate;
+import java.util.random.RandomGenerator;
 
 /**
  * The fundamental structure to my implementation of the markov chain. 
  * It is capable of adding possible states and generating a response based off 
- * of the hashmap containing possible states, where the number of occurrences of 
+ * of the histogram containing possible states, where the number of occurrences of 
  * the word in relation affects the possibility of being chosen. 
  * A markov chain is essentially a probabilistic model where the current state 
  * affects what possible states can follow afterward.
+ * Words are stored as IDs from a vocabulary, which can be shared between chains so that 
+ * each word is only kept once no matter how many chains it is a possible state of.
+ * Each chain guards its own counts, so threads adding input to different chains never wait on 
+ * each other, and selecting a state only waits when the counts have changed since the last selection.
  * @author Richie Ren
  *
  */
 public class MarkovChain {
 	
-	private String word;
-	private int occurrences;
-	private boolean capitalized;
-	private HashMap<String,Integer> possibleStates;
+	private final Vocabulary vocabulary;
+	private final int id;
+	private volatile int occurrences;
+	private volatile boolean capitalized;
+	private final IntCountMap possibleStates;
+	private volatile StateSelection selection;
 	
 	public MarkovChain(String word) {
-		this.word = word;
+		this(word, new Vocabulary());
+	}
+	
+	/**
+	 * Creates a chain whose word and possible states are interned in the given vocabulary.
+	 * @param word - the word contained in the chain
+	 * @param vocabulary - the vocabulary shared with the other chains of the same model
+	 */
+	public MarkovChain(String word, Vocabulary vocabulary) {
+		this.vocabulary = vocabulary;
+		this.id = vocabulary.intern(word);
 		this.occurrences = 1;
 		this.capitalized = false;
-		this.possibleStates = new HashMap<>();
+		this.possibleStates = new IntCountMap();
+	}
+	
+	/**
+	 * Creates a chain for a word that has already been interned, which has not occurred yet.
+	 * @param id - the vocabulary ID of the word contained in the chain
+	 * @param vocabulary - the vocabulary shared with the other chains of the same model
+	 * @param capitalized - whether or not the word was capitalized
+	 */
+	MarkovChain(int id, Vocabulary vocabulary, boolean capitalized) {
+		this.vocabulary = vocabulary;
+		this.id = id;
+		this.occurrences = 0;
+		this.capitalized = capitalized;
+		this.possibleStates = new IntCountMap();
 	}
 	
 	/**
@@ -38,14 +67,115 @@ public class MarkovChain {
 	 * @param word - a String containing a possible response to the current word in the chain
 	 */
 	public void addState(String word) {
-		// Increases the number of occurrences of the word
-		if (possibleStates.containsKey(word)) {
-			possibleStates.put(word, possibleStates.get(word) + 1);
+		addState(vocabulary.intern(word));
+	}
+	
+	/**
+	 * Adds the word with the given vocabulary ID to the list of possible responses to the current word.
+	 * @param stateId - the ID of a possible response to the current word in the chain
+	 */
+	public synchronized void addState(int stateId) {
+		// Increases the number of occurrences of the word, which starts at one on its first occurrence
+		possibleStates.increment(stateId);
+		
+		// The counts have changed, so the sampler has to be rebuilt on the next selection
+		selection = null;
+	}
+	
+	/**
+	 * Increases the count of a possible state by the given amount, such as when a model is copied out of another layout.
+	 * @param stateId - the ID of the possible state
+	 * @param count - the amount to add, which must be positive
+	 */
+	synchronized void addState(int stateId, int count) {
+		possibleStates.add(stateId, count);
+		selection = null;
+	}
+	
+	/**
+	 * Increases the number of times that the word has occurred by the given amount.
+	 * @param count - the amount to add
+	 */
+	synchronized void addOccurrences(int count) {
+		occurrences += count;
+	}
+	
+	/**
+	 * Counts an occurrence of the word along with the word that followed it.
+	 * @param stateId - the ID of the word that followed the current word
+	 */
+	synchronized void addOccurrence(int stateId) {
+		occurrences++;
+		possibleStates.increment(stateId);
+		selection = null;
+	}
+	
+	/**
+	 * Counts an occurrence of the word along with the word that followed it, when the count of a new state comes from an estimate 
+	 * of how often the pair has occurred and the chain keeps no more than the given number of states. 
+	 * When the chain is full, a new state takes the place of the least common one only if its estimate is higher.
+	 * @param stateId - the ID of the word that followed the current word
+	 * @param estimate - the number of times the pair is estimated to have occurred, which the state starts at if it is new
+	 * @param maxStates - the largest number of states to keep
+	 * @return true if the state was counted, false if it was left out because the chain is full
+	 */
+	synchronized boolean addOccurrence(int stateId, int estimate, int maxStates) {
+		int count = possibleStates.get(stateId);
+		
+		if (count > 0) {
+			possibleStates.increment(stateId);
+			occurrences++;
+		} else {
+			if (possibleStates.size() >= maxStates) {
+				int least = possibleStates.minKey();
+				
+				if (possibleStates.get(least) >= estimate) {
+					return false;
+				}
+				
+				possibleStates.remove(least);
+			}
+			
+			possibleStates.add(stateId, estimate);
+			occurrences += estimate;
 		}
-		// The first occurrence of the word
-		else {
-			possibleStates.put(word, 1);
+		
+		selection = null;
+		return true;
+	}
+	
+	/**
+	 * Counts an occurrence of the word along with the word that followed it, but only if that word is already a possible state.
+	 * @param stateId - the ID of the word that followed the current word
+	 * @return true if the state was counted, false if it is not a possible state yet
+	 */
+	synchronized boolean addExistingOccurrence(int stateId) {
+		if (possibleStates.get(stateId) == 0) {
+			return false;
 		}
+		
+		possibleStates.increment(stateId);
+		occurrences++;
+		selection = null;
+		return true;
+	}
+	
+	/**
+	 * Marks the possible states whose counts the given test keeps.
+	 * @param keep - tests whether a state should be marked by its count
+	 * @param marks - the array to set to true at the ID of each of those states
+	 * @return an int containing the number of states marked
+	 */
+	synchronized int markStates(IntPredicate keep, boolean[] marks) {
+		return possibleStates.mark(keep, marks);
+	}
+	
+	/**
+	 * Adds the count of every possible state to the end of the list.
+	 * @param counts - the list to add the counts to
+	 */
+	synchronized void addStateCounts(IntList counts) {
+		possibleStates.addCountsTo(counts);
 	}
 	
 	/**
@@ -53,7 +183,23 @@ public class MarkovChain {
 	 * @return a String representation of the word
 	 */
 	public String getWord() {
-		return this.word;
+		return vocabulary.getWord(this.id);
+	}
+	
+	/**
+	 * Returns the vocabulary ID of the word contained in the chain.
+	 * @return an int containing the ID of the word
+	 */
+	public int getId() {
+		return this.id;
+	}
+	
+	/**
+	 * Returns the number of distinct possible states of the current word.
+	 * @return an int containing the number of possible states
+	 */
+	public synchronized int getNumberOfStates() {
+		return possibleStates.size();
 	}
 	
 	/**
@@ -75,32 +221,133 @@ public class MarkovChain {
 	/**
 	 * Generates a response based on the possible states of the current word. 
 	 * The number of occurrences affects the chance of a specific state being chosen. 
-	 * This is performed using a weighted selection via probability mass function. 
-	 * Requires the ApacheCommons math library from http://commons.apache.org/proper/commons-math/index.html.
+	 * This is performed using a weighted selection via an alias table, which is built the first time 
+	 * a state is requested after the possible states have changed and reused for every selection afterward.
 	 * @return a String that is one of many possible responses to the current word
 	 */
 	public String getPossibleState() {
-		if (possibleStates.isEmpty()) {
-			return "";
+		int state = sampleState(ThreadLocalRandom.current());
+		return state < 0 ? "" : vocabulary.getWord(state);
+	}
+	
+	/**
+	 * Chooses one of the possible states of the current word in the same way as getPossibleState().
+	 * @param random - the source of randomness to use
+	 * @return the ID of the chosen state, or -1 if there are no possible states
+	 */
+	int sampleState(RandomGenerator random) {
+		StateSelection current = selection;
+		
+		if (current == null) {
+			current = buildSelection();
 		}
 		
-		ArrayList<Pair<String,Double>> possibleStatesList = new ArrayList<>();
+		return current.sample(random);
+	}
+	
+	/**
+	 * Builds the alias table used to select from the possible states, unless another thread already has.
+	 * @return the selection for the current counts
+	 */
+	private synchronized StateSelection buildSelection() {
+		if (selection == null) {
+			selection = StateSelection.of(possibleStates);
+		}
 		
-		// Adds all the states into an array list
-		Set<String> keys = possibleStates.keySet();
-		for (String key : keys) {
-			possibleStatesList.add(new Pair<String, Double>(key, 0.0 + possibleStates.get(key)));
+		return selection;
+	}
+	
+	/**
+	 * Returns the number of times that the given word has followed the current word.
+	 * @param word - a String containing a possible response to the current word
+	 * @return an int containing the number of times, or zero if the word has never followed it
+	 */
+	public synchronized int getStateCount(String word) {
+		return possibleStates.get(vocabulary.getId(word));
+	}
+	
+	/**
+	 * Adds the occurrences and possible states of another chain of the same word to this one. 
+	 * The other chain may use a different vocabulary.
+	 * @param other - the chain to add the counts of
+	 * @param translation - maps each ID of the other chain's vocabulary to the ID of the same word in this one
+	 */
+	synchronized void merge(MarkovChain other, int[] translation) {
+		possibleStates.addAll(other.possibleStates, translation);
+		this.occurrences += other.occurrences;
+		selection = null;
+	}
+	
+	/**
+	 * Adds the occurrences of another chain of the same word to this one, along with only the possible states whose counts 
+	 * the given test keeps, in the same order as markStates() tests them.
+	 * @param other - the chain to add the counts of
+	 * @param translation - maps each ID of the other chain's vocabulary to the ID of the same word in this one, or to -1 if the word is left out
+	 * @param keep - tests whether a state should be added by its count
+	 */
+	synchronized void merge(MarkovChain other, int[] translation, IntPredicate keep) {
+		synchronized (other) {
+			possibleStates.addAll(other.possibleStates, translation, keep);
+			this.occurrences += other.occurrences;
 		}
+		selection = null;
+	}
+	
+	/**
+	 * Copies the possible states of the chain into flat lists, sorted from the most to the least common, along with their running totals.
+	 * @param idLimit - one more than the highest state ID to copy
+	 * @param states - the list to add the IDs of the states to
+	 * @param cumulative - the list to add the running totals of the counts to
+	 * @return an int containing the number of occurrences of the word, read at the same time as the states
+	 */
+	synchronized int copyStates(int idLimit, IntList states, IntList cumulative) {
+		CompactModel.addStates(possibleStates, idLimit, states, cumulative);
+		return occurrences;
+	}
+	
+	/**
+	 * Returns the word of a possible state.
+	 * @param stateId - the ID of the state in the vocabulary of the chain
+	 * @return a String containing the word
+	 */
+	String getStateWord(int stateId) {
+		return vocabulary.getWord(stateId);
+	}
+	
+	/**
+	 * Writes the capitalization, occurrences and possible states of the chain to a snapshot.
+	 * @param out - the snapshot to write to
+	 * @param idLimit - one more than the highest state ID that is in the snapshot's vocabulary
+	 * @throws IOException if the snapshot could not be written
+	 */
+	synchronized void write(ModelSnapshot.Output out, int idLimit) throws IOException {
+		out.writeByte(capitalized ? 1 : 0);
+		out.writeVarint(occurrences);
+		ModelSnapshot.writeStates(out, possibleStates, idLimit);
+	}
+	
+	/**
+	 * Reads the occurrences and possible states of the chain from a snapshot, after its capitalization has been read.
+	 * @param in - the snapshot to read from
+	 * @param idLimit - the number of words in the snapshot's vocabulary
+	 * @throws IOException if the snapshot could not be read or is corrupted
+	 */
+	synchronized void read(ModelSnapshot.Input in, int idLimit) throws IOException {
+		int count = in.readVarint();
 		
-		EnumeratedDistribution<String> weightedSelection = new EnumeratedDistribution<>(possibleStatesList);
+		if (count < 0) {
+			throw ModelSnapshot.corrupt();
+		}
 		
-		return weightedSelection.sample();
+		occurrences += count;
+		ModelSnapshot.readStates(in, possibleStates, idLimit);
+		selection = null;
 	}
 	
 	/**
 	 * Increases the int containing the number of times the word has occurred in the input.
 	 */
-	public void addOccurrence() {
+	public synchronized void addOccurrence() {
 		this.occurrences++;
 	}
 	
@@ -111,4 +358,15 @@ public class MarkovChain {
 	public int getOccurrences() {
 		return this.occurrences;
 	}
+	
+	/**
+	 * Estimates the memory that the chain takes up, including the alias table of its states if it has been built.
+	 * @return a long containing the size in bytes
+	 */
+	synchronized long estimateBytes() {
+		StateSelection current = selection;
+		long bytes = MemoryEstimate.object(3 * MemoryEstimate.REFERENCE + 4 + 4 + 1) + possibleStates.estimateBytes();
+		
+		return current == null ? bytes : bytes + current.estimateBytes();
+	}
 }
\ No newline at end of file
@@ -0,0 +1,55 @@
+package model;
+
+/**
+ * The sizes that the parts of a model take up on the heap, for a 64-bit JVM with compressed references,
+ * which is the default for heaps under 32 GB. Objects are padded to a multiple of eight bytes.
+ * The estimates leave out anything the JVM adds of its own, such as the locks of synchronized objects.
+ * @author Richie Ren
+ *
+ */
+final class MemoryEstimate {
+
+	static final int OBJECT_HEADER = 12;
+	static final int ARRAY_HEADER = 16;
+	static final int REFERENCE = 4;
+
+	/**
+	 * An entry of a ConcurrentHashMap: the hash, the key, the value and the next entry.
+	 */
+	static final long MAP_ENTRY = object(4 + 3 * REFERENCE);
+
+	private MemoryEstimate() {
+	}
+
+	/**
+	 * Returns the size of an object with the given fields.
+	 * @param fieldBytes - the total size of the fields
+	 * @return a long containing the size in bytes
+	 */
+	static long object(int fieldBytes) {
+		return align(OBJECT_HEADER + fieldBytes);
+	}
+
+	/**
+	 * Returns the size of an array.
+	 * @param length - the number of elements
+	 * @param elementBytes - the size of one element, which is REFERENCE for arrays of objects
+	 * @return a long containing the size in bytes
+	 */
+	static long array(long length, int elementBytes) {
+		return align(ARRAY_HEADER + length * elementBytes);
+	}
+
+	/**
+	 * Returns the size of a string and its characters, assuming that they all fit in one byte each as most words do.
+	 * @param length - the number of characters
+	 * @return a long containing the size in bytes
+	 */
+	static long string(int length) {
+		return object(REFERENCE + 4 + 2) + array(length, 1);
+	}
+
+	private static long align(long bytes) {
+		return (bytes + 7) & ~7L;
+	}
+}
@@ -1,22 +1,25 @@
 package model;
 
-import java.applet.Applet;
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
 import java.util.List;
-import java.util.Scanner;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.random.RandomGenerator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-import org.apache.commons.math3.distribution.EnumeratedDistribution;
-import org.apache.commons.math3.util.Pair;
-
-import twitter4j.Paging;
-import twitter4j.Status;
-import twitter4j.Twitter;
-import twitter4j.TwitterException;
-import twitter4j.TwitterFactory;
-import twitter4j.conf.ConfigurationBuilder;
 
 /**
  * This is the result of the individual pieces put together. 
@@ -25,56 +28,72 @@ import twitter4j.conf.ConfigurationBuilder;
  * @author Richie Ren
  *
  */
-public class MessageGenerator extends Applet {
-
-	public static void main(String[] args) {
-		ConfigurationBuilder cb = new ConfigurationBuilder();
-	    cb.setOAuthConsumerKey("YOUR KEY");
-	    cb.setOAuthConsumerSecret("YOUR KEY");
-	    cb.setOAuthAccessToken("YOUR KEY");
-	    cb.setOAuthAccessTokenSecret("YOUR KEY");
-
-	    Twitter twitter = new TwitterFactory(cb.build()).getInstance();
-
-	    int pageno = 1;
-	    String user = "realDonaldTrump";
-	    List<Status> statuses = new ArrayList<>();
+public class MessageGenerator {
 
-	    while (true) {
+	public static void main(String[] args) throws IOException {
+		TimelineSource source = new TwitterTimelineSource();
+		String user = args.length > 0 ? args[0] : "realDonaldTrump";
+		int total = 0;
 
-	      try {
+		for (int page = 1; ; page++) {
+			List<TimelinePost> posts = source.fetchPage(user, page, 0);
+			if (posts.isEmpty()) {
+				break;
+			}
 
-	        int size = statuses.size(); 
-	        Paging page = new Paging(pageno++, 100);
-	        statuses.addAll(twitter.getUserTimeline(user, page));
-	        if (statuses.size() == size)
-	          break;
-	      }
-	      catch(TwitterException e) {
-	        e.printStackTrace();
-	        System.exit(-1);
-	      }
-	    }
-	    for (Status s : statuses) {
-	    	System.out.println("@" + s.getUser().getScreenName() + " - " + s.getText());
-	    	System.out.println();
-	    }
-	    System.out.println("Total: "+statuses.size());
+			for (TimelinePost post : posts) {
+				System.out.println("@" + user + " - " + post.getText());
+				System.out.println();
+			}
+			total += posts.size();
+		}
+		System.out.println("Total: " + total);
 	}
 
-	private ArrayList<MarkovChain> listOfWords;
+	private static final char[] PUNCTUATION = { '.', '!', '?' };
+	
+	private final int order;
+	private volatile ChainModel chains;
 	private final String[] commonArticles = new String[] {"A", "An", "The"};
 	private final int minWordsInSentence = 3;
-	private boolean analyzingInput;
+	private final AtomicBoolean analyzingInput;
+	private volatile boolean weightedSentenceStarts;
+	private volatile boolean caseFoldedLookup = true;
+	private final LongAdder caseFoldedLookups = new LongAdder();
+	private final LongAdder fallbackSelections = new LongAdder();
+	private volatile GeneratorMetrics metrics;
+	private volatile ApproximateTraining approximate;
+	// Held for reading while input is added approximately, and for writing while the model is copied to fit the budget
+	private final ReentrantReadWriteLock fitting = new ReentrantReadWriteLock();
+	// Created when first needed, so that twitter4j only has to be present when timelines are read from Twitter
+	private volatile TimelineSource timelineSource;
+	private final Map<String, TimelineProgress> timelineProgress = new ConcurrentHashMap<>();
+	private final ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(() -> new Workspace(getOrder()));
 	
 	public MessageGenerator() {
-		listOfWords = new ArrayList<>();
-		analyzingInput = false;
+		this(1);
+	}
+	
+	/**
+	 * Creates a message generator where each word depends on up to the given number of words before it. 
+	 * When the words generated so far have never been followed by anything in the input, the generator 
+	 * backs off to fewer and fewer of them, down to only the last word.
+	 * @param order - the maximum number of previous words that the next word depends on; must be at least one
+	 */
+	public MessageGenerator(int order) {
+		if (order < 1) {
+			throw new IllegalArgumentException("The order must be at least one: " + order);
+		}
+		
+		this.order = order;
+		chains = new ChainIndex(order);
+		analyzingInput = new AtomicBoolean(false);
 	}
 	
 	/**
 	 * Adds the word to the list of words and the word immediately following it as a possible state of the first. 
 	 * Updates the number of occurrences of the second word as a possible state of the first word. 
+	 * This can be called by any number of threads at once, including while messages are being generated.
 	 * @param firstWord - the first word that is considered the main one in that respective chain
 	 * @param wordAfter - the second word that is a possible state of the first word
 	 */
@@ -86,41 +105,541 @@ public class MessageGenerator extends Applet {
 		firstWord = firstWord.trim();
 		wordAfter = wordAfter.trim();
 		
+		ApproximateTraining approx = approximate;
+		if (approx != null) {
+			addApproximateInput(new String[] { firstWord, wordAfter }, 1, approx);
+			return;
+		}
+		
 		boolean sentenceStarter = Character.isUpperCase(firstWord.charAt(0));
+		ChainIndex current = writableChains();
+		Vocabulary vocabulary = current.getVocabulary();
 		
-		// The word has yet to be represented
-		if (!contains(firstWord)) {
-			MarkovChain newWord = new MarkovChain(firstWord);
-			newWord.addState(wordAfter);
-			newWord.setIsCapital(sentenceStarter);
-			listOfWords.add(newWord);
+		int firstId = vocabulary.intern(firstWord),
+			state = vocabulary.intern(wordAfter);
+		
+		// Creates the chain if the word has yet to be represented, then updates the number of occurrences
+		MarkovChain mc = current.getOrCreate(firstId, sentenceStarter);
+		mc.addOccurrence(state);
+		addSentenceStart(current, firstId, state, wordAfter);
+		current.modified();
+	}
+	
+	/**
+	 * Adds the word at the given index as a possible state of the words before it. 
+	 * The last word before it is treated the same way as the first word of addInput(String, String), 
+	 * and up to order words before it are used as the longer contexts of the word. 
+	 * This can be called by any number of threads at once, including while messages are being generated.
+	 * @param words - the words of the input, in order
+	 * @param index - the index of the word to add, which must be at least one
+	 */
+	public void addInput(String[] words, int index) {
+		if (words[index] == null) {
+			return;
 		}
-		// Not the first occurrence of the word
-		else {
-			for (MarkovChain mc : listOfWords) {
-				if (mc.getWord().equals(firstWord)) {
-					// Update the number of occurrences
-					mc.addOccurrence();
-					mc.addState(wordAfter);
-					return;
+		
+		ApproximateTraining approx = approximate;
+		if (approx != null) {
+			addApproximateInput(words, index, approx);
+			return;
+		}
+		
+		ChainIndex current = writableChains();
+		Vocabulary vocabulary = current.getVocabulary();
+		ContextTrie contexts = current.getContexts();
+		
+		// Interns the words of the context, oldest first
+		int contextLength = Math.min(order, index);
+		int[] context = new int[contextLength];
+		for (int k = 0; k < contextLength; k++) {
+			context[k] = vocabulary.intern(words[index - contextLength + k].trim());
+		}
+		
+		String firstWord = words[index - 1].trim();
+		boolean sentenceStarter = Character.isUpperCase(firstWord.charAt(0));
+		String word = words[index].trim();
+		int state = vocabulary.intern(word);
+		
+		current.getOrCreate(context[contextLength - 1], sentenceStarter).addOccurrence(state);
+		addSentenceStart(current, context[contextLength - 1], state, word);
+		
+		if (contexts != null) {
+			contexts.add(context, contextLength, state);
+		}
+		
+		current.modified();
+	}
+	
+	/**
+	 * Adds the word at the given index the same way as addInput(String[], int), counting a pair or context exactly if it is 
+	 * already in the model, and otherwise only adding it once the approximation estimates that it has occurred often enough. 
+	 * The words are only interned once they are admitted, so words that are never admitted take up no room in the model. 
+	 * Any number of threads can add input at once, but they wait while the model is copied to fit within the budget.
+	 * @param words - the words of the input, in order
+	 * @param index - the index of the word to add, which must be at least one
+	 * @param approx - the approximation that decides what is added
+	 */
+	private void addApproximateInput(String[] words, int index, ApproximateTraining approx) {
+		boolean measure;
+		Lock adding = fitting.readLock();
+		
+		adding.lock();
+		try {
+			measure = addAdmittedInput(words, index, approx);
+		} finally {
+			adding.unlock();
+		}
+		
+		if (measure) {
+			fitModel(approx);
+		}
+	}
+	
+	/**
+	 * Adds the word at the given index as far as the approximation allows.
+	 * @return true if the model should be measured against the budget
+	 */
+	private boolean addAdmittedInput(String[] words, int index, ApproximateTraining approx) {
+		ChainIndex current = writableChains();
+		Vocabulary vocabulary = current.getVocabulary();
+		String firstWord = words[index - 1].trim();
+		String word = words[index].trim();
+		boolean measure = false;
+		
+		int firstId = vocabulary.getId(firstWord),
+			state = vocabulary.getId(word);
+		MarkovChain mc = current.get(firstId);
+		
+		// A pair that is already in the model no longer needs the sketch to decide whether it is common enough
+		if (mc != null && mc.addExistingOccurrence(state)) {
+			addSentenceStart(current, firstId, state, word);
+		} else {
+			int estimate = approx.admit(firstWord, word);
+			
+			if (estimate > 0) {
+				firstId = vocabulary.intern(firstWord);
+				state = vocabulary.intern(word);
+				
+				mc = current.getOrCreate(firstId, Character.isUpperCase(firstWord.charAt(0)));
+				if (mc.addOccurrence(state, estimate, approx.getMaxStatesPerWord())) {
+					addSentenceStart(current, firstId, state, word);
+					measure = approx.recordAdmitted();
+				} else {
+					approx.recordRejected();
 				}
 			}
 		}
+		
+		int contextLength = Math.min(order, index);
+		ContextTrie contexts = current.getContexts();
+		
+		if (contexts != null && contextLength > 1) {
+			int[] context = new int[contextLength];
+			for (int k = 0; k < contextLength; k++) {
+				context[k] = vocabulary.getId(words[index - contextLength + k].trim());
+			}
+			
+			if (!contexts.addIfPresent(context, contextLength, vocabulary.getId(word))) {
+				int estimate = approx.admitContext(words, index - contextLength, index);
+				
+				if (estimate > 0) {
+					for (int k = 0; k < contextLength; k++) {
+						context[k] = vocabulary.intern(words[index - contextLength + k].trim());
+					}
+					
+					contexts.add(context, contextLength, vocabulary.intern(word), estimate);
+					measure |= approx.recordAdmitted();
+				}
+			}
+		}
+		
+		// Every word counts toward the version, whether or not it was admitted
+		current.modified();
+		
+		return measure;
 	}
 	
 	/**
-	 * Checks to see if the word is already exists as a markov chain. 
-	 * @param word - a String containing the word to check for
-	 * @return true if the word is already represented in a chain, false otherwise
+	 * Lets the approximation measure the model while no input is being added, and replaces the model 
+	 * with the copy it makes if the model has grown past the budget.
+	 * @param approx - the approximation whose budget the model has to fit in
 	 */
-	private boolean contains(String word) {
-		for (MarkovChain mc : listOfWords) {
-			if (mc.getWord().equals(word)) {
-				return true;
+	private void fitModel(ApproximateTraining approx) {
+		Lock copying = fitting.writeLock();
+		
+		copying.lock();
+		try {
+			ChainIndex current = writableChains();
+			ChainIndex fitted = approx.fit(current);
+			
+			if (fitted != current) {
+				fitted.continueVersion(current.getVersion());
+				replaceModel(fitted);
 			}
+		} finally {
+			copying.unlock();
+		}
+	}
+	
+	/**
+	 * Bounds the memory of the model by leaving rare pairs of words out of it as input is added, or goes back to adding 
+	 * every pair exactly. Input that was already added is kept as it is, and merging another generator always adds all of its input.
+	 * @param approximate - the approximation to train with, or null to train exactly
+	 */
+	public void setApproximateTraining(ApproximateTraining approximate) {
+		this.approximate = approximate;
+	}
+	
+	/**
+	 * Returns the approximation that input is added with.
+	 * @return the approximation, or null if input is added exactly
+	 */
+	public ApproximateTraining getApproximateTraining() {
+		return approximate;
+	}
+	
+	/**
+	 * Adds all of the input of another message generator to this one, as if the input had been added directly. 
+	 * Words that are new to this generator are added after the existing ones, in the order the other generator saw them. 
+	 * The other generator should not be given input while it is being merged, but it may be read-only.
+	 * @param other - the message generator whose input should be added, which must be of the same order
+	 */
+	public void merge(MessageGenerator other) {
+		if (other.order != order) {
+			throw new IllegalArgumentException("Cannot merge a generator of order " + other.order + " into one of order " + order);
+		}
+		
+
+		ChainIndex current = writableChains();
+		ChainIndex otherChains = toChainIndex(other.chains);
+		Vocabulary vocabulary = current.getVocabulary();
+		Vocabulary otherVocabulary = otherChains.getVocabulary();
+		
+		// Looks up every word of the other vocabulary once instead of once per possible state
+		int[] translation = new int[otherVocabulary.size()];
+		for (int id = 0; id < translation.length; id++) {
+			translation[id] = vocabulary.intern(otherVocabulary.getWord(id));
+		}
+		
+		// Every word that was added counted one occurrence of the chain of the word before it, 
+		// so the version goes up by the number of words just as if they had been added one at a time
+		long tokens = 0;
+		
+		for (int id = 0; id < translation.length; id++) {
+			MarkovChain otherChain = otherChains.get(id);
+			
+			if (otherChain != null) {
+				current.getOrCreate(translation[id], otherChain.isCapital()).merge(otherChain, translation);
+				tokens += otherChain.getOccurrences();
+			}
+		}
+		
+		if (current.getContexts() != null) {
+			current.getContexts().merge(otherChains.getContexts(), translation);
+		}
+		
+		current.getStarts().addAll(otherChains.getStarts(), translation);
+		current.modified(Math.max(1, tokens));
+	}
+	
+	/**
+	 * Records the word as the start of a sentence if it is capitalized and the word before it ended a sentence.
+	 * @param current - the chains to record the start in
+	 * @param previousId - the ID of the word before it
+	 * @param id - the ID of the word
+	 * @param word - the word itself
+	 */
+	private static void addSentenceStart(ChainIndex current, int previousId, int id, String word) {
+		if (TokenFlags.has(current.getTokenFlags(previousId), TokenFlags.ENDS_SENTENCE) && !word.isEmpty() && Character.isUpperCase(word.charAt(0))) {
+			current.getStarts().add(id, 1);
+		}
+	}
+	
+	/**
+	 * Chooses how the first word of a message is picked from the capitalized words. By default every capitalized word 
+	 * has the same chance; when weighted, the words that started a sentence in the input are picked in proportion to 
+	 * the number of times they did, falling back to every capitalized word if no sentence has ended yet.
+	 * @param weighted - true to weight the first word by how often it started a sentence, false to give every capitalized word the same chance
+	 */
+	public void setWeightedSentenceStarts(boolean weighted) {
+		this.weightedSentenceStarts = weighted;
+	}
+	
+	/**
+	 * Returns whether the first word of a message is weighted by how often it started a sentence.
+	 * @return true if the first word is weighted, false if every capitalized word has the same chance
+	 */
+	public boolean isWeightedSentenceStarts() {
+		return weightedSentenceStarts;
+	}
+	
+	/**
+	 * Chooses whether a generated word without a chain of its own, such as a word that was capitalized at the start of a sentence, 
+	 * is matched to the chains of the same word in a different case before falling back to a weighted selection of all the words. 
+	 * This is on by default.
+	 * @param enabled - true to match words when case is ignored, false to only match them exactly
+	 */
+	public void setCaseFoldedLookup(boolean enabled) {
+		this.caseFoldedLookup = enabled;
+	}
+	
+	/**
+	 * Returns whether generated words without a chain are matched to chains when case is ignored.
+	 * @return true if words are matched when case is ignored, false if they are only matched exactly
+	 */
+	public boolean isCaseFoldedLookup() {
+		return caseFoldedLookup;
+	}
+	
+	/**
+	 * Returns the number of generated words that had no chain of their own and were followed by a state of a chain of 
+	 * the same word in a different case, since the generator was created.
+	 * @return a long containing the number of case-folded lookups
+	 */
+	public long getCaseFoldedLookups() {
+		return caseFoldedLookups.sum();
+	}
+	
+	/**
+	 * Returns the number of generated words that had no chain to follow, so the next word was chosen from all of the words 
+	 * by their occurrences instead, since the generator was created.
+	 * @return a long containing the number of fallback selections
+	 */
+	public long getFallbackSelections() {
+		return fallbackSelections.sum();
+	}
+	
+	/**
+	 * Reads the input from the reader a chunk at a time, adding every word and the word immediately following it. 
+	 * Only the current chunk is held in memory, so the size of the input does not affect memory usage. 
+	 * The reader is not closed.
+	 * @param reader - the source of the input
+	 * @throws IOException if the input could not be read
+	 */
+	public void addInput(Reader reader) throws IOException {
+		ingest(() -> new InputFeeder(this).read(reader));
+	}
+	
+	/**
+	 * Memory maps the file and adds every word and the word immediately following it. 
+	 * This is faster than reading the file through a Reader and works for files larger than 2 GB.
+	 * @param file - the path of the file containing the input
+	 * @param charset - the charset of the file, which must encode whitespace the same way ASCII does
+	 * @throws IOException if the file could not be read
+	 */
+	public void addInput(Path file, Charset charset) throws IOException {
+		ingest(() -> new MappedCorpusLoader(charset).load(file, this));
+	}
+	
+	/**
+	 * Adds a batch of input, such as a whole file, and records how long it took if metrics are enabled.
+	 * @param task - adds the input
+	 * @throws E if the input could not be added
+	 */
+	<E extends Exception> void ingest(Ingest<E> task) throws E {
+		GeneratorMetrics recorder = metrics;
+		
+		if (recorder == null) {
+			task.run();
+			return;
 		}
 		
-		return false;
+		long tokens = recorder.getTokensIngested(),
+			 start = System.nanoTime();
+		
+		try {
+			task.run();
+		} finally {
+			recorder.recordIngest(recorder.getTokensIngested() - tokens, System.nanoTime() - start);
+		}
+	}
+	
+	/**
+	 * A batch of input to add.
+	 * @param <E> - the exception that adding the input may throw
+	 */
+	interface Ingest<E extends Exception> {
+		void run() throws E;
+	}
+	
+	/**
+	 * Saves the trained model to a compact binary snapshot, which can be loaded with load() instead of training the model again. 
+	 * An existing file is replaced only once the new snapshot has been written completely.
+	 * @param file - the path of the file to write
+	 * @throws IOException if the file could not be written
+	 */
+	public void save(Path file) throws IOException {
+		ModelSnapshot.write(toChainIndex(chains), file);
+	}
+	
+	/**
+	 * Loads a message generator from a snapshot written by save(). 
+	 * The generator has the same order, words, occurrences and possible states as the one that was saved.
+	 * @param file - the path of the snapshot
+	 * @return the loaded message generator
+	 * @throws IOException if the file could not be read, or is not a snapshot, or was corrupted or cut short
+	 */
+	public static MessageGenerator load(Path file) throws IOException {
+		ChainIndex loaded = ModelSnapshot.read(file);
+		MessageGenerator msgGen = new MessageGenerator(loaded.getOrder());
+		msgGen.chains = loaded;
+		
+		return msgGen;
+	}
+	
+	/**
+	 * Writes the trained model in a read-only layout of flat arrays that can be opened with openMapped(). 
+	 * The file is meant to be shared by several processes serving the same model.
+	 * @param file - the path of the file to write
+	 * @throws IOException if the file could not be written
+	 */
+	public void saveMapped(Path file) throws IOException {
+		ChainModel current = chains;
+		CompactModel compact = (current instanceof CompactModel) ? (CompactModel) current : CompactModel.build((ChainIndex) current);
+		compact.write(file);
+	}
+	
+	/**
+	 * Opens a model written by saveMapped() by memory mapping it, without reading it into the heap. 
+	 * Opening takes about the same time no matter how large the model is, and every process that opens the same file 
+	 * shares its pages through the page cache of the operating system. 
+	 * The generator is read-only: messages can be generated from it, and it can be saved or merged into another generator, 
+	 * but adding input to it throws an UnsupportedOperationException until clearInput() replaces it with an empty model.
+	 * @param file - the path of the file
+	 * @return the read-only message generator
+	 * @throws IOException if the file could not be mapped or is not a mapped model
+	 */
+	public static MessageGenerator openMapped(Path file) throws IOException {
+		CompactModel mapped = CompactModel.map(file);
+		MessageGenerator msgGen = new MessageGenerator(mapped.getOrder());
+		msgGen.chains = mapped;
+		
+		return msgGen;
+	}
+	
+	/**
+	 * Indicates whether or not input can be added to the generator.
+	 * @return true if the generator is frozen or memory mapped, false otherwise
+	 */
+	public boolean isReadOnly() {
+		return !(chains instanceof ChainIndex);
+	}
+	
+	/**
+	 * Lays the trained model out in flat arrays once training has finished, the same way as saveMapped() but on the heap. 
+	 * The possible states of each word are sorted from the most to the least common along with their running totals, 
+	 * so generating a message reads only arrays instead of following the hash tables and objects of every chain, 
+	 * and the model takes up less memory. 
+	 * The generator becomes read-only until it is thawed, so adding input to it throws an UnsupportedOperationException. 
+	 * It should not be given input while it is being frozen, since input added meanwhile may be left out. 
+	 * Freezing a generator that is already read-only does nothing.
+	 */
+	public void freeze() {
+		ChainModel current = chains;
+		
+		if (current instanceof ChainIndex) {
+			CompactModel frozen = CompactModel.build((ChainIndex) current);
+			frozen.continueVersion(current.getVersion());
+			replaceModel(frozen);
+		}
+	}
+	
+	/**
+	 * Copies a read-only model, whether frozen or memory mapped, back into chains that input can be added to, 
+	 * so that training can go on where it left off. Thawing a generator that can already be given input does nothing.
+	 */
+	public void thaw() {
+		ChainModel current = chains;
+		
+		if (current instanceof CompactModel) {
+			ChainIndex thawed = ((CompactModel) current).thaw();
+			
+			// Thawing counts as one change, so this brings the version to one past that of the frozen model
+			thawed.continueVersion(current.getVersion() - thawed.getVersion());
+			replaceModel(thawed);
+		}
+	}
+	
+	/**
+	 * Replaces the model with one that holds the same input, whose version is one past that of the model it replaces.
+	 * @param model - the new model
+	 */
+	private void replaceModel(ChainModel model) {
+		chains = model;
+		
+		GeneratorMetrics recorder = metrics;
+		if (recorder != null) {
+			recorder.recordReplaced();
+		}
+	}
+	
+	/**
+	 * Returns the model that messages are currently generated from.
+	 * @return the model
+	 */
+	ChainModel getModel() {
+		return chains;
+	}
+	
+	/**
+	 * Returns the chains that input is added to.
+	 * @return the chains
+	 * @throws UnsupportedOperationException if the generator is read-only
+	 */
+	private ChainIndex writableChains() {
+		ChainModel current = chains;
+		
+		if (!(current instanceof ChainIndex)) {
+			throw new UnsupportedOperationException("Input cannot be added to a read-only model");
+		}
+		
+		return (ChainIndex) current;
+	}
+	
+	/**
+	 * Returns the model as chains that can be saved or merged, copying it out of a read-only model if needed.
+	 * @param current - the model
+	 * @return the chains of the model
+	 */
+	private static ChainIndex toChainIndex(ChainModel current) {
+		return (current instanceof ChainIndex) ? (ChainIndex) current : ((CompactModel) current).thaw();
+	}
+	
+	/**
+	 * Finds the markov chain of the word by looking up its ID in the vocabulary. 
+	 * The chain is meant for inspecting the model; input should only be added through the generator. 
+	 * For a read-only generator, the chain is a copy that is not connected to the model.
+	 * @param word - a String containing the word to look for
+	 * @return the chain of the word, or null if the word has no chain
+	 */
+	public MarkovChain getChain(String word) {
+		ChainModel current = chains;
+		return current.getChain(current.getId(word));
+	}
+	
+	/**
+	 * Returns the number of distinct pairs of a word and one of its possible states.
+	 * @return a long containing the number of edges
+	 */
+	public long getNumberOfEdges() {
+		return chains.numberOfEdges();
+	}
+	
+	/**
+	 * Returns the maximum number of previous words that each generated word depends on.
+	 * @return an int containing the order of the generator
+	 */
+	public int getOrder() {
+		return order;
+	}
+	
+	/**
+	 * Returns the number of distinct contexts of two or more words that have been seen in the input. 
+	 * This is always zero for a generator of order one.
+	 * @return a long containing the number of contexts
+	 */
+	public long getNumberOfContexts() {
+		return chains.numberOfContexts();
 	}
 	
 	/**
@@ -128,63 +647,143 @@ public class MessageGenerator extends Applet {
 	 * @return a String containing the message
 	 */
 	public String generateText() {
-		if (listOfWords.isEmpty()) {
-			return "";
+		return generateText(chains, ThreadLocalRandom.current());
+	}
+	
+	/**
+	 * Generates a text message using the markov chains, making every random choice with the given generator. 
+	 * The same generator must not be used by more than one thread at a time.
+	 * @param random - the source of randomness to use
+	 * @return a String containing the message
+	 */
+	public String generateText(RandomGenerator random) {
+		return generateText(chains, random);
+	}
+	
+	/**
+	 * Generates the given number of messages on all of the cores of the common fork/join pool.
+	 * @param count - the number of messages to generate
+	 * @return a list containing the messages
+	 */
+	public List<String> generateTexts(int count) {
+		return generateStream(count).collect(Collectors.toList());
+	}
+	
+	/**
+	 * Returns a parallel stream of the given number of messages, which are generated as the stream is consumed.
+	 * @param count - the number of messages in the stream
+	 * @return a stream of messages
+	 */
+	public Stream<String> generateStream(long count) {
+		return generateStream(count, ThreadLocalRandom.current().nextLong());
+	}
+	
+	/**
+	 * Returns a parallel stream of the given number of messages, which are generated as the stream is consumed. 
+	 * Every worker that the stream is split across generates its share of the messages with its own random generator, 
+	 * split from one seeded with the given seed, so the workers never share any mutable state. 
+	 * All of the messages are generated from the input that the generator had when the stream was created.
+	 * @param count - the number of messages in the stream
+	 * @param seed - the seed of the random generator that the workers' generators are split from
+	 * @return a stream of messages
+	 */
+	public Stream<String> generateStream(long count, long seed) {
+		if (count < 0) {
+			throw new IllegalArgumentException("The number of messages cannot be negative: " + count);
 		}
 		
-		ArrayList<String> possibleSentenceStarts = new ArrayList<>();
-		String retVal = "",
-			   currentWord = "";
+		return StreamSupport.stream(new MessageSpliterator(chains, count, new SplittableRandom(seed)), true);
+	}
+	
+	/**
+	 * Generates a text message from the given model.
+	 * @param current - the model to generate from
+	 * @param random - the source of randomness to use
+	 * @return a String containing the message
+	 */
+	private String generateText(ChainModel current, RandomGenerator random) {
+		GeneratorMetrics recorder = metrics;
+		
+		if (recorder == null) {
+			return composeText(current, random);
+		}
 		
-		int currentNumWordsSentence = 0;
+		long start = System.nanoTime();
+		String text = composeText(current, random);
+		recorder.recordGeneration(System.nanoTime() - start);
 		
-		// Adds all the possible words into an array list
-		for (MarkovChain mc : listOfWords) {
-			if (mc.isCapital()) {
-				possibleSentenceStarts.add(mc.getWord());
-			}
+		return text;
+	}
+	
+	/**
+	 * Puts together a text message from the given model, one sentence at a time.
+	 * @param current - the model to generate from
+	 * @param random - the source of randomness to use
+	 * @return a String containing the message
+	 */
+	private String composeText(ChainModel current, RandomGenerator random) {
+		if (current.size() == 0) {
+			return "";
 		}
 		
+		// The history and the text are reused by every message generated on the same thread
+		Workspace workspace = workspaces.get();
+		History history = workspace.history;
+		StringBuilder text = workspace.text;
+		history.clear();
+		text.setLength(0);
+		
+		// The current word is only kept as a String when it is not the word of its ID in the model, such as an article or a capitalized word
+		String currentWord = null;
+		int currentId = -1;
+		int currentNumWordsSentence = 0;
+		boolean weighted = weightedSentenceStarts;
+		
 		do {
-			// Chooses the first word of the sentence
-			if (possibleSentenceStarts.isEmpty()) {
+			// Chooses the first word of the sentence from the capitalized words, which are kept in a list as input is added
+			int startId = weighted ? current.sampleSentenceStart(random) : -1;
+			if (startId < 0) {
+				startId = current.sampleCapital(random);
+			}
+			
+			if (startId < 0) {
 				// Use common articles to start the sentence
-				if (Math.random() <= 0.5) {
-					int randomNum = ThreadLocalRandom.current().nextInt(0, commonArticles.length);
+				if (random.nextDouble() <= 0.5) {
+					int randomNum = random.nextInt(0, commonArticles.length);
 					currentWord = commonArticles[randomNum];
+					currentId = current.getId(currentWord);
 				}
 				// Choose a random word from the list of words to start the sentence by using a weighted selection based on the number of occurrences
 				else {
-					currentWord = weightedWordSelection();
+					currentId = current.sampleWord(random);
+					currentWord = null;
 				}
 			}
 			else {
-				int randomNum = ThreadLocalRandom.current().nextInt(0, possibleSentenceStarts.size());
-				currentWord = possibleSentenceStarts.get(randomNum);
+				currentId = startId;
+				currentWord = null;
 			}
 			
-			char lastCharacterFirstWord = currentWord.charAt(currentWord.length() - 1);
-			if (!(lastCharacterFirstWord == '!' || lastCharacterFirstWord == '.' || lastCharacterFirstWord == '?')) {
+			if (!TokenFlags.has(getTokenFlags(current, currentId, currentWord), TokenFlags.ENDS_SENTENCE)) {
 				currentNumWordsSentence++;
 			}
 		} while (currentNumWordsSentence == 0);
 		
-		retVal += currentWord + " ";
-		int numWordsTotal = ThreadLocalRandom.current().nextInt(10, 30);
+		history.push(currentId);
+		appendWord(current, text, currentId, currentWord).append(' ');
+		int numWordsTotal = random.nextInt(10, 30);
 		int currentNumWords = 1;
 		
 		while (currentNumWords != numWordsTotal) {
-			char lastChar = currentWord.charAt(currentWord.length() - 1);
-			boolean endOfSentence = (lastChar == '!' || lastChar == '.' || lastChar == '?');
+			boolean endOfSentence;
 			
 			// Keeps generating words until a word without punctuation is given if the sentence has not reached the minimum size yet
 			do {
-				currentWord = getNextWord(currentWord);
-				lastChar = currentWord.charAt(currentWord.length() - 1);
-				endOfSentence = (lastChar == '!' || lastChar == '.' || lastChar == '?');
+				currentWord = getNextWord(current, history, currentWord, random);
+				endOfSentence = TokenFlags.has(getTokenFlags(current, history.last(), currentWord), TokenFlags.ENDS_SENTENCE);
 			} while (currentNumWordsSentence < minWordsInSentence && endOfSentence);
 			
-			retVal += currentWord + " ";
+			appendWord(current, text, history.last(), currentWord).append(' ');
 			currentNumWords++;
 			currentNumWordsSentence++;
 			
@@ -194,24 +793,105 @@ public class MessageGenerator extends Applet {
 			}
 		}
 		
-		retVal = retVal.substring(0,1).toUpperCase() + retVal.substring(1, retVal.length() - 1);
+		// Drops the trailing space and capitalizes the first letter of the message
+		text.setLength(text.length() - 1);
+		upperCaseAt(text, 0);
 		
 		// Adds a period for punctuation, otherwise randomizes the ending punctuation mark
-		if (Character.isLetterOrDigit(retVal.charAt(retVal.length() - 1))) {
-			return retVal + ".";
+		int last = text.length() - 1;
+		if (Character.isLetterOrDigit(text.charAt(last))) {
+			return text.append('.').toString();
 		}
 		
-		char[] punctuation = { '.', '!', '?' };
-		char endingPunctuation = punctuation[ThreadLocalRandom.current().nextInt(0, punctuation.length)];
+		text.setCharAt(last, PUNCTUATION[random.nextInt(0, PUNCTUATION.length)]);
 		
-		return retVal.substring(0, retVal.length() - 1) + endingPunctuation;
+		return text.toString();
 	}
 	
 	/**
-	 * Clears all markov chains from the generator and then calls Java's garbage collector.
+	 * Starts recording how long training and generation take, unless it has already been started. 
+	 * The metrics can be registered as an MBean to watch them over JMX.
+	 * @return the metrics of this generator
+	 */
+	public synchronized GeneratorMetrics enableMetrics() {
+		if (metrics == null) {
+			metrics = new GeneratorMetrics(this);
+		}
+		
+		return metrics;
+	}
+	
+	/**
+	 * Stops recording metrics. Metrics that were already handed out keep what they recorded, but record nothing more.
+	 */
+	public synchronized void disableMetrics() {
+		if (metrics != null) {
+			metrics.stop();
+			metrics = null;
+		}
+	}
+	
+	/**
+	 * Returns the metrics that are being recorded.
+	 * @return the metrics, or null if they are not enabled
+	 */
+	public GeneratorMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Returns the number of distinct words in the input, whether or not they have a markov chain.
+	 * @return an int containing the number of words
+	 */
+	public int getVocabularySize() {
+		return chains.vocabularySize();
+	}
+	
+	/**
+	 * Estimates the memory that the model takes up. This walks every chain, so it takes a while on a large model.
+	 * @return a long containing the size in bytes, which for a mapped model is the size of the mapped file
+	 */
+	public long getEstimatedBytes() {
+		return chains.estimateBytes();
+	}
+	
+	/**
+	 * Returns the number of distinct words that have a markov chain.
+	 * @return an int containing the number of chains
+	 */
+	public int getNumberOfChains() {
+		return chains.size();
+	}
+	
+	/**
+	 * Returns a number that increases by one for every word of input that is added, and also when the input is cleared. 
+	 * It can be compared against an earlier version to find out whether messages generated back then are still representative of the input.
+	 * @return a long containing the version of the input
+	 */
+	public long getVersion() {
+		return chains.getVersion();
+	}
+	
+	/**
+	 * Clears all markov chains from the generator, along with which posts of each timeline have been read, 
+	 * and then calls Java's garbage collector.
 	 */
 	public void clearInput() {
-		listOfWords.clear();
+		ChainIndex cleared = new ChainIndex(order);
+		cleared.continueVersion(chains.getVersion());
+		chains = cleared;
+		timelineProgress.clear();
+		
+		ApproximateTraining approx = approximate;
+		if (approx != null) {
+			approx.clear();
+		}
+		
+		GeneratorMetrics recorder = metrics;
+		if (recorder != null) {
+			recorder.recordReplaced();
+		}
+		
 		System.gc();
 	}
 	
@@ -220,75 +900,108 @@ public class MessageGenerator extends Applet {
 	 * @return a boolean indicating its current state
 	 */
 	public boolean isAnalyzing() {
-		return this.analyzingInput;
+		return this.analyzingInput.get();
+	}
+	
+	/**
+	 * Sets where timelines are read from, which is Twitter unless it is changed. 
+	 * Since post IDs only mean something to the source they came from, which posts have been read is forgotten, 
+	 * and the next read of each timeline starts from the beginning.
+	 * @param source - the source of the timelines
+	 */
+	public void setTimelineSource(TimelineSource source) {
+		this.timelineSource = source;
+		timelineProgress.clear();
 	}
 	
 	/**
-	 * Reads in the specified user's Twitter timeline and parses it for input.
+	 * Returns where timelines are read from.
+	 * @return the source of the timelines
+	 */
+	public TimelineSource getTimelineSource() {
+		TimelineSource source = timelineSource;
+		
+		if (source == null) {
+			synchronized (this) {
+				if (timelineSource == null) {
+					timelineSource = new TwitterTimelineSource();
+				}
+				source = timelineSource;
+			}
+		}
+		
+		return source;
+	}
+	
+	/**
+	 * Reads in the user's timeline from the timeline source and adds every post that is newer than the ones already read, 
+	 * fetching the next pages while the current one is being added. Returns once all of the new posts have been added. 
+	 * The first read of a timeline adds every post, and each read after that only the posts made since, 
+	 * so its cost depends on the number of new posts rather than the length of the timeline.
+	 * @param user - the user to be analyzed
+	 * @return an int containing the number of posts that were added
+	 * @throws IOException if a page of the timeline could not be fetched; the pages before it have been added, 
+	 * and the next read adds only the pages that were missed along with any new posts
+	 */
+	public int readTimeline(String user) throws IOException {
+		TimelineReader reader = new TimelineReader(this, getTimelineSource());
+		TimelineProgress progress = timelineProgress.computeIfAbsent(user, u -> new TimelineProgress(0));
+		int[] posts = new int[1];
+		
+		ingest(() -> posts[0] = reader.read(user, progress));
+		
+		return posts[0];
+	}
+	
+	/**
+	 * Returns the ID of the newest post of the user's timeline that has been read, along with every post before it, 
+	 * since the input was last cleared.
+	 * @param user - the user whose timeline was read
+	 * @return a long containing the ID of the post, or 0 if the timeline has not been read
+	 */
+	public long getNewestPostId(String user) {
+		TimelineProgress progress = timelineProgress.get(user);
+		return progress == null ? 0 : progress.getSinceId();
+	}
+	
+	/**
+	 * Reads in the specified user's Twitter timeline and parses it for input on a separate thread. 
+	 * If the input came from only this user's timeline, only the posts made since it was last read are added; 
+	 * otherwise the input is replaced with the whole timeline. isAnalyzing() is true until it finishes.
 	 * @param user - the Twitter user to be analyzed
-	 * @return an int indicating the function's error code; 0 = normal operation, -1 = no such user exists
+	 * @return an int indicating the function's error code; 0 = normal operation, -1 = no such user exists or the source could not be reached
 	 */
 	public int readFromTwitter(String user) {
-		if (analyzingInput) {
+		// Only one profile can be analyzed at a time
+		if (!analyzingInput.compareAndSet(false, true)) {
 			return 0;
 		}
 		
-		if (!checkIfUserExists(user)) {
+		try {
+			if (!getTimelineSource().userExists(user)) {
+				analyzingInput.set(false);
+				return -1;
+			}
+		} catch (IOException e) {
+			analyzingInput.set(false);
 			return -1;
 		}
 		
-		
 		// Starts a new thread
 		// Anonymous Thread method taken from ELITE at https://stackoverflow.com/questions/30286705/
 		new Thread() {
 			public void run() {
-				analyzingInput = true;
-				clearInput();
-				System.gc();
-
-				// Creates a builder using Twitter auth keys
-				ConfigurationBuilder cb = new ConfigurationBuilder();
-				readInAPIKeys(cb);
-
-				// Pulls the Tweets from the specified user's profile
-				Twitter twitter = new TwitterFactory(cb.build()).getInstance();
-
-				int pageno = 1;
-				List<Status> statuses = new ArrayList<>();
-
-				while (true) {
-					try {
-						int size = statuses.size(); 
-						Paging page = new Paging(pageno++, 100);
-						statuses.addAll(twitter.getUserTimeline(user, page));
-						if (statuses.size() == size)
-							break;
-					}
-					catch(TwitterException te) {
-						analyzingInput = false;
-						return;
-					}
-				}
-
-				if (statuses.isEmpty()) {
-					analyzingInput = false;
-					return;
-				}
-
-				// Puts in the text as input for the markov chains
-				String text = "";
-
-				for (Status s : statuses) {
-					text += s.getText() + " ";
+				if (timelineProgress.size() != 1 || !timelineProgress.containsKey(user)) {
+					clearInput();
 				}
-
-				String[] input = text.split("\\s+");
-
-				for (int i = 0; i < input.length - 1; i++) {
-					addInput(input[i], input[i + 1]);
+				
+				try {
+					readTimeline(user);
+				} catch (IOException e) {
+					// Keeps whatever was read before the timeline could not be fetched, and the next read picks up the rest
+				} finally {
+					analyzingInput.set(false);
 				}
-
-				analyzingInput = false;
 			}
 		}.start();
 		
@@ -296,130 +1009,298 @@ public class MessageGenerator extends Applet {
 	}
 	
 	/**
-	 * Reads in the Twitter API keys; used to reduce code duplication
-	 * @param cb - a ConfigurationBuilder to read the keys into
+	 * Generates a possible state of the current word, which is the last word of the history. 
+	 * If the word does not have a chain, or another thread has not added its first state yet, it returns -1. 
+	 * For a generator of a higher order, the longest context of previous words that has been seen is tried first.
+	 * @param current - the chains to choose from
+	 * @param history - the IDs of the words generated so far, ending with the current word
+	 * @param id - the ID of the current word
+	 * @param random - the source of randomness to use
+	 * @return the ID of a possible state that follows the current word, or -1 if there is none
 	 */
-	private void readInAPIKeys(ConfigurationBuilder cb) {
-		try {
-			Scanner keyReader = new Scanner(new File("assets/keys"));
-			cb.setOAuthConsumerKey(keyReader.nextLine());
-			cb.setOAuthConsumerSecret(keyReader.nextLine());
-			cb.setOAuthAccessToken(keyReader.nextLine());
-			cb.setOAuthAccessTokenSecret(keyReader.nextLine());
-			keyReader.close();
-		} catch (FileNotFoundException fe) {
-			fe.printStackTrace();
-			System.exit(-1);
+	private int getPossibleState(ChainModel current, History history, int id, RandomGenerator random) {
+		int state = -1;
+		
+		if (order > 1) {
+			state = current.sampleContext(history.ids, history.length, random);
 		}
+		
+		if (state < 0) {
+			state = current.sampleState(id, random);
+		}
+		
+		return state;
 	}
 	
 	/**
-	 * Checks to see if the Twitter user exists
-	 * @param user - the username of the Twitter user
-	 * @return a boolean indicating if the user exists or not
+	 * Generates the next word in the sentence based on the current word and the words before it. 
+	 * The longest context of previous words that has been seen in the input is used, backing off to only the current word. 
+	 * If the current word has no chain, the chains of the same word in a different case are used instead, and if there are none, 
+	 * it performs a weighted selection on all the words of the input. 
+	 * The ID of the current word is taken from the end of the history, so the vocabulary is only searched when a word is capitalized, 
+	 * and whether it ends a sentence or has to be followed by a capital is read from the flags of the word instead of its characters. 
+	 * A word is only looked up as a String when it has to be capitalized, so a word of a mapped model is not copied out of it until it is appended.
+	 * @param current - the chains to choose from
+	 * @param history - the IDs of the words generated so far, which the next word is added to
+	 * @param currentWord - a String containing the current word in the sentence, or null if it is the word of the last ID of the history
+	 * @param random - the source of randomness to use
+	 * @return a String with the next word in the sentence, or null if it is the word of the ID that was added to the history
 	 */
-	private boolean checkIfUserExists(String user) {
-		// Creates a builder using Twitter auth keys
-		ConfigurationBuilder cb = new ConfigurationBuilder();
-		readInAPIKeys(cb);
-
-		// Pulls the Tweets from the specified user's profile
-		Twitter twitter = new TwitterFactory(cb.build()).getInstance();
+	private String getNextWord(ChainModel current, History history, String currentWord, RandomGenerator random) {
+		int id = history.last();
+		int flags = getTokenFlags(current, id, currentWord);
 		
-		// Check if the user exists
-		try{
-			twitter.showUser(user);
+		// Generates a word that is not entirely non-Alphanumerics, which starts a new context
+		if (TokenFlags.has(flags, TokenFlags.NO_ALPHANUMERIC)) {
+			do {
+				id = current.sampleWord(random);
+				flags = current.getTokenFlags(id);
+			} while (TokenFlags.has(flags, TokenFlags.NO_ALPHANUMERIC));
+			
+			history.clear();
+			history.push(id);
 		}
-		catch (TwitterException te) {
-			if (te.getStatusCode() == 404) {
-				return false;
+		
+		// Chooses a word, matching the current word when case is ignored before falling back to all of the words
+		int nextId;
+		if (current.hasChain(id)) {
+			nextId = getPossibleState(current, history, id, random);
+		}
+		else {
+			nextId = caseFoldedLookup ? current.sampleCaseFolded(currentWord == null ? current.getWord(id) : currentWord, random) : -1;
+			
+			if (nextId >= 0) {
+				caseFoldedLookups.increment();
+			}
+			else {
+				fallbackSelections.increment();
+				nextId = current.sampleWord(random);
 			}
 		}
 		
-		return true;
+		boolean capitalize = TokenFlags.has(flags, TokenFlags.ENDS_SENTENCE) || TokenFlags.has(flags, TokenFlags.PRONOUN_I);
+		
+		if (nextId >= 0 && !capitalize) {
+			history.push(nextId);
+			return null;
+		}
+		
+		String nextWord = (nextId < 0) ? "." : current.getWord(nextId);
+		
+		// Capitalizes the word if the current word ends a sentence
+		if (TokenFlags.has(flags, TokenFlags.ENDS_SENTENCE)) {
+			boolean opensQuote = TokenFlags.has(getTokenFlags(current, nextId, nextWord), TokenFlags.OPENS_QUOTE);
+			currentWord = upperCaseAt(nextWord, opensQuote ? 1 : 0);
+		}
+		else if (TokenFlags.has(flags, TokenFlags.PRONOUN_I)) {
+			currentWord = upperCase(nextWord);
+		}
+		else {
+			currentWord = nextWord;
+		}
+		
+		// A word that was changed by capitalizing it may be a different word in the vocabulary
+		if (currentWord == nextWord && nextId >= 0) {
+			history.push(nextId);
+			return null;
+		}
+		
+		history.push(current.getId(currentWord));
+		
+		return currentWord;
+	}
+	
+	/**
+	 * Appends a word of the message to the text.
+	 * @param current - the chains that the word was generated from
+	 * @param text - the text to append to
+	 * @param id - the ID of the word
+	 * @param word - the word itself, or null if it is the word of the ID, which is then appended without creating a String on a mapped model
+	 * @return the text
+	 */
+	private static StringBuilder appendWord(ChainModel current, StringBuilder text, int id, String word) {
+		if (word == null) {
+			current.appendWord(id, text);
+		}
+		else {
+			text.append(word);
+		}
+		
+		return text;
+	}
+	
+	/**
+	 * Returns the flags of a word in the message. Only a word that is not in the vocabulary, such as an article 
+	 * or a word that was changed by capitalizing it, has to be inspected again.
+	 * @param current - the chains that the word was generated from
+	 * @param id - the ID of the word, or -1 if it is not in the vocabulary
+	 * @param word - the word itself
+	 * @return an int containing the TokenFlags of the word
+	 */
+	private static int getTokenFlags(ChainModel current, int id, String word) {
+		return (id >= 0) ? current.getTokenFlags(id) : TokenFlags.of(word);
 	}
 	
 	/**
-	 * Randomly chooses a word from the list of all words, where the number of occurrences alters the chance of being selected. 
-	 * This is done using a probability mass function.
-	 * @return a word randomly selected from the list of words
+	 * Changes one character of the word to upper case in the same way as String.toUpperCase(). 
+	 * ASCII characters other than i are upper cased the same way in every locale, so those are changed without creating substrings.
+	 * @param word - the word to capitalize
+	 * @param index - the position of the character
+	 * @return the capitalized word, which is the same instance if nothing changed
 	 */
-	private String weightedWordSelection() {
-		ArrayList<Pair<String,Double>> potentialStarters = new ArrayList<>();
+	private static String upperCaseAt(String word, int index) {
+		char c = word.charAt(index);
 		
-		for (MarkovChain mc : listOfWords) {
-			potentialStarters.add(new Pair<String, Double>(mc.getWord(), 0.0 + mc.getOccurrences()));
+		if (c < 0x80 && c != 'i') {
+			if (c < 'a' || c > 'z') {
+				return word;
+			}
+			
+			char[] chars = word.toCharArray();
+			chars[index] = (char) (c - ('a' - 'A'));
+			return new String(chars);
 		}
 		
-		EnumeratedDistribution<String> weightedSelection = new EnumeratedDistribution<>(potentialStarters);
+		return word.substring(0, index) + word.substring(index, index + 1).toUpperCase() + word.substring(index + 1);
+	}
+	
+	/**
+	 * Changes one character of the text to upper case in the same way as String.toUpperCase().
+	 * @param text - the text to capitalize
+	 * @param index - the position of the character
+	 */
+	private static void upperCaseAt(StringBuilder text, int index) {
+		char c = text.charAt(index);
 		
-		return weightedSelection.sample();
+		if (c < 0x80 && c != 'i') {
+			if (c >= 'a' && c <= 'z') {
+				text.setCharAt(index, (char) (c - ('a' - 'A')));
+			}
+		}
+		else {
+			text.replace(index, index + 1, text.substring(index, index + 1).toUpperCase());
+		}
 	}
 	
 	/**
-	 * Generates and returns a possible word based on the possible states of the given word. 
-	 * If the word does not exist in any of the chains, it returns a period.
-	 * @param word - a String containing the current word in the sentence
-	 * @return a String with a possible response that follows the current word
+	 * Changes the whole word to upper case, without creating a new String if it has no lower case ASCII characters.
+	 * @param word - the word to change
+	 * @return the word in upper case, which is the same instance if nothing changed
 	 */
-	private String getPossibleWord(String word) {
-		for (MarkovChain mc : listOfWords) {
-			if (mc.getWord().equalsIgnoreCase(word)) {
-				return mc.getPossibleState();
+	private static String upperCase(String word) {
+		for (int i = 0; i < word.length(); i++) {
+			char c = word.charAt(i);
+			
+			if (c >= 0x80 || (c >= 'a' && c <= 'z')) {
+				return word.toUpperCase();
 			}
 		}
 		
-		return ".";
+		return word;
 	}
 	
 	/**
-	 * Generates the next word in the sentence based on the current word. 
-	 * If the current word is not in the data structure, it performs a weighted selection on all the words of the input.
-	 * @param currentWord - a String containing the current word in the sentence
-	 * @return a String with the next word in the sentence
+	 * Splits the generation of a batch of messages across the workers of a parallel stream. 
+	 * Each split takes half of the remaining messages along with a random generator split from the current one.
 	 */
-	private String getNextWord(String currentWord) {
-		String wordNoNonAlphanumerics = currentWord.replaceAll("[^A-Za-z0-9]", "");
-
-		// Generates a word that is not entirely non-Alphanumerics
-		while (wordNoNonAlphanumerics.length() == 0) {
-			currentWord = weightedWordSelection();
-			wordNoNonAlphanumerics = currentWord.replaceAll("[^A-Za-z0-9]", "");
+	private class MessageSpliterator implements Spliterator<String> {
+		private final ChainModel model;
+		private final SplittableRandom random;
+		private long remaining;
+		
+		MessageSpliterator(ChainModel model, long remaining, SplittableRandom random) {
+			this.model = model;
+			this.remaining = remaining;
+			this.random = random;
 		}
 		
-		char lastChar = ' ';
-		boolean needToCapitalize = false;
+		@Override
+		public boolean tryAdvance(Consumer<? super String> action) {
+			if (remaining == 0) {
+				return false;
+			}
+			
+			remaining--;
+			action.accept(generateText(model, random));
+			
+			return true;
+		}
 		
-		// Checks to see if it is the beginning of a new sentence
-		if (currentWord.length() > 0) {
-			lastChar = currentWord.charAt(currentWord.length() - 1);
-			needToCapitalize = (lastChar == '!' || lastChar == '.' || lastChar == '?');
+		@Override
+		public Spliterator<String> trySplit() {
+			if (remaining < 2) {
+				return null;
+			}
+			
+			long half = remaining / 2;
+			remaining -= half;
+			
+			return new MessageSpliterator(model, half, random.split());
 		}
 		
-		// Chooses a word
-		if (!contains(currentWord)) {
-			currentWord = weightedWordSelection();
+		@Override
+		public long estimateSize() {
+			return remaining;
 		}
-		else {
-			currentWord = getPossibleWord(currentWord);
+		
+		@Override
+		public int characteristics() {
+			return SIZED | SUBSIZED | NONNULL | IMMUTABLE;
 		}
-
-		char firstChar = currentWord.charAt(0);
-
-		// Capitalizes the word
-		if (needToCapitalize) {
-			if ((firstChar == '\u201c' || firstChar == '"') && currentWord.length() >= 2) {
-				currentWord = currentWord.substring(0,1) + currentWord.substring(1,2).toUpperCase() + currentWord.substring(2);
-			}
-			else {
-				currentWord = currentWord.substring(0,1).toUpperCase() + currentWord.substring(1);
+	}
+	
+	/**
+	 * The IDs of the last few words of a message being generated, oldest first, with -1 for words that are not in the vocabulary. 
+	 * Only as many words as the order of the generator are kept.
+	 */
+	private static class History {
+		final int[] ids;
+		int length;
+		
+		History(int order) {
+			this.ids = new int[order];
+			this.length = 0;
+		}
+		
+		/**
+		 * Adds the ID of the newest word, dropping the oldest one if the history is full.
+		 * @param id - the ID of the word
+		 */
+		void push(int id) {
+			if (length == ids.length) {
+				System.arraycopy(ids, 1, ids, 0, length - 1);
+				length--;
 			}
-			needToCapitalize = false;
+			
+			ids[length++] = id;
 		}
-		else if (wordNoNonAlphanumerics.equalsIgnoreCase("I")) {
-			currentWord = currentWord.toUpperCase();
+		
+		/**
+		 * Forgets every word, such as when the message jumps to an unrelated word.
+		 */
+		void clear() {
+			length = 0;
 		}
 		
-		return currentWord;
+		/**
+		 * Returns the ID of the newest word.
+		 * @return an int containing the ID, which must not be called on an empty history
+		 */
+		int last() {
+			return ids[length - 1];
+		}
+	}
+	
+	/**
+	 * The buffers that a thread reuses from one generated message to the next, so that a message only allocates the String it returns.
+	 */
+	private static class Workspace {
+		final History history;
+		final StringBuilder text;
+		
+		Workspace(int order) {
+			this.history = new History(order);
+			this.text = new StringBuilder(256);
+		}
 	}
-}
\ No newline at end of file
+}
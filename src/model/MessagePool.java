@@ -0,0 +1,251 @@
+package model;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Keeps a number of messages generated ahead of time, so that a message can be handed out as soon as it is asked for
+ * instead of waiting for it to be generated.
+ * Background workers fill a bounded ring buffer and top it up as it drains. Every message remembers the version of the
+ * input it was generated from, and once input is added to or cleared from the generator, the messages of the old
+ * version are thrown away rather than handed out. If no message is ready, one is generated on the spot, so take()
+ * always returns a message; how often that happens is reported by getMisses().
+ * While input is being added continuously the version keeps changing, so the pool only helps once training has settled.
+ * @author Richie Ren
+ *
+ */
+public class MessagePool implements AutoCloseable {
+
+	/**
+	 * How long an idle worker waits before checking whether the input has changed, in nanoseconds.
+	 */
+	private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final MessageGenerator msgGen;
+	private final RingBuffer<Message> buffer;
+	private final Thread[] workers;
+	private final AtomicInteger nextWorker;
+	private final LongAdder hits;
+	private final LongAdder misses;
+	private final LongAdder discarded;
+	private volatile boolean running;
+
+	/**
+	 * Creates a pool with one worker per available processor, leaving one processor for the threads that take messages.
+	 * @param msgGen - the message generator to generate from
+	 * @param capacity - the number of messages to keep ready
+	 */
+	public MessagePool(MessageGenerator msgGen, int capacity) {
+		this(msgGen, capacity, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+	}
+
+	/**
+	 * Creates a pool and starts its workers.
+	 * @param msgGen - the message generator to generate from
+	 * @param capacity - the number of messages to keep ready, which is rounded up to a power of two
+	 * @param numWorkers - the number of background threads that generate messages
+	 */
+	public MessagePool(MessageGenerator msgGen, int capacity, int numWorkers) {
+		if (numWorkers < 1) {
+			throw new IllegalArgumentException("A pool needs at least one worker");
+		}
+
+		this.msgGen = msgGen;
+		buffer = new RingBuffer<>(capacity);
+		workers = new Thread[numWorkers];
+		nextWorker = new AtomicInteger();
+		hits = new LongAdder();
+		misses = new LongAdder();
+		discarded = new LongAdder();
+		running = true;
+
+		// Every worker gets its own generator split from one root, so workers never share the state of a random generator
+		SplittableRandom root = new SplittableRandom();
+		for (int i = 0; i < numWorkers; i++) {
+			SplittableRandom random = root.split();
+			workers[i] = new Thread(() -> fill(random), "MessagePool-" + i);
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+	}
+
+	/**
+	 * A generated message and the version of the input it was generated from.
+	 */
+	private static class Message {
+		final String text;
+		final long version;
+
+		Message(String text, long version) {
+			this.text = text;
+			this.version = version;
+		}
+	}
+
+	/**
+	 * Generates messages whenever there is room for them, until the pool is closed.
+	 * @param random - the source of randomness of this worker
+	 */
+	private void fill(SplittableRandom random) {
+		long seen = msgGen.getVersion();
+
+		while (running) {
+			long version = msgGen.getVersion();
+
+			if (version != seen) {
+				discardAll();
+				seen = version;
+			}
+
+			if (buffer.size() >= buffer.capacity() || msgGen.getNumberOfChains() == 0) {
+				LockSupport.parkNanos(this, IDLE_NANOS);
+				continue;
+			}
+
+			String text = msgGen.generateText(random);
+
+			// A message that was generated while input was being added may already be out of date
+			if (msgGen.getVersion() != version || !buffer.offer(new Message(text, version))) {
+				discarded.increment();
+			}
+
+			// Lets a thread that is waiting to take a message run before the next one is generated
+			Thread.yield();
+		}
+	}
+
+	/**
+	 * Throws away every message in the buffer.
+	 */
+	private void discardAll() {
+		while (buffer.poll() != null) {
+			discarded.increment();
+		}
+	}
+
+	/**
+	 * Returns a message generated from the current input. A message that was generated ahead of time is returned if there is one,
+	 * and otherwise one is generated on the calling thread.
+	 * @return a String containing the message
+	 */
+	public String take() {
+		String text = poll();
+
+		if (text == null) {
+			misses.increment();
+			return msgGen.generateText();
+		}
+
+		return text;
+	}
+
+	/**
+	 * Returns a message that was generated ahead of time from the current input, without ever generating one.
+	 * @return a String containing the message, or null if none is ready
+	 */
+	public String poll() {
+		long version = msgGen.getVersion();
+		Message message;
+
+		while ((message = buffer.poll()) != null) {
+			if (message.version == version) {
+				hits.increment();
+
+				// Leaves the workers asleep until the pool has drained by half, so that most takes skip waking one
+				if (buffer.size() <= buffer.capacity() / 2) {
+					wakeWorker();
+				}
+
+				return message.text;
+			}
+
+			discarded.increment();
+		}
+
+		wakeWorker();
+		return null;
+	}
+
+	/**
+	 * Wakes the next worker in turn to top up the pool. Waking a worker that is not waiting costs little.
+	 */
+	private void wakeWorker() {
+		LockSupport.unpark(workers[Math.floorMod(nextWorker.getAndIncrement(), workers.length)]);
+	}
+
+	/**
+	 * Stops the workers, waiting for each to finish the message it is generating. Messages can still be taken afterwards,
+	 * but they are all generated on the calling thread once the buffer is empty.
+	 */
+	@Override
+	public void close() {
+		running = false;
+
+		for (Thread worker : workers) {
+			LockSupport.unpark(worker);
+		}
+
+		try {
+			for (Thread worker : workers) {
+				worker.join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Returns the number of messages that are ready, some of which may be out of date if input was just added.
+	 * @return an int containing the number of messages
+	 */
+	public int size() {
+		return buffer.size();
+	}
+
+	/**
+	 * Returns the number of messages the pool keeps ready.
+	 * @return an int containing the capacity
+	 */
+	public int capacity() {
+		return buffer.capacity();
+	}
+
+	/**
+	 * Returns the number of messages that were handed out from the pool.
+	 * @return a long containing the number of hits
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Returns the number of times take() found no message ready and had to generate one itself.
+	 * @return a long containing the number of misses
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Returns the number of messages that were thrown away, because input was added or cleared after they were generated
+	 * or because other workers filled the pool first.
+	 * @return a long containing the number of discarded messages
+	 */
+	public long getDiscarded() {
+		return discarded.sum();
+	}
+
+	/**
+	 * Returns the share of calls to take() that were answered from the pool.
+	 * @return a double between 0 and 1, or 0 if no message has been taken
+	 */
+	public double getHitRate() {
+		long hits = getHits(),
+			 total = hits + getMisses();
+
+		return total == 0 ? 0 : (double) hits / total;
+	}
+}
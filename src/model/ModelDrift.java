@@ -0,0 +1,155 @@
+package model;
+
+/**
+ * Measures how far the model of one message generator has drifted from that of another trained on the same input,
+ * such as a generator trained approximately against one trained exactly.
+ * Every figure is weighted by how many times each word of the reference was followed by another, so the common words,
+ * which most of every generated message is made of, count the most.
+ * @author Richie Ren
+ *
+ */
+public final class ModelDrift {
+
+	private final double totalVariation;
+	private final double coverage;
+	private final double topStateAgreement;
+	private final double edgeRatio;
+	private final double byteRatio;
+
+	private ModelDrift(double totalVariation, double coverage, double topStateAgreement, double edgeRatio, double byteRatio) {
+		this.totalVariation = totalVariation;
+		this.coverage = coverage;
+		this.topStateAgreement = topStateAgreement;
+		this.edgeRatio = edgeRatio;
+		this.byteRatio = byteRatio;
+	}
+
+	/**
+	 * Compares the model of the candidate to that of the reference, word by word.
+	 * Neither generator should be given input while they are compared.
+	 * @param reference - the generator to compare against
+	 * @param candidate - the generator to compare
+	 * @return the drift of the candidate from the reference
+	 */
+	public static ModelDrift measure(MessageGenerator reference, MessageGenerator candidate) {
+		ChainModel referenceModel = reference.getModel();
+		ChainModel candidateModel = candidate.getModel();
+		double variation = 0, covered = 0, agreed = 0;
+		long total = 0;
+
+		for (int id = 0; id < referenceModel.idLimit(); id++) {
+			MarkovChain mc = referenceModel.getChain(id);
+
+			if (mc == null) {
+				continue;
+			}
+
+			IntList states = new IntList(), cumulative = new IntList();
+			mc.copyStates(Integer.MAX_VALUE, states, cumulative);
+
+			if (states.size() == 0) {
+				continue;
+			}
+
+			int weight = cumulative.get(cumulative.size() - 1);
+			total += weight;
+
+			MarkovChain other = candidateModel.getChain(candidateModel.getId(referenceModel.getWord(id)));
+			int otherTotal = 0, otherTop = 0;
+
+			if (other != null) {
+				IntList candidateStates = new IntList(), candidateCumulative = new IntList();
+				other.copyStates(Integer.MAX_VALUE, candidateStates, candidateCumulative);
+
+				if (candidateStates.size() > 0) {
+					otherTotal = candidateCumulative.get(candidateCumulative.size() - 1);
+					otherTop = candidateCumulative.get(0);
+				}
+			}
+
+			if (otherTotal == 0) {
+				variation += weight;
+				continue;
+			}
+
+			// Half the sum of the differences over the states of the reference, plus the share of the candidate that is not one of them
+			double difference = 0, sharedShare = 0;
+			int coveredCount = 0;
+
+			for (int i = 0; i < states.size(); i++) {
+				int count = cumulative.get(i) - (i > 0 ? cumulative.get(i - 1) : 0);
+				int otherCount = other.getStateCount(mc.getStateWord(states.get(i)));
+				double otherShare = otherCount / (double) otherTotal;
+
+				difference += Math.abs(count / (double) weight - otherShare);
+				sharedShare += otherShare;
+
+				if (otherCount > 0) {
+					coveredCount += count;
+				}
+
+				// The most common state of the reference is first, and agrees if it is as common as any state of the candidate
+				if (i == 0 && otherCount == otherTop) {
+					agreed += weight;
+				}
+			}
+
+			variation += weight * Math.min(1, (difference + Math.max(0, 1 - sharedShare)) / 2);
+			covered += coveredCount;
+		}
+
+		long referenceEdges = referenceModel.numberOfEdges();
+		long referenceBytes = referenceModel.estimateBytes();
+
+		return new ModelDrift(total == 0 ? 0 : variation / total, total == 0 ? 1 : covered / total, total == 0 ? 1 : agreed / total,
+				referenceEdges == 0 ? 1 : candidateModel.numberOfEdges() / (double) referenceEdges,
+				candidateModel.estimateBytes() / (double) referenceBytes);
+	}
+
+	/**
+	 * Returns the total variation distance between the distributions of the next word of the two models, averaged over the words of the reference.
+	 * A word that the candidate has no states for counts as the largest distance of one.
+	 * @return a double between 0, for the same distributions, and 1
+	 */
+	public double getTotalVariation() {
+		return totalVariation;
+	}
+
+	/**
+	 * Returns the share of the transitions of the reference that the candidate can also make.
+	 * @return a double between 0 and 1
+	 */
+	public double getCoverage() {
+		return coverage;
+	}
+
+	/**
+	 * Returns the share of the words of the reference whose most likely next word is also most likely in the candidate.
+	 * @return a double between 0 and 1
+	 */
+	public double getTopStateAgreement() {
+		return topStateAgreement;
+	}
+
+	/**
+	 * Returns the number of distinct pairs of words in the candidate as a share of those in the reference.
+	 * @return a double containing the ratio
+	 */
+	public double getEdgeRatio() {
+		return edgeRatio;
+	}
+
+	/**
+	 * Returns the estimated memory of the candidate's model as a share of that of the reference.
+	 * @return a double containing the ratio
+	 */
+	public double getByteRatio() {
+		return byteRatio;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("total variation %.4f, coverage %.4f, top state agreement %.4f, edges %.3fx, memory %.3fx",
+				totalVariation, coverage, topStateAgreement, edgeRatio, byteRatio);
+	}
+}
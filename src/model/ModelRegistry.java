@@ -0,0 +1,559 @@
+package model;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Keeps a message generator for each of many sources, such as a Twitter handle or a corpus file, 
+ * within a budget of heap memory. A generator is created by the loader the first time its source is asked for, 
+ * and once the estimated size of all of the generators is over the budget, the least recently used ones are evicted. 
+ * When a directory to spill to is given, an evicted generator is saved there as a snapshot and loaded back from it 
+ * the next time it is needed, which is much faster than training it again; otherwise it is simply dropped. 
+ * A snapshot only keeps the model, so a generator that is loaded back no longer knows which posts of a timeline it has read.
+ * Any number of threads can get generators at once. A generator is only loaded once even if several threads ask for it together, 
+ * and loading, measuring or spilling one does not hold up the threads asking for the others.
+ * @author Richie Ren
+ *
+ */
+public class ModelRegistry {
+
+	/**
+	 * Creates the message generator of a source that is not in the registry.
+	 */
+	public interface Loader {
+
+		/**
+		 * Creates and trains the generator of the source.
+		 * @param key - the source, such as a Twitter handle or the path of a corpus file
+		 * @return the trained generator
+		 * @throws IOException if the input of the source could not be read
+		 */
+		MessageGenerator load(String key) throws IOException;
+	}
+
+	private static final String SPILL_EXTENSION = ".snapshot";
+
+	private final long budgetBytes;
+	private final Loader loader;
+	private final Path spillDirectory;
+	// From the least to the most recently used, which get() keeps up to date by moving each entry it returns to the end
+	private final LinkedHashMap<String, Entry> entries;
+	private final Map<String, CompletableFuture<MessageGenerator>> loading;
+	private final Map<String, MessageGenerator> spilling;
+	// Held while writing or deleting a snapshot, before the lock of the registry itself
+	private final Object spillLock;
+	private long usedBytes;
+	private long hits, misses, spillLoads, evictions, spills;
+
+	/**
+	 * Creates an empty registry that drops the generators it evicts.
+	 * @param budgetBytes - the estimated number of bytes that the generators may take up together
+	 * @param loader - creates the generator of a source the first time it is asked for
+	 */
+	public ModelRegistry(long budgetBytes, Loader loader) {
+		this(budgetBytes, loader, null);
+	}
+
+	/**
+	 * Creates an empty registry that saves the generators it evicts to the given directory.
+	 * @param budgetBytes - the estimated number of bytes that the generators may take up together
+	 * @param loader - creates the generator of a source the first time it is asked for
+	 * @param spillDirectory - the directory to save evicted generators to, which must exist, or null to drop them
+	 */
+	public ModelRegistry(long budgetBytes, Loader loader, Path spillDirectory) {
+		if (budgetBytes < 0) {
+			throw new IllegalArgumentException("The budget must not be negative: " + budgetBytes);
+		}
+
+		this.budgetBytes = budgetBytes;
+		this.loader = loader;
+		this.spillDirectory = spillDirectory;
+		this.entries = new LinkedHashMap<>();
+		this.loading = new HashMap<>();
+		this.spilling = new HashMap<>();
+		this.spillLock = new Object();
+	}
+
+	/**
+	 * Returns the generator of the source, loading it from its snapshot or with the loader if it is not in the registry, 
+	 * and marks it as the most recently used.
+	 * @param key - the source
+	 * @return the generator of the source
+	 * @throws IOException if the generator was not in the registry and could not be loaded
+	 */
+	public MessageGenerator get(String key) throws IOException {
+		CompletableFuture<MessageGenerator> future, pending;
+
+		synchronized (this) {
+			Entry entry = entries.remove(key);
+			if (entry != null) {
+				entries.put(key, entry);
+				hits++;
+				return entry.msgGen;
+			}
+
+			misses++;
+			pending = loading.get(key);
+
+			if (pending == null) {
+				future = new CompletableFuture<>();
+				loading.put(key, future);
+			}
+			else {
+				future = null;
+			}
+		}
+
+		// Another thread is already loading it
+		if (pending != null) {
+			return await(pending);
+		}
+
+		try {
+			Entry entry = load(key);
+			List<Entry> evicted;
+
+			synchronized (this) {
+				loading.remove(key);
+				evicted = insert(key, entry);
+			}
+
+			future.complete(entry.msgGen);
+			spill(evicted);
+
+			return entry.msgGen;
+		} catch (IOException | RuntimeException e) {
+			synchronized (this) {
+				loading.remove(key);
+			}
+
+			future.completeExceptionally(e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the generator of the source only if it is in the registry, without counting a hit or a miss 
+	 * or marking it as used, so it is evicted no later than if it had not been asked for.
+	 * @param key - the source
+	 * @return the generator, or null if it is not in the registry
+	 */
+	public synchronized MessageGenerator getIfPresent(String key) {
+		Entry entry = entries.get(key);
+		return (entry == null) ? null : entry.msgGen;
+	}
+
+	/**
+	 * Adds a generator that was trained elsewhere, replacing any generator the source had along with its snapshot.
+	 * @param key - the source
+	 * @param msgGen - the generator of the source
+	 * @throws IOException if the old snapshot could not be deleted or the generators evicted to make room could not be saved
+	 */
+	public void put(String key, MessageGenerator msgGen) throws IOException {
+		Entry entry = new Entry(key, msgGen, -1);
+		List<Entry> evicted;
+
+		synchronized (spillLock) {
+			synchronized (this) {
+				removeEntry(key);
+				spilling.remove(key);
+				deleteSnapshot(key);
+				evicted = insert(key, entry);
+			}
+		}
+
+		spill(evicted);
+	}
+
+	/**
+	 * Removes the generator of the source and deletes its snapshot.
+	 * @param key - the source
+	 * @return the generator that was removed, or null if it was not in the registry
+	 * @throws IOException if the snapshot could not be deleted
+	 */
+	public MessageGenerator remove(String key) throws IOException {
+		synchronized (spillLock) {
+			synchronized (this) {
+				Entry entry = removeEntry(key);
+				spilling.remove(key);
+				deleteSnapshot(key);
+
+				return (entry == null) ? null : entry.msgGen;
+			}
+		}
+	}
+
+	/**
+	 * Measures again the generators that have had input added since they were last measured, 
+	 * then evicts the least recently used ones until the rest fit within the budget, always keeping the most recently used one. 
+	 * Each generator is measured when it is added, and evicting only goes by the size it was last measured at, 
+	 * so this should be called after input is added to a generator in the registry. 
+	 * Measuring a generator walks all of it, which is done without holding the registry.
+	 * @throws IOException if an evicted generator could not be saved
+	 */
+	public void trim() throws IOException {
+		List<Entry> changed = new ArrayList<>();
+
+		synchronized (this) {
+			for (Entry entry : entries.values()) {
+				if (entry.msgGen.getVersion() != entry.sizedVersion) {
+					changed.add(entry);
+				}
+			}
+		}
+
+		for (Entry entry : changed) {
+			long version = entry.msgGen.getVersion();
+			ModelSize size = measure(entry.key, entry.msgGen);
+
+			synchronized (this) {
+				// Dropped if the entry was evicted, removed or replaced while it was being measured
+				if (entries.get(entry.key) == entry) {
+					usedBytes += size.getEstimatedBytes() - entry.size.getEstimatedBytes();
+					entry.size = size;
+					entry.sizedVersion = version;
+				}
+			}
+		}
+
+		List<Entry> evicted;
+
+		synchronized (this) {
+			String newest = null;
+			for (String key : entries.keySet()) {
+				newest = key;
+			}
+
+			evicted = evict(newest);
+		}
+
+		spill(evicted);
+	}
+
+	/**
+	 * Checks to see if the generator of the source is in the registry, without counting a hit or a miss.
+	 * @param key - the source
+	 * @return true if the generator is in the registry
+	 */
+	public synchronized boolean contains(String key) {
+		return entries.containsKey(key);
+	}
+
+	/**
+	 * Returns the number of generators in the registry.
+	 * @return an int containing the number of generators
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public long getBudgetBytes() {
+		return budgetBytes;
+	}
+
+	/**
+	 * Returns the estimated number of bytes that the generators in the registry take up, as of when they were last measured.
+	 * @return a long containing the number of bytes
+	 */
+	public synchronized long getUsedBytes() {
+		return usedBytes;
+	}
+
+	/**
+	 * Returns the number of times a generator was found in the registry.
+	 * @return a long containing the number of hits
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of times a generator was not in the registry and had to be loaded.
+	 * @return a long containing the number of misses
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Returns the share of the times a generator was asked for that it was found in the registry.
+	 * @return a double between 0 and 1, or 0 if no generator has been asked for
+	 */
+	public synchronized double getHitRate() {
+		long requests = hits + misses;
+		return (requests == 0) ? 0 : (double) hits / requests;
+	}
+
+	/**
+	 * Returns the number of misses that were loaded from a snapshot instead of by the loader.
+	 * @return a long containing the number of snapshot loads
+	 */
+	public synchronized long getSpillLoads() {
+		return spillLoads;
+	}
+
+	/**
+	 * Returns the number of generators that have been evicted to stay within the budget.
+	 * @return a long containing the number of evictions
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Returns the number of evicted generators that were saved as snapshots. 
+	 * A generator that was loaded from its snapshot and has not changed since is evicted without saving it again.
+	 * @return a long containing the number of snapshots written
+	 */
+	public synchronized long getSpills() {
+		return spills;
+	}
+
+	/**
+	 * Describes the size of every generator in the registry, from the least to the most recently used.
+	 * @return a list containing the size of each generator, as of when it was last measured
+	 */
+	public synchronized List<ModelSize> getModelSizes() {
+		List<ModelSize> sizes = new ArrayList<>(entries.size());
+
+		for (Entry entry : entries.values()) {
+			sizes.add(entry.size);
+		}
+
+		return sizes;
+	}
+
+	/**
+	 * Loads the generator of a source that is not in the registry, taking it back if it is still being spilled.
+	 */
+	private Entry load(String key) throws IOException {
+		MessageGenerator unsaved;
+		synchronized (this) {
+			unsaved = spilling.get(key);
+		}
+
+		if (unsaved != null) {
+			return new Entry(key, unsaved, -1);
+		}
+
+		Path snapshot = snapshotOf(key);
+		if (snapshot != null && Files.isRegularFile(snapshot)) {
+			MessageGenerator msgGen = MessageGenerator.load(snapshot);
+
+			synchronized (this) {
+				spillLoads++;
+			}
+
+			return new Entry(key, msgGen, msgGen.getVersion());
+		}
+
+		MessageGenerator msgGen = loader.load(key);
+		if (msgGen == null) {
+			throw new IOException("The loader did not create a generator for " + key);
+		}
+
+		return new Entry(key, msgGen, -1);
+	}
+
+	/**
+	 * Adds the entry as the most recently used and evicts others until the registry is within the budget.
+	 * @return the entries that were evicted and still have to be spilled
+	 */
+	private List<Entry> insert(String key, Entry entry) {
+		removeEntry(key);
+		entries.put(key, entry);
+		usedBytes += entry.size.getEstimatedBytes();
+
+		return evict(key);
+	}
+
+	/**
+	 * Evicts from the least recently used end until the rest fit, going by the size each entry was last measured at.
+	 * The entry with the given key is kept even if it does not fit on its own.
+	 */
+	private List<Entry> evict(String keep) {
+		List<Entry> evicted = new ArrayList<>();
+		Iterator<Entry> lru = entries.values().iterator();
+
+		while (usedBytes > budgetBytes && lru.hasNext()) {
+			Entry entry = lru.next();
+			if (entry.key.equals(keep)) {
+				continue;
+			}
+
+			lru.remove();
+			usedBytes -= entry.size.getEstimatedBytes();
+			evictions++;
+
+			// Unchanged since it was loaded from its snapshot, which is still there
+			if (spillDirectory != null && entry.msgGen.getVersion() != entry.snapshotVersion) {
+				spilling.put(entry.key, entry.msgGen);
+				evicted.add(entry);
+			}
+		}
+
+		return evicted;
+	}
+
+	/**
+	 * Saves the evicted generators as snapshots, outside of the lock so that other generators can be used in the meantime. 
+	 * One snapshot is written at a time, and a generator that was replaced or removed since it was evicted is not written at all.
+	 */
+	private void spill(List<Entry> evicted) throws IOException {
+		IOException failure = null;
+
+		for (Entry entry : evicted) {
+			synchronized (spillLock) {
+				synchronized (this) {
+					if (spilling.get(entry.key) != entry.msgGen) {
+						continue;
+					}
+				}
+
+				try {
+					entry.msgGen.save(snapshotOf(entry.key));
+
+					synchronized (this) {
+						spills++;
+					}
+				} catch (IOException e) {
+					if (failure == null) {
+						failure = e;
+					}
+				} finally {
+					synchronized (this) {
+						spilling.remove(entry.key, entry.msgGen);
+					}
+				}
+			}
+		}
+
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	private Entry removeEntry(String key) {
+		Entry entry = entries.remove(key);
+		if (entry != null) {
+			usedBytes -= entry.size.getEstimatedBytes();
+		}
+
+		return entry;
+	}
+
+	private void deleteSnapshot(String key) throws IOException {
+		Path snapshot = snapshotOf(key);
+		if (snapshot != null) {
+			Files.deleteIfExists(snapshot);
+		}
+	}
+
+	/**
+	 * Finds the file that the generator of a source is spilled to, whose name is the source encoded so that it is a safe file name.
+	 * @return the path of the snapshot, or null if the registry does not spill
+	 */
+	private Path snapshotOf(String key) {
+		if (spillDirectory == null) {
+			return null;
+		}
+
+		return spillDirectory.resolve(URLEncoder.encode(key, StandardCharsets.UTF_8).replace("*", "%2A") + SPILL_EXTENSION);
+	}
+
+	/**
+	 * Waits for another thread to finish loading a generator.
+	 */
+	private static MessageGenerator await(CompletableFuture<MessageGenerator> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a generator to load");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+
+			if (cause instanceof IOException) {
+				throw new IOException(cause.getMessage(), cause);
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+
+			throw new IOException(cause);
+		}
+	}
+
+	/**
+	 * Measures the size of a generator by walking all of it.
+	 */
+	private static ModelSize measure(String key, MessageGenerator msgGen) {
+		return new ModelSize(key, msgGen.getVocabularySize(), msgGen.getNumberOfEdges(), msgGen.getEstimatedBytes());
+	}
+
+	/**
+	 * A generator in the registry and its size as of when it was last measured, which is measured once as it is created, 
+	 * before it is added to the registry, and only changed by trim() while holding the registry.
+	 */
+	private static class Entry {
+		final String key;
+		final MessageGenerator msgGen;
+		final long snapshotVersion;
+		long sizedVersion;
+		ModelSize size;
+
+		Entry(String key, MessageGenerator msgGen, long snapshotVersion) {
+			this.key = key;
+			this.msgGen = msgGen;
+			this.snapshotVersion = snapshotVersion;
+			// Read before measuring, so input added while it is measured leaves it to be measured again
+			this.sizedVersion = msgGen.getVersion();
+			this.size = measure(key, msgGen);
+		}
+	}
+
+	/**
+	 * The size of one generator in the registry.
+	 */
+	public static final class ModelSize {
+		private final String key;
+		private final int vocabularySize;
+		private final long numberOfEdges;
+		private final long estimatedBytes;
+
+		ModelSize(String key, int vocabularySize, long numberOfEdges, long estimatedBytes) {
+			this.key = key;
+			this.vocabularySize = vocabularySize;
+			this.numberOfEdges = numberOfEdges;
+			this.estimatedBytes = estimatedBytes;
+		}
+
+		public String getKey() {
+			return key;
+		}
+
+		public int getVocabularySize() {
+			return vocabularySize;
+		}
+
+		public long getNumberOfEdges() {
+			return numberOfEdges;
+		}
+
+		public long getEstimatedBytes() {
+			return estimatedBytes;
+		}
+	}
+}
@@ -0,0 +1,511 @@
+package model;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Saves a trained model to a compact binary file and loads it back, so that a model does not have to be retrained on every start.
+ * The file starts with a magic number and the version of the format, followed by the order of the model, the vocabulary,
+ * every markov chain with its occurrences, capitalization and possible states, and the trie of longer contexts for a model
+ * of a higher order, and the number of times each word started a sentence. Every number is written as a varint, and the possible states of a chain are sorted by ID so that
+ * only the gaps between IDs have to be written. The file ends with a CRC-32 of everything before it, which is used to
+ * detect a file that has been corrupted or cut short.
+ * @author Richie Ren
+ *
+ */
+class ModelSnapshot {
+
+	static final int MAGIC = 0x4D4B5653;
+	static final int FORMAT_VERSION = 2;
+
+	// Snapshots from before sentence starts were counted can still be loaded, without any sentence starts
+	private static final int FIRST_VERSION_WITH_STARTS = 2;
+
+	private static final int BUFFER_SIZE = 65536;
+
+	/**
+	 * Writes the model to the file, replacing it if it already exists.
+	 * The snapshot is written to a temporary file first and then moved into place, so an existing snapshot is never left half written.
+	 * Input added while the snapshot is being written may or may not be included.
+	 * @param current - the chains of the model
+	 * @param file - the path of the file to write
+	 * @throws IOException if the file could not be written
+	 */
+	static void write(ChainIndex current, Path file) throws IOException {
+		Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+
+		try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			Output out = new Output(channel);
+			Vocabulary vocabulary = current.getVocabulary();
+
+			// Anything added after this point refers to words past the limit and is left out
+			int idLimit = current.idLimit();
+
+			out.writeInt(MAGIC);
+			out.writeVarint(FORMAT_VERSION);
+			out.writeVarint(current.getOrder());
+
+			out.writeVarint(idLimit);
+			for (int id = 0; id < idLimit; id++) {
+				out.writeString(vocabulary.getWord(id));
+			}
+
+			int numChains = 0;
+			for (int id = 0; id < idLimit; id++) {
+				if (current.get(id) != null) {
+					numChains++;
+				}
+			}
+
+			out.writeVarint(numChains);
+			int previousId = -1;
+			for (int id = 0; id < idLimit && numChains > 0; id++) {
+				MarkovChain mc = current.get(id);
+
+				if (mc != null) {
+					out.writeVarint(id - previousId);
+					mc.write(out, idLimit);
+					previousId = id;
+					numChains--;
+				}
+			}
+
+			if (current.getContexts() != null) {
+				current.getContexts().write(out, idLimit);
+			}
+
+			int[] startCounts = current.getStarts().counts(idLimit);
+			IntCountMap starts = new IntCountMap(16);
+			for (int id = 0; id < idLimit; id++) {
+				if (startCounts[id] > 0) {
+					starts.add(id, startCounts[id]);
+				}
+			}
+			writeStates(out, starts, idLimit);
+
+			out.finish();
+			channel.force(false);
+		}
+
+		Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Reads a model from the file.
+	 * @param file - the path of the file to read
+	 * @return the chains of the model
+	 * @throws IOException if the file could not be read, is not a snapshot, or is corrupted or truncated
+	 */
+	static ChainIndex read(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			Input in = new Input(channel);
+
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Not a model snapshot: " + file);
+			}
+
+			int version = in.readVarint();
+			if (version < 1 || version > FORMAT_VERSION) {
+				throw new IOException("Unsupported snapshot version " + version + " in " + file);
+			}
+
+			int order = in.readVarint();
+			if (order < 1) {
+				throw corrupt();
+			}
+
+			ChainIndex loaded = new ChainIndex(order);
+			Vocabulary vocabulary = loaded.getVocabulary();
+
+			int numWords = in.readCount(Integer.MAX_VALUE);
+			for (int id = 0; id < numWords; id++) {
+				// A word that is already in the vocabulary would shift the IDs of every word after it
+				if (vocabulary.intern(in.readString()) != id) {
+					throw corrupt();
+				}
+			}
+
+			int numChains = in.readCount(numWords);
+			int id = -1;
+			for (int i = 0; i < numChains; i++) {
+				id += in.readGap();
+
+				if (id >= numWords) {
+					throw corrupt();
+				}
+
+				boolean capitalized = in.readByte() != 0;
+				loaded.getOrCreate(id, capitalized).read(in, numWords);
+			}
+
+			if (loaded.getContexts() != null) {
+				loaded.getContexts().read(in, numWords);
+			}
+
+			if (version >= FIRST_VERSION_WITH_STARTS) {
+				IntCountMap starts = readStates(in, null, numWords);
+
+				if (starts != null) {
+					int[] keys = new int[starts.size()];
+					int[] counts = new int[starts.size()];
+					starts.copyTo(keys, counts);
+
+					for (int i = 0; i < keys.length; i++) {
+						loaded.getStarts().add(keys[i], counts[i]);
+					}
+				}
+			}
+
+			in.finish();
+
+			return loaded;
+		}
+	}
+
+	/**
+	 * Writes possible states and their counts, sorted by ID, leaving out any state past the limit.
+	 * @param out - the output to write to
+	 * @param states - the states to write
+	 * @param idLimit - one more than the highest ID to write
+	 * @throws IOException if the output could not be written
+	 */
+	static void writeStates(Output out, IntCountMap states, int idLimit) throws IOException {
+		int[] keys = new int[states.size()];
+		int[] counts = new int[states.size()];
+		states.copyTo(keys, counts);
+
+		// Packs each state with its count so that sorting keeps them together
+		long[] packed = new long[keys.length];
+		int n = 0;
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] < idLimit) {
+				packed[n++] = ((long) keys[i] << 32) | (counts[i] & 0xFFFFFFFFL);
+			}
+		}
+		Arrays.sort(packed, 0, n);
+
+		out.writeVarint(n);
+		int previous = -1;
+		for (int i = 0; i < n; i++) {
+			int key = (int) (packed[i] >>> 32);
+			out.writeVarint(key - previous);
+			out.writeVarint((int) packed[i]);
+			previous = key;
+		}
+	}
+
+	/**
+	 * Reads possible states and their counts that were written by writeStates, adding them to the map.
+	 * @param in - the input to read from
+	 * @param states - the map to add the states to, or null to only create one if there are any states
+	 * @param idLimit - the number of words in the vocabulary
+	 * @return the map that the states were added to, which is null if there were none and no map was given
+	 * @throws IOException if the input could not be read or is corrupted
+	 */
+	static IntCountMap readStates(Input in, IntCountMap states, int idLimit) throws IOException {
+		int n = in.readCount(idLimit);
+		int key = -1;
+
+		if (states == null && n > 0) {
+			states = new IntCountMap(n);
+		}
+
+		for (int i = 0; i < n; i++) {
+			key += in.readGap();
+			int count = in.readVarint();
+
+			if (key >= idLimit || count <= 0) {
+				throw corrupt();
+			}
+
+			states.add(key, count);
+		}
+
+		return states;
+	}
+
+	/**
+	 * Creates the exception thrown when the contents of a snapshot do not make sense.
+	 * @return the exception
+	 */
+	static IOException corrupt() {
+		return new IOException("The model snapshot is corrupted");
+	}
+
+	/**
+	 * Buffers the bytes of a snapshot, keeping a running checksum of everything written.
+	 */
+	static final class Output {
+		private final FileChannel channel;
+		private final ByteBuffer buffer;
+		private final CRC32 checksum;
+
+		Output(FileChannel channel) {
+			this.channel = channel;
+			this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			this.checksum = new CRC32();
+		}
+
+		/**
+		 * Writes a single byte.
+		 * @param b - the byte to write
+		 * @throws IOException if the output could not be written
+		 */
+		void writeByte(int b) throws IOException {
+			if (!buffer.hasRemaining()) {
+				flush();
+			}
+
+			buffer.put((byte) b);
+		}
+
+		/**
+		 * Writes the four bytes of the number, most significant first.
+		 * @param value - the number to write
+		 * @throws IOException if the output could not be written
+		 */
+		void writeInt(int value) throws IOException {
+			if (buffer.remaining() < 4) {
+				flush();
+			}
+
+			buffer.putInt(value);
+		}
+
+		/**
+		 * Writes the number seven bits at a time, so small numbers only take a single byte.
+		 * @param value - the number to write, which is treated as unsigned
+		 * @throws IOException if the output could not be written
+		 */
+		void writeVarint(int value) throws IOException {
+			if (buffer.remaining() < 5) {
+				flush();
+			}
+
+			while ((value & ~0x7F) != 0) {
+				buffer.put((byte) ((value & 0x7F) | 0x80));
+				value >>>= 7;
+			}
+
+			buffer.put((byte) value);
+		}
+
+		/**
+		 * Writes the length of the string followed by each of its characters as a varint.
+		 * Unlike encoding the string as UTF-8, this keeps every string exactly as it was, even one with a broken surrogate pair.
+		 * @param s - the string to write
+		 * @throws IOException if the output could not be written
+		 */
+		void writeString(String s) throws IOException {
+			writeVarint(s.length());
+
+			for (int i = 0; i < s.length(); i++) {
+				writeVarint(s.charAt(i));
+			}
+		}
+
+		/**
+		 * Writes the checksum after everything else and empties the buffer.
+		 * @throws IOException if the output could not be written
+		 */
+		void finish() throws IOException {
+			flush();
+			buffer.putInt((int) checksum.getValue());
+			buffer.flip();
+			drain();
+		}
+
+		/**
+		 * Adds the buffered bytes to the checksum and writes them out.
+		 * @throws IOException if the output could not be written
+		 */
+		private void flush() throws IOException {
+			buffer.flip();
+			checksum.update(buffer.array(), 0, buffer.limit());
+			drain();
+		}
+
+		/**
+		 * Writes the buffered bytes to the channel.
+		 * @throws IOException if the output could not be written
+		 */
+		private void drain() throws IOException {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+
+			buffer.clear();
+		}
+	}
+
+	/**
+	 * Reads the bytes of a snapshot through a buffer, keeping a running checksum of everything read.
+	 * Reading past the end of the file means that it was cut short.
+	 */
+	static final class Input {
+		private final FileChannel channel;
+		private final ByteBuffer buffer;
+		private final CRC32 checksum;
+		private final long fileSize;
+		private int unchecked;
+
+		Input(FileChannel channel) throws IOException {
+			this.channel = channel;
+			this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			this.checksum = new CRC32();
+			this.fileSize = channel.size();
+			this.unchecked = 0;
+			buffer.flip();
+		}
+
+		/**
+		 * Reads a single byte.
+		 * @return an int containing the unsigned value of the byte
+		 * @throws IOException if the input could not be read or has ended
+		 */
+		int readByte() throws IOException {
+			if (!buffer.hasRemaining()) {
+				fill(1);
+			}
+
+			return buffer.get() & 0xFF;
+		}
+
+		/**
+		 * Reads four bytes as a number, most significant first.
+		 * @return an int containing the number
+		 * @throws IOException if the input could not be read or has ended
+		 */
+		int readInt() throws IOException {
+			if (buffer.remaining() < 4) {
+				fill(4);
+			}
+
+			return buffer.getInt();
+		}
+
+		/**
+		 * Reads a number written by writeVarint.
+		 * @return an int containing the number
+		 * @throws IOException if the input could not be read, has ended, or the number is too long
+		 */
+		int readVarint() throws IOException {
+			int value = 0;
+
+			for (int shift = 0; shift < 35; shift += 7) {
+				int b = readByte();
+				value |= (b & 0x7F) << shift;
+
+				if ((b & 0x80) == 0) {
+					return value;
+				}
+			}
+
+			throw corrupt();
+		}
+
+		/**
+		 * Reads the gap between two IDs in increasing order, which has to be at least one.
+		 * @return an int containing the gap
+		 * @throws IOException if the input could not be read or the gap does not make sense
+		 */
+		int readGap() throws IOException {
+			int gap = readVarint();
+
+			if (gap <= 0) {
+				throw corrupt();
+			}
+
+			return gap;
+		}
+
+		/**
+		 * Reads a number of items, checking that it is not negative and not larger than the given maximum.
+		 * @param max - the largest number of items that makes sense
+		 * @return an int containing the number of items
+		 * @throws IOException if the input could not be read or the number does not make sense
+		 */
+		int readCount(int max) throws IOException {
+			int count = readVarint();
+
+			if (count < 0 || count > max) {
+				throw corrupt();
+			}
+
+			return count;
+		}
+
+		/**
+		 * Reads a string written by writeString.
+		 * @return the string
+		 * @throws IOException if the input could not be read or has ended
+		 */
+		String readString() throws IOException {
+			// Every character takes at least one byte, which stops a corrupted length from allocating a huge array
+			int length = readCount((int) Math.min(Integer.MAX_VALUE, fileSize));
+			char[] chars = new char[length];
+
+			for (int i = 0; i < length; i++) {
+				int c = readVarint();
+
+				if (c < 0 || c > Character.MAX_VALUE) {
+					throw corrupt();
+				}
+
+				chars[i] = (char) c;
+			}
+
+			return new String(chars);
+		}
+
+		/**
+		 * Reads the checksum at the end of the file and compares it with the checksum of everything read before it.
+		 * @throws IOException if the checksums do not match or there is more data after the checksum
+		 */
+		void finish() throws IOException {
+			checksum.update(buffer.array(), unchecked, buffer.position() - unchecked);
+			unchecked = buffer.position();
+			long expected = checksum.getValue();
+
+			if (buffer.remaining() < 4) {
+				fill(4);
+			}
+
+			if ((buffer.getInt() & 0xFFFFFFFFL) != expected) {
+				throw new IOException("The model snapshot failed its checksum");
+			}
+
+			if (buffer.hasRemaining() || channel.position() != fileSize) {
+				throw new IOException("The model snapshot has data after its end");
+			}
+		}
+
+		/**
+		 * Reads more of the file into the buffer until at least the given number of bytes are available.
+		 * The bytes that have been used are added to the checksum first.
+		 * @param needed - the number of bytes needed
+		 * @throws IOException if the input could not be read or ends too soon
+		 */
+		private void fill(int needed) throws IOException {
+			checksum.update(buffer.array(), unchecked, buffer.position() - unchecked);
+			buffer.compact();
+
+			while (buffer.position() < needed) {
+				if (channel.read(buffer) < 0) {
+					throw new EOFException("The model snapshot is truncated");
+				}
+			}
+
+			buffer.flip();
+			unchecked = 0;
+		}
+	}
+}
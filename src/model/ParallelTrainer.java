@@ -0,0 +1,98 @@
+package model;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Trains a message generator on multiple threads by splitting the input into segments.
+ * Each segment is used to build a partial model on a fork/join pool, and the partial models are
+ * merged back together in the order of their segments. A segment owns every pair whose first word
+ * falls inside of it, so the pair that spans the boundary between two segments is counted exactly
+ * once and the merged model has the same counts as one trained on a single thread.
+ * @author Richie Ren
+ *
+ */
+public class ParallelTrainer {
+
+	private static final int MIN_SEGMENT_SIZE = 16384;
+
+	private final ForkJoinPool pool;
+
+	public ParallelTrainer() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Creates a trainer that runs on the given pool.
+	 * @param pool - the pool that the partial models are built on
+	 */
+	public ParallelTrainer(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Adds every word and the word immediately following it to the message generator.
+	 * @param words - the words of the input, in order
+	 * @param msgGen - the message generator to add the input to
+	 */
+	public void train(String[] words, MessageGenerator msgGen) {
+		int numPairs = words.length - 1;
+
+		if (numPairs <= 0) {
+			return;
+		}
+
+		// Splits the input into a few segments per thread so that uneven segments can be balanced out
+		int segmentSize = Math.max(MIN_SEGMENT_SIZE, numPairs / (pool.getParallelism() * 4));
+
+		msgGen.ingest(() -> msgGen.merge(pool.invoke(new Segment(words, msgGen.getOrder(), 0, numPairs, segmentSize))));
+	}
+
+	/**
+	 * Builds the partial model for the pairs whose first word is between the two indices.
+	 * @author Richie Ren
+	 *
+	 */
+	private static class Segment extends RecursiveTask<MessageGenerator> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final String[] words;
+		private final int order, start, end, segmentSize;
+
+		Segment(String[] words, int order, int start, int end, int segmentSize) {
+			this.words = words;
+			this.order = order;
+			this.start = start;
+			this.end = end;
+			this.segmentSize = segmentSize;
+		}
+
+		@Override
+		protected MessageGenerator compute() {
+			if (end - start <= segmentSize) {
+				MessageGenerator partial = new MessageGenerator(order);
+
+				// The longer contexts of a pair may reach back into the previous segment, which is only read
+				for (int i = start; i < end; i++) {
+					partial.addInput(words, i + 1);
+				}
+
+				return partial;
+			}
+
+			int middle = (start + end) >>> 1;
+			Segment first = new Segment(words, order, start, middle, segmentSize);
+			Segment second = new Segment(words, order, middle, end, segmentSize);
+
+			first.fork();
+			MessageGenerator secondPartial = second.compute();
+			MessageGenerator firstPartial = first.join();
+
+			// Merging in order keeps the words in the order that they were first seen
+			firstPartial.merge(secondPartial);
+
+			return firstPartial;
+		}
+	}
+}
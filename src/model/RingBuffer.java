@@ -0,0 +1,128 @@
+package model;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded queue that any number of threads can add to and take from at once without locking, laid out as a ring of slots.
+ * Every slot has a sequence number that says whether it is waiting to be filled or to be emptied for the current lap around
+ * the ring, so a thread claims a slot with a single compare-and-set on the head or the tail and never waits for another thread
+ * unless that thread is in the middle of filling or emptying the very slot it wants.
+ * @author Richie Ren
+ *
+ */
+class RingBuffer<E> {
+
+	private final AtomicReferenceArray<E> elements;
+	private final AtomicLongArray sequences;
+	private final int mask;
+	private final AtomicLong head;
+	private final AtomicLong tail;
+
+	/**
+	 * Creates an empty buffer.
+	 * @param capacity - the least number of elements the buffer should hold, which is rounded up to a power of two
+	 */
+	RingBuffer(int capacity) {
+		if (capacity < 1 || capacity > (1 << 30)) {
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		}
+
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) {
+			size <<= 1;
+		}
+
+		elements = new AtomicReferenceArray<>(size);
+		sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			sequences.set(i, i);
+		}
+
+		mask = size - 1;
+		head = new AtomicLong();
+		tail = new AtomicLong();
+	}
+
+	/**
+	 * Adds the element to the tail of the buffer if there is room.
+	 * @param element - the element to add, which must not be null
+	 * @return true if the element was added, false if the buffer was full
+	 */
+	boolean offer(E element) {
+		long position = tail.get();
+
+		while (true) {
+			int slot = (int) position & mask;
+			long difference = sequences.getAcquire(slot) - position;
+
+			if (difference == 0) {
+				// The slot is empty for this lap, so whoever moves the tail past it gets to fill it
+				if (tail.compareAndSet(position, position + 1)) {
+					elements.setPlain(slot, element);
+					sequences.setRelease(slot, position + 1);
+					return true;
+				}
+
+				position = tail.get();
+			}
+			else if (difference < 0) {
+				// The slot still holds the element from the last lap
+				return false;
+			}
+			else {
+				position = tail.get();
+			}
+		}
+	}
+
+	/**
+	 * Removes the element at the head of the buffer.
+	 * @return the element, or null if the buffer was empty
+	 */
+	E poll() {
+		long position = head.get();
+
+		while (true) {
+			int slot = (int) position & mask;
+			long difference = sequences.getAcquire(slot) - (position + 1);
+
+			if (difference == 0) {
+				if (head.compareAndSet(position, position + 1)) {
+					E element = elements.getPlain(slot);
+					elements.setPlain(slot, null);
+
+					// Makes the slot free for the next lap
+					sequences.setRelease(slot, position + mask + 1);
+					return element;
+				}
+
+				position = head.get();
+			}
+			else if (difference < 0) {
+				return null;
+			}
+			else {
+				position = head.get();
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of elements in the buffer, which is only an estimate while other threads are adding or taking.
+	 * @return an int containing the number of elements
+	 */
+	int size() {
+		long size = tail.get() - head.get();
+		return (int) Math.max(0, Math.min(size, capacity()));
+	}
+
+	/**
+	 * Returns the number of elements the buffer can hold.
+	 * @return an int containing the capacity
+	 */
+	int capacity() {
+		return mask + 1;
+	}
+}
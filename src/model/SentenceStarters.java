@@ -0,0 +1,169 @@
+package model;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * Counts how many times each word can start a sentence, indexed by the ID of the word, so the memory it takes up depends on
+ * the number of words and not on the number of sentences. The counts are kept in a Fenwick tree, where each entry holds the sum
+ * of a range of counts whose length is a power of two, so adding to a count and choosing a word in proportion to its count
+ * both take time that grows with the logarithm of the number of words, and adding a word never has to rebuild anything.
+ * Adding only blocks other threads that are also adding, and sampling only blocks in the rare case that it reads the tree
+ * while a count is being added to it, so the counts can be kept up to date while input is added and messages are generated at the same time.
+ * @author Richie Ren
+ *
+ */
+class SentenceStarters {
+
+	private volatile Table table;
+	private volatile long total;
+
+	SentenceStarters() {
+		table = new Table(new int[16]);
+		total = 0;
+	}
+
+	/**
+	 * The counts of the words along with the Fenwick tree of their sums, whose entries are one-based.
+	 */
+	private static final class Table {
+		final int[] counts;
+		final long[] tree;
+
+		/**
+		 * Builds the tree from the counts in linear time, by adding each entry into the next entry that covers it.
+		 * @param counts - the count of each ID, whose length must be a power of two
+		 */
+		Table(int[] counts) {
+			this.counts = counts;
+			this.tree = new long[counts.length + 1];
+
+			for (int i = 1; i <= counts.length; i++) {
+				tree[i] += counts[i - 1];
+				int parent = i + (i & -i);
+
+				if (parent <= counts.length) {
+					tree[parent] += tree[i];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds the word the given number of times.
+	 * The tree is updated before the total is published, so any thread that can see the new total can also see the new count.
+	 * @param id - the ID of the word
+	 * @param count - the number of times to add it
+	 */
+	synchronized void add(int id, int count) {
+		if (count <= 0) {
+			return;
+		}
+
+		Table current = table;
+
+		if (id >= current.counts.length) {
+			int capacity = current.counts.length;
+			while (capacity <= id) {
+				capacity *= 2;
+			}
+
+			current = new Table(Arrays.copyOf(current.counts, capacity));
+			table = current;
+		}
+
+		current.counts[id] += count;
+		for (int i = id + 1; i < current.tree.length; i += i & -i) {
+			current.tree[i] += count;
+		}
+
+		total += count;
+	}
+
+	/**
+	 * Adds the counts of another list, translating their word IDs.
+	 * @param other - the list to add, which should not be added to while this runs
+	 * @param translation - maps each word ID of the other list to the ID of the same word in this one, or to -1 to leave the word out
+	 */
+	void addAll(SentenceStarters other, int[] translation) {
+		int[] otherCounts = other.table.counts;
+
+		for (int id = 0; id < otherCounts.length && id < translation.length; id++) {
+			if (otherCounts[id] > 0 && translation[id] >= 0) {
+				add(translation[id], otherCounts[id]);
+			}
+		}
+	}
+
+	/**
+	 * Chooses a word, where the number of times each word was added affects its chance.
+	 * @param random - the source of randomness to use
+	 * @return the ID of the chosen word, or -1 if no word was added
+	 */
+	int sample(RandomGenerator random) {
+		// Reads the total first, so the tree is at least as new as the total
+		long sum = total;
+
+		if (sum == 0) {
+			return -1;
+		}
+
+		Table current = table;
+		int id = find(current, random.nextLong(sum));
+
+		// A count added while the tree was being read can lead to a word that has not been added yet, so the choice is made again under the lock
+		if (id < current.counts.length && current.counts[id] > 0) {
+			return id;
+		}
+
+		return sampleLocked(random);
+	}
+
+	private synchronized int sampleLocked(RandomGenerator random) {
+		return find(table, random.nextLong(total));
+	}
+
+	/**
+	 * Finds the word whose range of the running total contains the target, by descending the tree from its largest range.
+	 * @param current - the counts and their tree
+	 * @param target - a number below the total
+	 * @return the ID of the word
+	 */
+	private static int find(Table current, long target) {
+		int position = 0;
+
+		for (int step = current.counts.length; step > 0; step >>= 1) {
+			int next = position + step;
+
+			if (next < current.tree.length && current.tree[next] <= target) {
+				position = next;
+				target -= current.tree[next];
+			}
+		}
+
+		return position;
+	}
+
+	/**
+	 * Returns the number of times each word was added.
+	 * @param idLimit - one more than the highest ID to return; words past it are left out
+	 * @return an array containing the count of each ID below the limit
+	 */
+	int[] counts(int idLimit) {
+		int[] current = table.counts;
+		int[] counts = new int[idLimit];
+		System.arraycopy(current, 0, counts, 0, Math.min(idLimit, current.length));
+
+		return counts;
+	}
+
+	/**
+	 * Estimates the memory that the counts take up, including the room they have to grow into.
+	 * @return a long containing the size in bytes
+	 */
+	long estimateBytes() {
+		Table current = table;
+		return MemoryEstimate.object(MemoryEstimate.REFERENCE + 8) + MemoryEstimate.object(2 * MemoryEstimate.REFERENCE)
+				+ MemoryEstimate.array(current.counts.length, 4) + MemoryEstimate.array(current.tree.length, 8);
+	}
+}
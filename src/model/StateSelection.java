@@ -0,0 +1,75 @@
+package model;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * The possible states counted in a histogram and the alias table built from their counts at one point in time. 
+ * It is never modified, so any number of threads can select from it at once, and it only has to be rebuilt 
+ * once the counts change.
+ * @author Richie Ren
+ *
+ */
+class StateSelection {
+
+	static final StateSelection EMPTY = new StateSelection(new int[0], null);
+
+	private final int[] states;
+	private final AliasSampler sampler;
+
+	private StateSelection(int[] states, AliasSampler sampler) {
+		this.states = states;
+		this.sampler = sampler;
+	}
+
+	/**
+	 * Builds the selection for the current counts of the histogram, which must not change while it is being built.
+	 * @param counts - the histogram of possible states
+	 * @return the selection
+	 */
+	static StateSelection of(IntCountMap counts) {
+		if (counts == null || counts.isEmpty()) {
+			return EMPTY;
+		}
+
+		int[] states = new int[counts.size()];
+		int[] weights = new int[states.length];
+		counts.copyTo(states, weights);
+
+		return new StateSelection(states, new AliasSampler(weights));
+	}
+
+	/**
+	 * Indicates whether or not there are any states to select from.
+	 * @return true if there are no states, false otherwise
+	 */
+	boolean isEmpty() {
+		return states.length == 0;
+	}
+
+	/**
+	 * Estimates the memory that the selection takes up, including its alias table.
+	 * @return a long containing the size in bytes
+	 */
+	long estimateBytes() {
+		long bytes = MemoryEstimate.object(2 * MemoryEstimate.REFERENCE) + MemoryEstimate.array(states.length, 4);
+
+		if (sampler != null) {
+			bytes += MemoryEstimate.object(2 * MemoryEstimate.REFERENCE) + MemoryEstimate.array(states.length, 8) + MemoryEstimate.array(states.length, 4);
+		}
+
+		return bytes;
+	}
+
+	/**
+	 * Chooses a state, where the count of each state affects the chance of it being chosen.
+	 * @param random - the source of randomness to use
+	 * @return the chosen state, or -1 if there are no states
+	 */
+	int sample(RandomGenerator random) {
+		if (states.length == 0) {
+			return -1;
+		}
+
+		return states[sampler.sample(random)];
+	}
+}
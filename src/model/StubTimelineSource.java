@@ -0,0 +1,131 @@
+package model;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves timelines that are held in memory, for testing without a network connection or API keys.
+ * Posts are given IDs in the order they are added, so a post can be added at any time to stand in for a new one.
+ * Each page can be delayed by a fixed time to stand in for the time a real source spends on the network.
+ * @author Richie Ren
+ *
+ */
+public class StubTimelineSource implements TimelineSource {
+
+	private final int pageSize;
+	private final Map<String, List<TimelinePost>> timelines;
+	private long lastId;
+	private volatile long latencyNanos;
+	private volatile int pagesFetched;
+
+	/**
+	 * Creates an empty source that serves the given number of posts per page.
+	 * @param pageSize - the number of posts per page
+	 */
+	public StubTimelineSource(int pageSize) {
+		if (pageSize < 1) {
+			throw new IllegalArgumentException("The page size must be at least one: " + pageSize);
+		}
+
+		this.pageSize = pageSize;
+		this.timelines = new HashMap<>();
+	}
+
+	/**
+	 * Creates a source from a directory that holds one file per user, named after the user with the extension .txt, 
+	 * where each line of a file is one post, oldest first.
+	 * @param directory - the directory containing the timelines
+	 * @param pageSize - the number of posts per page
+	 * @return a new source serving the timelines
+	 * @throws IOException if the directory could not be read
+	 */
+	public static StubTimelineSource fromDirectory(Path directory, int pageSize) throws IOException {
+		StubTimelineSource source = new StubTimelineSource(pageSize);
+
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.txt")) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				String user = name.substring(0, name.length() - ".txt".length());
+
+				for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+					source.addPost(user, line);
+				}
+			}
+		}
+
+		return source;
+	}
+
+	/**
+	 * Adds a post to the user's timeline as their newest, creating the user if it does not exist yet.
+	 * @param user - the name of the user
+	 * @param text - the text of the post
+	 * @return a long containing the ID of the post, which is higher than that of every post added before it
+	 */
+	public synchronized long addPost(String user, String text) {
+		TimelinePost post = new TimelinePost(++lastId, text);
+		timelines.computeIfAbsent(user, u -> new ArrayList<>()).add(post);
+
+		return post.getId();
+	}
+
+	/**
+	 * Sets how long fetching each page takes.
+	 * @param time - the time to wait before returning a page
+	 * @param unit - the unit of the time
+	 */
+	public void setLatency(long time, TimeUnit unit) {
+		latencyNanos = unit.toNanos(time);
+	}
+
+	/**
+	 * Returns the number of pages that have been fetched, including the empty page at the end of each timeline.
+	 * @return an int containing the number of pages
+	 */
+	public int getPagesFetched() {
+		return pagesFetched;
+	}
+
+	@Override
+	public synchronized boolean userExists(String user) {
+		return timelines.containsKey(user);
+	}
+
+	@Override
+	public List<TimelinePost> fetchPage(String user, int page, long sinceId) throws IOException {
+		if (latencyNanos > 0) {
+			try {
+				TimeUnit.NANOSECONDS.sleep(latencyNanos);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while fetching page " + page + " of " + user, e);
+			}
+		}
+
+		synchronized (this) {
+			pagesFetched++;
+
+			// The posts are kept oldest first, so the newest page is at the end
+			List<TimelinePost> posts = timelines.getOrDefault(user, Collections.emptyList());
+			List<TimelinePost> newest = new ArrayList<>(pageSize);
+
+			for (int i = posts.size() - 1 - (page - 1) * pageSize; i >= 0 && newest.size() < pageSize; i--) {
+				if (posts.get(i).getId() <= sinceId) {
+					break;
+				}
+				newest.add(posts.get(i));
+			}
+
+			return newest;
+		}
+	}
+}
@@ -0,0 +1,35 @@
+package model;
+
+/**
+ * A post from a timeline, with the ID that orders it among the other posts of its source.
+ * @author Richie Ren
+ *
+ */
+public final class TimelinePost {
+
+	private final long id;
+	private final String text;
+
+	/**
+	 * Creates a post.
+	 * @param id - the ID of the post, which is higher for newer posts
+	 * @param text - the text of the post
+	 */
+	public TimelinePost(long id, String text) {
+		this.id = id;
+		this.text = text;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public String getText() {
+		return text;
+	}
+
+	@Override
+	public String toString() {
+		return id + ": " + text;
+	}
+}
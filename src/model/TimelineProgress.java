@@ -0,0 +1,90 @@
+package model;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Records which posts of a user's timeline have been added, so that a read that failed partway can be picked up again
+ * without adding any post twice or missing the posts it did not get to. Every post up to an ID has been added, and so has
+ * every post within each range of newer IDs that a failed read got through; the posts outside of them are still to be read.
+ * Since a timeline is read newest first, a read that fails only leaves behind one more range, which takes in the ranges it passed.
+ * @author Richie Ren
+ *
+ */
+final class TimelineProgress {
+
+	private long sinceId;
+	// The lowest ID of each range mapped to its highest
+	private final TreeMap<Long, Long> ranges;
+
+	/**
+	 * Creates the progress of a timeline whose posts up to the given ID have been added.
+	 * @param sinceId - the ID of the newest post that was added along with every post before it, or 0 if none were
+	 */
+	TimelineProgress(long sinceId) {
+		this.sinceId = sinceId;
+		this.ranges = new TreeMap<>();
+	}
+
+	/**
+	 * Returns the ID after which the timeline should be read from, since every post up to it has been added.
+	 * @return a long containing the ID
+	 */
+	synchronized long getSinceId() {
+		return sinceId;
+	}
+
+	/**
+	 * Returns the ID of the newest post that has been added, whether or not every post before it has been.
+	 * @return a long containing the ID
+	 */
+	synchronized long getNewestId() {
+		return ranges.isEmpty() ? sinceId : Math.max(sinceId, ranges.lastEntry().getValue());
+	}
+
+	/**
+	 * Returns whether the post has already been added.
+	 * @param id - the ID of the post
+	 * @return a boolean indicating whether it should be skipped
+	 */
+	synchronized boolean contains(long id) {
+		if (id <= sinceId) {
+			return true;
+		}
+
+		Map.Entry<Long, Long> range = ranges.floorEntry(id);
+		return range != null && id <= range.getValue();
+	}
+
+	/**
+	 * Records that every post from the lowest ID to the highest has been added, by a read that could not fetch the posts before them.
+	 * @param lowest - the ID of the oldest post that the read got to
+	 * @param highest - the ID of the newest post that the read got to
+	 */
+	synchronized void addRange(long lowest, long highest) {
+		Map.Entry<Long, Long> before = ranges.floorEntry(lowest);
+
+		if (before != null && before.getValue() >= lowest) {
+			lowest = before.getKey();
+			highest = Math.max(highest, before.getValue());
+		}
+
+		// Takes in every range that starts within this one
+		Map.Entry<Long, Long> within;
+		while ((within = ranges.ceilingEntry(lowest)) != null && within.getKey() <= highest) {
+			highest = Math.max(highest, within.getValue());
+			ranges.remove(within.getKey());
+		}
+
+		ranges.put(lowest, highest);
+	}
+
+	/**
+	 * Records that every post up to the given ID has been added, by a read that fetched every page.
+	 * @param newestId - the ID of the newest post that the read got to
+	 */
+	synchronized void complete(long newestId) {
+		sinceId = Math.max(newestId, getNewestId());
+		ranges.clear();
+	}
+}
@@ -0,0 +1,177 @@
+package model;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads a user's timeline from a source into a message generator as a pipeline: 
+ * a background thread fetches the next pages while the current one is split into words and added as input. 
+ * When fetching a page takes longer than adding it, reading the whole timeline takes about as long as fetching it, 
+ * and at most a few pages are held in memory at any time no matter how long the timeline is.
+ * The posts are added in order as one continuous stream of words, the same as if their text had been joined with spaces.
+ * Reading can start after a given post, so that only the posts made since the timeline was last read are fetched and added, 
+ * and a read that failed partway can be picked up again without adding any post twice.
+ * @author Richie Ren
+ *
+ */
+public class TimelineReader {
+
+	// The number of fetched pages that can wait to be added; one more can be in flight and one more being added
+	private static final int PREFETCH = 2;
+
+	private final MessageGenerator msgGen;
+	private final TimelineSource source;
+	private long newestId;
+
+	/**
+	 * Creates a reader that adds the posts it fetches from the source to the message generator.
+	 * @param msgGen - the message generator to add the input to
+	 * @param source - the source of the timelines
+	 */
+	public TimelineReader(MessageGenerator msgGen, TimelineSource source) {
+		this.msgGen = msgGen;
+		this.source = source;
+	}
+
+	/**
+	 * Fetches every page of the user's timeline and adds the words of each post.
+	 * @param user - the name of the user
+	 * @return an int containing the number of posts that were added
+	 * @throws IOException if a page could not be fetched
+	 */
+	public int read(String user) throws IOException {
+		return read(user, 0);
+	}
+
+	/**
+	 * Fetches every page of the user's posts that are newer than the given ID and adds the words of each post. 
+	 * If a page could not be fetched, the posts of the pages before it have already been added.
+	 * @param user - the name of the user
+	 * @param sinceId - the ID of the newest post that was already read, or 0 to read every post
+	 * @return an int containing the number of posts that were added
+	 * @throws IOException if a page could not be fetched
+	 */
+	public int read(String user, long sinceId) throws IOException {
+		return read(user, new TimelineProgress(sinceId));
+	}
+
+	/**
+	 * Fetches every page of the user's posts that are newer than the progress was read up to, and adds the words of each post 
+	 * that the progress does not already hold. Once every page has been fetched, the progress is moved on to the newest post; 
+	 * if a page could not be fetched, the posts that were got through before it are recorded instead, 
+	 * so reading again with the same progress adds only the posts that were missed and any new ones.
+	 * @param user - the name of the user
+	 * @param progress - the posts of the user that have already been added
+	 * @return an int containing the number of posts that were added
+	 * @throws IOException if a page could not be fetched
+	 */
+	int read(String user, TimelineProgress progress) throws IOException {
+		long sinceId = progress.getSinceId();
+		newestId = progress.getNewestId();
+
+		BlockingQueue<Page> pages = new ArrayBlockingQueue<>(PREFETCH);
+		Thread fetcher = new Thread(() -> fetch(user, sinceId, pages), "TimelineReader-" + user);
+		fetcher.setDaemon(true);
+		fetcher.start();
+
+		InputFeeder feeder = new InputFeeder(msgGen);
+		int posts = 0;
+		// The range of IDs that this read has got through, counting the posts it skipped
+		long lowest = Long.MAX_VALUE, highest = 0;
+		boolean complete = false;
+
+		try {
+			Page page;
+			while ((page = pages.take()).posts != null) {
+				for (TimelinePost post : page.posts) {
+					if (!progress.contains(post.getId())) {
+						feeder.addText(post.getText());
+						feeder.finish();
+						newestId = Math.max(newestId, post.getId());
+						posts++;
+					}
+
+					lowest = Math.min(lowest, post.getId());
+					highest = Math.max(highest, post.getId());
+				}
+			}
+
+			if (page.failure != null) {
+				throw page.failure;
+			}
+
+			complete = true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while reading the timeline of " + user);
+		} finally {
+			// Stops the fetcher early if adding the input failed
+			fetcher.interrupt();
+
+			if (complete) {
+				progress.complete(highest);
+			}
+			else if (highest > 0) {
+				progress.addRange(lowest, highest);
+			}
+		}
+
+		return posts;
+	}
+
+	/**
+	 * Returns the ID of the newest post that has been added by the last read, 
+	 * or the ID it started after if it added none.
+	 * @return a long containing the ID
+	 */
+	public long getNewestId() {
+		return newestId;
+	}
+
+	/**
+	 * Fetches the pages in order until the timeline ends or a page could not be fetched, 
+	 * then marks the end with a page that has no posts and holds the failure if there was one.
+	 */
+	private void fetch(String user, long sinceId, BlockingQueue<Page> pages) {
+		try {
+			IOException failure = null;
+
+			for (int number = 1; ; number++) {
+				List<TimelinePost> posts;
+
+				try {
+					posts = source.fetchPage(user, number, sinceId);
+				} catch (IOException e) {
+					failure = e;
+					break;
+				}
+
+				if (posts == null || posts.isEmpty()) {
+					break;
+				}
+
+				pages.put(new Page(posts, null));
+			}
+
+			pages.put(new Page(null, failure));
+		} catch (InterruptedException e) {
+			// The reader has stopped taking pages
+		}
+	}
+
+	/**
+	 * A page of posts, or the end of the timeline when there are no posts.
+	 */
+	private static class Page {
+		final List<TimelinePost> posts;
+		final IOException failure;
+
+		Page(List<TimelinePost> posts, IOException failure) {
+			this.posts = posts;
+			this.failure = failure;
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package model;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Where the posts of a user's timeline come from, a page at a time, such as Twitter or a local stub for testing.
+ * Pages are numbered from one, newest posts first, and a page with no posts marks the end of the timeline.
+ * Every post has an ID that is higher than the IDs of the posts before it, so a timeline can be read again
+ * from where it was left off by asking only for the posts after the newest ID that was read.
+ * @author Richie Ren
+ *
+ */
+public interface TimelineSource {
+
+	/**
+	 * Checks to see if the user exists.
+	 * @param user - the name of the user
+	 * @return true if the user exists, false if the source has never heard of them
+	 * @throws IOException if the source could not be reached
+	 */
+	boolean userExists(String user) throws IOException;
+
+	/**
+	 * Fetches one page of the user's posts that are newer than the given ID, numbering the pages of only those posts.
+	 * This is called from a different thread than the one that adds the posts as input.
+	 * @param user - the name of the user
+	 * @param page - the number of the page, starting from one
+	 * @param sinceId - the ID that every post must be newer than, or 0 for every post
+	 * @return a list containing the posts on the page, newest first, which is empty once there are no more
+	 * @throws IOException if the page could not be fetched
+	 */
+	List<TimelinePost> fetchPage(String user, int page, long sinceId) throws IOException;
+}
@@ -0,0 +1,79 @@
+package model;
+
+/**
+ * The facts about a word that message generation checks after every word, packed into the bits of an int.
+ * They are worked out once when the word is added to the vocabulary, so the characters of the word
+ * do not have to be looked at again each time it is generated.
+ * @author Richie Ren
+ *
+ */
+public final class TokenFlags {
+
+	/** The word ends with a period, exclamation mark or question mark. */
+	public static final int ENDS_SENTENCE = 1;
+	/** The word has no ASCII letters or digits, such as a dash or an emoji. */
+	public static final int NO_ALPHANUMERIC = 2;
+	/** The only ASCII letter or digit in the word is an I, such as in "I" or "i,". */
+	public static final int PRONOUN_I = 4;
+	/** The word starts with a quotation mark followed by at least one more character, which is the one to capitalize. */
+	public static final int OPENS_QUOTE = 8;
+
+	private TokenFlags() {
+	}
+
+	/**
+	 * Works out the flags of the word.
+	 * @param word - the word to inspect
+	 * @return an int containing the flags that apply to the word
+	 */
+	public static int of(String word) {
+		int length = word.length();
+
+		if (length == 0) {
+			return NO_ALPHANUMERIC;
+		}
+
+		int flags = 0;
+		char first = word.charAt(0),
+			 last = word.charAt(length - 1);
+
+		if (last == '!' || last == '.' || last == '?') {
+			flags |= ENDS_SENTENCE;
+		}
+
+		if ((first == '\u201c' || first == '"') && length >= 2) {
+			flags |= OPENS_QUOTE;
+		}
+
+		int numAlphanumerics = 0;
+		boolean onlyI = true;
+
+		for (int i = 0; i < length; i++) {
+			char c = word.charAt(i);
+
+			if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+				numAlphanumerics++;
+				onlyI &= (c == 'i' || c == 'I');
+			}
+		}
+
+		if (numAlphanumerics == 0) {
+			flags |= NO_ALPHANUMERIC;
+		}
+		else if (numAlphanumerics == 1 && onlyI) {
+			flags |= PRONOUN_I;
+		}
+
+		return flags;
+	}
+
+	/**
+	 * Checks if all of the given flags are set.
+	 * @param flags - the flags of a word
+	 * @param flag - the flag or flags to check for
+	 * @return true if every one of the flags is set, false otherwise
+	 */
+	public static boolean has(int flags, int flag) {
+		return (flags & flag) == flag;
+	}
+}
@@ -0,0 +1,100 @@
+package model;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+
+import twitter4j.Paging;
+import twitter4j.Status;
+import twitter4j.Twitter;
+import twitter4j.TwitterException;
+import twitter4j.TwitterFactory;
+import twitter4j.conf.ConfigurationBuilder;
+
+/**
+ * Fetches timelines from Twitter through twitter4j, a hundred posts per page.
+ * The API keys are read from a file the first time they are needed, one key per line in the order:
+ * consumer key, consumer secret, access token, access token secret.
+ * @author Richie Ren
+ *
+ */
+public class TwitterTimelineSource implements TimelineSource {
+
+	public static final String DEFAULT_KEYS = "assets/keys";
+
+	private static final int PAGE_SIZE = 100;
+
+	private final File keys;
+	private Twitter twitter;
+
+	public TwitterTimelineSource() {
+		this(new File(DEFAULT_KEYS));
+	}
+
+	/**
+	 * Creates a source that uses the API keys in the given file.
+	 * @param keys - the file containing the keys
+	 */
+	public TwitterTimelineSource(File keys) {
+		this.keys = keys;
+	}
+
+	@Override
+	public boolean userExists(String user) throws IOException {
+		try {
+			twitter().showUser(user);
+		}
+		catch (TwitterException te) {
+			// Any other error is left for fetching the timeline to report
+			if (te.getStatusCode() == 404) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	@Override
+	public List<TimelinePost> fetchPage(String user, int page, long sinceId) throws IOException {
+		try {
+			// Twitter rejects a since ID below one
+			Paging paging = sinceId > 0 ? new Paging(page, PAGE_SIZE, sinceId) : new Paging(page, PAGE_SIZE);
+			List<Status> statuses = twitter().getUserTimeline(user, paging);
+			List<TimelinePost> posts = new ArrayList<>(statuses.size());
+
+			for (Status s : statuses) {
+				posts.add(new TimelinePost(s.getId(), s.getText()));
+			}
+
+			return posts;
+		}
+		catch (TwitterException te) {
+			throw new IOException("Could not fetch page " + page + " of " + user, te);
+		}
+	}
+
+	/**
+	 * Creates the Twitter client using the API keys the first time it is needed.
+	 * @return the client
+	 * @throws FileNotFoundException if the keys could not be read
+	 */
+	private synchronized Twitter twitter() throws FileNotFoundException {
+		if (twitter == null) {
+			ConfigurationBuilder cb = new ConfigurationBuilder();
+
+			try (Scanner keyReader = new Scanner(keys)) {
+				cb.setOAuthConsumerKey(keyReader.nextLine());
+				cb.setOAuthConsumerSecret(keyReader.nextLine());
+				cb.setOAuthAccessToken(keyReader.nextLine());
+				cb.setOAuthAccessTokenSecret(keyReader.nextLine());
+			}
+
+			twitter = new TwitterFactory(cb.build()).getInstance();
+		}
+
+		return twitter;
+	}
+}
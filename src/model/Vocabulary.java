@@ -0,0 +1,172 @@
+package model;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A dictionary that interns every distinct word once and assigns it an int ID.
+ * IDs are handed out in the order that the words are first seen, starting at zero, so they can be
+ * used directly as indices into arrays. The word for an ID is stored only once, no matter how many
+ * markov chains refer to it as a possible state.
+ * Looking up a word never blocks, and adding a new word only blocks other threads that are also adding
+ * a new word, so the vocabulary can be shared by threads that are adding input and generating messages.
+ * The TokenFlags of each word are worked out when it is added and stored next to it.
+ * @author Richie Ren
+ *
+ */
+public class Vocabulary {
+
+	private final ConcurrentHashMap<String,Integer> ids;
+	private volatile String[] words;
+	private volatile byte[] flags;
+	private volatile int size;
+
+	public Vocabulary() {
+		ids = new ConcurrentHashMap<>();
+		words = new String[16];
+		flags = new byte[16];
+		size = 0;
+	}
+
+	/**
+	 * Returns the ID of the word, adding it to the vocabulary if it has not been seen before.
+	 * @param word - the word to intern
+	 * @return an int containing the ID of the word
+	 */
+	public int intern(String word) {
+		Integer id = ids.get(word);
+
+		if (id != null) {
+			return id;
+		}
+
+		return add(word);
+	}
+
+	/**
+	 * Assigns the next ID to the word, unless another thread added it first.
+	 * The word is stored before its ID is published, so any thread that can see the ID can also see the word and its flags.
+	 * @param word - the word to add
+	 * @return an int containing the ID of the word
+	 */
+	private synchronized int add(String word) {
+		Integer existing = ids.get(word);
+
+		if (existing != null) {
+			return existing;
+		}
+
+		// The first occurrence of the word
+		String[] current = words;
+		byte[] currentFlags = flags;
+		int id = size;
+
+		if (id == current.length) {
+			current = Arrays.copyOf(current, current.length * 2);
+			currentFlags = Arrays.copyOf(currentFlags, current.length);
+		}
+
+		current[id] = word;
+		currentFlags[id] = (byte) TokenFlags.of(word);
+		words = current;
+		flags = currentFlags;
+		size = id + 1;
+		ids.put(word, id);
+
+		return id;
+	}
+
+	/**
+	 * Returns the ID of the word without adding it to the vocabulary.
+	 * @param word - the word to look up
+	 * @return an int containing the ID of the word, or -1 if the word is not in the vocabulary
+	 */
+	public int getId(String word) {
+		Integer id = ids.get(word);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Returns the word that the ID was assigned to.
+	 * @param id - the ID of the word
+	 * @return a String containing the word
+	 */
+	public String getWord(int id) {
+		if (id < 0 || id >= size) {
+			throw new IndexOutOfBoundsException("No word has the ID " + id);
+		}
+
+		return words[id];
+	}
+
+	/**
+	 * Returns the array that the words are stored in by ID, which is shared rather than copied, so it must not be modified. 
+	 * Every ID below the size of the vocabulary when this is called has its word in the array, and that entry never changes.
+	 * @return the array of words
+	 */
+	String[] getWords() {
+		return words;
+	}
+
+	/**
+	 * Returns the flags that were worked out for the word when it was added.
+	 * @param id - the ID of the word
+	 * @return an int containing the TokenFlags of the word
+	 */
+	public int getFlags(int id) {
+		if (id < 0 || id >= size) {
+			throw new IndexOutOfBoundsException("No word has the ID " + id);
+		}
+
+		return flags[id];
+	}
+
+	/**
+	 * Returns the number of distinct words in the vocabulary.
+	 * @return an int containing the number of words
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Estimates the memory that the vocabulary takes up: every word with its entry in the map of IDs, and the arrays
+	 * indexed by ID. IDs above 127 are boxed in the map, which is counted for every word.
+	 * @return a long containing the size in bytes
+	 */
+	long estimateBytes() {
+		int length = size;
+		String[] current = words;
+
+		// The table of the map is a power of two that keeps it at most three quarters full
+		long table = Integer.highestOneBit(Math.max(1, length * 4 / 3)) * 2L;
+		long bytes = MemoryEstimate.array(current.length, MemoryEstimate.REFERENCE) + MemoryEstimate.array(flags.length, 1)
+				+ MemoryEstimate.array(table, MemoryEstimate.REFERENCE);
+
+		for (int id = 0; id < length; id++) {
+			bytes += MemoryEstimate.string(current[id].length()) + MemoryEstimate.MAP_ENTRY + MemoryEstimate.object(4);
+		}
+
+		return bytes;
+	}
+
+	/**
+	 * Removes every word from the vocabulary.
+	 */
+	public synchronized void clear() {
+		ids.clear();
+		words = new String[16];
+		flags = new byte[16];
+		size = 0;
+	}
+
+	/**
+	 * Spreads the bits of a hash code so that similar keys do not cluster in a hash table.
+	 * @param hash - the hash code to mix
+	 * @return an int containing the mixed hash
+	 */
+	static int mix(int hash) {
+		int h = hash * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
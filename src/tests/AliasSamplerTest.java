@@ -0,0 +1,56 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import model.AliasSampler;
+
+public class AliasSamplerTest {
+
+	@Test
+	public void testSingleOutcome() {
+		AliasSampler sampler = new AliasSampler(new int[] { 5 });
+		assertEquals(sampler.size(), 1);
+
+		Random random = new Random(1);
+		for (int i = 0; i < 100; i++) {
+			assertEquals(sampler.sample(random), 0);
+		}
+	}
+
+	@Test
+	public void testZeroWeightNeverChosen() {
+		AliasSampler sampler = new AliasSampler(new int[] { 0, 3, 0, 1 });
+
+		Random random = new Random(2);
+		for (int i = 0; i < 10000; i++) {
+			int result = sampler.sample(random);
+			assertTrue(result == 1 || result == 3);
+		}
+	}
+
+	@Test
+	public void testWeightsAffectChance() {
+		int[] weights = new int[] { 1, 2, 7 };
+		AliasSampler sampler = new AliasSampler(weights);
+		int[] counts = new int[weights.length];
+
+		Random random = new Random(3);
+		int draws = 100000;
+		for (int i = 0; i < draws; i++) {
+			counts[sampler.sample(random)]++;
+		}
+
+		assertEquals(counts[0] / (double) draws, 0.1, 0.01);
+		assertEquals(counts[1] / (double) draws, 0.2, 0.01);
+		assertEquals(counts[2] / (double) draws, 0.7, 0.01);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoPositiveWeights() {
+		new AliasSampler(new int[] { 0, 0 });
+	}
+}
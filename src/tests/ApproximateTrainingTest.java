@@ -0,0 +1,219 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+import model.ApproximateTraining;
+import model.MessageGenerator;
+import model.ModelDrift;
+
+public class ApproximateTrainingTest {
+
+	private static final long BUDGET = 1 << 24;
+
+	/**
+	 * Builds input where every common pair occurs many times, between which are words that occur only once.
+	 */
+	private static String[] corpus() {
+		String[] common = { "The", "cat", "sat", "on", "the", "mat.", "A", "dog", "ran", "past", "the", "cat." };
+		String[] words = new String[common.length * 200];
+
+		for (int i = 0; i < words.length; i++) {
+			words[i] = (i % 50 == 3) ? "typo" + i : common[i % common.length];
+		}
+
+		return words;
+	}
+
+	private static MessageGenerator train(String[] words, ApproximateTraining approx) {
+		MessageGenerator mg = new MessageGenerator();
+		mg.setApproximateTraining(approx);
+
+		for (int i = 1; i < words.length; i++) {
+			mg.addInput(words, i);
+		}
+
+		return mg;
+	}
+
+	@Test
+	public void testLeavesOutRarePairs() {
+		ApproximateTraining approx = new ApproximateTraining(BUDGET);
+		MessageGenerator mg = new MessageGenerator();
+		mg.setApproximateTraining(approx);
+		assertSame(approx, mg.getApproximateTraining());
+
+		mg.addInput("foo", "bar");
+		assertNull(mg.getChain("foo"));
+		assertEquals(0, mg.getVocabularySize());
+		assertEquals(1, approx.getRejected());
+
+		// The second occurrence gets the pair in, with both occurrences counted
+		mg.addInput("foo", "bar");
+		assertEquals(2, mg.getChain("foo").getStateCount("bar"));
+		assertEquals(1, approx.getAdmitted());
+
+		mg.addInput("foo", "bar");
+		assertEquals(3, mg.getChain("foo").getStateCount("bar"));
+		assertEquals(3, mg.getVersion());
+	}
+
+	@Test
+	public void testKeepsCommonTransitions() {
+		String[] words = corpus();
+		MessageGenerator exact = train(words, null);
+		MessageGenerator approximate = train(words, new ApproximateTraining(BUDGET));
+
+		for (int i = 0; i < words.length; i++) {
+			if (words[i].startsWith("typo")) {
+				assertNull(approximate.getChain(words[i]));
+			}
+		}
+		assertTrue(approximate.getNumberOfEdges() < exact.getNumberOfEdges());
+		assertTrue(approximate.getVocabularySize() < exact.getVocabularySize());
+
+		ModelDrift drift = ModelDrift.measure(exact, approximate);
+		assertTrue(drift.toString(), drift.getTopStateAgreement() > 0.9);
+		assertTrue(drift.toString(), drift.getTotalVariation() < 0.1);
+		assertTrue(drift.getEdgeRatio() < 1);
+
+		ModelDrift same = ModelDrift.measure(exact, exact);
+		assertEquals(0, same.getTotalVariation(), 1e-9);
+		assertEquals(1, same.getCoverage(), 1e-9);
+		assertEquals(1, same.getTopStateAgreement(), 1e-9);
+	}
+
+	@Test
+	public void testLimitsStatesPerWord() {
+		ApproximateTraining approx = new ApproximateTraining(BUDGET, 1, 3);
+		MessageGenerator mg = new MessageGenerator();
+		mg.setApproximateTraining(approx);
+
+		for (int i = 0; i < 5; i++) {
+			mg.addInput("the", "cat");
+		}
+		mg.addInput("the", "dog");
+		mg.addInput("the", "dog");
+		mg.addInput("the", "mat");
+		mg.addInput("the", "hat");
+
+		assertEquals(3, mg.getChain("the").getNumberOfStates());
+		assertEquals(5, mg.getChain("the").getStateCount("cat"));
+		assertEquals(2, mg.getChain("the").getStateCount("dog"));
+		assertEquals(0, mg.getChain("the").getStateCount("hat"));
+	}
+
+	@Test
+	public void testStaysWithinBudget() {
+		long budget = 1 << 20;
+		ApproximateTraining approx = new ApproximateTraining(budget);
+		MessageGenerator mg = new MessageGenerator();
+		mg.setApproximateTraining(approx);
+
+		// The same random words are added twice, so that every pair gets in until the model reaches the budget
+		SplittableRandom random = new SplittableRandom(42);
+		String[] words = new String[200000];
+		for (int i = 0; i < words.length / 2; i++) {
+			words[i] = words[i + words.length / 2] = "w" + random.nextInt(1000);
+		}
+		for (int i = 1; i < words.length; i++) {
+			mg.addInput(words, i);
+		}
+
+		assertTrue(approx.getThreshold() > 2);
+		assertTrue(approx.getPrunedStates() > 0);
+		assertTrue(mg.getNumberOfEdges() > 0);
+		assertTrue(mg.getEstimatedBytes() + approx.estimateBytes() <= budget);
+	}
+
+	@Test
+	public void testFreesWordsToStayWithinBudget() {
+		long budget = 1 << 18;
+
+		// A few words are common and the rest are rare, so that the vocabulary alone takes up more than the budget
+		SplittableRandom random = new SplittableRandom(11);
+		String[] words = new String[300000];
+		for (int i = 0; i < words.length; i++) {
+			double u = random.nextDouble();
+			words[i] = "w" + (int) (u * u * u * u * 20000);
+		}
+
+		MessageGenerator exact = new MessageGenerator(2);
+		for (int i = 1; i < words.length; i++) {
+			exact.addInput(words, i);
+		}
+		assertTrue(exact.getVocabularySize() * 64L > budget);
+
+		ApproximateTraining approx = new ApproximateTraining(budget);
+		MessageGenerator mg = new MessageGenerator(2);
+		mg.setApproximateTraining(approx);
+		for (int i = 1; i < words.length; i++) {
+			mg.addInput(words, i);
+		}
+
+		assertTrue(approx.getPrunedStates() > 0);
+		assertTrue(mg.getNumberOfEdges() > 0);
+		assertTrue(mg.getNumberOfContexts() > 0);
+		assertTrue(mg.getVocabularySize() < exact.getVocabularySize());
+		assertTrue(mg.getEstimatedBytes() + approx.estimateBytes() <= budget);
+		assertFalse(mg.generateText(new SplittableRandom(5)).isEmpty());
+	}
+
+	@Test
+	public void testKeepsAdmittingAfterDroppingEverything() {
+		ApproximateTraining approx = new ApproximateTraining(1 << 16);
+		MessageGenerator mg = new MessageGenerator();
+		mg.setApproximateTraining(approx);
+
+		// Every word is so long that none of the pairs fit, so the first time the model is measured all of them are dropped
+		String prefix = "x".repeat(1 << 16);
+		for (int i = 0; i < 64; i++) {
+			mg.addInput(prefix + i, "y");
+			mg.addInput(prefix + i, "y");
+		}
+
+		assertEquals(64, approx.getPrunedStates());
+		assertEquals(0, mg.getNumberOfEdges());
+		assertEquals(3, approx.getThreshold());
+
+		for (int i = 0; i < 3; i++) {
+			mg.addInput("foo", "bar");
+		}
+		assertEquals(3, mg.getChain("foo").getStateCount("bar"));
+	}
+
+	@Test
+	public void testCountsPairsInModelExactly() {
+		ApproximateTraining approx = new ApproximateTraining(BUDGET, 3, 64);
+		MessageGenerator mg = new MessageGenerator(2);
+		mg.setApproximateTraining(approx);
+		String[] words = { "the", "cat", "sat" };
+
+		for (int i = 0; i < 100; i++) {
+			mg.addInput(words, 2);
+		}
+
+		// Only the occurrences before each got in went through the sketch
+		assertEquals(100, mg.getChain("cat").getStateCount("sat"));
+		assertEquals(2, approx.getAdmitted());
+		assertEquals(4, approx.getRejected());
+		assertEquals(100, mg.getVersion());
+	}
+
+	@Test
+	public void testClearResets() {
+		ApproximateTraining approx = new ApproximateTraining(BUDGET);
+		MessageGenerator mg = new MessageGenerator();
+		mg.setApproximateTraining(approx);
+
+		mg.addInput("foo", "bar");
+		mg.clearInput();
+		assertEquals(0, approx.getRejected());
+
+		mg.addInput("foo", "bar");
+		assertNull(mg.getChain("foo"));
+	}
+}
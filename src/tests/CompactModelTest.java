@@ -0,0 +1,283 @@
+package tests;
+
+import static org.junit.Assert.*;
+import static tests.TrainedModels.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import model.MarkovChain;
+import model.MessageGenerator;
+
+public class CompactModelTest {
+
+	private Path file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = Files.createTempFile("model", ".mapped");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	/**
+	 * Checks that both generators have the same chains with the same counts, and that every chain read from the
+	 * compact model has the same word and number of states.
+	 */
+	private static void assertSameCompactModel(MessageGenerator expected, MessageGenerator actual) {
+		assertSameModel(expected, actual);
+
+		for (String word : VOCABULARY) {
+			MarkovChain e = expected.getChain(word);
+
+			if (e != null) {
+				MarkovChain a = actual.getChain(word);
+				assertEquals(e.getWord(), a.getWord());
+				assertEquals(e.getNumberOfStates(), a.getNumberOfStates());
+			}
+		}
+	}
+
+	@Test
+	public void testOpenMapped() throws IOException {
+		MessageGenerator mg = train(1, 5000);
+		mg.saveMapped(file);
+
+		MessageGenerator mapped = MessageGenerator.openMapped(file);
+		assertTrue(mapped.isReadOnly());
+		assertFalse(mg.isReadOnly());
+		assertSameCompactModel(mg, mapped);
+		assertNull(mapped.getChain("missing"));
+
+		for (int i = 0; i < 100; i++) {
+			String message = mapped.generateText();
+			assertFalse(message.isEmpty());
+
+			for (String word : message.split("\\s+")) {
+				assertTrue(word.length() > 0);
+			}
+		}
+	}
+
+	@Test
+	public void testHigherOrder() throws IOException {
+		MessageGenerator mg = train(3, 5000);
+		mg.saveMapped(file);
+
+		assertSameCompactModel(mg, MessageGenerator.openMapped(file));
+	}
+
+	@Test
+	public void testHigherOrderFollowsContext() throws IOException {
+		String[] cycle = { "one", "two", "three", "one", "four", "five" };
+		String[] words = new String[cycle.length * 50 + 1];
+		for (int i = 0; i < words.length; i++) {
+			words[i] = cycle[i % cycle.length];
+		}
+
+		MessageGenerator mg = new MessageGenerator(2);
+		for (int i = 1; i < words.length; i++) {
+			mg.addInput(words, i);
+		}
+		mg.saveMapped(file);
+		MessageGenerator mapped = MessageGenerator.openMapped(file);
+
+		for (int n = 0; n < 200; n++) {
+			String[] tokenized = mapped.generateText().toLowerCase().replaceAll("[^a-z ]", "").split("\\s+");
+
+			for (int i = 0; i + 2 < tokenized.length; i++) {
+				if (tokenized[i].equals("three") && tokenized[i + 1].equals("one")) {
+					assertEquals(tokenized[i + 2], "four");
+				}
+				if (tokenized[i].equals("five") && tokenized[i + 1].equals("one")) {
+					assertEquals(tokenized[i + 2], "two");
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testEmptyModel() throws IOException {
+		new MessageGenerator().saveMapped(file);
+
+		MessageGenerator mapped = MessageGenerator.openMapped(file);
+		assertEquals(mapped.getNumberOfChains(), 0);
+		assertEquals(mapped.generateText(), "");
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testReadOnly() throws IOException {
+		train(1, 100).saveMapped(file);
+		MessageGenerator.openMapped(file).addInput("foo", "bar");
+	}
+
+	@Test
+	public void testClearInputMakesWritable() throws IOException {
+		train(1, 100).saveMapped(file);
+		MessageGenerator mapped = MessageGenerator.openMapped(file);
+
+		mapped.clearInput();
+		assertFalse(mapped.isReadOnly());
+
+		mapped.addInput("foo", "bar");
+		assertEquals(mapped.getNumberOfChains(), 1);
+	}
+
+	@Test
+	public void testSaveAndMergeMappedModel() throws IOException {
+		MessageGenerator mg = train(2, 5000);
+		mg.saveMapped(file);
+		MessageGenerator mapped = MessageGenerator.openMapped(file);
+
+		Path snapshot = Files.createTempFile("model", ".snapshot");
+		try {
+			mapped.save(snapshot);
+			assertSameCompactModel(mg, MessageGenerator.load(snapshot));
+		} finally {
+			Files.delete(snapshot);
+		}
+
+		MessageGenerator merged = new MessageGenerator(2);
+		merged.merge(mapped);
+		assertSameCompactModel(mg, merged);
+	}
+
+	@Test
+	public void testTruncatedFile() throws IOException {
+		train(2, 5000).saveMapped(file);
+		byte[] bytes = Files.readAllBytes(file);
+
+		for (int length : new int[] { 0, 10, bytes.length / 2, bytes.length - 8 }) {
+			Files.write(file, Arrays.copyOf(bytes, length));
+
+			try {
+				MessageGenerator.openMapped(file);
+				fail("Opened a mapped model cut to " + length + " bytes");
+			} catch (IOException e) {
+				// Expected
+			}
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testNotAMappedModel() throws IOException {
+		train(1, 100).save(file);
+		MessageGenerator.openMapped(file);
+	}
+
+	@Test
+	public void testKeepsSentenceStarts() throws IOException {
+		String[] words = "Alpha one two. Baz three four. Baz five six. Baz seven Alpha eight".split(" ");
+		MessageGenerator mg = new MessageGenerator();
+		for (int i = 1; i < words.length; i++) {
+			mg.addInput(words, i);
+		}
+		mg.saveMapped(file);
+
+		MessageGenerator loaded = MessageGenerator.openMapped(file);
+		loaded.setWeightedSentenceStarts(true);
+
+		for (long seed = 0; seed < 200; seed++) {
+			assertTrue(loaded.generateText(new Random(seed)).startsWith("Baz "));
+		}
+	}
+
+	@Test
+	public void testCaseFoldedLookup() throws IOException {
+		String[] words = "the cat sat. the dog ran. the".split(" ");
+		MessageGenerator mg = new MessageGenerator();
+		for (int i = 1; i < words.length; i++) {
+			mg.addInput(words, i);
+		}
+		mg.saveMapped(file);
+		MessageGenerator mapped = MessageGenerator.openMapped(file);
+
+		// "The" only has a chain as "the", so it is always followed by one of the states of "the"
+		Random random = new Random(1);
+		for (int n = 0; n < 200; n++) {
+			String[] tokenized = mapped.generateText(random).split(" ");
+
+			for (int i = 0; i + 1 < tokenized.length; i++) {
+				if (tokenized[i].equals("The")) {
+					assertTrue(tokenized[i + 1].startsWith("cat") || tokenized[i + 1].startsWith("dog"));
+				}
+			}
+		}
+
+		assertTrue(mapped.getCaseFoldedLookups() > 0);
+	}
+
+	@Test
+	public void testFreezeKeepsModel() {
+		MessageGenerator expected = train(2, 2000);
+		MessageGenerator frozen = train(2, 2000);
+		long version = frozen.getVersion();
+
+		frozen.freeze();
+		assertTrue(frozen.isReadOnly());
+		assertSameCompactModel(expected, frozen);
+		assertTrue(frozen.getVersion() > version);
+		assertTrue(frozen.getEstimatedBytes() < expected.getEstimatedBytes());
+
+		for (long seed = 0; seed < 20; seed++) {
+			assertFalse(frozen.generateText(new SplittableRandom(seed)).isEmpty());
+		}
+
+		version = frozen.getVersion();
+		frozen.freeze();
+		assertEquals(version, frozen.getVersion());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testFrozenIsReadOnly() {
+		MessageGenerator mg = train(1, 100);
+		mg.freeze();
+		mg.addInput("foo", "bar");
+	}
+
+	@Test
+	public void testThawResumesTraining() {
+		MessageGenerator expected = train(2, 2000);
+		MessageGenerator mg = train(2, 2000);
+
+		mg.freeze();
+		long version = mg.getVersion();
+		mg.thaw();
+		assertFalse(mg.isReadOnly());
+		assertSameCompactModel(expected, mg);
+		assertEquals(version + 1, mg.getVersion());
+
+		String[] words = { "The", "lazy", "fox", "jumps" };
+		for (int i = 1; i < words.length; i++) {
+			expected.addInput(words, i);
+			mg.addInput(words, i);
+		}
+		assertSameCompactModel(expected, mg);
+
+		version = mg.getVersion();
+		mg.thaw();
+		assertEquals(version, mg.getVersion());
+	}
+
+	@Test
+	public void testThawMappedModel() throws IOException {
+		MessageGenerator expected = train(1, 500);
+		expected.saveMapped(file);
+
+		MessageGenerator mapped = MessageGenerator.openMapped(file);
+		mapped.thaw();
+		assertFalse(mapped.isReadOnly());
+		assertSameCompactModel(expected, mapped);
+	}
+}
@@ -0,0 +1,62 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import model.CountMinSketch;
+
+public class CountMinSketchTest {
+
+	@Test
+	public void testNeverUnderestimates() {
+		CountMinSketch sketch = new CountMinSketch(64, 4, 0);
+
+		for (long item = 0; item < 1000; item++) {
+			for (int i = 0; i <= item % 5; i++) {
+				sketch.add(item);
+			}
+		}
+
+		for (long item = 0; item < 1000; item++) {
+			assertTrue(sketch.estimate(item) >= item % 5 + 1);
+		}
+	}
+
+	@Test
+	public void testExactWhenSparse() {
+		CountMinSketch sketch = new CountMinSketch(1 << 16, 4, 0);
+
+		assertEquals(0, sketch.estimate(42));
+		assertEquals(1, sketch.add(42));
+		assertEquals(2, sketch.add(42));
+		assertEquals(1, sketch.add(7));
+		assertEquals(2, sketch.estimate(42));
+		assertEquals(1, sketch.estimate(7));
+
+		sketch.clear();
+		assertEquals(0, sketch.estimate(42));
+	}
+
+	@Test
+	public void testHalves() {
+		CountMinSketch sketch = new CountMinSketch(1 << 16, 4, 10);
+
+		for (int i = 0; i < 9; i++) {
+			sketch.add(1);
+		}
+		assertEquals(9, sketch.estimate(1));
+
+		// The tenth addition reaches the interval, so the count of ten is halved
+		sketch.add(1);
+		assertEquals(5, sketch.estimate(1));
+
+		sketch.halve();
+		assertEquals(2, sketch.estimate(1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidSize() {
+		new CountMinSketch(0, 4, 0);
+	}
+}
@@ -0,0 +1,168 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import model.GeneratorMetrics;
+import model.MessageGenerator;
+
+public class GeneratorMetricsTest {
+
+	private static final String TEXT = "The cat sat on the mat. The dog sat on the cat. A bird flew over the dog.";
+
+	@Test
+	public void testDisabledByDefault() {
+		MessageGenerator mg = new MessageGenerator();
+		assertNull(mg.getMetrics());
+
+		GeneratorMetrics metrics = mg.enableMetrics();
+		assertSame(metrics, mg.getMetrics());
+		assertSame(metrics, mg.enableMetrics());
+
+		mg.disableMetrics();
+		assertNull(mg.getMetrics());
+	}
+
+	@Test
+	public void testCountsTokens() {
+		MessageGenerator mg = new MessageGenerator(2);
+		GeneratorMetrics metrics = mg.enableMetrics();
+
+		mg.addInput("foo", "bar");
+		String[] words = { "one", "two", "three" };
+		mg.addInput(words, 1);
+		mg.addInput(words, 2);
+
+		assertEquals(3, metrics.getTokensIngested());
+		assertEquals(0, metrics.getIngestCount());
+
+		mg.clearInput();
+		mg.addInput("foo", "bar");
+		assertEquals(4, metrics.getTokensIngested());
+	}
+
+	@Test
+	public void testRecordsIngest() throws Exception {
+		MessageGenerator mg = new MessageGenerator();
+		GeneratorMetrics metrics = mg.enableMetrics();
+
+		mg.addInput(new StringReader(TEXT));
+
+		int numWords = TEXT.split(" ").length;
+		assertEquals(1, metrics.getIngestCount());
+		assertEquals(numWords - 1, metrics.getTokensIngested());
+		assertEquals(numWords - 1, metrics.getLastIngestTokens());
+		assertTrue(metrics.getIngestTokensPerSecond() > 0);
+	}
+
+	@Test
+	public void testCountsMergedTokens() throws Exception {
+		MessageGenerator other = new MessageGenerator();
+		other.addInput(new StringReader(TEXT));
+
+		MessageGenerator mg = new MessageGenerator();
+		GeneratorMetrics metrics = mg.enableMetrics();
+		mg.merge(other);
+
+		assertEquals(TEXT.split(" ").length - 1, metrics.getTokensIngested());
+	}
+
+	@Test
+	public void testRecordsGeneration() throws Exception {
+		MessageGenerator mg = new MessageGenerator();
+		mg.addInput(new StringReader(TEXT));
+		GeneratorMetrics metrics = mg.enableMetrics();
+
+		for (int i = 0; i < 100; i++) {
+			mg.generateText();
+		}
+		mg.generateTexts(50);
+
+		assertEquals(150, metrics.getMessagesGenerated());
+
+		long total = 0;
+		for (long count : metrics.getGenerationLatencyHistogram()) {
+			total += count;
+		}
+		assertEquals(150, total);
+		assertEquals(metrics.getGenerationLatencyHistogram().length, metrics.getGenerationLatencyBucketsNanos().length);
+
+		assertTrue(metrics.getGenerationP50Micros() > 0);
+		assertTrue(metrics.getGenerationP50Micros() <= metrics.getGenerationP99Micros());
+		assertTrue(metrics.getGenerationP99Micros() <= metrics.getGenerationP999Micros());
+		assertTrue(metrics.getGenerationP999Micros() <= metrics.getGenerationMaxMicros());
+		assertTrue(metrics.getGenerationMeanMicros() <= metrics.getGenerationMaxMicros());
+
+		metrics.reset();
+		assertEquals(0, metrics.getMessagesGenerated());
+		assertEquals(0, metrics.getGenerationMaxMicros(), 0);
+	}
+
+	@Test
+	public void testStopsRecordingWhenDisabled() {
+		MessageGenerator mg = new MessageGenerator();
+		GeneratorMetrics metrics = mg.enableMetrics();
+		mg.disableMetrics();
+
+		mg.addInput("foo", "bar");
+		mg.generateText();
+
+		assertEquals(0, metrics.getTokensIngested());
+		assertEquals(0, metrics.getMessagesGenerated());
+	}
+
+	@Test
+	public void testReportsModelSize() throws Exception {
+		MessageGenerator mg = new MessageGenerator();
+		GeneratorMetrics metrics = mg.enableMetrics();
+		long empty = metrics.getEstimatedBytes();
+
+		mg.addInput(new StringReader(TEXT));
+
+		assertEquals(mg.getNumberOfChains(), metrics.getNumberOfChains());
+		assertEquals(mg.getNumberOfEdges(), metrics.getNumberOfEdges());
+		assertTrue(metrics.getVocabularySize() >= metrics.getNumberOfChains());
+		assertTrue(metrics.getEstimatedBytes() > empty);
+
+		// Generating builds the alias tables of the chains, which is not a new version, so the estimate is kept
+		long estimate = metrics.getEstimatedBytes();
+		for (int i = 0; i < 50; i++) {
+			mg.generateText();
+		}
+		assertEquals(estimate, metrics.getEstimatedBytes());
+		assertTrue(mg.getEstimatedBytes() > estimate);
+
+		mg.addInput("foo", "bar");
+		assertEquals(mg.getEstimatedBytes(), metrics.getEstimatedBytes());
+	}
+
+	@Test
+	public void testRegistersWithJmx() throws Exception {
+		MessageGenerator mg = new MessageGenerator();
+		GeneratorMetrics metrics = mg.enableMetrics();
+		mg.addInput("foo", "bar");
+
+		ObjectName name = metrics.register("test");
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+		try {
+			assertTrue(server.isRegistered(name));
+			assertEquals(1L, server.getAttribute(name, "TokensIngested"));
+			assertEquals(1, server.getAttribute(name, "NumberOfChains"));
+
+			server.invoke(name, "reset", null, null);
+			assertEquals(0L, server.getAttribute(name, "TokensIngested"));
+		} finally {
+			metrics.unregister();
+		}
+
+		assertFalse(server.isRegistered(name));
+	}
+}
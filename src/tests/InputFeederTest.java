@@ -0,0 +1,116 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import model.InputFeeder;
+import model.MessageGenerator;
+
+public class InputFeederTest {
+
+	/**
+	 * Records every pair of words that is added instead of only counting them.
+	 */
+	private static class RecordingGenerator extends MessageGenerator {
+		List<String> pairs = new ArrayList<>();
+
+		@Override
+		public void addInput(String firstWord, String wordAfter) {
+			pairs.add(firstWord + " " + wordAfter);
+			super.addInput(firstWord, wordAfter);
+		}
+	}
+
+	/**
+	 * Only returns a single character per read, so every word is split across chunks.
+	 */
+	private static class TrickleReader extends Reader {
+		private final Reader reader;
+
+		TrickleReader(String text) {
+			reader = new StringReader(text);
+		}
+
+		@Override
+		public int read(char[] cbuf, int off, int len) throws IOException {
+			return reader.read(cbuf, off, Math.min(len, 1));
+		}
+
+		@Override
+		public void close() throws IOException {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void testReadPairsConsecutiveWords() throws IOException {
+		RecordingGenerator mg = new RecordingGenerator();
+		new InputFeeder(mg).read(new StringReader("  The quick\tbrown\r\n\nfox.  "));
+
+		assertEquals(mg.pairs, Arrays.asList("The quick", "quick brown", "brown fox."));
+	}
+
+	@Test
+	public void testWordsSplitAcrossChunks() throws IOException {
+		RecordingGenerator whole = new RecordingGenerator();
+		RecordingGenerator trickled = new RecordingGenerator();
+		String text = "foo bar\nfoobar baz qux\n";
+
+		new InputFeeder(whole).read(new StringReader(text));
+		new InputFeeder(trickled).read(new TrickleReader(text));
+
+		assertEquals(trickled.pairs, whole.pairs);
+		assertEquals(trickled.pairs.size(), 4);
+	}
+
+	@Test
+	public void testLastWordCarriedBetweenCalls() {
+		RecordingGenerator mg = new RecordingGenerator();
+		InputFeeder feeder = new InputFeeder(mg);
+
+		char[] first = "foo ba".toCharArray();
+		char[] second = "r baz".toCharArray();
+		feeder.addText(first, 0, first.length);
+		feeder.addText(second, 0, second.length);
+		feeder.finish();
+
+		assertEquals(mg.pairs, Arrays.asList("foo bar", "bar baz"));
+	}
+
+	@Test
+	public void testAddInputFromReader() throws IOException {
+		MessageGenerator mg = new MessageGenerator();
+		mg.addInput(new StringReader("foo bar"));
+
+		String message = mg.generateText();
+		assertTrue(message.contains("foo"));
+		assertTrue(message.contains("bar"));
+	}
+
+	@Test
+	public void testHigherOrderContexts() throws IOException {
+		String text = "one two three one four five one two";
+		String[] words = text.split(" ");
+
+		MessageGenerator expected = new MessageGenerator(3);
+		for (int i = 1; i < words.length; i++) {
+			expected.addInput(words, i);
+		}
+
+		MessageGenerator trickled = new MessageGenerator(3);
+		new InputFeeder(trickled).read(new TrickleReader(text));
+
+		assertEquals(trickled.getNumberOfChains(), expected.getNumberOfChains());
+		assertEquals(trickled.getNumberOfContexts(), expected.getNumberOfContexts());
+		assertEquals(trickled.getNumberOfContexts(), 11);
+		assertEquals(trickled.getChain("one").getStateCount("two"), 2);
+	}
+}
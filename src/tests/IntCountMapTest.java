@@ -0,0 +1,119 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import model.IntCountMap;
+
+public class IntCountMapTest {
+
+	@Test
+	public void testIncrementAndGet() {
+		IntCountMap map = new IntCountMap();
+		assertTrue(map.isEmpty());
+		assertEquals(map.get(3), 0);
+
+		assertEquals(map.increment(3), 1);
+		assertEquals(map.increment(3), 2);
+		assertEquals(map.add(7, 5), 5);
+
+		assertEquals(map.get(3), 2);
+		assertEquals(map.get(7), 5);
+		assertEquals(map.size(), 2);
+	}
+
+	@Test
+	public void testGrowsAndCopies() {
+		IntCountMap map = new IntCountMap();
+
+		for (int i = 0; i < 1000; i++) {
+			for (int j = 0; j <= i % 3; j++) {
+				map.increment(i * 31);
+			}
+		}
+
+		assertEquals(map.size(), 1000);
+
+		int[] keys = new int[map.size()];
+		int[] counts = new int[map.size()];
+		assertEquals(map.copyTo(keys, counts), 1000);
+
+		for (int i = 0; i < keys.length; i++) {
+			assertEquals(counts[i], (keys[i] / 31) % 3 + 1);
+		}
+	}
+
+	@Test
+	public void testAddAllTranslatesKeys() {
+		IntCountMap map = new IntCountMap();
+		map.increment(10);
+
+		IntCountMap other = new IntCountMap();
+		other.add(0, 2);
+		other.add(1, 3);
+
+		map.addAll(other, new int[] { 10, 11 });
+
+		assertEquals(map.size(), 2);
+		assertEquals(map.get(10), 3);
+		assertEquals(map.get(11), 3);
+	}
+
+	@Test
+	public void testRemoveKeepsOtherKeys() {
+		IntCountMap map = new IntCountMap();
+		for (int key = 0; key < 1000; key++) {
+			map.add(key, key + 1);
+		}
+
+		for (int key = 0; key < 1000; key += 3) {
+			assertEquals(map.remove(key), key + 1);
+		}
+		assertEquals(map.remove(0), 0);
+		assertEquals(map.remove(5000), 0);
+
+		assertEquals(map.size(), 666);
+		for (int key = 0; key < 1000; key++) {
+			assertEquals(map.get(key), key % 3 == 0 ? 0 : key + 1);
+		}
+
+		map.increment(0);
+		assertEquals(map.get(0), 1);
+		assertEquals(map.size(), 667);
+	}
+
+	@Test
+	public void testRemoveBelow() {
+		IntCountMap map = new IntCountMap();
+		for (int key = 0; key < 100; key++) {
+			map.add(key, key % 4 + 1);
+		}
+
+		assertEquals(map.removeBelow(3), 50);
+		assertEquals(map.size(), 50);
+		assertEquals(map.get(1), 0);
+		assertEquals(map.get(2), 3);
+		assertEquals(map.get(3), 4);
+		assertEquals(map.removeBelow(3), 0);
+	}
+
+	@Test
+	public void testMinKey() {
+		IntCountMap map = new IntCountMap();
+		assertEquals(map.minKey(), -1);
+
+		map.add(7, 5);
+		map.add(3, 2);
+		map.add(9, 8);
+		assertEquals(map.minKey(), 3);
+
+		map.remove(3);
+		assertEquals(map.minKey(), 7);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeKey() {
+		new IntCountMap().increment(-1);
+	}
+}
@@ -0,0 +1,84 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import model.InputFeeder;
+import model.MappedCorpusLoader;
+import model.MessageGenerator;
+
+public class MappedCorpusLoaderTest {
+
+	/**
+	 * Records every pair of words that is added instead of only counting them.
+	 */
+	private static class RecordingGenerator extends MessageGenerator {
+		List<String> pairs = new ArrayList<>();
+
+		@Override
+		public void addInput(String firstWord, String wordAfter) {
+			pairs.add(firstWord + " " + wordAfter);
+			super.addInput(firstWord, wordAfter);
+		}
+	}
+
+	private static final String TEXT = "  The caf\u00e9 na\u00efve\tr\u00e9sum\u00e9\r\n\u201cQuoted\u201d words...  end";
+
+	/**
+	 * Loads the text from a temporary file using the given window size.
+	 */
+	private static List<String> load(String text, Charset charset, long windowSize) throws IOException {
+		Path file = Files.createTempFile("corpus", ".txt");
+
+		try {
+			Files.write(file, text.getBytes(charset));
+			RecordingGenerator mg = new RecordingGenerator();
+			new MappedCorpusLoader(charset, windowSize).load(file, mg);
+			return mg.pairs;
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testMatchesReader() throws IOException {
+		RecordingGenerator expected = new RecordingGenerator();
+		new InputFeeder(expected).read(new StringReader(TEXT));
+
+		assertEquals(load(TEXT, StandardCharsets.UTF_8, MappedCorpusLoader.DEFAULT_WINDOW_SIZE), expected.pairs);
+	}
+
+	@Test
+	public void testWordsSplitAcrossWindows() throws IOException {
+		List<String> expected = load(TEXT, StandardCharsets.UTF_8, MappedCorpusLoader.DEFAULT_WINDOW_SIZE);
+
+		// Small windows cut words, including multi-byte characters, in half
+		for (int windowSize = 1; windowSize <= 8; windowSize++) {
+			assertEquals(load(TEXT, StandardCharsets.UTF_8, windowSize), expected);
+		}
+	}
+
+	@Test
+	public void testSingleByteCharset() throws IOException {
+		Charset windows1252 = Charset.forName("windows-1252");
+		List<String> pairs = load("na\u00efve caf\u00e9", windows1252, 3);
+
+		assertEquals(pairs.size(), 1);
+		assertEquals(pairs.get(0), "na\u00efve caf\u00e9");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRejectsCharsetWithoutAsciiWhitespace() {
+		new MappedCorpusLoader(StandardCharsets.UTF_16);
+	}
+}
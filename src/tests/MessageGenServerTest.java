@@ -0,0 +1,266 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import controller.MessageGenServer;
+import model.MessageGenerator;
+import model.ModelRegistry;
+
+public class MessageGenServerTest {
+
+	private MessageGenerator mg;
+	private MessageGenServer server;
+	private HttpClient client;
+
+	@Before
+	public void setUp() throws IOException {
+		mg = new MessageGenerator();
+		server = new MessageGenServer(mg, 0, Paths.get("src/html-css-js"));
+		server.start();
+		client = HttpClient.newHttpClient();
+	}
+
+	@After
+	public void tearDown() {
+		server.stop();
+	}
+
+	private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+		HttpRequest request = HttpRequest.newBuilder(URI.create(server.getUrl()).resolve(path)).GET().build();
+		return client.send(request, HttpResponse.BodyHandlers.ofString());
+	}
+
+	private HttpResponse<String> post(String path, String body) throws IOException, InterruptedException {
+		HttpRequest request = HttpRequest.newBuilder(URI.create(server.getUrl()).resolve(path))
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString(body)).build();
+		return client.send(request, HttpResponse.BodyHandlers.ofString());
+	}
+
+	@Test
+	public void testListensOnLoopback() {
+		assertTrue(server.getPort() > 0);
+		assertTrue(server.getUrl().startsWith("http://127.0.0.1:"));
+	}
+
+	@Test
+	public void testTrainFromText() throws Exception {
+		HttpResponse<String> response = post("/train", "{\"text\": \"the cat sat on the mat. the dog sat on the cat.\"}");
+
+		assertEquals(200, response.statusCode());
+		assertTrue(response.headers().firstValue("Content-Type").get().startsWith("application/json"));
+		assertTrue(response.body().contains("\"chains\":" + mg.getNumberOfChains()));
+		assertTrue(mg.getNumberOfChains() > 0);
+	}
+
+	/**
+	 * Sends a request as it is, so that headers that the HTTP client will not send, such as a different Host, can be tested.
+	 * @return the status line of the response
+	 */
+	private String sendRaw(String request) throws IOException {
+		try (Socket socket = new Socket("127.0.0.1", server.getPort())) {
+			OutputStream out = socket.getOutputStream();
+			out.write(request.getBytes(StandardCharsets.UTF_8));
+			out.flush();
+
+			InputStream in = socket.getInputStream();
+			String response = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+			return response.substring(0, response.indexOf("\r\n"));
+		}
+	}
+
+	@Test
+	public void testTrainFromFile() throws Exception {
+		Path dir = Files.createTempDirectory("data");
+		Path file = dir.resolve("corpus.txt");
+		Path outside = Files.createTempFile("outside", ".txt");
+
+		try {
+			Files.write(file, "one fish two fish red fish blue fish.".getBytes(StandardCharsets.UTF_8));
+			Files.write(outside, "never read".getBytes(StandardCharsets.UTF_8));
+
+			// Without a data directory, no file can be read
+			assertEquals(403, post("/train", "{\"path\": \"corpus.txt\"}").statusCode());
+
+			server.stop();
+			server = new MessageGenServer(mg, null, 0, Paths.get("src/html-css-js"), dir);
+			server.start();
+
+			HttpResponse<String> response = post("/train", "{\"path\": \"corpus.txt\"}");
+			assertEquals(200, response.statusCode());
+			assertNotNull(mg.getChain("fish"));
+
+			String path = outside.toAbsolutePath().toString().replace("\\", "\\\\");
+			assertEquals(400, post("/train", "{\"path\": \"" + path + "\"}").statusCode());
+			assertEquals(400, post("/train", "{\"path\": \"../" + outside.getFileName() + "\"}").statusCode());
+			assertNull(mg.getChain("never"));
+		} finally {
+			Files.deleteIfExists(file);
+			Files.deleteIfExists(dir);
+			Files.deleteIfExists(outside);
+		}
+	}
+
+	@Test
+	public void testNamedModelsOnlyReadTheDataDirectory() throws Exception {
+		Path dir = Files.createTempDirectory("data");
+		Path file = dir.resolve("corpus.txt");
+		Path outside = Files.createTempFile("outside", ".txt");
+
+		try {
+			Files.write(file, "one fish two fish red fish blue fish.".getBytes(StandardCharsets.UTF_8));
+			Files.write(outside, "never read".getBytes(StandardCharsets.UTF_8));
+
+			server.stop();
+			ModelRegistry registry = new ModelRegistry(Long.MAX_VALUE, MessageGenServer.sourceLoader(dir));
+			server = new MessageGenServer(mg, registry, 0, Paths.get("src/html-css-js"), dir);
+			server.start();
+
+			String path = outside.toAbsolutePath().toString().replace("\\", "\\\\");
+			assertEquals(200, post("/generate", "{\"model\": \"corpus.txt\"}").statusCode());
+			assertEquals(400, post("/generate", "{\"model\": \"" + path + "\"}").statusCode());
+			assertEquals(400, post("/generate", "{\"model\": \"../" + outside.getFileName() + "\"}").statusCode());
+			assertEquals(1, registry.size());
+		} finally {
+			Files.deleteIfExists(file);
+			Files.deleteIfExists(dir);
+			Files.deleteIfExists(outside);
+		}
+	}
+
+	@Test
+	public void testRejectsOtherHosts() throws Exception {
+		assertTrue(sendRaw("GET /stats HTTP/1.1\r\nHost: 127.0.0.1:" + server.getPort() + "\r\nConnection: close\r\n\r\n").contains(" 200"));
+		assertTrue(sendRaw("GET /stats HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").contains(" 200"));
+		assertTrue(sendRaw("GET /stats HTTP/1.1\r\nHost: attacker.example:" + server.getPort() + "\r\nConnection: close\r\n\r\n").contains(" 403"));
+		assertTrue(sendRaw("GET /stats HTTP/1.1\r\nHost: localhost.attacker.example\r\nConnection: close\r\n\r\n").contains(" 403"));
+	}
+
+	@Test
+	public void testRequiresJsonForPost() throws Exception {
+		HttpRequest request = HttpRequest.newBuilder(URI.create(server.getUrl()).resolve("/train"))
+				.header("Content-Type", "text/plain")
+				.POST(HttpRequest.BodyPublishers.ofString("{\"text\": \"the cat sat\"}")).build();
+
+		assertEquals(415, client.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+		assertEquals(0, mg.getNumberOfChains());
+	}
+
+	@Test
+	public void testGenerate() throws Exception {
+		post("/train", "{\"text\": \"the cat sat on the mat. the dog sat on the cat.\"}");
+
+		HttpResponse<String> response = get("/generate?count=3");
+		assertEquals(200, response.statusCode());
+		assertTrue(response.body().startsWith("{\"messages\":[\""));
+
+		// Three quoted messages give six quotes after the name of the member
+		String messages = response.body().substring("{\"messages\":".length());
+		assertEquals(6, messages.chars().filter(c -> c == '"').count());
+	}
+
+	@Test
+	public void testGenerateWithSeedIsRepeatable() throws Exception {
+		post("/train", "{\"text\": \"the cat sat on the mat. the dog sat on the cat. a bird flew over the dog.\"}");
+
+		String first = get("/generate?count=5&seed=42").body();
+		String second = post("/generate", "{\"count\": 5, \"seed\": 42}").body();
+
+		assertEquals(first, second);
+	}
+
+	@Test
+	public void testStats() throws Exception {
+		mg.addInput("foo", "bar");
+
+		HttpResponse<String> response = get("/stats");
+		assertEquals(200, response.statusCode());
+		assertTrue(response.body().contains("\"order\":1"));
+		assertTrue(response.body().contains("\"chains\":" + mg.getNumberOfChains()));
+		assertTrue(response.body().contains("\"readOnly\":false"));
+	}
+
+	@Test
+	public void testBadRequests() throws Exception {
+		assertEquals(400, post("/train", "{\"text\": 5}").statusCode());
+		assertEquals(400, post("/train", "not json").statusCode());
+		assertEquals(400, post("/train", "[".repeat(100000)).statusCode());
+		assertEquals(200, post("/generate", "{\"count\": 0, \"unused\": " + "[".repeat(10) + "]".repeat(10) + "}").statusCode());
+		assertEquals(403, post("/train", "{\"path\": \"/no/such/file\"}").statusCode());
+		assertEquals(400, get("/generate?count=-1").statusCode());
+		assertEquals(400, get("/generate?count=100000").statusCode());
+		assertEquals(400, get("/generate?count=two").statusCode());
+		assertEquals(405, get("/train").statusCode());
+		assertEquals(405, post("/stats", "{}").statusCode());
+
+		HttpResponse<String> response = get("/generate?count=x");
+		assertTrue(response.body().startsWith("{\"error\":"));
+	}
+
+	@Test
+	public void testServesOnlyTheWebView() throws Exception {
+		HttpResponse<String> page = get("/");
+		assertEquals(200, page.statusCode());
+		assertTrue(page.headers().firstValue("Content-Type").get().startsWith("text/html"));
+
+		assertEquals(404, get("/missing.html").statusCode());
+		assertEquals(404, get("/../../README.md").statusCode());
+		assertEquals(404, get("/%2e%2e/%2e%2e/README.md").statusCode());
+	}
+
+	@Test
+	public void testNamedModels() throws Exception {
+		assertEquals(400, get("/generate?model=alice").statusCode());
+
+		ModelRegistry registry = new ModelRegistry(Long.MAX_VALUE, key -> {
+			MessageGenerator model = new MessageGenerator();
+			model.addInput(new StringReader("Hello from " + key + " and goodbye from " + key + "."));
+			return model;
+		});
+		server.stop();
+		server = new MessageGenServer(mg, registry, 0, Paths.get("src/html-css-js"));
+		server.start();
+
+		// A GET only uses a model that is already loaded, so a page on another site cannot make the server load one
+		assertEquals(404, get("/generate?model=alice").statusCode());
+		assertEquals(404, get("/stats?model=alice").statusCode());
+		assertEquals(0, registry.size());
+
+		HttpResponse<String> response = post("/generate", "{\"model\": \"alice\", \"count\": 3}");
+		assertEquals(200, response.statusCode());
+		assertTrue(response.body().contains("alice"));
+		assertEquals(0, mg.getNumberOfChains());
+
+		response = get("/generate?model=alice&count=3");
+		assertEquals(200, response.statusCode());
+		assertTrue(response.body().contains("alice"));
+
+		response = post("/train", "{\"model\": \"alice\", \"text\": \"More words for alice\"}");
+		assertEquals(200, response.statusCode());
+		assertTrue(registry.getIfPresent("alice").getNumberOfChains() > 5);
+
+		response = get("/stats?model=alice");
+		assertEquals(200, response.statusCode());
+		assertTrue(response.body().contains("\"registry\":{\"models\":1"));
+		assertTrue(response.body().contains("\"hits\":1"));
+		assertTrue(response.body().contains("\"misses\":1"));
+	}
+}
@@ -2,6 +2,11 @@ package tests;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
 import org.junit.Test;
 
 import model.MessageGenerator;
@@ -49,4 +54,299 @@ public class MessageGeneratorTest {
 		mg.clearInput();
 		assertTrue(mg.generateText() == "");
 	}
+	
+	@Test
+	public void testConcurrentInputAndGeneration() throws InterruptedException {
+		String[] words = { "The", "quick", "brown", "fox", "jumps", "over", "the", "lazy", "dog." };
+		int numWriters = 4,
+			pairsPerWriter = 20000;
+		
+		MessageGenerator mg = new MessageGenerator();
+		mg.addInput("foo", "bar");
+		
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		List<Thread> writers = new ArrayList<>();
+		List<Thread> readers = new ArrayList<>();
+		
+		for (int t = 0; t < numWriters; t++) {
+			writers.add(new Thread(() -> {
+				for (int i = 0; i < pairsPerWriter; i++) {
+					mg.addInput(words[i % words.length], words[(i + 1) % words.length]);
+				}
+			}));
+		}
+		
+		for (int t = 0; t < 2; t++) {
+			readers.add(new Thread(() -> {
+				try {
+					while (writers.stream().anyMatch(Thread::isAlive)) {
+						String message = mg.generateText();
+						assertFalse(message.isEmpty());
+					}
+				} catch (Throwable e) {
+					failure.set(e);
+				}
+			}));
+		}
+		
+		for (Thread writer : writers) {
+			writer.start();
+		}
+		for (Thread reader : readers) {
+			reader.start();
+		}
+		for (Thread writer : writers) {
+			writer.join();
+		}
+		for (Thread reader : readers) {
+			reader.join();
+		}
+		
+		assertNull(failure.get());
+		
+		// No input was lost between the threads
+		int total = 0;
+		for (int i = 0; i < words.length; i++) {
+			total += mg.getChain(words[i]).getOccurrences();
+		}
+		assertEquals(total, numWriters * pairsPerWriter);
+		assertEquals(mg.getChain("The").getStateCount("quick"), numWriters * ((pairsPerWriter + words.length - 1) / words.length));
+	}
+	
+	@Test
+	public void testOrder() {
+		assertEquals(new MessageGenerator().getOrder(), 1);
+		assertEquals(new MessageGenerator(3).getOrder(), 3);
+		assertEquals(new MessageGenerator().getNumberOfContexts(), 0);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidOrder() {
+		new MessageGenerator(0);
+	}
+	
+	@Test
+	public void testHigherOrderFollowsContext() {
+		// "one" is followed by both "two" and "four", but "three one" is always followed by "four"
+		String[] cycle = { "one", "two", "three", "one", "four", "five" };
+		String[] words = new String[cycle.length * 50 + 1];
+		for (int i = 0; i < words.length; i++) {
+			words[i] = cycle[i % cycle.length];
+		}
+		
+		MessageGenerator mg = new MessageGenerator(2);
+		for (int i = 1; i < words.length; i++) {
+			mg.addInput(words, i);
+		}
+		
+		assertEquals(mg.getNumberOfChains(), 5);
+		assertEquals(mg.getChain("one").getStateCount("two"), mg.getChain("one").getStateCount("four"));
+		assertEquals(mg.getNumberOfContexts(), 6);
+		
+		for (int n = 0; n < 200; n++) {
+			String[] tokenized = mg.generateText().toLowerCase().replaceAll("[^a-z ]", "").split("\\s+");
+			
+			for (int i = 0; i + 2 < tokenized.length; i++) {
+				if (tokenized[i].equals("three") && tokenized[i + 1].equals("one")) {
+					assertEquals(tokenized[i + 2], "four");
+				}
+				if (tokenized[i].equals("five") && tokenized[i + 1].equals("one")) {
+					assertEquals(tokenized[i + 2], "two");
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testGenerateTextWithSeed() {
+		MessageGenerator mg = new MessageGenerator();
+		String[] words = "The quick brown fox jumps over the lazy dog. A fox is quick!".split(" ");
+		for (int i = 1; i < words.length; i++) {
+			mg.addInput(words, i);
+		}
+		
+		for (long seed = 0; seed < 20; seed++) {
+			assertEquals(mg.generateText(new Random(seed)), mg.generateText(new Random(seed)));
+		}
+	}
+	
+	@Test
+	public void testGenerateTexts() {
+		MessageGenerator mg = new MessageGenerator();
+		mg.addInput("foo", "bar");
+		
+		List<String> messages = mg.generateTexts(1000);
+		assertEquals(messages.size(), 1000);
+		
+		for (String message : messages) {
+			assertTrue(message.contains("foo") || message.contains("bar"));
+		}
+		
+		assertEquals(mg.generateStream(0).count(), 0);
+		assertEquals(mg.generateStream(10, 1).count(), 10);
+		assertTrue(new MessageGenerator().generateStream(5).allMatch(String::isEmpty));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testGenerateStreamNegativeCount() {
+		new MessageGenerator().generateStream(-1);
+	}
+	
+	/**
+	 * Trains a generator where Alpha is capitalized but never starts a sentence, while Baz starts every sentence after the first.
+	 */
+	private static MessageGenerator trainSentenceStarts() {
+		String[] words = "Alpha one two. Baz three four. Baz five six. Baz seven Alpha eight".split(" ");
+		MessageGenerator mg = new MessageGenerator();
+		for (int i = 1; i < words.length; i++) {
+			mg.addInput(words, i);
+		}
+		
+		return mg;
+	}
+	
+	@Test
+	public void testSentenceStartsAreCapitalized() {
+		MessageGenerator mg = trainSentenceStarts();
+		assertFalse(mg.isWeightedSentenceStarts());
+		
+		Random random = new Random(1);
+		boolean alpha = false,
+				baz = false;
+		
+		for (int i = 0; i < 200; i++) {
+			String message = mg.generateText(random);
+			alpha |= message.startsWith("Alpha ");
+			baz |= message.startsWith("Baz ");
+			assertTrue(message, message.startsWith("Alpha ") || message.startsWith("Baz "));
+		}
+		
+		assertTrue(alpha && baz);
+	}
+	
+	@Test
+	public void testWeightedSentenceStarts() {
+		MessageGenerator mg = trainSentenceStarts();
+		mg.setWeightedSentenceStarts(true);
+		assertTrue(mg.isWeightedSentenceStarts());
+		
+		for (long seed = 0; seed < 200; seed++) {
+			assertTrue(mg.generateText(new Random(seed)).startsWith("Baz "));
+		}
+		
+		// Merged input keeps the sentence starts it had
+		MessageGenerator merged = new MessageGenerator();
+		merged.merge(mg);
+		merged.setWeightedSentenceStarts(true);
+		
+		for (long seed = 0; seed < 200; seed++) {
+			assertTrue(merged.generateText(new Random(seed)).startsWith("Baz "));
+		}
+	}
+	
+	@Test
+	public void testWeightedSentenceStartsWithoutSentenceEnds() {
+		MessageGenerator mg = new MessageGenerator();
+		mg.addInput("Foo", "bar");
+		mg.setWeightedSentenceStarts(true);
+		
+		// No sentence has ended, so every capitalized word can start the message
+		for (long seed = 0; seed < 20; seed++) {
+			assertTrue(mg.generateText(new Random(seed)).startsWith("Foo "));
+		}
+	}
+	
+	@Test
+	public void testWeightedSentenceStartsKeepOneCountPerWord() {
+		String[] words = "Foo a. Foo b. Foo c. Bar d.".split(" ");
+		MessageGenerator mg = new MessageGenerator();
+		mg.setWeightedSentenceStarts(true);
+		
+		long bytes = 0;
+		for (int round = 0; round < 2000; round++) {
+			for (int i = 1; i < words.length; i++) {
+				mg.addInput(words, i);
+			}
+			mg.addInput(words[words.length - 1], words[0]);
+			
+			if (round == 100) {
+				bytes = mg.getEstimatedBytes();
+			}
+		}
+		
+		// Repeating the same sentences only raises the counts, so the model stays the same size
+		assertEquals(bytes, mg.getEstimatedBytes());
+		
+		Random random = new Random(5);
+		int foo = 0;
+		for (int i = 0; i < 4000; i++) {
+			if (mg.generateText(random).startsWith("Foo ")) {
+				foo++;
+			}
+		}
+		assertEquals(3000, foo, 150);
+	}
+	
+	@Test
+	public void testCaseFoldedLookup() {
+		String[] words = "the cat sat. the dog ran. the".split(" ");
+		MessageGenerator mg = new MessageGenerator();
+		for (int i = 1; i < words.length; i++) {
+			mg.addInput(words, i);
+		}
+		
+		// "The" only has a chain as "the", so it is always followed by one of the states of "the"
+		Random random = new Random(1);
+		for (int n = 0; n < 200; n++) {
+			String[] tokenized = mg.generateText(random).split(" ");
+		
+			for (int i = 0; i + 1 < tokenized.length; i++) {
+				if (tokenized[i].equals("The")) {
+					assertTrue(tokenized[i + 1].startsWith("cat") || tokenized[i + 1].startsWith("dog"));
+				}
+			}
+		}
+		
+		assertTrue(mg.getCaseFoldedLookups() > 0);
+	}
+	
+	@Test
+	public void testCaseFoldedLookupDisabled() {
+		String[] words = "the cat sat. the dog ran. the".split(" ");
+		MessageGenerator mg = new MessageGenerator();
+		for (int i = 1; i < words.length; i++) {
+			mg.addInput(words, i);
+		}
+		
+		MessageGenerator folded = new MessageGenerator();
+		folded.merge(mg);
+		
+		assertTrue(mg.isCaseFoldedLookup());
+		mg.setCaseFoldedLookup(false);
+		assertFalse(mg.isCaseFoldedLookup());
+		
+		Random random = new Random(1),
+			   foldedRandom = new Random(1);
+		for (int n = 0; n < 200; n++) {
+			mg.generateText(random);
+			folded.generateText(foldedRandom);
+		}
+		
+		// Only the articles that a message may start with have no chain in any case
+		assertEquals(mg.getCaseFoldedLookups(), 0);
+		assertTrue(mg.getFallbackSelections() > folded.getFallbackSelections());
+	}
+	
+	@Test
+	public void testVersionIncreasesWithInput() {
+		MessageGenerator mg = new MessageGenerator();
+		long empty = mg.getVersion();
+		
+		mg.addInput("foo", "bar");
+		long trained = mg.getVersion();
+		assertTrue(trained > empty);
+		
+		mg.clearInput();
+		assertTrue(mg.getVersion() > trained);
+	}
 }
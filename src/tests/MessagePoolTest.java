@@ -0,0 +1,124 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import model.MessageGenerator;
+import model.MessagePool;
+
+public class MessagePoolTest {
+
+	private static final String[] OLD_WORDS = { "apple", "banana", "cherry", "damson", "elder", "fig." };
+	private static final String[] NEW_WORDS = { "xenon", "yttrium", "zinc", "wolfram", "vanadium", "uranium." };
+
+	/**
+	 * Trains the generator on the words repeated in a loop, so every word has a chain.
+	 */
+	private static void train(MessageGenerator mg, String[] vocabulary) {
+		String[] words = new String[vocabulary.length * 20];
+		for (int i = 0; i < words.length; i++) {
+			words[i] = vocabulary[i % vocabulary.length];
+		}
+
+		for (int i = 1; i < words.length; i++) {
+			mg.addInput(words, i);
+		}
+	}
+
+	/**
+	 * Waits until the pool is full, failing if it takes more than a few seconds.
+	 */
+	private static void awaitFull(MessagePool pool) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+
+		while (pool.size() < pool.capacity()) {
+			assertTrue("The pool was not filled in time", System.currentTimeMillis() < deadline);
+			Thread.sleep(5);
+		}
+	}
+
+	@Test
+	public void testTakeWithoutInput() {
+		MessageGenerator mg = new MessageGenerator();
+
+		try (MessagePool pool = new MessagePool(mg, 8, 1)) {
+			assertEquals("", pool.take());
+			assertNull(pool.poll());
+			assertEquals(0, pool.size());
+		}
+	}
+
+	@Test
+	public void testCapacityIsRoundedUp() {
+		try (MessagePool pool = new MessagePool(new MessageGenerator(), 10, 1)) {
+			assertEquals(16, pool.capacity());
+		}
+	}
+
+	@Test
+	public void testFillsAhead() throws InterruptedException {
+		MessageGenerator mg = new MessageGenerator();
+		train(mg, OLD_WORDS);
+
+		try (MessagePool pool = new MessagePool(mg, 16, 2)) {
+			awaitFull(pool);
+
+			for (int i = 0; i < pool.capacity(); i++) {
+				assertFalse(pool.take().isEmpty());
+			}
+
+			assertEquals(pool.capacity(), pool.getHits());
+			assertEquals(0, pool.getMisses());
+			assertEquals(1.0, pool.getHitRate(), 0);
+		}
+	}
+
+	@Test
+	public void testTakeAlwaysReturnsAMessage() {
+		MessageGenerator mg = new MessageGenerator();
+		train(mg, OLD_WORDS);
+
+		try (MessagePool pool = new MessagePool(mg, 4, 1)) {
+			for (int i = 0; i < 1000; i++) {
+				assertFalse(pool.take().isEmpty());
+			}
+
+			assertEquals(1000, pool.getHits() + pool.getMisses());
+		}
+	}
+
+	@Test
+	public void testNewInputDiscardsOldMessages() throws InterruptedException {
+		MessageGenerator mg = new MessageGenerator();
+		train(mg, OLD_WORDS);
+
+		try (MessagePool pool = new MessagePool(mg, 16, 1)) {
+			awaitFull(pool);
+
+			mg.clearInput();
+			train(mg, NEW_WORDS);
+
+			for (int i = 0; i < 100; i++) {
+				String message = pool.take().toLowerCase();
+
+				for (String word : OLD_WORDS) {
+					assertFalse(message, message.contains(word.replace(".", "")));
+				}
+			}
+
+			assertTrue(pool.getDiscarded() >= pool.capacity());
+		}
+	}
+
+	@Test
+	public void testTakeAfterClose() {
+		MessageGenerator mg = new MessageGenerator();
+		train(mg, OLD_WORDS);
+
+		MessagePool pool = new MessagePool(mg, 4, 2);
+		pool.close();
+
+		assertFalse(pool.take().isEmpty());
+	}
+}
@@ -0,0 +1,329 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import model.MessageGenerator;
+import model.ModelRegistry;
+
+public class ModelRegistryTest {
+
+	private final ConcurrentHashMap<String, AtomicInteger> loads = new ConcurrentHashMap<>();
+	private Path spillDirectory;
+
+	/**
+	 * Trains a generator on text of its own for every source, counting how many times each one is trained.
+	 */
+	private MessageGenerator train(String key) throws IOException {
+		loads.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+
+		StringBuilder text = new StringBuilder();
+		SplittableRandom random = new SplittableRandom(key.hashCode());
+		for (int i = 0; i < 2000; i++) {
+			text.append(key).append(random.nextInt(300)).append(i % 10 == 9 ? ". " : " ");
+		}
+
+		MessageGenerator msgGen = new MessageGenerator();
+		msgGen.addInput(new StringReader(text.toString()));
+		return msgGen;
+	}
+
+	private int loadsOf(String key) {
+		AtomicInteger count = loads.get(key);
+		return (count == null) ? 0 : count.get();
+	}
+
+	/**
+	 * Returns a budget that fits the given number of models trained by train().
+	 */
+	private long budgetFor(int models) throws IOException {
+		long bytes = train("size").getEstimatedBytes();
+		loads.clear();
+
+		return models * bytes + bytes / 2;
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		spillDirectory = Files.createTempDirectory("registry");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		try (var files = Files.list(spillDirectory)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				Files.delete(file);
+			}
+		}
+		Files.delete(spillDirectory);
+	}
+
+	@Test
+	public void testCountsHitsAndMisses() throws IOException {
+		ModelRegistry registry = new ModelRegistry(Long.MAX_VALUE, this::train);
+
+		MessageGenerator alice = registry.get("alice");
+		assertSame(alice, registry.get("alice"));
+		registry.get("bob");
+
+		assertEquals(1, registry.getHits());
+		assertEquals(2, registry.getMisses());
+		assertEquals(1.0 / 3, registry.getHitRate(), 1e-9);
+		assertEquals(1, loadsOf("alice"));
+		assertEquals(2, registry.size());
+		assertEquals(alice.getEstimatedBytes() + registry.getIfPresent("bob").getEstimatedBytes(), registry.getUsedBytes());
+	}
+
+	@Test
+	public void testEvictsLeastRecentlyUsed() throws IOException {
+		ModelRegistry registry = new ModelRegistry(budgetFor(2), this::train);
+
+		registry.get("alice");
+		registry.get("bob");
+		registry.get("alice");
+		registry.get("carol");
+
+		assertTrue(registry.contains("alice"));
+		assertFalse(registry.contains("bob"));
+		assertTrue(registry.contains("carol"));
+		assertEquals(1, registry.getEvictions());
+		assertTrue(registry.getUsedBytes() <= registry.getBudgetBytes());
+
+		// Without a directory to spill to, an evicted model has to be trained again
+		registry.get("bob");
+		assertEquals(2, loadsOf("bob"));
+		assertFalse(registry.contains("alice"));
+	}
+
+	@Test
+	public void testKeepsModelLargerThanBudget() throws IOException {
+		ModelRegistry registry = new ModelRegistry(1, this::train);
+
+		registry.get("alice");
+		registry.get("bob");
+
+		assertEquals(1, registry.size());
+		assertTrue(registry.contains("bob"));
+	}
+
+	@Test
+	public void testSpillsEvictedModels() throws IOException {
+		ModelRegistry registry = new ModelRegistry(budgetFor(1), this::train, spillDirectory);
+
+		MessageGenerator before = registry.get("alice/../x");
+		registry.get("bob");
+
+		assertEquals(1, registry.getEvictions());
+		assertEquals(1, registry.getSpills());
+
+		MessageGenerator reloaded = registry.get("alice/../x");
+		assertEquals(1, loadsOf("alice/../x"));
+		assertEquals(1, registry.getSpillLoads());
+		assertNotSame(before, reloaded);
+		assertEquals(before.getNumberOfChains(), reloaded.getNumberOfChains());
+		assertEquals(before.getNumberOfEdges(), reloaded.getNumberOfEdges());
+
+		// Unchanged since it was loaded, so its snapshot is still good and is not written again
+		registry.get("bob");
+		assertEquals(2, registry.getSpills());
+		registry.get("alice/../x");
+		assertEquals(2, registry.getSpills());
+		assertEquals(3, registry.getSpillLoads());
+	}
+
+	@Test
+	public void testMeasuresModelsAgainAfterTraining() throws IOException {
+		ModelRegistry registry = new ModelRegistry(budgetFor(2), this::train);
+
+		registry.get("alice");
+		MessageGenerator bob = registry.get("bob");
+		long used = registry.getUsedBytes();
+
+		bob.addInput(new StringReader(String.join(" ", words(20000))));
+		registry.trim();
+
+		// Bob alone is now over the budget, but is kept as the most recently used
+		assertTrue(registry.getUsedBytes() > used);
+		assertFalse(registry.contains("alice"));
+		assertTrue(registry.contains("bob"));
+
+		List<ModelRegistry.ModelSize> sizes = registry.getModelSizes();
+		assertEquals(1, sizes.size());
+		assertEquals("bob", sizes.get(0).getKey());
+		assertEquals(bob.getNumberOfEdges(), sizes.get(0).getNumberOfEdges());
+		assertEquals(bob.getVocabularySize(), sizes.get(0).getVocabularySize());
+		assertEquals(bob.getEstimatedBytes(), sizes.get(0).getEstimatedBytes());
+	}
+
+	@Test
+	public void testGetIfPresentDoesNotCountAsUse() throws IOException {
+		ModelRegistry registry = new ModelRegistry(budgetFor(2), this::train);
+
+		registry.get("alice");
+		registry.get("bob");
+		assertNotNull(registry.getIfPresent("alice"));
+		registry.get("carol");
+
+		assertFalse(registry.contains("alice"));
+		assertTrue(registry.contains("bob"));
+		assertTrue(registry.contains("carol"));
+	}
+
+	@Test
+	public void testMeasuresWithoutHoldingRegistry() throws Exception {
+		CountDownLatch measuring = new CountDownLatch(1), release = new CountDownLatch(1);
+		boolean[] trained = { false };
+		ModelRegistry registry = new ModelRegistry(Long.MAX_VALUE, key -> {
+			MessageGenerator msgGen = new MessageGenerator() {
+				@Override
+				public long getEstimatedBytes() {
+					if (trained[0]) {
+						measuring.countDown();
+						try {
+							release.await();
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+					}
+					return super.getEstimatedBytes();
+				}
+			};
+			msgGen.addInput(new StringReader(String.join(" ", words(100))));
+			return msgGen;
+		});
+
+		MessageGenerator alice = registry.get("alice");
+		alice.addInput(new StringReader(String.join(" ", words(1000))));
+		trained[0] = true;
+
+		Thread trimmer = new Thread(() -> {
+			try {
+				registry.trim();
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		trimmer.start();
+		measuring.await();
+
+		// Loading and using other models goes on while alice is being measured, and does not measure alice again
+		trained[0] = false;
+		registry.get("bob");
+		assertSame(alice, registry.get("alice"));
+		long used = registry.getUsedBytes();
+
+		release.countDown();
+		trimmer.join(10000);
+		assertTrue(registry.getUsedBytes() > used);
+		assertEquals(alice.getEstimatedBytes() + registry.getIfPresent("bob").getEstimatedBytes(), registry.getUsedBytes());
+	}
+
+	@Test
+	public void testPutAndRemove() throws IOException {
+		ModelRegistry registry = new ModelRegistry(budgetFor(1), this::train, spillDirectory);
+
+		registry.get("alice");
+		registry.get("bob");
+		assertEquals(1, registry.getSpills());
+
+		// Replacing a model deletes its stale snapshot
+		MessageGenerator replacement = new MessageGenerator();
+		replacement.addInput("Hello", "world");
+		registry.put("alice", replacement);
+		assertSame(replacement, registry.get("alice"));
+
+		assertSame(replacement, registry.remove("alice"));
+		assertNull(registry.remove("alice"));
+		registry.get("alice");
+		assertEquals(2, loadsOf("alice"));
+	}
+
+	@Test
+	public void testLoadsOnceForConcurrentRequests() throws Exception {
+		CountDownLatch started = new CountDownLatch(1), release = new CountDownLatch(1);
+		ModelRegistry registry = new ModelRegistry(Long.MAX_VALUE, key -> {
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return train(key);
+		});
+
+		List<Thread> threads = new ArrayList<>();
+		List<MessageGenerator> results = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			Thread thread = new Thread(() -> {
+				try {
+					MessageGenerator msgGen = registry.get("alice");
+					synchronized (results) {
+						results.add(msgGen);
+					}
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+
+		started.await();
+		// Other models can be used while one is loading
+		registry.put("bob", new MessageGenerator());
+		assertNotNull(registry.getIfPresent("bob"));
+
+		Thread.sleep(100);
+		release.countDown();
+		for (Thread thread : threads) {
+			thread.join(10000);
+		}
+
+		assertEquals(4, results.size());
+		for (MessageGenerator msgGen : results) {
+			assertSame(results.get(0), msgGen);
+		}
+		assertEquals(1, loadsOf("alice"));
+	}
+
+	@Test
+	public void testFailedLoadIsNotKept() {
+		ModelRegistry registry = new ModelRegistry(Long.MAX_VALUE, key -> {
+			throw new IOException("No such user: " + key);
+		});
+
+		for (int i = 0; i < 2; i++) {
+			try {
+				registry.get("nobody");
+				fail("The failure was not reported");
+			} catch (IOException e) {
+				assertEquals("No such user: nobody", e.getMessage());
+			}
+		}
+
+		assertFalse(registry.contains("nobody"));
+		assertEquals(2, registry.getMisses());
+	}
+
+	private static List<String> words(int count) {
+		List<String> words = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			words.add("word" + i);
+		}
+		return words;
+	}
+}
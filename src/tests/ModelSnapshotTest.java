@@ -0,0 +1,207 @@
+package tests;
+
+import static org.junit.Assert.*;
+import static tests.TrainedModels.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import model.MessageGenerator;
+
+public class ModelSnapshotTest {
+
+	private Path file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = Files.createTempFile("model", ".snapshot");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		MessageGenerator mg = train(1, 5000);
+		mg.save(file);
+
+		MessageGenerator loaded = MessageGenerator.load(file);
+		assertSameModel(mg, loaded);
+		assertFalse(loaded.generateText().isEmpty());
+	}
+
+	@Test
+	public void testHigherOrderRoundTrip() throws IOException {
+		MessageGenerator mg = train(3, 5000);
+		mg.save(file);
+
+		assertSameModel(mg, MessageGenerator.load(file));
+	}
+
+	@Test
+	public void testEmptyModel() throws IOException {
+		new MessageGenerator().save(file);
+
+		MessageGenerator loaded = MessageGenerator.load(file);
+		assertEquals(loaded.getNumberOfChains(), 0);
+		assertEquals(loaded.generateText(), "");
+	}
+
+	@Test
+	public void testSaveReplacesExistingFile() throws IOException {
+		train(2, 5000).save(file);
+
+		MessageGenerator mg = train(1, 100);
+		mg.save(file);
+
+		assertSameModel(mg, MessageGenerator.load(file));
+	}
+
+	@Test
+	public void testTruncatedFile() throws IOException {
+		train(2, 5000).save(file);
+		byte[] bytes = Files.readAllBytes(file);
+
+		for (int length : new int[] { 0, 3, bytes.length / 2, bytes.length - 1 }) {
+			Files.write(file, Arrays.copyOf(bytes, length));
+
+			try {
+				MessageGenerator.load(file);
+				fail("Loaded a snapshot cut to " + length + " bytes");
+			} catch (IOException e) {
+				// Expected
+			}
+		}
+	}
+
+	@Test
+	public void testCorruptedFile() throws IOException {
+		train(2, 5000).save(file);
+		byte[] bytes = Files.readAllBytes(file);
+		Random random = new Random(5);
+
+		for (int i = 0; i < 50; i++) {
+			byte[] corrupted = bytes.clone();
+			corrupted[random.nextInt(corrupted.length)] ^= 1 << random.nextInt(8);
+			Files.write(file, corrupted);
+
+			try {
+				MessageGenerator.load(file);
+				fail("Loaded a corrupted snapshot");
+			} catch (IOException e) {
+				// Expected
+			}
+		}
+	}
+
+	@Test
+	public void testTrailingData() throws IOException {
+		train(1, 100).save(file);
+		byte[] bytes = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(bytes, bytes.length + 1));
+
+		try {
+			MessageGenerator.load(file);
+			fail("Loaded a snapshot with data after its end");
+		} catch (IOException e) {
+			// Expected
+		}
+	}
+
+	@Test
+	public void testBacksOffPastContextsWithoutStates() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(0x4D4B5653);
+		writeVarints(out, 2, 4);
+
+		String[] words = { "Alpha", "beta", "gamma", "wrong", "right", "zeta" };
+		writeVarints(out, words.length);
+		for (String word : words) {
+			writeVarints(out, word.length());
+			for (char c : word.toCharArray()) {
+				writeVarints(out, c);
+			}
+		}
+
+		// Each chain is written as its gap, capitalization, occurrences and states, where "gamma" on its own is followed by "wrong"
+		writeVarints(out, 5,
+				1, 1, 1, 1, 2, 1,
+				1, 0, 1, 1, 3, 1,
+				1, 0, 1, 1, 4, 1,
+				1, 0, 1, 1, 1, 1,
+				1, 0, 1, 1, 1, 1);
+
+		// "beta gamma" is followed by "right", and "Alpha beta gamma" only has a longer context below it with no states of its own
+		writeVarints(out, 0, 1, 2,
+				0, 1, 1,
+				1, 5, 1, 1, 0,
+				0, 1, 5,
+				1, 4, 1, 0);
+
+		writeVarints(out, 1, 1, 1);
+
+		CRC32 checksum = new CRC32();
+		checksum.update(out.toByteArray());
+		data.writeInt((int) checksum.getValue());
+		Files.write(file, out.toByteArray());
+
+		MessageGenerator loaded = MessageGenerator.load(file);
+		MessageGenerator frozen = MessageGenerator.load(file);
+		frozen.freeze();
+
+		for (long seed = 0; seed < 100; seed++) {
+			assertFalse(loaded.generateText(new Random(seed)).contains("wrong"));
+			assertFalse(frozen.generateText(new Random(seed)).contains("wrong"));
+		}
+	}
+
+	/**
+	 * Writes each number as a varint the way snapshots do.
+	 */
+	private static void writeVarints(ByteArrayOutputStream out, int... values) {
+		for (int value : values) {
+			while ((value & ~0x7F) != 0) {
+				out.write((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+
+			out.write(value);
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testNotASnapshot() throws IOException {
+		Files.write(file, "The quick brown fox".getBytes());
+		MessageGenerator.load(file);
+	}
+
+	@Test
+	public void testKeepsSentenceStarts() throws IOException {
+		String[] words = "Alpha one two. Baz three four. Baz five six. Baz seven Alpha eight".split(" ");
+		MessageGenerator mg = new MessageGenerator();
+		for (int i = 1; i < words.length; i++) {
+			mg.addInput(words, i);
+		}
+		mg.save(file);
+
+		MessageGenerator loaded = MessageGenerator.load(file);
+		loaded.setWeightedSentenceStarts(true);
+
+		for (long seed = 0; seed < 200; seed++) {
+			assertTrue(loaded.generateText(new Random(seed)).startsWith("Baz "));
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import model.MarkovChain;
+import model.MessageGenerator;
+import model.ParallelTrainer;
+
+public class ParallelTrainerTest {
+
+	/**
+	 * Makes up input with a small vocabulary so that the same pairs appear in many segments.
+	 */
+	private static String[] randomWords(int numWords, long seed) {
+		String[] vocabulary = { "The", "quick", "brown", "fox", "jumps", "over", "the", "lazy", "dog.", "A", "cat!", "why?" };
+		Random random = new Random(seed);
+		String[] words = new String[numWords];
+
+		for (int i = 0; i < numWords; i++) {
+			words[i] = vocabulary[random.nextInt(vocabulary.length)] + (random.nextInt(50) == 0 ? i : "");
+		}
+
+		return words;
+	}
+
+	/**
+	 * Checks that both generators have the same chains with the same counts.
+	 */
+	private static void assertSameCounts(MessageGenerator expected, MessageGenerator actual, String[]... inputs) {
+		assertEquals(expected.getNumberOfChains(), actual.getNumberOfChains());
+
+		HashSet<String> pairs = new HashSet<>();
+		for (String[] words : inputs) {
+			for (int i = 0; i < words.length - 1; i++) {
+				pairs.add(words[i] + " " + words[i + 1]);
+			}
+		}
+
+		HashMap<String,Integer> numStates = new HashMap<>();
+		for (String pair : pairs) {
+			String[] split = pair.split(" ");
+			MarkovChain e = expected.getChain(split[0]);
+			MarkovChain a = actual.getChain(split[0]);
+
+			assertEquals(e.getOccurrences(), a.getOccurrences());
+			assertEquals(e.isCapital(), a.isCapital());
+			assertEquals(e.getStateCount(split[1]), a.getStateCount(split[1]));
+			numStates.merge(split[0], 1, Integer::sum);
+		}
+
+		for (String word : numStates.keySet()) {
+			assertEquals((int) numStates.get(word), actual.getChain(word).getNumberOfStates());
+		}
+	}
+
+	@Test
+	public void testSameCountsAsSequential() {
+		String[] words = randomWords(200000, 7);
+
+		MessageGenerator sequential = new MessageGenerator();
+		for (int i = 0; i < words.length - 1; i++) {
+			sequential.addInput(words[i], words[i + 1]);
+		}
+
+		for (int threads = 1; threads <= 4; threads++) {
+			MessageGenerator parallel = new MessageGenerator();
+			new ParallelTrainer(new ForkJoinPool(threads)).train(words, parallel);
+			assertSameCounts(sequential, parallel, words);
+		}
+	}
+
+	@Test
+	public void testMergesIntoExistingInput() {
+		String[] first = randomWords(50000, 1);
+		String[] second = randomWords(50000, 2);
+
+		MessageGenerator sequential = new MessageGenerator();
+		for (int i = 0; i < first.length - 1; i++) {
+			sequential.addInput(first[i], first[i + 1]);
+		}
+		for (int i = 0; i < second.length - 1; i++) {
+			sequential.addInput(second[i], second[i + 1]);
+		}
+
+		MessageGenerator parallel = new MessageGenerator();
+		ParallelTrainer trainer = new ParallelTrainer(new ForkJoinPool(3));
+		trainer.train(first, parallel);
+		trainer.train(second, parallel);
+
+		assertSameCounts(sequential, parallel, first, second);
+	}
+
+	@Test
+	public void testHigherOrderSameAsSequential() {
+		String[] words = randomWords(100000, 11);
+
+		MessageGenerator sequential = new MessageGenerator(3);
+		for (int i = 1; i < words.length; i++) {
+			sequential.addInput(words, i);
+		}
+
+		MessageGenerator parallel = new MessageGenerator(3);
+		new ParallelTrainer(new ForkJoinPool(4)).train(words, parallel);
+
+		assertSameCounts(sequential, parallel, words);
+		assertEquals(sequential.getNumberOfContexts(), parallel.getNumberOfContexts());
+	}
+
+	@Test
+	public void testTooLittleInput() {
+		MessageGenerator mg = new MessageGenerator();
+		new ParallelTrainer().train(new String[] { "foo" }, mg);
+		assertEquals(mg.getNumberOfChains(), 0);
+		assertEquals(mg.generateText(), "");
+	}
+}
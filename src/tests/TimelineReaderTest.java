@@ -0,0 +1,399 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import model.MessageGenerator;
+import model.StubTimelineSource;
+import model.TimelineReader;
+import model.TimelinePost;
+import model.TimelineSource;
+
+public class TimelineReaderTest {
+
+	private static final String[] WORDS = { "The", "cat", "sat", "on", "the", "mat.", "A", "dog", "ran", "after", "it!" };
+
+	/**
+	 * Creates a timeline of posts made up of the same words in a different order each time.
+	 */
+	private static List<String> posts(int count) {
+		SplittableRandom random = new SplittableRandom(3);
+		List<String> posts = new ArrayList<>();
+
+		for (int i = 0; i < count; i++) {
+			StringBuilder post = new StringBuilder();
+			for (int j = 0; j < 8; j++) {
+				post.append(WORDS[random.nextInt(WORDS.length)]).append(j % 3 == 0 ? "  " : " ");
+			}
+			posts.add(post.toString().trim());
+		}
+
+		return posts;
+	}
+
+	/**
+	 * Joins the posts the way they are read from a timeline, newest first.
+	 */
+	private static String newestFirst(List<String> posts) {
+		List<String> reversed = new ArrayList<>(posts);
+		Collections.reverse(reversed);
+
+		return String.join(" ", reversed);
+	}
+
+	private static StubTimelineSource stub(List<String> posts, int pageSize) {
+		StubTimelineSource source = new StubTimelineSource(pageSize);
+
+		for (String post : posts) {
+			source.addPost("alice", post);
+		}
+
+		return source;
+	}
+
+	@Test
+	public void testMatchesJoinedText() throws IOException {
+		List<String> posts = posts(250);
+
+		MessageGenerator timeline = new MessageGenerator(2);
+		timeline.setTimelineSource(stub(posts, 20));
+		assertEquals(250, timeline.readTimeline("alice"));
+
+		MessageGenerator joined = new MessageGenerator(2);
+		joined.addInput(new StringReader(newestFirst(posts)));
+
+		assertEquals(joined.getNumberOfChains(), timeline.getNumberOfChains());
+		assertEquals(joined.getNumberOfEdges(), timeline.getNumberOfEdges());
+		assertEquals(joined.getNumberOfContexts(), timeline.getNumberOfContexts());
+		assertEquals(joined.generateText(new SplittableRandom(9)), timeline.generateText(new SplittableRandom(9)));
+	}
+
+	@Test
+	public void testFetchesEveryPage() throws IOException {
+		StubTimelineSource source = stub(posts(250), 20);
+		MessageGenerator mg = new MessageGenerator();
+
+		assertEquals(250, new TimelineReader(mg, source).read("alice"));
+		assertEquals(13 + 1, source.getPagesFetched());
+
+		assertEquals(0, new TimelineReader(mg, source).read("bob"));
+	}
+
+	@Test
+	public void testReportsFailure() {
+		StubTimelineSource stub = stub(posts(100), 10);
+		TimelineSource failing = new TimelineSource() {
+			@Override
+			public boolean userExists(String user) {
+				return true;
+			}
+
+			@Override
+			public List<TimelinePost> fetchPage(String user, int page, long sinceId) throws IOException {
+				if (page == 3) {
+					throw new IOException("Rate limited");
+				}
+				return stub.fetchPage(user, page, sinceId);
+			}
+		};
+
+		MessageGenerator mg = new MessageGenerator();
+		mg.setTimelineSource(failing);
+
+		try {
+			mg.readTimeline("alice");
+			fail("The failure was not reported");
+		} catch (IOException e) {
+			assertEquals("Rate limited", e.getMessage());
+		}
+
+		// The two pages before the failure were still added
+		assertTrue(mg.getNumberOfChains() > 0);
+	}
+
+	@Test
+	public void testPrefetchIsBounded() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		MessageGenerator blocked = new MessageGenerator() {
+			@Override
+			public void addInput(String firstWord, String wordAfter) {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				super.addInput(firstWord, wordAfter);
+			}
+		};
+		StubTimelineSource source = stub(posts(1000), 10);
+
+		Thread reader = new Thread(() -> {
+			try {
+				new TimelineReader(blocked, source).read("alice");
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		reader.start();
+
+		Thread.sleep(200);
+		// One page being added, two waiting and one more fetched but not yet queued
+		assertTrue(source.getPagesFetched() <= 4);
+
+		release.countDown();
+		reader.join(10000);
+		assertEquals(100 + 1, source.getPagesFetched());
+	}
+
+	@Test
+	public void testOverlapsFetchingAndAdding() throws IOException {
+		StubTimelineSource source = stub(posts(200), 20);
+		source.setLatency(20, TimeUnit.MILLISECONDS);
+
+		MessageGenerator mg = new MessageGenerator();
+		mg.setTimelineSource(source);
+
+		long start = System.nanoTime();
+		mg.readTimeline("alice");
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		// Eleven pages of network time, with some room for the last page and a slow machine
+		assertTrue(elapsed + " ms", elapsed < 11 * 20 + 150);
+	}
+
+	@Test
+	public void testReadFromTwitterUsesSource() throws InterruptedException {
+		MessageGenerator mg = new MessageGenerator();
+		mg.setTimelineSource(stub(posts(50), 10));
+
+		assertEquals(-1, mg.readFromTwitter("bob"));
+		assertFalse(mg.isAnalyzing());
+
+		assertEquals(0, mg.readFromTwitter("alice"));
+		for (int i = 0; i < 1000 && mg.isAnalyzing(); i++) {
+			Thread.sleep(10);
+		}
+
+		assertFalse(mg.isAnalyzing());
+		assertTrue(mg.getNumberOfChains() > 0);
+	}
+
+	@Test
+	public void testReadsOnlyNewPosts() throws IOException {
+		List<String> posts = posts(303);
+		StubTimelineSource source = stub(posts.subList(0, 300), 20);
+
+		MessageGenerator mg = new MessageGenerator(2);
+		mg.setTimelineSource(source);
+		assertEquals(300, mg.readTimeline("alice"));
+		assertEquals(15 + 1, source.getPagesFetched());
+		assertEquals(300, mg.getNewestPostId("alice"));
+
+		// Nothing new costs only the empty page
+		assertEquals(0, mg.readTimeline("alice"));
+		assertEquals(15 + 2, source.getPagesFetched());
+
+		for (String post : posts.subList(300, 303)) {
+			source.addPost("alice", post);
+		}
+		assertEquals(3, mg.readTimeline("alice"));
+		assertEquals(15 + 4, source.getPagesFetched());
+		assertEquals(303, mg.getNewestPostId("alice"));
+
+		MessageGenerator joined = new MessageGenerator(2);
+		joined.addInput(new StringReader(newestFirst(posts.subList(0, 300))));
+		joined.addInput(new StringReader(newestFirst(posts.subList(300, 303))));
+
+		assertEquals(joined.getNumberOfChains(), mg.getNumberOfChains());
+		assertEquals(joined.getNumberOfEdges(), mg.getNumberOfEdges());
+		assertEquals(joined.getNumberOfContexts(), mg.getNumberOfContexts());
+		assertEquals(joined.generateText(new SplittableRandom(9)), mg.generateText(new SplittableRandom(9)));
+	}
+
+	/**
+	 * Wraps the source so that it fails to fetch the given page, or no page while it is 0.
+	 */
+	private static TimelineSource failingOn(StubTimelineSource stub, int[] failingPage) {
+		return new TimelineSource() {
+			@Override
+			public boolean userExists(String user) {
+				return true;
+			}
+
+			@Override
+			public List<TimelinePost> fetchPage(String user, int page, long sinceId) throws IOException {
+				if (page == failingPage[0]) {
+					throw new IOException("Timed out");
+				}
+				return stub.fetchPage(user, page, sinceId);
+			}
+		};
+	}
+
+	@Test
+	public void testRetryAddsEachPostOnce() throws IOException {
+		List<String> posts = posts(100);
+		int[] failingPage = { 2 };
+
+		MessageGenerator mg = new MessageGenerator(2);
+		mg.setTimelineSource(failingOn(stub(posts, 10), failingPage));
+
+		try {
+			mg.readTimeline("alice");
+			fail("The failure was not reported");
+		} catch (IOException e) {
+			assertEquals(0, mg.getNewestPostId("alice"));
+		}
+
+		// Only the posts of the pages after the first are added by the next read
+		failingPage[0] = 0;
+		assertEquals(90, mg.readTimeline("alice"));
+		assertEquals(100, mg.getNewestPostId("alice"));
+		assertEquals(0, mg.readTimeline("alice"));
+
+		MessageGenerator joined = new MessageGenerator(2);
+		joined.addInput(new StringReader(newestFirst(posts.subList(90, 100))));
+		joined.addInput(new StringReader(newestFirst(posts.subList(0, 90))));
+
+		assertEquals(joined.getVersion(), mg.getVersion());
+		assertEquals(joined.getNumberOfEdges(), mg.getNumberOfEdges());
+		assertEquals(joined.getNumberOfContexts(), mg.getNumberOfContexts());
+		assertEquals(joined.generateText(new SplittableRandom(9)), mg.generateText(new SplittableRandom(9)));
+	}
+
+	@Test
+	public void testRetriesPickUpNewPostsAndMissedPages() throws IOException {
+		List<String> posts = posts(125);
+		StubTimelineSource stub = stub(posts.subList(0, 100), 10);
+		int[] failingPage = { 3 };
+
+		MessageGenerator mg = new MessageGenerator(2);
+		mg.setTimelineSource(failingOn(stub, failingPage));
+
+		// Gets through the posts from 100 down to 81
+		try {
+			mg.readTimeline("alice");
+			fail("The failure was not reported");
+		} catch (IOException e) {
+		}
+
+		for (String post : posts.subList(100, 125)) {
+			stub.addPost("alice", post);
+		}
+
+		// Gets through the new posts from 125 down to 116, before reaching the posts that were already added
+		failingPage[0] = 2;
+		try {
+			mg.readTimeline("alice");
+			fail("The failure was not reported");
+		} catch (IOException e) {
+			assertEquals(0, mg.getNewestPostId("alice"));
+		}
+
+		failingPage[0] = 0;
+		assertEquals(15 + 80, mg.readTimeline("alice"));
+		assertEquals(125, mg.getNewestPostId("alice"));
+
+		MessageGenerator joined = new MessageGenerator(2);
+		joined.addInput(new StringReader(newestFirst(posts.subList(80, 100))));
+		joined.addInput(new StringReader(newestFirst(posts.subList(115, 125))));
+		joined.addInput(new StringReader(newestFirst(posts.subList(100, 115)) + " " + newestFirst(posts.subList(0, 80))));
+
+		assertEquals(joined.getVersion(), mg.getVersion());
+		assertEquals(joined.getNumberOfEdges(), mg.getNumberOfEdges());
+		assertEquals(joined.generateText(new SplittableRandom(9)), mg.generateText(new SplittableRandom(9)));
+	}
+
+	@Test
+	public void testClearingForgetsReadPosts() throws IOException {
+		StubTimelineSource source = stub(posts(30), 10);
+		MessageGenerator mg = new MessageGenerator();
+		mg.setTimelineSource(source);
+
+		mg.readTimeline("alice");
+		mg.clearInput();
+		assertEquals(0, mg.getNewestPostId("alice"));
+		assertEquals(30, mg.readTimeline("alice"));
+
+		mg.setTimelineSource(source);
+		assertEquals(0, mg.getNewestPostId("alice"));
+	}
+
+	@Test
+	public void testReadFromTwitterRefreshesSameUser() throws InterruptedException {
+		StubTimelineSource source = stub(posts(50), 10);
+		source.addPost("bob", "Bob only posted once.");
+
+		MessageGenerator mg = new MessageGenerator();
+		mg.setTimelineSource(source);
+
+		assertEquals(0, mg.readFromTwitter("alice"));
+		awaitAnalysis(mg);
+		long version = mg.getVersion();
+
+		source.addPost("alice", "A brand new post");
+		assertEquals(0, mg.readFromTwitter("alice"));
+		awaitAnalysis(mg);
+
+		// Only the three pairs of words of the new post were added, and the rest of the input was kept
+		assertEquals(version + 3, mg.getVersion());
+		assertTrue(mg.getNewestPostId("alice") > 50);
+
+		assertEquals(0, mg.readFromTwitter("bob"));
+		awaitAnalysis(mg);
+		assertEquals(0, mg.getNewestPostId("alice"));
+		assertEquals(3, mg.getNumberOfChains());
+	}
+
+	private static void awaitAnalysis(MessageGenerator mg) throws InterruptedException {
+		for (int i = 0; i < 1000 && mg.isAnalyzing(); i++) {
+			Thread.sleep(10);
+		}
+		assertFalse(mg.isAnalyzing());
+	}
+
+	@Test
+	public void testStubFromDirectory() throws IOException {
+		Path directory = Files.createTempDirectory("timelines");
+
+		try {
+			Files.write(directory.resolve("alice.txt"), Arrays.asList("first post", "second post", "third post"), StandardCharsets.UTF_8);
+			StubTimelineSource source = StubTimelineSource.fromDirectory(directory, 2);
+
+			assertTrue(source.userExists("alice"));
+			assertFalse(source.userExists("bob"));
+			assertEquals(Arrays.asList("third post", "second post"), texts(source.fetchPage("alice", 1, 0)));
+			assertEquals(Arrays.asList("first post"), texts(source.fetchPage("alice", 2, 0)));
+			assertTrue(source.fetchPage("alice", 3, 0).isEmpty());
+
+			assertEquals(Arrays.asList("third post"), texts(source.fetchPage("alice", 1, 2)));
+		} finally {
+			Files.delete(directory.resolve("alice.txt"));
+			Files.delete(directory);
+		}
+	}
+
+	private static List<String> texts(List<TimelinePost> posts) {
+		List<String> texts = new ArrayList<>();
+
+		for (TimelinePost post : posts) {
+			texts.add(post.getText());
+		}
+
+		return texts;
+	}
+}
@@ -0,0 +1,53 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import model.TokenFlags;
+
+public class TokenFlagsTest {
+
+	@Test
+	public void testEndsSentence() {
+		assertTrue(TokenFlags.has(TokenFlags.of("dog."), TokenFlags.ENDS_SENTENCE));
+		assertTrue(TokenFlags.has(TokenFlags.of("why?"), TokenFlags.ENDS_SENTENCE));
+		assertTrue(TokenFlags.has(TokenFlags.of("!"), TokenFlags.ENDS_SENTENCE));
+		assertFalse(TokenFlags.has(TokenFlags.of("dog,"), TokenFlags.ENDS_SENTENCE));
+		assertFalse(TokenFlags.has(TokenFlags.of(".dog"), TokenFlags.ENDS_SENTENCE));
+	}
+
+	@Test
+	public void testNoAlphanumeric() {
+		assertTrue(TokenFlags.has(TokenFlags.of("--"), TokenFlags.NO_ALPHANUMERIC));
+		assertTrue(TokenFlags.has(TokenFlags.of("\u00e9\u00e9"), TokenFlags.NO_ALPHANUMERIC));
+		assertTrue(TokenFlags.has(TokenFlags.of(""), TokenFlags.NO_ALPHANUMERIC));
+		assertFalse(TokenFlags.has(TokenFlags.of("caf\u00e9"), TokenFlags.NO_ALPHANUMERIC));
+		assertFalse(TokenFlags.has(TokenFlags.of("42"), TokenFlags.NO_ALPHANUMERIC));
+	}
+
+	@Test
+	public void testPronounI() {
+		assertTrue(TokenFlags.has(TokenFlags.of("I"), TokenFlags.PRONOUN_I));
+		assertTrue(TokenFlags.has(TokenFlags.of("i,"), TokenFlags.PRONOUN_I));
+		assertTrue(TokenFlags.has(TokenFlags.of("\"i\""), TokenFlags.PRONOUN_I));
+		assertFalse(TokenFlags.has(TokenFlags.of("I'm"), TokenFlags.PRONOUN_I));
+		assertFalse(TokenFlags.has(TokenFlags.of("in"), TokenFlags.PRONOUN_I));
+		assertFalse(TokenFlags.has(TokenFlags.of("--"), TokenFlags.PRONOUN_I));
+	}
+
+	@Test
+	public void testOpensQuote() {
+		assertTrue(TokenFlags.has(TokenFlags.of("\u201cquoted\u201d"), TokenFlags.OPENS_QUOTE));
+		assertTrue(TokenFlags.has(TokenFlags.of("\"hi"), TokenFlags.OPENS_QUOTE));
+		assertFalse(TokenFlags.has(TokenFlags.of("\""), TokenFlags.OPENS_QUOTE));
+		assertFalse(TokenFlags.has(TokenFlags.of("hi\""), TokenFlags.OPENS_QUOTE));
+	}
+
+	@Test
+	public void testCombinedFlags() {
+		int flags = TokenFlags.of("\"I.");
+		assertTrue(TokenFlags.has(flags, TokenFlags.ENDS_SENTENCE | TokenFlags.PRONOUN_I | TokenFlags.OPENS_QUOTE));
+		assertFalse(TokenFlags.has(flags, TokenFlags.NO_ALPHANUMERIC));
+	}
+}
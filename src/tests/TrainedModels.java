@@ -0,0 +1,64 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import model.MarkovChain;
+import model.MessageGenerator;
+
+/**
+ * Builds generators from a small vocabulary and compares them, for the tests that save a model in one form and read it back in another.
+ */
+final class TrainedModels {
+
+	static final String[] VOCABULARY = { "The", "quick", "brown", "fox", "jumps", "over", "the", "lazy", "dog.", "\u201cQuoted\u201d", "caf\u00e9", "\ud83d", "I" };
+
+	private TrainedModels() {
+	}
+
+	/**
+	 * Trains a generator of the given order on random words from the vocabulary.
+	 */
+	static MessageGenerator train(int order, int numWords) {
+		Random random = new Random(3);
+		String[] words = new String[numWords];
+		for (int i = 0; i < numWords; i++) {
+			words[i] = VOCABULARY[random.nextInt(VOCABULARY.length)];
+		}
+
+		MessageGenerator mg = new MessageGenerator(order);
+		for (int i = 1; i < words.length; i++) {
+			mg.addInput(words, i);
+		}
+
+		return mg;
+	}
+
+	/**
+	 * Checks that both generators have the same chains with the same counts.
+	 */
+	static void assertSameModel(MessageGenerator expected, MessageGenerator actual) {
+		assertEquals(expected.getOrder(), actual.getOrder());
+		assertEquals(expected.getNumberOfChains(), actual.getNumberOfChains());
+		assertEquals(expected.getNumberOfEdges(), actual.getNumberOfEdges());
+		assertEquals(expected.getNumberOfContexts(), actual.getNumberOfContexts());
+
+		for (String word : VOCABULARY) {
+			MarkovChain e = expected.getChain(word);
+			MarkovChain a = actual.getChain(word);
+
+			if (e == null) {
+				assertNull(a);
+				continue;
+			}
+
+			assertEquals(e.getOccurrences(), a.getOccurrences());
+			assertEquals(e.isCapital(), a.isCapital());
+
+			for (String state : VOCABULARY) {
+				assertEquals(e.getStateCount(state), a.getStateCount(state));
+			}
+		}
+	}
+}
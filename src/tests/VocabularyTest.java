@@ -0,0 +1,79 @@
+package tests;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import model.TokenFlags;
+import model.Vocabulary;
+
+public class VocabularyTest {
+
+	@Test
+	public void testInternAssignsIdsInOrder() {
+		Vocabulary vocabulary = new Vocabulary();
+		assertEquals(vocabulary.intern("foo"), 0);
+		assertEquals(vocabulary.intern("bar"), 1);
+		assertEquals(vocabulary.intern("foo"), 0);
+		assertEquals(vocabulary.size(), 2);
+	}
+
+	@Test
+	public void testGetIdAndGetWord() {
+		Vocabulary vocabulary = new Vocabulary();
+		assertEquals(vocabulary.getId("foo"), -1);
+
+		int id = vocabulary.intern("foo");
+		assertEquals(vocabulary.getId("foo"), id);
+		assertEquals(vocabulary.getWord(id), "foo");
+
+		// A different String instance with the same contents maps to the same ID
+		assertEquals(vocabulary.getId(new String("foo")), id);
+	}
+
+	@Test
+	public void testFlagsAreStoredWithWord() {
+		Vocabulary vocabulary = new Vocabulary();
+		int dog = vocabulary.intern("dog.");
+		int dash = vocabulary.intern("--");
+
+		assertEquals(vocabulary.getFlags(dog), TokenFlags.of("dog."));
+		assertEquals(vocabulary.getFlags(dash), TokenFlags.of("--"));
+
+		// Flags survive the arrays growing
+		for (int i = 0; i < 100; i++) {
+			vocabulary.intern("word" + i);
+		}
+		assertEquals(vocabulary.getFlags(dog), TokenFlags.ENDS_SENTENCE);
+		assertEquals(vocabulary.getFlags(vocabulary.getId("word7")), 0);
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testFlagsOfUnknownId() {
+		new Vocabulary().getFlags(0);
+	}
+
+	@Test
+	public void testGrowsPastInitialCapacity() {
+		Vocabulary vocabulary = new Vocabulary();
+
+		for (int i = 0; i < 10000; i++) {
+			assertEquals(vocabulary.intern("word" + i), i);
+		}
+
+		for (int i = 0; i < 10000; i++) {
+			assertEquals(vocabulary.getId("word" + i), i);
+			assertEquals(vocabulary.getWord(i), "word" + i);
+		}
+	}
+
+	@Test
+	public void testClear() {
+		Vocabulary vocabulary = new Vocabulary();
+		vocabulary.intern("foo");
+		vocabulary.clear();
+
+		assertEquals(vocabulary.size(), 0);
+		assertEquals(vocabulary.getId("foo"), -1);
+	}
+}
@@ -119,37 +119,23 @@ public class GraphicalView extends JPanel {
 						if (fileName != null) {
 							msgGen.clearInput();
 
-							String text = "";
 							analyzingInput = true;
 							genText.setEnabled(!analyzingInput);
 
+							// Add the input to the message generator as it is read
 							try {
 								BufferedReader io = new BufferedReader(new InputStreamReader(new FileInputStream(new File(fileName)), Charset.forName("windows-1252")));
-
-								for (String x = io.readLine(); x != null; x = io.readLine())
-								{
-									text += x + " ";
-								}
-
+								msgGen.addInput(io);
 								io.close();
 								result.setText("");
 							} catch (IOException exception) {
 								System.out.println("An exception has appeared: " + fileName);
-								analyzingInput = false;
+								msgGen.clearInput();
 								fileName = null;
 							}
 
-							// Add the input to the message generator
-							if (fileName != null) {
-								String[] input = text.split("\\s+");
-
-								for (int i = 0; i < input.length - 1; i++) {
-									msgGen.addInput(input[i], input[i + 1]);
-								}
-
-								analyzingInput = false;
-								genText.setEnabled(!analyzingInput);
-							}
+							analyzingInput = false;
+							genText.setEnabled(fileName != null);
 						}
 					}
 				}.start();
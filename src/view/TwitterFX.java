@@ -1,6 +1,7 @@
 package view;
 
 import java.io.File;
+import java.util.List;
 
 import javafx.application.Application;
 import javafx.geometry.HPos;
@@ -28,7 +29,7 @@ public class TwitterFX extends Application {
 		// Create the scene
         stage.setResizable(false);
         stage.setTitle("Twitter Web View");
-        scene = new Scene(new Browser(),800,800, Color.web("#666970"));
+        scene = new Scene(new Browser(getParameters().getRaw()),800,800, Color.web("#666970"));
         stage.setScene(scene);
         stage.show();
 	}
@@ -39,14 +40,19 @@ class Browser extends Region {
 	private final WebView browser = new WebView();
 	private final WebEngine webEngine = browser.getEngine();
 	
-	public Browser() {
+	public Browser(List<String> args) {
 		// Apply the styles
         getStyleClass().add("browser");
         
-        // Load the web page
-        File f = new File("src/html-css-js/twitter.html");
+        // Load the web page from the message generator server if there is one, or else straight from the file
         webEngine.setJavaScriptEnabled(true);
-        webEngine.load(f.toURI().toString());
+        if (!args.isEmpty()) {
+        	webEngine.load(args.get(0));
+        }
+        else {
+        	File f = new File("src/html-css-js/twitter.html");
+        	webEngine.load(f.toURI().toString());
+        }
         
         // Add the web view to the scene
         getChildren().add(browser);
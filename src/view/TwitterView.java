@@ -142,8 +142,6 @@ public class TwitterView extends JPanel {
 	 *
 	 */
 	private class TwitterListener implements ActionListener {
-		private String oldUser = "";
-		
 		/**
 		 * Reads in the Twitter timeline on a separate thread.
 		 */
@@ -164,7 +162,6 @@ public class TwitterView extends JPanel {
 			
 			analyzingInput = msgGen.isAnalyzing();
 			genText.setEnabled(!analyzingInput);
-			oldUser = user;
 		}
 		
 		/**
@@ -196,9 +193,7 @@ public class TwitterView extends JPanel {
 						JOptionPane.showMessageDialog(msgGenClient, "The username is of invalid length!", "Error", JOptionPane.ERROR_MESSAGE);
 						return;
 					}
-					else if (oldUser.equalsIgnoreCase(username.getText())) {
-						return;
-					}
+					// Analyzing the same user again only adds the posts made since
 					startThread();
 				}
 			}.start();